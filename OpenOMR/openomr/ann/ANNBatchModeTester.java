@@ -35,17 +35,12 @@ import java.util.Vector;
 
 public class ANNBatchModeTester
 {
-	private static final int scaleWidth = 8;
-	private static final int scaleHeight = 16;
-	private static final int totalPixels = scaleHeight * scaleWidth;   //8 * 16 = 128
-	
 	private String neuralNetName = "NeuralNetwork.ann";
 	private String symbolFileName = "list.txt";
 	private String outputFileName = "testing_results.csv";
 	private String PATH_SEPERATOR = System.getProperty("file.separator");
 	private String directory;
 	private Vector<String> symbolCollection;
-	private String IMAGE_EXTENSION = ".png";
 	private int symbolsUsed;
 	private DataOutputStream dataOut;
 	
@@ -68,67 +63,26 @@ public class ANNBatchModeTester
 	public int prepareInputData()
 	{
 		String dir = "testing";
-		//System.out.println("Path:" + dir);
-		int symbolCount=0;
-		File fileArray[] = (new File(directory+PATH_SEPERATOR+dir)).listFiles();
-		for (int i = 0; i < fileArray.length; i += 1)
+		ANNInterrogator annIntero = new ANNInterrogator();
+		
+		//Get image data of all symbols, classify them in a single batch
+		ANNDataset dataset = ANNDataset.load(new File(directory), dir, symbolCollection);
+		int symbolCount = dataset.getCount();
+		int labels[] = dataset.getLabels();
+		int symbols[] = new int[symbolCount];
+		double confidences[] = new double[symbolCount];
+		annIntero.interogateNN(dataset.getInputs(), symbolCount, symbols, confidences);
+		
+		for (int i = 0; i < symbolCount; i += 1)
 		{
-			if (fileArray[i].isDirectory() == true)
+			try
 			{
-				int localSymbolCount = 0;
-				// process each directory
-				String currDir = fileArray[i].getName();
-				File imageFileArray[] = fileArray[i].listFiles();
-				for (int j = 0; j < imageFileArray.length; j += 1)
-				{
-					if (imageFileArray[j].getName().endsWith(IMAGE_EXTENSION))  //Accept only .png files
-					{
-						String fName = imageFileArray[j].getName();
-						for (int k = 0; k < symbolsUsed; k += 1)
-						{
-							if (fName.startsWith((String)symbolCollection.get(k)))
-							{
-								int len = ((String)symbolCollection.get(k)).length();
-								if (fName.charAt(len) >= '0' && fName.charAt(len) <= '9')
-								{
-																		
-									//Get image data and fill "inputs" array
-									double data[] = ANNPrepare.getImageData(directory+ PATH_SEPERATOR+dir+PATH_SEPERATOR + currDir + openomr.gui.GUI.PATH_SEPERATOR + fName);
-									
-									double annData[][] = new double[1][128];
-									annData[0] = data;
-									
-									ANNInterrogator annIntero = new ANNInterrogator();
-									SymbolConfidence symConf = annIntero.interogateNN(annData);
-									
-									
-									try
-									{
-										dataOut.writeBytes((String)symbolCollection.get(k)+ ", " + symConf.getName() + ", " + symConf.getRMSE() + "\n");
-									} 
-									catch (IOException e)
-									{
-										// TODO Auto-generated catch block
-										e.printStackTrace();
-									}
-									
-									
-									//prepare target array
-									/*for (int n=0; n<symbolsUsed; n+=1)
-									{
-										if (n==k)
-											desiredData[symbolCount][n] = 1;
-										else
-											desiredData[symbolCount][n] = 0;
-									}
-									*/
-									symbolCount += 1;
-									localSymbolCount += 1;
-								}
-							}
-						}
-					}
-				}
+				dataOut.writeBytes(symbolCollection.get(labels[i]) + ", " + annIntero.getSymbolName(symbols[i]) + ", " + confidences[i] + "\n");
+			} 
+			catch (IOException e)
+			{
+				// TODO Auto-generated catch block
+				e.printStackTrace();
 			}
 		}
 		
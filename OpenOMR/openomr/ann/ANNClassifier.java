@@ -0,0 +1,212 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package openomr.ann;
+
+import org.joone.engine.FullSynapse;
+import org.joone.engine.Layer;
+import org.joone.engine.LinearLayer;
+import org.joone.engine.Matrix;
+import org.joone.engine.SigmoidLayer;
+import org.joone.net.NeuralNet;
+
+/**
+ * The <code> ANNClassifier </code> class evaluates a trained Linear/Sigmoid/Sigmoid network (as built
+ * by <code> ANNTrainer </code>) without going through the Joone engine. The weights and biases are copied
+ * once into flat arrays, after which any number of input vectors can be evaluated with no thread being
+ * started and no synapse being created.
+ * <p>
+ * An <code> ANNClassifier </code> is never modified once built and can be shared between threads.
+ * <p>
+ * The <code> ANNClassifier </code> class is used as follows:
+ * <p>
+ * <code>
+ * ANNClassifier classifier = ANNClassifier.create(neuralNet); <br>
+ * classifier.classify(inputs, count, symbols, confidences); <br>
+ * </code>
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class ANNClassifier
+{
+	private int numInputs;
+	private int numHidden;
+	private int numOutputs;
+	private double inputBeta;			// gain of the linear input layer
+	private double hiddenWeights[];		// numHidden rows of numInputs weights
+	private double hiddenBias[];
+	private double outputWeights[];		// numOutputs rows of numHidden weights
+	private double outputBias[];
+
+	public ANNClassifier(int numInputs, int numHidden, int numOutputs, double inputBeta, double hiddenWeights[], double hiddenBias[], double outputWeights[], double outputBias[])
+	{
+		this.numInputs = numInputs;
+		this.numHidden = numHidden;
+		this.numOutputs = numOutputs;
+		this.inputBeta = inputBeta;
+		this.hiddenWeights = hiddenWeights;
+		this.hiddenBias = hiddenBias;
+		this.outputWeights = outputWeights;
+		this.outputBias = outputBias;
+	}
+
+	/**
+	 * Extract the weights of a Joone network made of a <code> LinearLayer </code>, a hidden
+	 * <code> SigmoidLayer </code> and an output <code> SigmoidLayer </code> fully connected together.
+	 * @param nnet The trained network
+	 * @return the classifier
+	 */
+
+	public static ANNClassifier create(NeuralNet nnet)
+	{
+		Layer input = nnet.getInputLayer();
+		Layer output = nnet.getOutputLayer();
+		if (!(input instanceof LinearLayer) || !(output instanceof SigmoidLayer))
+			throw new IllegalArgumentException("Neural network is not a Linear/Sigmoid/Sigmoid network");
+
+		FullSynapse synapse_IH = findSynapse(input);
+		Layer hidden = null;
+		for (int i = 0; i < nnet.getLayers().size(); i += 1)
+		{
+			Layer layer = (Layer) nnet.getLayers().get(i);
+			if (layer != input && layer != output)
+				hidden = layer;
+		}
+		if (!(hidden instanceof SigmoidLayer) || nnet.getLayers().size() != 3)
+			throw new IllegalArgumentException("Neural network must have exactly one sigmoid hidden layer");
+		FullSynapse synapse_HO = findSynapse(hidden);
+
+		int numInputs = input.getRows();
+		int numHidden = hidden.getRows();
+		int numOutputs = output.getRows();
+
+		return new ANNClassifier(numInputs, numHidden, numOutputs, ((LinearLayer) input).getBeta(),
+				transpose(synapse_IH.getWeights(), numInputs, numHidden), column(hidden.getBias(), numHidden),
+				transpose(synapse_HO.getWeights(), numHidden, numOutputs), column(output.getBias(), numOutputs));
+	}
+
+	public int getNumInputs()
+	{
+		return numInputs;
+	}
+
+	public int getNumOutputs()
+	{
+		return numOutputs;
+	}
+
+	/**
+	 * Evaluate the network on one input vector
+	 * @param input The input vector (numInputs values)
+	 * @param hidden Scratch array receiving the hidden layer outputs (numHidden values)
+	 * @param output Array receiving the output layer values (numOutputs values)
+	 */
+
+	public void evaluate(double input[], double hidden[], double output[])
+	{
+		for (int h = 0; h < numHidden; h += 1)
+		{
+			double sum = 0;
+			int row = h * numInputs;
+			for (int i = 0; i < numInputs; i += 1)
+				sum += hiddenWeights[row + i] * input[i];
+			hidden[h] = sigmoid(inputBeta * sum + hiddenBias[h]);
+		}
+		for (int o = 0; o < numOutputs; o += 1)
+		{
+			double sum = 0;
+			int row = o * numHidden;
+			for (int h = 0; h < numHidden; h += 1)
+				sum += outputWeights[row + h] * hidden[h];
+			output[o] = sigmoid(sum + outputBias[o]);
+		}
+	}
+
+	/**
+	 * Classify the first count input vectors of a batch. For each vector, the index of the strongest
+	 * output is placed in <code> symbols </code> and its value in <code> confidences </code>.
+	 * @param inputs The input vectors
+	 * @param count The number of vectors to classify
+	 * @param symbols Array receiving the index of the winning output of each vector
+	 * @param confidences Array receiving the value of the winning output of each vector
+	 */
+
+	public void classify(double inputs[][], int count, int symbols[], double confidences[])
+	{
+		double hidden[] = new double[numHidden];
+		double output[] = new double[numOutputs];
+
+		for (int n = 0; n < count; n += 1)
+		{
+			evaluate(inputs[n], hidden, output);
+
+			int pos = 0;
+			double max = output[0];
+			for (int o = 1; o < numOutputs; o += 1)
+			{
+				if (output[o] > max)
+				{
+					pos = o;
+					max = output[o];
+				}
+			}
+			symbols[n] = pos;
+			confidences[n] = max;
+		}
+	}
+
+	private static double sigmoid(double x)
+	{
+		return 1 / (1 + Math.exp(-x));
+	}
+
+	// Return the fully connected synapse leaving a layer
+	private static FullSynapse findSynapse(Layer layer)
+	{
+		for (int i = 0; i < layer.getAllOutputs().size(); i += 1)
+		{
+			Object synapse = layer.getAllOutputs().get(i);
+			if (synapse instanceof FullSynapse)
+				return (FullSynapse) synapse;
+		}
+		throw new IllegalArgumentException("Layer " + layer.getLayerName() + " has no full synapse");
+	}
+
+	// Joone stores weights as [input][output]: flatten them as rows of inputs for each output
+	private static double[] transpose(Matrix weights, int rows, int cols)
+	{
+		double flat[] = new double[rows * cols];
+		for (int r = 0; r < rows; r += 1)
+			for (int c = 0; c < cols; c += 1)
+				flat[c * rows + r] = weights.value[r][c];
+		return flat;
+	}
+
+	private static double[] column(Matrix bias, int rows)
+	{
+		double flat[] = new double[rows];
+		for (int r = 0; r < rows; r += 1)
+			flat[r] = bias.value[r][0];
+		return flat;
+	}
+}
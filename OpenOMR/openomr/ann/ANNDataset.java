@@ -0,0 +1,416 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package openomr.ann;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The <code> ANNDataset </code> class holds the input vectors and the labels of all the symbol images of one
+ * directory of the neural network data (<code> training </code>, <code> validation </code> or <code> testing </code>).
+ * <p>
+ * Each sub-directory is scanned for ".png" files whose name is a symbol of <code> list.txt </code> followed by a
+ * digit, in the same order as before. The images are decoded and scaled on all processors, and the resulting
+ * feature matrix is saved next to the directory (e.g. <code> training.cache </code>). The cache is keyed by the
+ * list of symbols and by the path, size and modification time of every image, so the next run maps the file
+ * instead of decoding the images again as long as none of them changed.
+ * <p>
+ * The <code> ANNDataset </code> class is used as follows:
+ * <p>
+ * <code>
+ * ANNDataset training = ANNDataset.load(new File(baseDir), "training", symbolCollection); <br>
+ * double inputs[][] = training.getInputs(); <br>
+ * double desired[][] = training.getDesiredOutputs(); <br>
+ * </code>
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class ANNDataset
+{
+	private static final int MAGIC = 0x4F4D5246;	// "OMRF"
+	private static final int VERSION = 1;
+	private static final int KEY_LENGTH = 20;		// SHA-1
+	private static final String IMAGE_EXTENSION = ".png";
+	private static final String CACHE_EXTENSION = ".cache";
+
+	private int numSymbols;
+	private int count;
+	private int labels[];
+	private double inputs[][];
+	private boolean fromCache;
+
+	private ANNDataset(int numSymbols, int labels[], double inputs[][], boolean fromCache)
+	{
+		this.numSymbols = numSymbols;
+		this.count = labels.length;
+		this.labels = labels;
+		this.inputs = inputs;
+		this.fromCache = fromCache;
+	}
+
+	/**
+	 * Load the symbols of a directory, from its cache when it is up to date
+	 * @param baseDir The directory holding <code> list.txt </code> and the <code> training </code>,
+	 * <code> validation </code> and <code> testing </code> directories
+	 * @param subDir The name of the directory to load
+	 * @param symbols The symbol names, as listed in <code> list.txt </code>
+	 */
+
+	public static ANNDataset load(File baseDir, String subDir, List<String> symbols)
+	{
+		List<File> files = new ArrayList<File>();
+		List<Integer> fileLabels = new ArrayList<Integer>();
+		scan(new File(baseDir, subDir), symbols, files, fileLabels);
+
+		int labels[] = new int[files.size()];
+		for (int i = 0; i < labels.length; i += 1)
+			labels[i] = fileLabels.get(i);
+
+		byte key[] = computeKey(baseDir, files, symbols);
+		File cacheFile = new File(baseDir, subDir + CACHE_EXTENSION);
+
+		double inputs[][] = readCache(cacheFile, key, labels);
+		if (inputs != null)
+			return new ANNDataset(symbols.size(), labels, inputs, true);
+
+		inputs = decode(files);
+		writeCache(cacheFile, key, labels, inputs);
+		return new ANNDataset(symbols.size(), labels, inputs, false);
+	}
+
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Returns the index in <code> list.txt </code> of the symbol of each image
+	 */
+
+	public int[] getLabels()
+	{
+		return labels;
+	}
+
+	/**
+	 * Returns the input vector of each image (see <code> ANNPrepare.prepareImage </code>)
+	 */
+
+	public double[][] getInputs()
+	{
+		return inputs;
+	}
+
+	/**
+	 * Returns the desired output of each image: 1 for its symbol and 0 for the others
+	 */
+
+	public double[][] getDesiredOutputs()
+	{
+		double desired[][] = new double[count][numSymbols];
+		for (int i = 0; i < count; i += 1)
+			desired[i][labels[i]] = 1;
+		return desired;
+	}
+
+	/**
+	 * Returns true if the features were read from the cache
+	 */
+
+	public boolean isFromCache()
+	{
+		return fromCache;
+	}
+
+	// List the images of each sub-directory whose name is a symbol followed by a digit
+	private static void scan(File dir, List<String> symbols, List<File> files, List<Integer> labels)
+	{
+		File fileArray[] = dir.listFiles();
+		if (fileArray == null)
+			return;
+
+		for (int i = 0; i < fileArray.length; i += 1)
+		{
+			if (!fileArray[i].isDirectory())
+				continue;
+
+			File imageFileArray[] = fileArray[i].listFiles();
+			for (int j = 0; j < imageFileArray.length; j += 1)
+			{
+				String fName = imageFileArray[j].getName();
+				if (!fName.endsWith(IMAGE_EXTENSION))
+					continue;
+
+				for (int k = 0; k < symbols.size(); k += 1)
+				{
+					String symbol = symbols.get(k);
+					if (fName.startsWith(symbol) && fName.charAt(symbol.length()) >= '0' && fName.charAt(symbol.length()) <= '9')
+					{
+						files.add(imageFileArray[j]);
+						labels.add(k);
+					}
+				}
+			}
+		}
+	}
+
+	private static byte[] computeKey(File baseDir, List<File> files, List<String> symbols)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder desc = new StringBuilder();
+			desc.append(VERSION).append('\n');
+			for (int i = 0; i < symbols.size(); i += 1)
+				desc.append(symbols.get(i)).append('\n');
+
+			int prefix = baseDir.getPath().length();
+			for (int i = 0; i < files.size(); i += 1)
+			{
+				File file = files.get(i);
+				desc.append(file.getPath().substring(prefix)).append('|').append(file.length()).append('|').append(file.lastModified()).append('\n');
+			}
+			return digest.digest(desc.toString().getBytes("UTF-8"));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// Decode and scale all images, on all processors
+	private static double[][] decode(final List<File> files)
+	{
+		final double inputs[][] = new double[files.size()][];
+		if (files.isEmpty())
+			return inputs;
+
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			pool.invoke(new DecodeTask(files, inputs, 0, files.size()));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return inputs;
+	}
+
+	private static class DecodeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private static final int MIN_FILES_PER_TASK = 8;
+		private List<File> files;
+		private double inputs[][];
+		private int start;
+		private int end;
+
+		public DecodeTask(List<File> files, double inputs[][], int start, int end)
+		{
+			this.files = files;
+			this.inputs = inputs;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute()
+		{
+			if (end - start <= MIN_FILES_PER_TASK)
+			{
+				for (int i = start; i < end; i += 1)
+				{
+					try
+					{
+						BufferedImage buffImage = ImageIO.read(files.get(i));
+						if (buffImage == null)
+							throw new IOException("Unsupported image format");
+						inputs[i] = ANNPrepare.prepareImage(buffImage);
+					}
+					catch (IOException e)
+					{
+						throw new IllegalStateException("Could not open file: " + files.get(i), e);
+					}
+				}
+			}
+			else
+			{
+				int middle = (start + end) / 2;
+				invokeAll(new DecodeTask(files, inputs, start, middle), new DecodeTask(files, inputs, middle, end));
+			}
+		}
+	}
+
+	/*
+	 * Cache file layout (big endian):
+	 * int magic, int version, byte key[20], int count, int numInputs, int labels[count], double inputs[count][numInputs]
+	 */
+
+	private static double[][] readCache(File cacheFile, byte key[], int labels[])
+	{
+		if (!cacheFile.isFile())
+			return null;
+
+		RandomAccessFile raf = null;
+		try
+		{
+			raf = new RandomAccessFile(cacheFile, "r");
+			if (raf.length() < 16 + KEY_LENGTH || raf.readInt() != MAGIC || raf.readInt() != VERSION)
+				return null;
+
+			// Check the key before mapping, a stale cache is never mapped so that it can be replaced
+			byte storedKey[] = new byte[KEY_LENGTH];
+			raf.readFully(storedKey);
+			if (!Arrays.equals(key, storedKey))
+				return null;
+
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.position(8 + KEY_LENGTH);
+			int count = buffer.getInt();
+			int numInputs = buffer.getInt();
+			if (count != labels.length)
+				return null;
+			if (buffer.remaining() != 4L * count + 8L * count * numInputs)
+				return null;
+
+			int storedLabels[] = new int[count];
+			buffer.asIntBuffer().get(storedLabels);
+			if (!Arrays.equals(labels, storedLabels))
+				return null;
+			buffer.position(buffer.position() + 4 * count);
+
+			double inputs[][] = new double[count][numInputs];
+			DoubleBuffer features = buffer.asDoubleBuffer();
+			for (int i = 0; i < count; i += 1)
+				features.get(inputs[i]);
+			return inputs;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		finally
+		{
+			close(raf);
+		}
+	}
+
+	private static void writeCache(File cacheFile, byte key[], int labels[], double inputs[][])
+	{
+		int count = labels.length;
+		int numInputs = count == 0 ? 0 : inputs[0].length;
+		long size = 16 + KEY_LENGTH + 4L * count + 8L * count * numInputs;
+		if (size > Integer.MAX_VALUE)
+		{
+			System.err.println("Feature cache " + cacheFile + " not written: " + size + " bytes");
+			return;
+		}
+
+		// Write to a temporary file first so that a cache is never left half written. The temporary file is
+		// written from the heap rather than mapped, since a mapped file cannot be renamed on Windows.
+		File tmpFile = new File(cacheFile.getPath() + ".tmp");
+		RandomAccessFile raf = null;
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.put(key);
+			buffer.putInt(count);
+			buffer.putInt(numInputs);
+			buffer.asIntBuffer().put(labels);
+			buffer.position(buffer.position() + 4 * count);
+			DoubleBuffer features = buffer.asDoubleBuffer();
+			for (int i = 0; i < count; i += 1)
+				features.put(inputs[i]);
+			buffer.clear();
+
+			raf = new RandomAccessFile(tmpFile, "rw");
+			raf.setLength(size);
+			FileChannel channel = raf.getChannel();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(false);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not write feature cache " + cacheFile + ": " + e.getMessage());
+			close(raf);
+			deleteTemporary(tmpFile);
+			return;
+		}
+		close(raf);
+
+		// Switch over to the new cache
+		if (cacheFile.exists() && !cacheFile.delete())
+		{
+			System.err.println("Could not replace feature cache " + cacheFile);
+			deleteTemporary(tmpFile);
+		}
+		else if (!tmpFile.renameTo(cacheFile))
+		{
+			System.err.println("Could not rename " + tmpFile + " to " + cacheFile);
+			deleteTemporary(tmpFile);
+		}
+	}
+
+	private static void deleteTemporary(File tmpFile)
+	{
+		if (tmpFile.exists() && !tmpFile.delete())
+			System.err.println("Could not delete " + tmpFile);
+	}
+
+	private static void close(RandomAccessFile raf)
+	{
+		if (raf == null)
+			return;
+		try
+		{
+			raf.close();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+}
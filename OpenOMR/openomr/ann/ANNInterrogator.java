@@ -30,16 +30,19 @@ import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.util.Vector;
 
-import org.joone.engine.Layer;
-import org.joone.io.MemoryInputSynapse;
-import org.joone.io.MemoryOutputSynapse;
 import org.joone.net.NeuralNet;
 
+/**
+ * The <code> ANNInterrogator </code> class classifies musical symbols with a trained neural network.
+ * The weights of the network are extracted once into an <code> ANNClassifier </code>, so symbols can be
+ * classified one at a time with <code> interogateNN(double[][]) </code> or a whole batch at once with
+ * <code> interogateNN(double[][], int, int[], double[]) </code> without running the Joone engine.
+ */
+
 public class ANNInterrogator
 {
 	private NeuralNet nnet;
-	private int numOutputs=15;
-	private int imageSize=128;
+	private ANNClassifier classifier;
 	private String neuralNetName = "NeuralNetwork.ann";
 	private String symbolFileName = "list.txt";
 	private String PATH_SEPERATOR = System.getProperty("file.separator");
@@ -58,6 +61,7 @@ public class ANNInterrogator
 			nnet = (NeuralNet)objIn.readObject();
 			//numOutputs = (int)objIn.readInt();
 			//imageSize = (int)objIn.readInt();
+			classifier = ANNClassifier.create(nnet);
 
 			loadSymbols(directory);
 		}
@@ -71,47 +75,49 @@ public class ANNInterrogator
 	public ANNInterrogator(NeuralNet nnet)
 	{
 		this.nnet = nnet;
+		classifier = ANNClassifier.create(nnet);
 		loadSymbols(directory);
 	}
 	
+	/**
+	 * Classify a single symbol
+	 * @param data data[0] holds the 128 values returned by <code> ANNPrepare.prepareImage </code>
+	 * @return the most likely symbol along with the output value of the network for that symbol
+	 */
+	
 	public SymbolConfidence interogateNN(double data[][])
-	{		
-		Layer input = nnet.getInputLayer();
-		input.removeAllInputs();
-		MemoryInputSynapse memInp = new MemoryInputSynapse();
-		memInp.setFirstRow(1);
-		memInp.setAdvancedColumnSelector("1-"  + String.valueOf(imageSize));
-		input.addInputSynapse(memInp);
-		memInp.setInputArray(data);
-		
-		Layer output = nnet.getOutputLayer();
-		output.removeAllOutputs();
-
-		MemoryOutputSynapse memOut = new MemoryOutputSynapse();
-		output.addOutputSynapse(memOut);
-
-		nnet.getMonitor().setTotCicles(1);
-		nnet.getMonitor().setTrainingPatterns(1);
-		nnet.getMonitor().setLearning(false);
-		nnet.start();
-		nnet.getMonitor().Go();
-
-		double[] pattern = memOut.getNextPattern();
-		
-		int pos=0;
-		double max = pattern[0];
-		for (int i=1; i <  numOutputs; ++i) 
-		{
-			if (pattern[i] > max)
-			{
-				pos = i;
-				max = pattern[i];
-			}
-		}
-		
-		SymbolConfidence symbolConf = new SymbolConfidence(symbolCollection.get(pos), pattern[pos]);
-		nnet.stop();
-		return symbolConf;
+	{
+		int symbol[] = new int[1];
+		double confidence[] = new double[1];
+		classifier.classify(data, 1, symbol, confidence);
+		return new SymbolConfidence(symbolCollection.get(symbol[0]), confidence[0]);
+	}
+	
+	/**
+	 * Classify a batch of symbols in one call
+	 * @param data The input vectors, as returned by <code> ANNPrepare.prepareImage </code>
+	 * @param count The number of vectors of data to classify
+	 * @param symbols Array receiving the index of the most likely symbol of each vector (see <code> getSymbolName </code>)
+	 * @param confidences Array receiving the output value of the network for that symbol
+	 */
+	
+	public void interogateNN(double data[][], int count, int symbols[], double confidences[])
+	{
+		classifier.classify(data, count, symbols, confidences);
+	}
+	
+	/**
+	 * Returns the name of a symbol, as listed in list.txt
+	 */
+	
+	public String getSymbolName(int symbol)
+	{
+		return symbolCollection.get(symbol);
+	}
+	
+	public ANNClassifier getClassifier()
+	{
+		return classifier;
 	}
 	
 	
@@ -22,8 +22,6 @@
 
 package openomr.ann;
 
-import java.awt.Color;
-import java.awt.Image;
 import java.awt.image.*;
 import java.io.*;
 import java.util.Vector;
@@ -48,19 +46,10 @@ public class ANNPrepare
 	
 	private int symbolsUsed;	//# symbols we are using
 	
-	private Vector symbolCollection;
+	private Vector<String> symbolCollection;
 	
-	private int trainingSymbolsFound;
-	private int validationSymbolsFound;
-	
-	private int symbolCollectionCount[];
 	private String path;
-	private String IMAGE_EXTENSION = ".png";
 	
-	private double[][] desiredTrainingData;
-	private double[][] inputTrainingData;
-	private double inputValidationData[][];
-	private double desiredValidationData[][];
 	private ANNTrainer ann;
 	
 	
@@ -68,25 +57,9 @@ public class ANNPrepare
 	 * 
 	 * @param dirPath The path to the directory containing all sub-directories with .png files in them
 	 */
-	@SuppressWarnings("unchecked")
 	public ANNPrepare(String dirPath)
 	{
 		loadSymbols(dirPath);
-		
-		//# of symbols found in both training and validation directories
-		trainingSymbolsFound = countFiles("training");
-		validationSymbolsFound = countFiles("validation");
-		
-		inputTrainingData = new double[trainingSymbolsFound][totalPixels];
-		desiredTrainingData = new double[trainingSymbolsFound][symbolsUsed];
-		
-		inputValidationData = new double[validationSymbolsFound][totalPixels];
-		desiredValidationData = new double[validationSymbolsFound][symbolsUsed];
-		
-		symbolCollectionCount = new int[symbolsUsed];
-
-		for (int i = 0; i < symbolsUsed; i += 1)
-			symbolCollectionCount[i] = 0;
 	}
 	
 	public void loadSymbols(String dirPath)
@@ -95,7 +68,7 @@ public class ANNPrepare
 
 		//Load symbol names from input file
 		symbolsUsed = 0;
-		symbolCollection = new Vector();
+		symbolCollection = new Vector<String>();
 		try
 		{
 			BufferedReader dataIn = new BufferedReader(new InputStreamReader(new FileInputStream(new File(path+"list.txt"))));
@@ -122,138 +95,44 @@ public class ANNPrepare
 	
 	public ANNTrainer prepareNetwork()
 	{
-		int trainingSymCount = prepareInputData("training", inputTrainingData, desiredTrainingData);
-		int validationSymCount = prepareInputData("validation", inputValidationData, desiredValidationData);
+		// Features are decoded on all processors, or read from the cache of the previous run
+		ANNDataset training = ANNDataset.load(new File(path), "training", symbolCollection);
+		ANNDataset validation = ANNDataset.load(new File(path), "validation", symbolCollection);
 		
-		ann = new ANNTrainer(inputTrainingData, desiredTrainingData, inputValidationData, desiredValidationData, trainingSymCount, validationSymCount, totalPixels, symbolsUsed);
+		ann = new ANNTrainer(training.getInputs(), training.getDesiredOutputs(), validation.getInputs(), validation.getDesiredOutputs(), training.getCount(), validation.getCount(), totalPixels, symbolsUsed);
 		return ann;
 	}
 	
 	/**
-	 * Prepare data for neural network. This method must be invoked before the trainNetwork()
-	 * method is invoked
+	 * Returns the input vector of the neural network for a symbol: the brightness (HSB model) of the
+	 * symbol scaled to 8x16 pixels.
+	 * <p>
+	 * The image is scaled by pixel replication, which gives the same pixels as
+	 * <code> getScaledInstance(8, 16, Image.SCALE_DEFAULT) </code>, but the pixels are read directly
+	 * from the image instead of going through an image producer.
 	 */
-	private int prepareInputData(String dir, double inputData[][], double desiredData[][])
-	{
-		//System.out.println("Path:" + dir);
-		int symbolCount=0;
-		File fileArray[] = (new File(path+openomr.gui.GUI.PATH_SEPERATOR+dir)).listFiles();
-		for (int i = 0; i < fileArray.length; i += 1)
-		{
-			if (fileArray[i].isDirectory() == true)
-			{
-				int localSymbolCount = 0;
-				// process each directory
-				String currDir = fileArray[i].getName();
-				File imageFileArray[] = fileArray[i].listFiles();
-				for (int j = 0; j < imageFileArray.length; j += 1)
-				{
-					if (imageFileArray[j].getName().endsWith(IMAGE_EXTENSION))  //Accept only .png files
-					{
-						String fName = imageFileArray[j].getName();
-						for (int k = 0; k < symbolsUsed; k += 1)
-						{
-							if (fName.startsWith((String)symbolCollection.get(k)))
-							{
-								int len = ((String)symbolCollection.get(k)).length();
-								if (fName.charAt(len) >= '0' && fName.charAt(len) <= '9')
-								{
-																		
-									//Get image data and fill "inputs" array
-									double data[] = getImageData(path+dir+openomr.gui.GUI.PATH_SEPERATOR + currDir + openomr.gui.GUI.PATH_SEPERATOR + fName);
-									for (int n = 0; n < totalPixels; n += 1)
-										inputData[symbolCount][n] = data[n];
-									
-									//prepare target array
-									for (int n=0; n<symbolsUsed; n+=1)
-									{
-										if (n==k)
-											desiredData[symbolCount][n] = 1;
-										else
-											desiredData[symbolCount][n] = 0;
-									}
-									
-									symbolCount += 1;
-									localSymbolCount += 1;
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-		return symbolCount;
-	}
-		
-	/*
-	public void testFile(String name)
-	{
-		
-		double data[] = getImageData(name);
-		double newData[][] = new double[1][128];
-		newData[0] = data;
-		
-		ann.interogateNN(newData);
-	}
-	*/
-	
-	private int countFiles(String dir)
-	{
-		File fileArray[] = (new File(path+openomr.gui.GUI.PATH_SEPERATOR+dir)).listFiles();
-		int fileCount = 0;
-		
-		for (int i = 0; i < fileArray.length; i += 1)
-		{
-			if (fileArray[i].isDirectory() == true)
-			{
-				//String currDir = fileArray[i].getName();
-				File imageFileArray[] = fileArray[i].listFiles();
-				for (int j = 0; j < imageFileArray.length; j += 1)
-				{
-					if (imageFileArray[j].getName().endsWith(".png"))
-					{
-						String fName = imageFileArray[j].getName();
-						for (int k = 0; k < symbolsUsed; k += 1)
-						{
-							if (fName.startsWith((String)symbolCollection.get(k)))
-							{
-								int len = ((String)symbolCollection.get(k)).length();
-								if (fName.charAt(len) >= '0' && fName.charAt(len) <= '9')
-								{
-									fileCount += 1;
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-		return fileCount;
-	}
 	
 	public static double[] prepareImage(BufferedImage buffImage)
 	{
-				
+		int width = buffImage.getWidth();
+		int height = buffImage.getHeight();
 		double inputs[] = new double[totalPixels];
-		Image scaledInstance = buffImage.getScaledInstance(scaleWidth, scaleHeight, Image.SCALE_DEFAULT);
-		PixelGrabber pixGrabber = new PixelGrabber(scaledInstance, 0, 0, scaleWidth, scaleHeight, true);
-		try
+		int srcCols[] = new int[scaleWidth];
+		for (int x = 0; x < scaleWidth; x += 1)
+			srcCols[x] = (2 * x * width + width) / (2 * scaleWidth);
+		
+		int row[] = new int[width];
+		for (int y = 0; y < scaleHeight; y += 1)
 		{
-			pixGrabber.grabPixels();
-			int pixArray[];
-			pixArray = (int[]) pixGrabber.getPixels();
-			for (int x = 0; x < totalPixels; x += 1)
+			int srcRow = (2 * y * height + height) / (2 * scaleHeight);
+			buffImage.getRGB(0, srcRow, width, 1, row, 0, width);
+			for (int x = 0; x < scaleWidth; x += 1)
 			{
-				Color col = new Color(pixArray[x]);
-				float[] hsb = Color.RGBtoHSB(col.getRed(), col.getGreen(), col.getBlue(), null);
-				inputs[x] = hsb[2]; //get luminosity
+				int pix = row[srcCols[x]];
+				int max = Math.max((pix >> 16) & 0xFF, Math.max((pix >> 8) & 0xFF, pix & 0xFF));
+				inputs[y * scaleWidth + x] = max / 255.0f; //get luminosity
 			}
-		} catch (InterruptedException e)
-		{
-			System.out.println("Error grabbing pixel");
-			e.printStackTrace();
 		}
-		
 		return inputs;
 	}
 	
@@ -269,27 +148,6 @@ public class ANNPrepare
 			e1.printStackTrace();
 		}
 		
-		double inputs[] = new double[totalPixels];
-		
-		Image scaledInstance = buffImage.getScaledInstance(scaleWidth, scaleHeight, Image.SCALE_DEFAULT);
-		PixelGrabber pixGrabber = new PixelGrabber(scaledInstance, 0, 0, scaleWidth, scaleHeight, true);
-		try
-		{
-			pixGrabber.grabPixels();
-			int pixArray[];
-			pixArray = (int[]) pixGrabber.getPixels();
-			for (int x = 0; x < totalPixels; x += 1)
-			{
-				Color col = new Color(pixArray[x]);
-				float[] hsb = Color.RGBtoHSB(col.getRed(), col.getGreen(), col.getBlue(), null);
-				inputs[x] = hsb[2]; //get luminosity
-			}
-		} catch (InterruptedException e)
-		{
-			System.out.println("Error grabbing pixel");
-			e.printStackTrace();
-		}
-				
-		return inputs;
+		return prepareImage(buffImage);
 	}
 }
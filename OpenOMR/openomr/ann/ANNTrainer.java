@@ -27,44 +27,32 @@ import java.io.ObjectOutputStream;
 
 import openomr.gui.TrainANNJPanel;
 
-import org.joone.engine.FullSynapse;
-import org.joone.engine.Layer;
-import org.joone.engine.LinearLayer;
-import org.joone.engine.Monitor;
-import org.joone.engine.NeuralNetEvent;
-import org.joone.engine.NeuralNetListener;
-import org.joone.engine.SigmoidLayer;
-import org.joone.engine.learning.TeachingSynapse;
-import org.joone.io.FileOutputSynapse;
-import org.joone.io.MemoryInputSynapse;
-import org.joone.io.MemoryOutputSynapse;
-import org.joone.io.StreamInputSynapse;
 import org.joone.net.NeuralNet;
-import org.joone.net.NeuralNetValidator;
-import org.joone.net.NeuralValidationEvent;
-import org.joone.net.NeuralValidationListener;
-import org.joone.util.LearningSwitch;
 
+/**
+ * The <code> ANNTrainer </code> class trains the neural network used to recognise the musical symbols.
+ * The network has 128 inputs (see <code> ANNPrepare.prepareImage </code>), 40 hidden neurons and one output
+ * per symbol. It is trained by an <code> MLPTrainer </code> on a background thread, and the RMSE of the
+ * training and validation sets is shown on the <code> TrainANNJPanel </code> while it runs.
+ */
 
-public class ANNTrainer implements NeuralNetListener, NeuralValidationListener
+public class ANNTrainer implements MLPTrainer.Listener
 {
-	private Monitor monitor;
-	private TeachingSynapse trainer;
+	private static final int HIDDEN_NEURONS = 40;
+	private static final long SEED = 1;
 	
 	private double inputTrainingData[][];
 	private double desiredTrainingData[][];
 	private double inputValidationData[][];
 	private double desiredValidationData[][];
 	
-	private NeuralNet nnet;
+	private MLPTrainer mlp;
+	private Thread trainingThread;
+	private volatile NeuralNet nnet;
 	private int trainingPatterns;
 	private int validationPatterns;
-	private LinearLayer input;
-	private SigmoidLayer hidden;
-	private SigmoidLayer output;
 	private int imageSize;
 	private int numOutputs;
-	private double lastRMSE;
 	private TrainANNJPanel gui;
 
 	public ANNTrainer(double inputTrainingData[][], double desiredTrainingData[][], double inputValidationData[][], double desiredValidationData[][], int trainingPatterns, int validationPatterns, int imageSize, int numOutputs)
@@ -84,127 +72,68 @@ public class ANNTrainer implements NeuralNetListener, NeuralValidationListener
 	public void createNeuralNet(TrainANNJPanel gui)
 	{
 		this.gui = gui;
-		lastRMSE = 999;
+		nnet = null;
 		
-		/* The 3 Layers */
-		input = new LinearLayer();
-		hidden = new SigmoidLayer();
-		output = new SigmoidLayer();
-		input.setRows(imageSize);
-		hidden.setRows(40);
-		output.setRows(numOutputs);
-		
-		//System.out.println("inputs: " + imageSize + "  numoutputs: " + numOutputs);
-		
-		/* The Synapses */
-		FullSynapse synapse_IH = new FullSynapse(); /* Input -> Hidden conn. */
-		FullSynapse synapse_HO = new FullSynapse(); /* Hidden -> Output conn. */
-		input.addOutputSynapse(synapse_IH);
-		hidden.addInputSynapse(synapse_IH);
-		hidden.addOutputSynapse(synapse_HO);
-		output.addInputSynapse(synapse_HO);
-		
-		
-		/* The I/O components */
-		
-		MemoryInputSynapse memInput = new MemoryInputSynapse();
-		memInput.setInputArray(inputTrainingData);
-		memInput.setFirstRow(1);
-		memInput.setAdvancedColumnSelector("1-" + String.valueOf(imageSize)); //"1-128"
-		
-		MemoryInputSynapse memValInput = new MemoryInputSynapse();
-		memValInput.setInputArray(inputValidationData);
-		memValInput.setFirstRow(1);
-		memValInput.setAdvancedColumnSelector("1-" + String.valueOf(imageSize));
-		
-		LearningSwitch Ilsw = this.createSwitch(memInput, memValInput);
-		input.addInputSynapse(Ilsw);
-		
-		/* The Trainer and its desired file */
-		//desired training data & desired validation data
-		
-		MemoryInputSynapse memResult = new MemoryInputSynapse();
-		memResult.setInputArray(desiredTrainingData);
-		memResult.setAdvancedColumnSelector("1-" + String.valueOf(numOutputs));	// # of outputs we have
-		
-		MemoryInputSynapse memValResult = new MemoryInputSynapse();
-		memValResult.setInputArray(desiredValidationData);
-		memValResult.setAdvancedColumnSelector("1-" + String.valueOf(numOutputs));
-		
-		LearningSwitch Dlsw = this.createSwitch(memResult, memValResult);
-		trainer = new TeachingSynapse();
-		trainer.setDesired(Dlsw);		
-		output.addOutputSynapse(trainer);
-
-		nnet = new NeuralNet();
-		nnet.addLayer(input, NeuralNet.INPUT_LAYER);
-		nnet.addLayer(hidden, NeuralNet.HIDDEN_LAYER);
-		nnet.addLayer(output, NeuralNet.OUTPUT_LAYER);
-		nnet.setTeacher(trainer);
-
+		mlp = new MLPTrainer(imageSize, HIDDEN_NEURONS, numOutputs, SEED);
+		mlp.setMaxEpochs(10000); /* How many times the net must be trained*/
+		mlp.setListener(this);
 	}
 	
+	/**
+	 * Start the training in the background (val = true), or stop it and wait for the current epoch to end (val = false)
+	 */
+	
 	public void trainNeuralNet(boolean val)
 	{
 		if (val)
 		{
-			monitor = nnet.getMonitor();
-			monitor.setLearningRate(0.6);
-			monitor.setMomentum(0.3);
-			
-			//System.out.println("trainingPatterns: " + trainingPatterns + "  validationPatterns: " + validationPatterns);
-			
-			monitor.setTrainingPatterns(trainingPatterns); /* # of rows in the input file */
-			monitor.setValidationPatterns(validationPatterns);
-			monitor.setTotCicles(10000); /* How many times the net must be trained*/
-			monitor.setLearning(true); /* The net must be trained */
-			monitor.addNeuralNetListener(this);
-	
-			nnet.start();
-			nnet.getMonitor().Go();
-			System.out.println("Done");
+			trainingThread = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					int epochs = mlp.train(inputTrainingData, desiredTrainingData, trainingPatterns, inputValidationData, desiredValidationData, validationPatterns);
+					nnet = mlp.exportNeuralNet();
+					System.out.println("Training stopped after " + epochs + " epochs");
+				}
+			}, "ANN trainer");
+			trainingThread.start();
+		}
+		else if (trainingThread != null)
+		{
+			mlp.stop();
+			try
+			{
+				trainingThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
 		}
-		else
-			nnet.stop();
 	}
 
+	/**
+	 * Returns the trained network, in the format read by <code> ANNInterrogator </code>
+	 */
+	
 	public NeuralNet getNeuralNet()
 	{
+		if (nnet == null && mlp != null)
+			return mlp.exportNeuralNet();
 		return nnet;
 	}
 	
 	public void interogateNN(double data[][])
 	{
-		//System.out.println("About to interogate NN");
-		//double inputArray[][] = {{0, 1}};
+		double hidden[] = new double[HIDDEN_NEURONS];
+		double pattern[] = new double[numOutputs];
+		mlp.getClassifier().evaluate(data[0], hidden, pattern);
 		
-		Layer input = nnet.getInputLayer();
-		input.removeAllInputs();
-		MemoryInputSynapse memInp = new MemoryInputSynapse();
-		memInp.setFirstRow(1);
-		memInp.setAdvancedColumnSelector("1-"  + String.valueOf(imageSize));
-		input.addInputSynapse(memInp);
-		memInp.setInputArray(data);
-		
-		Layer output = nnet.getOutputLayer();
-		output.removeAllOutputs();
-
-		MemoryOutputSynapse memOut = new MemoryOutputSynapse();
-		output.addOutputSynapse(memOut);
-
-		nnet.getMonitor().setTotCicles(1);
-		nnet.getMonitor().setTrainingPatterns(1);
-		nnet.getMonitor().setLearning(false);
-		nnet.start();
-		nnet.getMonitor().Go();
-
-		double[] pattern = memOut.getNextPattern();
 		System.out.print("*** NeuralNet Iterogation ***");
 		for (int i=0; i <  numOutputs; ++i) 
 		{
 			System.out.println(pattern[i] + " ");
 		}
-		nnet.stop();
 		System.out.println("Finished");
 	}
 	
@@ -215,9 +144,7 @@ public class ANNTrainer implements NeuralNetListener, NeuralValidationListener
 		{
 			FileOutputStream stream = new FileOutputStream(fileName);
 			ObjectOutputStream objOut = new ObjectOutputStream(stream);
-			objOut.writeObject(nnet);
-			//objOut.write(numOutputs);
-			//objOut.write(imageSize);
+			objOut.writeObject(getNeuralNet());
 			objOut.close();
 		}
 		catch (Exception e)
@@ -227,79 +154,20 @@ public class ANNTrainer implements NeuralNetListener, NeuralValidationListener
 	}
 	
 	
-	public void netStarted(NeuralNetEvent arg0)
-	{
-		// TODO Auto-generated method stub
-		
-	}
-
-	public void cicleTerminated(NeuralNetEvent e)
-	{
-		Monitor mon = (Monitor)e.getSource();
-		
-		int cycle = mon.getCurrentCicle()+1;
-		
-		gui.setEpoch(mon.getTotCicles()-cycle);
-		
-		if (cycle %20 == 0)
-		{
-			//System.out.println("Epoch #" + (mon.getTotCicles() - cycle));
-			//System.out.print(mon.getGlobalError());
-			gui.setTrainingRMSE(mon.getGlobalError());
-			
-			nnet.getMonitor().setExporting(true);
-			NeuralNet newNet = nnet.cloneNet();
-			nnet.getMonitor().setExporting(false);
-			
-			newNet.removeAllListeners();
-			
-			NeuralNetValidator nnv = new NeuralNetValidator(newNet);
-			nnv.addValidationListener(this);
-			nnv.start();
-			
-		}
-		
-	}
-
-	public void netStopped(NeuralNetEvent arg0)
-	{
-		
-	}
-
-	public void errorChanged(NeuralNetEvent e)
-	{
-		// TODO Auto-generated method stub
-		//Monitor mon = (Monitor)e.getSource();
-		//System.out.println("New Error: " + mon.getGlobalError());
-	}
-
-	public void netStoppedError(NeuralNetEvent arg0, String arg1)
+	public void epochFinished(int epoch, double trainingRMSE)
 	{
-		// TODO Auto-generated method stub
+		if (gui == null)
+			return;
 		
-	}
-	
-	
-	private LearningSwitch createSwitch(StreamInputSynapse IT, StreamInputSynapse IV)
-	{
-		LearningSwitch lsw = new LearningSwitch();
-		lsw.addTrainingSet(IT);
-		lsw.addValidationSet(IV);
-		return lsw;
+		gui.setEpoch(mlp.getMaxEpochs() - epoch);
+		if (epoch % 20 == 0)
+			gui.setTrainingRMSE(trainingRMSE);
 	}
 
-	public void netValidated(NeuralValidationEvent e)
+	public void validationFinished(int epoch, double validationRMSE)
 	{
-		NeuralNet NN = (NeuralNet)e.getSource();
-		if (NN.getMonitor().getGlobalError() < lastRMSE)
-			lastRMSE = NN.getMonitor().getGlobalError();
-		else
-		{
-			System.out.println("We are going to stop at: " + (NN.getMonitor().getTotCicles() - NN.getMonitor().getCurrentCicle() + 1));
-			NN.getMonitor().Stop();
-		}
-		//System.out.println(", " + NN.getMonitor().getGlobalError());
-		gui.setValidationRMSE(NN.getMonitor().getGlobalError());
+		if (gui != null)
+			gui.setValidationRMSE(validationRMSE);
 	}
 	
 }
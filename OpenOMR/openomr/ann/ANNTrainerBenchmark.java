@@ -0,0 +1,191 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.ann;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Vector;
+
+import org.joone.engine.FullSynapse;
+import org.joone.engine.LinearLayer;
+import org.joone.engine.Monitor;
+import org.joone.engine.SigmoidLayer;
+import org.joone.engine.learning.TeachingSynapse;
+import org.joone.io.MemoryInputSynapse;
+import org.joone.net.NeuralNet;
+
+/**
+ * The <code> ANNTrainerBenchmark </code> class compares the training speed of the <code> MLPTrainer </code>
+ * with the Joone engine which was used before, on the training set of a neural network directory.
+ * Both train the same 128/40/n network for the same number of epochs, without validation, and the number
+ * of epochs per second is printed for Joone and for the <code> MLPTrainer </code> with 1 to n threads.
+ * <p>
+ * Usage:
+ * <p>
+ * <code>
+ * java openomr.ann.ANNTrainerBenchmark [-epochs n] [-threads n] [neuralNetworkDir]
+ * </code>
+ */
+
+public class ANNTrainerBenchmark
+{
+	private static final int HIDDEN_NEURONS = 40;
+
+	private ANNDataset training;
+	private int numInputs;
+	private int numOutputs;
+
+	public ANNTrainerBenchmark(ANNDataset training, int numOutputs)
+	{
+		this.training = training;
+		this.numInputs = training.getInputs()[0].length;
+		this.numOutputs = numOutputs;
+	}
+
+	/**
+	 * Train the Joone network used by the previous versions of <code> ANNTrainer </code> (one pattern at a time,
+	 * learning rate 0.6, momentum 0.3)
+	 * @return the number of epochs per second
+	 */
+
+	public double runJoone(int epochs)
+	{
+		LinearLayer input = new LinearLayer();
+		SigmoidLayer hidden = new SigmoidLayer();
+		SigmoidLayer output = new SigmoidLayer();
+		input.setRows(numInputs);
+		hidden.setRows(HIDDEN_NEURONS);
+		output.setRows(numOutputs);
+
+		FullSynapse synapse_IH = new FullSynapse();
+		FullSynapse synapse_HO = new FullSynapse();
+		input.addOutputSynapse(synapse_IH);
+		hidden.addInputSynapse(synapse_IH);
+		hidden.addOutputSynapse(synapse_HO);
+		output.addInputSynapse(synapse_HO);
+
+		MemoryInputSynapse memInput = new MemoryInputSynapse();
+		memInput.setInputArray(training.getInputs());
+		memInput.setFirstRow(1);
+		memInput.setAdvancedColumnSelector("1-" + numInputs);
+		input.addInputSynapse(memInput);
+
+		MemoryInputSynapse memResult = new MemoryInputSynapse();
+		memResult.setInputArray(training.getDesiredOutputs());
+		memResult.setAdvancedColumnSelector("1-" + numOutputs);
+		TeachingSynapse trainer = new TeachingSynapse();
+		trainer.setDesired(memResult);
+		output.addOutputSynapse(trainer);
+
+		NeuralNet nnet = new NeuralNet();
+		nnet.addLayer(input, NeuralNet.INPUT_LAYER);
+		nnet.addLayer(hidden, NeuralNet.HIDDEN_LAYER);
+		nnet.addLayer(output, NeuralNet.OUTPUT_LAYER);
+		nnet.setTeacher(trainer);
+
+		Monitor monitor = nnet.getMonitor();
+		monitor.setLearningRate(0.6);
+		monitor.setMomentum(0.3);
+		monitor.setTrainingPatterns(training.getCount());
+		monitor.setTotCicles(epochs);
+		monitor.setLearning(true);
+
+		long start = System.nanoTime();
+		nnet.start();
+		monitor.Go();
+		nnet.join();
+		return epochs / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Train an <code> MLPTrainer </code> with the given number of threads
+	 * @return the number of epochs per second
+	 */
+
+	public double runMLP(int epochs, int threadCount)
+	{
+		MLPTrainer mlp = new MLPTrainer(numInputs, HIDDEN_NEURONS, numOutputs, 1);
+		mlp.setMaxEpochs(epochs);
+		mlp.setThreadCount(threadCount);
+
+		long start = System.nanoTime();
+		mlp.train(training.getInputs(), training.getDesiredOutputs(), training.getCount(), null, null, 0);
+		return epochs / ((System.nanoTime() - start) / 1e9);
+	}
+
+	private static Vector<String> loadSymbols(File dir) throws IOException
+	{
+		Vector<String> symbols = new Vector<String>();
+		BufferedReader dataIn = new BufferedReader(new InputStreamReader(new FileInputStream(new File(dir, "list.txt"))));
+		try
+		{
+			String line;
+			while ((line = dataIn.readLine()) != null)
+				symbols.add(line);
+		}
+		finally
+		{
+			dataIn.close();
+		}
+		return symbols;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		int epochs = 100;
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		File dir = new File(System.getProperty("user.dir"), "neuralnetwork");
+		for (int i = 0; i < args.length; i += 1)
+		{
+			if (args[i].equals("-epochs") && i + 1 < args.length)
+				epochs = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-threads") && i + 1 < args.length)
+				maxThreads = Integer.parseInt(args[++i]);
+			else
+				dir = new File(args[i]);
+		}
+
+		Vector<String> symbols = loadSymbols(dir);
+		ANNDataset training = ANNDataset.load(dir, "training", symbols);
+		if (training.getCount() == 0)
+		{
+			System.err.println("No training images found in " + dir);
+			System.exit(1);
+		}
+		ANNTrainerBenchmark benchmark = new ANNTrainerBenchmark(training, symbols.size());
+
+		// Warm up both trainers before measuring
+		benchmark.runJoone(Math.max(epochs / 10, 1));
+		benchmark.runMLP(Math.max(epochs / 10, 1), 1);
+
+		System.out.printf("%d training patterns, %d epochs\n", training.getCount(), epochs);
+		System.out.printf("%-14s %10s\n", "Trainer", "epochs/sec");
+		System.out.printf("%-14s %10.1f\n", "Joone", benchmark.runJoone(epochs));
+		for (int threads = 1; threads <= maxThreads; threads *= 2)
+			System.out.printf("%-14s %10.1f\n", "MLP " + threads + " thread" + (threads == 1 ? "" : "s"), benchmark.runMLP(epochs, threads));
+	}
+}
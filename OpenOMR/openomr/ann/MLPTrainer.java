@@ -0,0 +1,589 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package openomr.ann;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.joone.engine.FullSynapse;
+import org.joone.engine.LinearLayer;
+import org.joone.engine.Matrix;
+import org.joone.engine.SigmoidLayer;
+import org.joone.net.NeuralNet;
+
+/**
+ * The <code> MLPTrainer </code> class trains the symbol recognition network (a linear input layer, a sigmoid
+ * hidden layer and a sigmoid output layer, fully connected) by mini-batch back-propagation with momentum,
+ * without going through the Joone engine.
+ * <p>
+ * The training patterns are shuffled at every epoch and split into mini-batches. The gradient of a batch is
+ * computed by slices of a few patterns on a fork/join pool and the slices are then added up in order, so the
+ * result does not depend on the number of threads. Every <code> validationInterval </code> epochs the RMSE of
+ * the validation set is computed: training stops once it has not improved for <code> patience </code>
+ * validations, and the weights of the best validation are kept.
+ * <p>
+ * The <code> MLPTrainer </code> class is used as follows:
+ * <p>
+ * <code>
+ * MLPTrainer mlp = new MLPTrainer(128, 40, numOutputs, seed); <br>
+ * mlp.train(trainingInputs, trainingOutputs, trainingCount, validationInputs, validationOutputs, validationCount); <br>
+ * NeuralNet nnet = mlp.exportNeuralNet(); <br>
+ * </code>
+ * <p>
+ * The exported network has the same layers and synapses as the one built by Joone, so it can be saved and read
+ * back by <code> ANNInterrogator </code>.
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class MLPTrainer
+{
+	private static final int PATTERNS_PER_SLICE = 8;
+	private static final double INITIAL_WEIGHT = 0.2;	// weights start uniformly in [-0.2, 0.2], as in Joone
+
+	private int numInputs;
+	private int numHidden;
+	private int numOutputs;
+	private double hiddenWeights[];		// numHidden rows of numInputs weights (same layout as ANNClassifier)
+	private double hiddenBias[];
+	private double outputWeights[];		// numOutputs rows of numHidden weights
+	private double outputBias[];
+	private double previousUpdate[];	// last update of every weight and bias, for the momentum
+
+	private double learningRate;
+	private double momentum;
+	private int batchSize;
+	private int maxEpochs;
+	private int validationInterval;
+	private int patience;
+	private int threadCount;
+	private Random random;
+	private Listener listener;
+	private volatile boolean stopped;
+
+	/**
+	 * Receives the progress of the training. The methods are called from the thread running <code> train </code>.
+	 */
+
+	public interface Listener
+	{
+		public void epochFinished(int epoch, double trainingRMSE);
+
+		public void validationFinished(int epoch, double validationRMSE);
+	}
+
+	/**
+	 * Create a network with random weights
+	 * @param seed Seed of the random weights and of the order of the patterns
+	 */
+
+	public MLPTrainer(int numInputs, int numHidden, int numOutputs, long seed)
+	{
+		this.numInputs = numInputs;
+		this.numHidden = numHidden;
+		this.numOutputs = numOutputs;
+		random = new Random(seed);
+
+		hiddenWeights = randomArray(numHidden * numInputs);
+		hiddenBias = randomArray(numHidden);
+		outputWeights = randomArray(numOutputs * numHidden);
+		outputBias = randomArray(numOutputs);
+		previousUpdate = new double[getParameterCount()];
+
+		// Joone applied 0.6 to every pattern; the mean gradient of a batch needs a larger rate
+		learningRate = 2.0;
+		momentum = 0.3;
+		batchSize = 16;
+		maxEpochs = 10000;
+		validationInterval = 20;
+		patience = 1;
+		threadCount = Runtime.getRuntime().availableProcessors();
+	}
+
+	public void setLearningRate(double learningRate)
+	{
+		this.learningRate = learningRate;
+	}
+
+	public void setMomentum(double momentum)
+	{
+		this.momentum = momentum;
+	}
+
+	/**
+	 * Set the number of patterns whose gradients are averaged before the weights are updated
+	 */
+
+	public void setBatchSize(int batchSize)
+	{
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		this.batchSize = batchSize;
+	}
+
+	public void setMaxEpochs(int maxEpochs)
+	{
+		this.maxEpochs = maxEpochs;
+	}
+
+	public int getMaxEpochs()
+	{
+		return maxEpochs;
+	}
+
+	/**
+	 * Set how often the validation set is checked, and how many checks without improvement stop the training
+	 */
+
+	public void setEarlyStopping(int validationInterval, int patience)
+	{
+		if (validationInterval < 1 || patience < 1)
+			throw new IllegalArgumentException("Validation interval and patience must be at least 1");
+		this.validationInterval = validationInterval;
+		this.patience = patience;
+	}
+
+	/**
+	 * Set the number of threads computing the gradients. A value of 1 does all the work in the calling thread.
+	 */
+
+	public void setThreadCount(int threadCount)
+	{
+		if (threadCount < 1)
+			throw new IllegalArgumentException("Thread count must be at least 1");
+		this.threadCount = threadCount;
+	}
+
+	public void setListener(Listener listener)
+	{
+		this.listener = listener;
+	}
+
+	/**
+	 * Ask <code> train </code> to return at the end of the current epoch. May be called from any thread.
+	 */
+
+	public void stop()
+	{
+		stopped = true;
+	}
+
+	/**
+	 * Train the network until maxEpochs epochs are done, the validation RMSE stops improving or
+	 * <code> stop </code> is called.
+	 * @param trainingInputs The input vector of each training pattern
+	 * @param trainingOutputs The desired output of each training pattern
+	 * @param trainingCount The number of training patterns
+	 * @param validationInputs The input vector of each validation pattern
+	 * @param validationOutputs The desired output of each validation pattern
+	 * @param validationCount The number of validation patterns; 0 disables early stopping
+	 * @return the number of epochs done
+	 */
+
+	public int train(double trainingInputs[][], double trainingOutputs[][], int trainingCount, double validationInputs[][], double validationOutputs[][], int validationCount)
+	{
+		stopped = false;
+		int order[] = new int[trainingCount];
+		for (int i = 0; i < trainingCount; i += 1)
+			order[i] = i;
+
+		int maxSlices = (Math.min(batchSize, trainingCount) + PATTERNS_PER_SLICE - 1) / PATTERNS_PER_SLICE;
+		Gradient slices[] = new Gradient[Math.max(maxSlices, 1)];
+		for (int i = 0; i < slices.length; i += 1)
+			slices[i] = new Gradient();
+
+		double bestRMSE = Double.MAX_VALUE;
+		double bestParameters[] = null;
+		int badValidations = 0;
+		int epoch = 0;
+
+		ForkJoinPool pool = threadCount == 1 ? null : new ForkJoinPool(threadCount);
+		try
+		{
+			while (epoch < maxEpochs && !stopped)
+			{
+				shuffle(order);
+				double sse = 0;
+				for (int start = 0; start < trainingCount; start += batchSize)
+				{
+					int end = Math.min(start + batchSize, trainingCount);
+					sse += trainBatch(pool, slices, trainingInputs, trainingOutputs, order, start, end);
+				}
+				epoch += 1;
+				if (listener != null)
+					listener.epochFinished(epoch, rmse(sse, trainingCount));
+
+				if (validationCount > 0 && epoch % validationInterval == 0)
+				{
+					double validationRMSE = computeRMSE(validationInputs, validationOutputs, validationCount);
+					if (listener != null)
+						listener.validationFinished(epoch, validationRMSE);
+					if (validationRMSE < bestRMSE)
+					{
+						bestRMSE = validationRMSE;
+						bestParameters = getParameters();
+						badValidations = 0;
+					}
+					else
+					{
+						badValidations += 1;
+						if (badValidations >= patience)
+							break;
+					}
+				}
+			}
+		}
+		finally
+		{
+			if (pool != null)
+				pool.shutdown();
+		}
+
+		if (bestParameters != null)
+			setParameters(bestParameters);
+		return epoch;
+	}
+
+	/**
+	 * Compute the root mean square error of the network on a set of patterns
+	 */
+
+	public double computeRMSE(double inputs[][], double desiredOutputs[][], int count)
+	{
+		double hidden[] = new double[numHidden];
+		double output[] = new double[numOutputs];
+		double sse = 0;
+		for (int n = 0; n < count; n += 1)
+		{
+			forward(inputs[n], hidden, output);
+			for (int o = 0; o < numOutputs; o += 1)
+			{
+				double error = desiredOutputs[n][o] - output[o];
+				sse += error * error;
+			}
+		}
+		return rmse(sse, count);
+	}
+
+	/**
+	 * Returns a classifier using a copy of the current weights
+	 */
+
+	public ANNClassifier getClassifier()
+	{
+		return new ANNClassifier(numInputs, numHidden, numOutputs, 1.0, hiddenWeights.clone(), hiddenBias.clone(),
+				outputWeights.clone(), outputBias.clone());
+	}
+
+	/**
+	 * Build a Joone network holding the current weights. The network has the same layers as the one built
+	 * by <code> ANNTrainer </code> before, so it can be saved and read back by <code> ANNInterrogator </code>.
+	 */
+
+	public NeuralNet exportNeuralNet()
+	{
+		LinearLayer input = new LinearLayer();
+		SigmoidLayer hidden = new SigmoidLayer();
+		SigmoidLayer output = new SigmoidLayer();
+		input.setRows(numInputs);
+		hidden.setRows(numHidden);
+		output.setRows(numOutputs);
+
+		FullSynapse synapse_IH = new FullSynapse(); /* Input -> Hidden conn. */
+		FullSynapse synapse_HO = new FullSynapse(); /* Hidden -> Output conn. */
+		input.addOutputSynapse(synapse_IH);
+		hidden.addInputSynapse(synapse_IH);
+		hidden.addOutputSynapse(synapse_HO);
+		output.addInputSynapse(synapse_HO);
+
+		// Joone stores weights as [input][output]
+		Matrix weights = synapse_IH.getWeights();
+		for (int h = 0; h < numHidden; h += 1)
+			for (int i = 0; i < numInputs; i += 1)
+				weights.value[i][h] = hiddenWeights[h * numInputs + i];
+		weights = synapse_HO.getWeights();
+		for (int o = 0; o < numOutputs; o += 1)
+			for (int h = 0; h < numHidden; h += 1)
+				weights.value[h][o] = outputWeights[o * numHidden + h];
+		for (int h = 0; h < numHidden; h += 1)
+			hidden.getBias().value[h][0] = hiddenBias[h];
+		for (int o = 0; o < numOutputs; o += 1)
+			output.getBias().value[o][0] = outputBias[o];
+
+		NeuralNet nnet = new NeuralNet();
+		nnet.addLayer(input, NeuralNet.INPUT_LAYER);
+		nnet.addLayer(hidden, NeuralNet.HIDDEN_LAYER);
+		nnet.addLayer(output, NeuralNet.OUTPUT_LAYER);
+		return nnet;
+	}
+
+	// Compute the gradient of the patterns order[start] to order[end - 1] and update the weights.
+	// Returns the sum of the squared errors of the patterns before the update.
+	private double trainBatch(ForkJoinPool pool, Gradient slices[], double inputs[][], double desiredOutputs[][], int order[], int start, int end)
+	{
+		int sliceCount = (end - start + PATTERNS_PER_SLICE - 1) / PATTERNS_PER_SLICE;
+		List<SliceTask> tasks = new ArrayList<SliceTask>(sliceCount);
+		for (int s = 0; s < sliceCount; s += 1)
+		{
+			int sliceStart = start + s * PATTERNS_PER_SLICE;
+			tasks.add(new SliceTask(slices[s], inputs, desiredOutputs, order, sliceStart, Math.min(sliceStart + PATTERNS_PER_SLICE, end)));
+		}
+
+		if (pool == null || sliceCount == 1)
+		{
+			for (int s = 0; s < sliceCount; s += 1)
+				tasks.get(s).compute();
+		}
+		else
+			pool.invoke(new BatchTask(tasks));
+
+		// Add up the slices in order, then apply the mean gradient
+		Gradient sum = slices[0];
+		for (int s = 1; s < sliceCount; s += 1)
+			sum.add(slices[s]);
+
+		double rate = learningRate / (end - start);
+		int p = 0;
+		p = update(hiddenWeights, sum.hiddenWeights, rate, p);
+		p = update(hiddenBias, sum.hiddenBias, rate, p);
+		p = update(outputWeights, sum.outputWeights, rate, p);
+		update(outputBias, sum.outputBias, rate, p);
+		return sum.sse;
+	}
+
+	private int update(double parameters[], double gradient[], double rate, int offset)
+	{
+		for (int i = 0; i < parameters.length; i += 1)
+		{
+			double delta = rate * gradient[i] + momentum * previousUpdate[offset + i];
+			parameters[i] += delta;
+			previousUpdate[offset + i] = delta;
+		}
+		return offset + parameters.length;
+	}
+
+	private void forward(double input[], double hidden[], double output[])
+	{
+		for (int h = 0; h < numHidden; h += 1)
+		{
+			double sum = hiddenBias[h];
+			int row = h * numInputs;
+			for (int i = 0; i < numInputs; i += 1)
+				sum += hiddenWeights[row + i] * input[i];
+			hidden[h] = sigmoid(sum);
+		}
+		for (int o = 0; o < numOutputs; o += 1)
+		{
+			double sum = outputBias[o];
+			int row = o * numHidden;
+			for (int h = 0; h < numHidden; h += 1)
+				sum += outputWeights[row + h] * hidden[h];
+			output[o] = sigmoid(sum);
+		}
+	}
+
+	private double rmse(double sse, int count)
+	{
+		return count == 0 ? 0 : Math.sqrt(sse / (count * numOutputs));
+	}
+
+	private int getParameterCount()
+	{
+		return hiddenWeights.length + hiddenBias.length + outputWeights.length + outputBias.length;
+	}
+
+	private double[] getParameters()
+	{
+		double parameters[] = new double[getParameterCount()];
+		int p = 0;
+		System.arraycopy(hiddenWeights, 0, parameters, p, hiddenWeights.length);
+		p += hiddenWeights.length;
+		System.arraycopy(hiddenBias, 0, parameters, p, hiddenBias.length);
+		p += hiddenBias.length;
+		System.arraycopy(outputWeights, 0, parameters, p, outputWeights.length);
+		p += outputWeights.length;
+		System.arraycopy(outputBias, 0, parameters, p, outputBias.length);
+		return parameters;
+	}
+
+	private void setParameters(double parameters[])
+	{
+		int p = 0;
+		System.arraycopy(parameters, p, hiddenWeights, 0, hiddenWeights.length);
+		p += hiddenWeights.length;
+		System.arraycopy(parameters, p, hiddenBias, 0, hiddenBias.length);
+		p += hiddenBias.length;
+		System.arraycopy(parameters, p, outputWeights, 0, outputWeights.length);
+		p += outputWeights.length;
+		System.arraycopy(parameters, p, outputBias, 0, outputBias.length);
+	}
+
+	private double[] randomArray(int length)
+	{
+		double array[] = new double[length];
+		for (int i = 0; i < length; i += 1)
+			array[i] = (2 * random.nextDouble() - 1) * INITIAL_WEIGHT;
+		return array;
+	}
+
+	private void shuffle(int array[])
+	{
+		for (int i = array.length - 1; i > 0; i -= 1)
+		{
+			int j = random.nextInt(i + 1);
+			int temp = array[i];
+			array[i] = array[j];
+			array[j] = temp;
+		}
+	}
+
+	private static double sigmoid(double x)
+	{
+		return 1 / (1 + Math.exp(-x));
+	}
+
+	/*
+	 * Sum of the gradients of a few patterns, along with the scratch arrays needed to compute them.
+	 * The gradient is the direction which decreases the error, so it is added to the weights.
+	 */
+	private class Gradient
+	{
+		private double hiddenWeights[] = new double[numHidden * numInputs];
+		private double hiddenBias[] = new double[numHidden];
+		private double outputWeights[] = new double[numOutputs * numHidden];
+		private double outputBias[] = new double[numOutputs];
+		private double sse;
+		private double hidden[] = new double[numHidden];
+		private double output[] = new double[numOutputs];
+		private double hiddenDelta[] = new double[numHidden];
+		private double outputDelta[] = new double[numOutputs];
+
+		public void clear()
+		{
+			Arrays.fill(hiddenWeights, 0);
+			Arrays.fill(hiddenBias, 0);
+			Arrays.fill(outputWeights, 0);
+			Arrays.fill(outputBias, 0);
+			sse = 0;
+		}
+
+		public void accumulate(double input[], double desired[])
+		{
+			forward(input, hidden, output);
+
+			for (int o = 0; o < numOutputs; o += 1)
+			{
+				double error = desired[o] - output[o];
+				sse += error * error;
+				outputDelta[o] = error * output[o] * (1 - output[o]);
+			}
+
+			for (int h = 0; h < numHidden; h += 1)
+			{
+				double sum = 0;
+				for (int o = 0; o < numOutputs; o += 1)
+					sum += MLPTrainer.this.outputWeights[o * numHidden + h] * outputDelta[o];
+				hiddenDelta[h] = sum * hidden[h] * (1 - hidden[h]);
+			}
+
+			for (int o = 0; o < numOutputs; o += 1)
+			{
+				int row = o * numHidden;
+				double delta = outputDelta[o];
+				for (int h = 0; h < numHidden; h += 1)
+					outputWeights[row + h] += delta * hidden[h];
+				outputBias[o] += delta;
+			}
+
+			for (int h = 0; h < numHidden; h += 1)
+			{
+				int row = h * numInputs;
+				double delta = hiddenDelta[h];
+				for (int i = 0; i < numInputs; i += 1)
+					hiddenWeights[row + i] += delta * input[i];
+				hiddenBias[h] += delta;
+			}
+		}
+
+		public void add(Gradient other)
+		{
+			for (int i = 0; i < hiddenWeights.length; i += 1)
+				hiddenWeights[i] += other.hiddenWeights[i];
+			for (int i = 0; i < hiddenBias.length; i += 1)
+				hiddenBias[i] += other.hiddenBias[i];
+			for (int i = 0; i < outputWeights.length; i += 1)
+				outputWeights[i] += other.outputWeights[i];
+			for (int i = 0; i < outputBias.length; i += 1)
+				outputBias[i] += other.outputBias[i];
+			sse += other.sse;
+		}
+	}
+
+	private class SliceTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private Gradient gradient;
+		private double inputs[][];
+		private double desiredOutputs[][];
+		private int order[];
+		private int start;
+		private int end;
+
+		public SliceTask(Gradient gradient, double inputs[][], double desiredOutputs[][], int order[], int start, int end)
+		{
+			this.gradient = gradient;
+			this.inputs = inputs;
+			this.desiredOutputs = desiredOutputs;
+			this.order = order;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute()
+		{
+			gradient.clear();
+			for (int n = start; n < end; n += 1)
+				gradient.accumulate(inputs[order[n]], desiredOutputs[order[n]]);
+		}
+	}
+
+	private static class BatchTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private List<SliceTask> tasks;
+
+		public BatchTask(List<SliceTask> tasks)
+		{
+			this.tasks = tasks;
+		}
+
+		protected void compute()
+		{
+			invokeAll(tasks);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.benchmark;
+
+/**
+ * A <code> Benchmark </code> is one operation of the OMR engine measured by the <code> BenchmarkRunner </code>
+ * on one set of parameters (e.g. one test image at one scale).
+ * <p>
+ * <code> setup </code> is called once before the first iteration, <code> prepare </code> before every call to
+ * <code> run </code>, and only <code> run </code> is timed. <code> run </code> returns the number of operations
+ * it performed, so that a call handling a whole batch of symbols is reported per symbol.
+ * <p>
+ * Results which are not used anywhere else should be given to <code> consume </code>, so that the JIT
+ * compiler cannot drop the code which computed them.
+ */
+
+public abstract class Benchmark
+{
+	private String name;
+	private String params[];
+	private int sink;
+
+	/**
+	 * @param name Name of the benchmark, usually the method measured
+	 * @param params Names and values of the parameters, alternately
+	 */
+
+	protected Benchmark(String name, String... params)
+	{
+		if (params.length % 2 != 0)
+			throw new IllegalArgumentException("Parameters must be given as name/value pairs");
+		this.name = name;
+		this.params = params;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public String[] getParams()
+	{
+		return params;
+	}
+
+	/**
+	 * Returns the value of a parameter, or null if there is no such parameter
+	 */
+
+	public String getParam(String param)
+	{
+		for (int i = 0; i < params.length; i += 2)
+			if (params[i].equals(param))
+				return params[i + 1];
+		return null;
+	}
+
+	/**
+	 * Build the data shared by all calls to <code> run </code>. Not timed.
+	 * @return false if the benchmark does not apply to its parameters (e.g. no stave was found on the image),
+	 * in which case it is skipped
+	 */
+
+	public boolean setup() throws Exception
+	{
+		return true;
+	}
+
+	/**
+	 * Restore the state consumed by the previous call to <code> run </code>. Not timed.
+	 */
+
+	public void prepare()
+	{
+	}
+
+	/**
+	 * Perform the operation measured
+	 * @return the number of operations performed
+	 */
+
+	public abstract int run();
+
+	/**
+	 * Release the data built by <code> setup </code>
+	 */
+
+	public void tearDown()
+	{
+	}
+
+	protected void consume(int value)
+	{
+		sink += value;
+	}
+
+	protected void consume(double value)
+	{
+		sink += (int) Double.doubleToLongBits(value);
+	}
+
+	protected void consume(Object value)
+	{
+		sink += System.identityHashCode(value);
+	}
+
+	int getSink()
+	{
+		return sink;
+	}
+}
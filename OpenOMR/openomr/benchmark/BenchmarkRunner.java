@@ -0,0 +1,343 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The <code> BenchmarkRunner </code> class measures the average time of a list of <code> Benchmark </code>s in
+ * the same way as JMH in average time mode: a number of warmup iterations, whose results are dropped, followed
+ * by measurement iterations. Each iteration calls the benchmark until its timed calls add up to the iteration
+ * time, and its score is the time per operation over the iteration. The score of a benchmark is the mean of
+ * its iterations, with the half-width of the 99.9% confidence interval as error.
+ * <p>
+ * The results can be written in the JSON format of JMH (<code> -rf json </code>), so that the files produced
+ * for two commits can be compared with the tools written for JMH.
+ * <p>
+ * The <code> BenchmarkRunner </code> class is used as follows:
+ * <p>
+ * <code>
+ * BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, iterations, iterationTime); <br>
+ * List&lt;BenchmarkRunner.Result&gt; results = runner.run(benchmarks, System.out); <br>
+ * runner.writeJSON(results, writer); <br>
+ * </code>
+ * <p>
+ * Unlike JMH, all benchmarks run in the same JVM. Profiles of one benchmark are cleaner when the others are
+ * left out with <code> setInclude </code>.
+ */
+
+public class BenchmarkRunner
+{
+	public static final String UNIT = "us/op";
+
+	// Student's t quantiles for a 99.9% two-sided interval, by degrees of freedom
+	private static final double T_999[] = { 0, 636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+			4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.819, 3.792, 3.768, 3.745, 3.725,
+			3.707, 3.690, 3.674, 3.659, 3.646 };
+	private static final double T_999_LARGE = 3.291;
+
+	private int warmupIterations;
+	private int iterations;
+	private long iterationTime;
+	private Pattern include;
+
+	/**
+	 * @param warmupIterations Number of iterations run before measuring
+	 * @param iterations Number of iterations measured
+	 * @param iterationTime Minimum time of the timed calls of each iteration, in milliseconds
+	 */
+
+	public BenchmarkRunner(int warmupIterations, int iterations, long iterationTime)
+	{
+		if (warmupIterations < 0 || iterations < 1 || iterationTime < 1)
+			throw new IllegalArgumentException("Invalid iteration settings");
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.iterationTime = iterationTime;
+	}
+
+	/**
+	 * Only run the benchmarks whose name contains a match of <code> regex </code>
+	 */
+
+	public void setInclude(String regex)
+	{
+		include = regex == null ? null : Pattern.compile(regex);
+	}
+
+	public boolean isIncluded(Benchmark benchmark)
+	{
+		return include == null || include.matcher(benchmark.getName()).find();
+	}
+
+	/**
+	 * Run all included benchmarks, one after the other
+	 * @param log Stream receiving the progress and the score of each benchmark, or null
+	 * @return the result of each benchmark run
+	 */
+
+	public List<Result> run(List<Benchmark> benchmarks, PrintStream log) throws Exception
+	{
+		List<Result> results = new ArrayList<Result>();
+		for (Benchmark benchmark : benchmarks)
+		{
+			if (!isIncluded(benchmark))
+				continue;
+			if (log != null)
+				log.printf("%s %s\n", benchmark.getName(), formatParams(benchmark));
+			Result result = run(benchmark, log);
+			if (result == null)
+				continue;
+			results.add(result);
+			if (log != null)
+				log.printf("  %.3f +- %.3f %s\n", result.getScore(), result.getScoreError(), UNIT);
+		}
+		return results;
+	}
+
+	/**
+	 * Run one benchmark
+	 * @return the result, or null if the benchmark was skipped
+	 */
+
+	public Result run(Benchmark benchmark, PrintStream log) throws Exception
+	{
+		if (!benchmark.setup())
+		{
+			if (log != null)
+				log.println("  skipped");
+			benchmark.tearDown();
+			return null;
+		}
+		try
+		{
+			System.gc();
+			for (int i = 0; i < warmupIterations; i += 1)
+			{
+				double score = iterate(benchmark);
+				if (log != null)
+					log.printf("  warmup %d: %.3f %s\n", i + 1, score, UNIT);
+			}
+
+			double rawData[] = new double[iterations];
+			for (int i = 0; i < iterations; i += 1)
+			{
+				rawData[i] = iterate(benchmark);
+				if (log != null)
+					log.printf("  iteration %d: %.3f %s\n", i + 1, rawData[i], UNIT);
+			}
+			return new Result(benchmark.getName(), benchmark.getParams(), rawData);
+		}
+		finally
+		{
+			benchmark.tearDown();
+		}
+	}
+
+	// Call the benchmark until iterationTime is spent in run(); returns microseconds per operation
+	private double iterate(Benchmark benchmark)
+	{
+		long limit = iterationTime * 1000000L;
+		long elapsed = 0;
+		long ops = 0;
+		do
+		{
+			benchmark.prepare();
+			long start = System.nanoTime();
+			int count = benchmark.run();
+			elapsed += System.nanoTime() - start;
+			ops += count;
+		} while (elapsed < limit);
+		return ops == 0 ? 0 : elapsed / 1e3 / ops;
+	}
+
+	/**
+	 * Write the results in the JSON format of JMH
+	 */
+
+	public void writeJSON(List<Result> results, Writer out) throws IOException
+	{
+		out.write("[\n");
+		for (int i = 0; i < results.size(); i += 1)
+		{
+			Result result = results.get(i);
+			out.write("    {\n");
+			out.write("        \"jmhVersion\" : \"none\",\n");
+			out.write("        \"benchmark\" : " + quote(result.getName()) + ",\n");
+			out.write("        \"mode\" : \"avgt\",\n");
+			out.write("        \"threads\" : 1,\n");
+			out.write("        \"forks\" : 0,\n");
+			out.write("        \"jvm\" : " + quote(System.getProperty("java.home")) + ",\n");
+			out.write("        \"jdkVersion\" : " + quote(System.getProperty("java.version")) + ",\n");
+			out.write("        \"vmName\" : " + quote(System.getProperty("java.vm.name")) + ",\n");
+			out.write("        \"vmVersion\" : " + quote(System.getProperty("java.vm.version")) + ",\n");
+			out.write("        \"warmupIterations\" : " + warmupIterations + ",\n");
+			out.write("        \"warmupTime\" : \"" + iterationTime + " ms\",\n");
+			out.write("        \"measurementIterations\" : " + iterations + ",\n");
+			out.write("        \"measurementTime\" : \"" + iterationTime + " ms\",\n");
+
+			String params[] = result.getParams();
+			if (params.length > 0)
+			{
+				out.write("        \"params\" : {\n");
+				for (int j = 0; j < params.length; j += 2)
+					out.write("            " + quote(params[j]) + " : " + quote(params[j + 1]) + (j + 2 < params.length ? ",\n" : "\n"));
+				out.write("        },\n");
+			}
+
+			out.write("        \"primaryMetric\" : {\n");
+			out.write("            \"score\" : " + number(result.getScore()) + ",\n");
+			out.write("            \"scoreError\" : " + number(result.getScoreError()) + ",\n");
+			out.write("            \"scoreConfidence\" : [ " + number(result.getScore() - result.getScoreError()) + ", " + number(result.getScore() + result.getScoreError()) + " ],\n");
+			out.write("            \"scoreUnit\" : \"" + UNIT + "\",\n");
+			out.write("            \"rawData\" : [ [ ");
+			double rawData[] = result.getRawData();
+			for (int j = 0; j < rawData.length; j += 1)
+				out.write((j > 0 ? ", " : "") + number(rawData[j]));
+			out.write(" ] ]\n");
+			out.write("        },\n");
+			out.write("        \"secondaryMetrics\" : {\n        }\n");
+			out.write(i + 1 < results.size() ? "    },\n" : "    }\n");
+		}
+		out.write("]\n");
+		out.flush();
+	}
+
+	private static String formatParams(Benchmark benchmark)
+	{
+		StringBuilder sb = new StringBuilder();
+		String params[] = benchmark.getParams();
+		for (int i = 0; i < params.length; i += 2)
+			sb.append(i == 0 ? "(" : ", ").append(params[i]).append(" = ").append(params[i + 1]);
+		if (params.length > 0)
+			sb.append(')');
+		return sb.toString();
+	}
+
+	// JSON has no NaN nor infinity; JMH writes them as strings
+	private static String number(double value)
+	{
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			return "\"" + value + "\"";
+		return String.valueOf(value);
+	}
+
+	private static String quote(String s)
+	{
+		if (s == null)
+			return "null";
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i += 1)
+		{
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * The score of one benchmark on one set of parameters
+	 */
+
+	public static class Result
+	{
+		private String name;
+		private String params[];
+		private double rawData[];
+		private double score;
+		private double scoreError;
+
+		public Result(String name, String params[], double rawData[])
+		{
+			this.name = name;
+			this.params = params;
+			this.rawData = rawData;
+
+			int n = rawData.length;
+			double sum = 0;
+			for (int i = 0; i < n; i += 1)
+				sum += rawData[i];
+			score = sum / n;
+
+			if (n > 1)
+			{
+				double variance = 0;
+				for (int i = 0; i < n; i += 1)
+					variance += (rawData[i] - score) * (rawData[i] - score);
+				variance /= n - 1;
+				double t = n - 1 < T_999.length ? T_999[n - 1] : T_999_LARGE;
+				scoreError = t * Math.sqrt(variance / n);
+			}
+			else
+				scoreError = Double.NaN;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public String[] getParams()
+		{
+			return params;
+		}
+
+		/**
+		 * Returns the score of each measurement iteration, in microseconds per operation
+		 */
+
+		public double[] getRawData()
+		{
+			return rawData;
+		}
+
+		/**
+		 * Returns the mean of the iterations, in microseconds per operation
+		 */
+
+		public double getScore()
+		{
+			return score;
+		}
+
+		/**
+		 * Returns the half-width of the 99.9% confidence interval of the score, or NaN with a single iteration
+		 */
+
+		public double getScoreError()
+		{
+			return scoreError;
+		}
+	}
+}
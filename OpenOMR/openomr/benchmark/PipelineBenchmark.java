@@ -0,0 +1,647 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import openomr.ann.ANNInterrogator;
+import openomr.ann.ANNPrepare;
+import openomr.fft.FFT;
+import openomr.imageprocessing.BitPlaneImage;
+import openomr.imageprocessing.DoBlackandWhite;
+import openomr.omr_engine.NoteHeadDetection;
+import openomr.omr_engine.ProjectionIndex;
+import openomr.omr_engine.StaveDetection;
+import openomr.omr_engine.StaveParameters;
+import openomr.omr_engine.Staves;
+import openomr.omr_engine.XProjection;
+import openomr.omr_engine.YProjection;
+
+/**
+ * The <code> PipelineBenchmark </code> class measures the main steps of the OMR engine on a set of test images,
+ * each of them at several scales, and writes the results in the JSON format of JMH so that they can be kept
+ * for every commit and compared.
+ * <p>
+ * The images are enlarged by pixel replication, which keeps black and white images black and white and gives
+ * stavelines and symbols as thick as they would be on a scan of higher resolution. The benchmarks are:
+ * <ul>
+ * <li> <code> DoBlackandWhite.doBW </code> on the whole image
+ * <li> <code> YProjection.calcYProjection </code> and <code> XProjection.calcXProjection </code> of the whole image
+ * <li> <code> StaveParameters.calcParameters </code> of the whole image
+ * <li> <code> StaveDetection.locateStaves </code>, from the Y-Projection and stave parameters of the image
+ * <li> <code> NoteHeadDetection.findNotes </code> over the full width of each stave, per stave
+ * <li> <code> FFT.doFFT </code> on a window of 512 pixels times the scale
+ * <li> <code> ANNPrepare.prepareImage </code> on symbol sized windows along each stave, per window
+ * <li> <code> ANNInterrogator.interogateNN </code> on the vectors of these windows, one at a time and in a
+ * single batch, per window
+ * </ul>
+ * The benchmarks which need staves are skipped for images on which none is found, and those which need the
+ * neural network are skipped when it cannot be loaded.
+ * <p>
+ * Usage:
+ * <p>
+ * <code>
+ * java -Djava.awt.headless=true openomr.benchmark.PipelineBenchmark [-wi n] [-i n] [-r ms] [-scales 1,2,4]
+ * [-include regex] [-o results.json] [image or directory ...]
+ * </code>
+ * <p>
+ * By default, every image of <code> testImages/demo </code> is used, and the neural network is read from the
+ * <code> neuralnetwork </code> directory of the working directory, as in the GUI.
+ */
+
+public class PipelineBenchmark
+{
+	private static final String IMAGE_EXTENSIONS[] = { ".png", ".jpg", ".jpeg", ".gif", ".bmp" };
+	private static final int FFT_SIZE = 512;
+
+	private ANNInterrogator annInterrogator;
+
+	public PipelineBenchmark(ANNInterrogator annInterrogator)
+	{
+		this.annInterrogator = annInterrogator;
+	}
+
+	/**
+	 * Returns every benchmark for every image at every scale, grouped by image and scale
+	 */
+
+	public List<Benchmark> createBenchmarks(List<File> images, int scales[])
+	{
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (File image : images)
+		{
+			for (int i = 0; i < scales.length; i += 1)
+			{
+				int scale = scales[i];
+				benchmarks.add(new DoBWBenchmark(image, scale));
+				benchmarks.add(new YProjectionBenchmark(image, scale));
+				benchmarks.add(new XProjectionBenchmark(image, scale));
+				benchmarks.add(new StaveParametersBenchmark(image, scale));
+				benchmarks.add(new LocateStavesBenchmark(image, scale));
+				benchmarks.add(new FindNotesBenchmark(image, scale));
+				benchmarks.add(new FFTBenchmark(image, scale));
+				benchmarks.add(new PrepareImageBenchmark(image, scale));
+				benchmarks.add(new InterrogateBenchmark(image, scale, false));
+				benchmarks.add(new InterrogateBenchmark(image, scale, true));
+			}
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Enlarge an image by pixel replication
+	 */
+
+	public static BufferedImage upscale(BufferedImage buffImage, int scale)
+	{
+		int width = buffImage.getWidth();
+		int height = buffImage.getHeight();
+		BufferedImage scaled = new BufferedImage(width * scale, height * scale, BufferedImage.TYPE_INT_RGB);
+		int scanline[] = new int[width];
+		int scaledLine[] = new int[width * scale];
+		for (int y = 0; y < height; y += 1)
+		{
+			buffImage.getRGB(0, y, width, 1, scanline, 0, width);
+			for (int x = 0; x < width * scale; x += 1)
+				scaledLine[x] = scanline[x / scale];
+			for (int j = 0; j < scale; j += 1)
+				scaled.setRGB(0, y * scale + j, width * scale, 1, scaledLine, 0, width * scale);
+		}
+		return scaled;
+	}
+
+	/**
+	 * Returns the first row of the area searched for the symbols of a stave: the stave along with room
+	 * for two ledger lines above it (see <code> getStaveBottom </code>)
+	 */
+
+	static int getStaveTop(Staves stave)
+	{
+		return Math.max(stave.getTop() - 2 * stave.getNoteDistance(), 0);
+	}
+
+	/**
+	 * Returns the last row of the area searched for the symbols of a stave: the stave along with room
+	 * for two ledger lines below it
+	 */
+
+	static int getStaveBottom(Staves stave, int imageHeight)
+	{
+		return Math.min(stave.getBottom() + 2 * stave.getNoteDistance(), imageHeight - 1);
+	}
+
+	/*
+	 * Loads the image at its scale; the subclasses build what they need from it
+	 */
+	private abstract class PageBenchmark extends Benchmark
+	{
+		protected File file;
+		protected int scale;
+		protected BufferedImage buffImage;
+		protected BitPlaneImage bitPlane;
+		protected StaveParameters params;
+		protected YProjection yProj;
+		protected StaveDetection staveDetection;
+
+		public PageBenchmark(String name, File file, int scale)
+		{
+			super(name, "image", file.getName(), "scale", String.valueOf(scale));
+			this.file = file;
+			this.scale = scale;
+		}
+
+		public boolean setup() throws Exception
+		{
+			BufferedImage original = ImageIO.read(file);
+			if (original == null)
+				throw new IllegalArgumentException("Unsupported image format: " + file);
+			buffImage = upscale(original, scale);
+			return true;
+		}
+
+		public void tearDown()
+		{
+			buffImage = null;
+			bitPlane = null;
+			params = null;
+			yProj = null;
+			staveDetection = null;
+		}
+
+		// Steps which come before the one measured
+		protected void buildProjection()
+		{
+			bitPlane = BitPlaneImage.create(buffImage);
+			params = new StaveParameters(bitPlane);
+			params.calcParameters();
+			yProj = new YProjection(bitPlane);
+			yProj.calcYProjection(0, bitPlane.getHeight(), 0, bitPlane.getWidth());
+		}
+
+		// Returns false if no stave is found
+		protected boolean buildStaves()
+		{
+			buildProjection();
+			staveDetection = new StaveDetection(yProj, params);
+			staveDetection.locateStaves();
+			staveDetection.calcNoteDistance();
+			return staveDetection.getNumStavesFound() > 0;
+		}
+
+		protected int getStaveTop(Staves stave)
+		{
+			return PipelineBenchmark.getStaveTop(stave);
+		}
+
+		protected int getStaveBottom(Staves stave)
+		{
+			return PipelineBenchmark.getStaveBottom(stave, buffImage.getHeight());
+		}
+
+		// Windows of the size of a symbol covering each stave, prepared for the neural network
+		protected List<BufferedImage> getSymbolWindows()
+		{
+			List<BufferedImage> windows = new ArrayList<BufferedImage>();
+			for (Staves stave : staveDetection.getStaveList())
+			{
+				int top = getStaveTop(stave);
+				int height = getStaveBottom(stave) - top + 1;
+				int width = Math.max(2 * stave.getNoteDistance(), 1);
+				for (int x = 0; x + width <= buffImage.getWidth(); x += width)
+					windows.add(buffImage.getSubimage(x, top, width, height));
+			}
+			return windows;
+		}
+	}
+
+	private class DoBWBenchmark extends PageBenchmark
+	{
+		private BufferedImage work;
+
+		public DoBWBenchmark(File file, int scale)
+		{
+			super("DoBlackandWhite.doBW", file, scale);
+		}
+
+		public boolean setup() throws Exception
+		{
+			super.setup();
+			work = new BufferedImage(buffImage.getWidth(), buffImage.getHeight(), BufferedImage.TYPE_INT_RGB);
+			return true;
+		}
+
+		// doBW modifies the image it is given
+		public void prepare()
+		{
+			work.getRaster().setRect(buffImage.getRaster());
+		}
+
+		public int run()
+		{
+			new DoBlackandWhite(work).doBW();
+			return 1;
+		}
+
+		public void tearDown()
+		{
+			super.tearDown();
+			work = null;
+		}
+	}
+
+	private class YProjectionBenchmark extends PageBenchmark
+	{
+		public YProjectionBenchmark(File file, int scale)
+		{
+			super("YProjection.calcYProjection", file, scale);
+		}
+
+		public boolean setup() throws Exception
+		{
+			super.setup();
+			bitPlane = BitPlaneImage.create(buffImage);
+			return true;
+		}
+
+		public int run()
+		{
+			YProjection proj = new YProjection(bitPlane);
+			proj.calcYProjection(0, bitPlane.getHeight(), 0, bitPlane.getWidth());
+			consume(proj.getYProjection());
+			return 1;
+		}
+	}
+
+	private class XProjectionBenchmark extends PageBenchmark
+	{
+		public XProjectionBenchmark(File file, int scale)
+		{
+			super("XProjection.calcXProjection", file, scale);
+		}
+
+		public boolean setup() throws Exception
+		{
+			super.setup();
+			bitPlane = BitPlaneImage.create(buffImage);
+			return true;
+		}
+
+		public int run()
+		{
+			XProjection proj = new XProjection(bitPlane);
+			proj.calcXProjection(0, bitPlane.getHeight(), 0, bitPlane.getWidth());
+			consume(proj.getXProjection());
+			return 1;
+		}
+	}
+
+	private class StaveParametersBenchmark extends PageBenchmark
+	{
+		public StaveParametersBenchmark(File file, int scale)
+		{
+			super("StaveParameters.calcParameters", file, scale);
+		}
+
+		public boolean setup() throws Exception
+		{
+			super.setup();
+			bitPlane = BitPlaneImage.create(buffImage);
+			return true;
+		}
+
+		public int run()
+		{
+			// Not StaveParameters.forImage, which would only scan the image once
+			StaveParameters sParams = new StaveParameters(bitPlane);
+			sParams.calcParameters();
+			consume(sParams.getD2());
+			return 1;
+		}
+	}
+
+	private class LocateStavesBenchmark extends PageBenchmark
+	{
+		public LocateStavesBenchmark(File file, int scale)
+		{
+			super("StaveDetection.locateStaves", file, scale);
+		}
+
+		public boolean setup() throws Exception
+		{
+			super.setup();
+			buildProjection();
+			return true;
+		}
+
+		public int run()
+		{
+			StaveDetection detection = new StaveDetection(yProj, params);
+			detection.locateStaves();
+			consume(detection.getNumStavesFound());
+			return 1;
+		}
+	}
+
+	private class FindNotesBenchmark extends PageBenchmark
+	{
+		private Staves staves[];
+		private ProjectionIndex projections[];
+
+		public FindNotesBenchmark(File file, int scale)
+		{
+			super("NoteHeadDetection.findNotes", file, scale);
+		}
+
+		public boolean setup() throws Exception
+		{
+			super.setup();
+			if (!buildStaves())
+				return false;
+
+			// The summed-area table of each stave is built once per stave by the DetectionProcessor
+			LinkedList<Staves> staveList = staveDetection.getStaveList();
+			staves = staveList.toArray(new Staves[staveList.size()]);
+			projections = new ProjectionIndex[staves.length];
+			for (int i = 0; i < staves.length; i += 1)
+				projections[i] = new ProjectionIndex(bitPlane, getStaveTop(staves[i]), getStaveBottom(staves[i]) + 1);
+			return true;
+		}
+
+		public int run()
+		{
+			for (int i = 0; i < staves.length; i += 1)
+			{
+				NoteHeadDetection noteHeadDetection = new NoteHeadDetection(projections[i], params);
+				consume(noteHeadDetection.findNotes(getStaveTop(staves[i]), getStaveBottom(staves[i]), 0, bitPlane.getWidth()).size());
+			}
+			return staves.length;
+		}
+
+		public void tearDown()
+		{
+			super.tearDown();
+			staves = null;
+			projections = null;
+		}
+	}
+
+	private class FFTBenchmark extends PageBenchmark
+	{
+		private FFT fft;
+
+		public FFTBenchmark(File file, int scale)
+		{
+			super("FFT.doFFT", file, scale);
+		}
+
+		// The FFT is computed in place, so each call needs a new one
+		public void prepare()
+		{
+			fft = new FFT(buffImage, FFT_SIZE * Integer.highestOneBit(scale));
+		}
+
+		public int run()
+		{
+			fft.doFFT();
+			consume(fft.getRotationAngle());
+			return 1;
+		}
+
+		public void tearDown()
+		{
+			super.tearDown();
+			fft = null;
+		}
+	}
+
+	private class PrepareImageBenchmark extends PageBenchmark
+	{
+		private BufferedImage windows[];
+
+		public PrepareImageBenchmark(File file, int scale)
+		{
+			super("ANNPrepare.prepareImage", file, scale);
+		}
+
+		public boolean setup() throws Exception
+		{
+			super.setup();
+			if (!buildStaves())
+				return false;
+			List<BufferedImage> list = getSymbolWindows();
+			windows = list.toArray(new BufferedImage[list.size()]);
+			return windows.length > 0;
+		}
+
+		public int run()
+		{
+			for (int i = 0; i < windows.length; i += 1)
+				consume(ANNPrepare.prepareImage(windows[i]));
+			return windows.length;
+		}
+
+		public void tearDown()
+		{
+			super.tearDown();
+			windows = null;
+		}
+	}
+
+	private class InterrogateBenchmark extends PageBenchmark
+	{
+		private boolean batch;
+		private double inputs[][];
+		private int symbols[];
+		private double confidences[];
+
+		public InterrogateBenchmark(File file, int scale, boolean batch)
+		{
+			super(batch ? "ANNInterrogator.interogateNN.batch" : "ANNInterrogator.interogateNN", file, scale);
+			this.batch = batch;
+		}
+
+		public boolean setup() throws Exception
+		{
+			if (annInterrogator == null || annInterrogator.getClassifier() == null)
+				return false;
+			super.setup();
+			if (!buildStaves())
+				return false;
+			List<BufferedImage> windows = getSymbolWindows();
+			inputs = new double[windows.size()][];
+			for (int i = 0; i < inputs.length; i += 1)
+				inputs[i] = ANNPrepare.prepareImage(windows.get(i));
+			symbols = new int[inputs.length];
+			confidences = new double[inputs.length];
+			return inputs.length > 0;
+		}
+
+		public int run()
+		{
+			if (batch)
+			{
+				annInterrogator.interogateNN(inputs, inputs.length, symbols, confidences);
+				consume(symbols[0]);
+			}
+			else
+			{
+				double data[][] = new double[1][];
+				for (int i = 0; i < inputs.length; i += 1)
+				{
+					data[0] = inputs[i];
+					consume(annInterrogator.interogateNN(data));
+				}
+			}
+			return inputs.length;
+		}
+
+		public void tearDown()
+		{
+			super.tearDown();
+			inputs = null;
+			symbols = null;
+			confidences = null;
+		}
+	}
+
+	static void addImages(File file, List<File> images)
+	{
+		if (!file.isDirectory())
+		{
+			images.add(file);
+			return;
+		}
+
+		File files[] = file.listFiles();
+		Arrays.sort(files);
+		for (int i = 0; i < files.length; i += 1)
+		{
+			String name = files[i].getName().toLowerCase();
+			for (int j = 0; j < IMAGE_EXTENSIONS.length; j += 1)
+			{
+				if (files[i].isFile() && name.endsWith(IMAGE_EXTENSIONS[j]))
+				{
+					images.add(files[i]);
+					break;
+				}
+			}
+		}
+	}
+
+	static int[] parseScales(String list)
+	{
+		String values[] = list.split(",");
+		int scales[] = new int[values.length];
+		for (int i = 0; i < values.length; i += 1)
+		{
+			scales[i] = Integer.parseInt(values[i].trim());
+			if (scales[i] < 1)
+				throw new IllegalArgumentException("Invalid scale: " + values[i]);
+		}
+		return scales;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		int warmupIterations = 3;
+		int iterations = 5;
+		long iterationTime = 1000;
+		int scales[] = { 1, 2, 4 };
+		String include = null;
+		File output = null;
+		List<File> images = new ArrayList<File>();
+
+		for (int i = 0; i < args.length; i += 1)
+		{
+			if (args[i].equals("-wi") && i + 1 < args.length)
+				warmupIterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i") && i + 1 < args.length)
+				iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-r") && i + 1 < args.length)
+				iterationTime = Long.parseLong(args[++i]);
+			else if (args[i].equals("-scales") && i + 1 < args.length)
+				scales = parseScales(args[++i]);
+			else if (args[i].equals("-include") && i + 1 < args.length)
+				include = args[++i];
+			else if (args[i].equals("-o") && i + 1 < args.length)
+				output = new File(args[++i]);
+			else if (args[i].startsWith("-"))
+			{
+				System.err.println("Usage: PipelineBenchmark [-wi n] [-i n] [-r ms] [-scales 1,2,4] [-include regex] [-o results.json] [image or directory ...]");
+				System.exit(1);
+			}
+			else
+				addImages(new File(args[i]), images);
+		}
+		if (images.isEmpty())
+			addImages(new File(System.getProperty("user.dir"), "testImages" + File.separator + "demo"), images);
+
+		BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, iterations, iterationTime);
+		runner.setInclude(include);
+
+		// The engine logs every note head and symbol it finds
+		PrintStream log = System.out;
+		System.setOut(new PrintStream(new OutputStream()
+		{
+			public void write(int b)
+			{
+			}
+		}));
+
+		PipelineBenchmark pipeline = new PipelineBenchmark(new ANNInterrogator());
+		List<BenchmarkRunner.Result> results = runner.run(pipeline.createBenchmarks(images, scales), log);
+
+		log.printf("\n%-36s %-20s %6s %14s %12s\n", "Benchmark", "Image", "Scale", "Score", "Error");
+		for (BenchmarkRunner.Result result : results)
+		{
+			String params[] = result.getParams();
+			log.printf("%-36s %-20s %6s %14.3f %12.3f %s\n", result.getName(), params[1], params[3], result.getScore(), result.getScoreError(), BenchmarkRunner.UNIT);
+		}
+
+		if (output != null)
+		{
+			Writer writer = new FileWriter(output);
+			try
+			{
+				runner.writeJSON(results, writer);
+			}
+			finally
+			{
+				writer.close();
+			}
+			log.println("Results written to " + output);
+		}
+	}
+}
@@ -23,9 +23,25 @@
 package openomr.fft;
 
 import java.awt.image.BufferedImage;
-import java.lang.Math;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
+ * The <code> FFT </code> class computes the 2D FFT of the top left size x size square of an image in
+ * order to find the angle by which the score is skewed.
+ * <p>
+ * The lightness of the pixels is stored in a single <code> double[] </code>, row by row, with the real and
+ * imaginary parts interleaved. Rows are transformed with a precomputed <code> FFTPlan </code>; the columns
+ * are transformed as rows of the transposed matrix so that every pass reads consecutive values. Rows are
+ * independent and are distributed on a fork/join pool.
+ * <p>
+ * The <code> FFT </code> class is used as follows:
+ * <p>
+ * <code>
+ * FFT fft = new FFT(buffImage, 512); <br>
+ * fft.doFFT(); //or fft.doSkewDetection() when the FFT image is not needed <br>
+ * double angle = fft.getRotationAngle(); <br>
+ * </code>
  * 
  * @author Arnaud Desaedeleer
  * @author Stephen Murrell
@@ -34,28 +50,22 @@ import java.lang.Math;
 public class FFT
 {
 	private final int BRIGHT_THRESHOLD = 200;
-	private final double pi = Math.acos(-1);
-	private final double twopi = 2 * pi;
+	private final int TRANSPOSE_BLOCK = 32;
+	private final int MIN_ROWS_PER_TASK = 16;
 	private int size;
+	private FFTPlan plan;
+	private double data[];		// size x size complex values, row by row, real and imaginary parts interleaved
 	private BufferedImage fftImage;
-	private Complex c1;
 	private Coordinates minCord;
 	private Coordinates maxCord;
+	private int threadCount;
 
 	public FFT(BufferedImage buffImage, int size)
 	{
 		this.size = size;
-		c1 = new Complex(size);
-
-		// init complex
-		for (int i = 0; i < size; i += 1)
-		{
-			for (int j = 0; j < size; j += 1)
-			{
-				c1.setImag(i, j, 0.0);
-				c1.setReal(i, j, 0.0);
-			}
-		}
+		plan = FFTPlan.getPlan(size);
+		data = new double[2 * size * size];
+		threadCount = Runtime.getRuntime().availableProcessors();
 
 		int w = size;
 		int h = size;
@@ -64,38 +74,45 @@ public class FFT
 		if (buffImage.getHeight() < size)
 			h = buffImage.getHeight();
 
-		// Create new buffered image for FFT output
-		this.fftImage = new BufferedImage(size / 2, size / 2, BufferedImage.TYPE_INT_RGB);
-
+		// The real part of each value is the lightness of the pixel (HLS model), the imaginary part is 0
+		int scanline[] = new int[w];
 		for (int i = 0; i < h /* height */; i += 1)
 		{
+			buffImage.getRGB(0, i, w, 1, scanline, 0, w);
+			int base = 2 * i * size;
 			for (int j = 0; j < w /* width */; j += 1)
-			{
-				int v = 0;
-				try
-				{
-					v = buffImage.getRGB(j, i);
-				} catch (ArrayIndexOutOfBoundsException e)
-				{
-					System.out.println("Out of bounds -- buffImage.getRGB(x, y, rgb)");
-					System.exit(1);
-				}
-				RGB rgb = new RGB();
-				rgb = DecodeColor(v);
-				HLS hls = new HLS();
-				hls = RGBtoHLS(rgb);
-				hls.h = (int) (hls.h * twopi);
-				c1.setReal(i, j, hls.l);
-				c1.setImag(i, j, 0.0);
-			}
+				data[base + 2 * j] = lightness(scanline[j]);
 		}
 	}
 
+	/**
+	 * Set the number of threads used to transform the rows. A value of 1 does all the work
+	 * in the calling thread.
+	 */
+
+	public void setThreadCount(int threadCount)
+	{
+		if (threadCount < 1)
+			throw new IllegalArgumentException("Thread count must be at least 1");
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Compute the FFT, the image of its magnitude (see <code> getFFTImage </code>) and the rotation angle
+	 */
+
 	public void doFFT()
 	{
-		FFT2D(c1, size, size, 1);
-		double scale = maxof(c1, size, size);
-		do_halfmag(c1, size, size, scale, 0, 0);
+		process(true);
+	}
+
+	/**
+	 * Compute the FFT and the rotation angle only. No image is built.
+	 */
+
+	public void doSkewDetection()
+	{
+		process(false);
 	}
 
 	public double getRotationAngle()
@@ -103,147 +120,111 @@ public class FFT
 		return Math.atan((double) (maxCord.x - minCord.x) / (double) (maxCord.y - minCord.y));
 	}
 
+	/**
+	 * Returns the image of the magnitude of the FFT, or null if only the skew was detected
+	 */
+
 	public BufferedImage getFFTImage()
 	{
 		return fftImage;
 	}
 
-	private void FFT_meth(int dir, double x[], double y[], int n)
+	private void process(boolean drawImage)
 	{
-		int nn = 1 << n;
-		int i2 = nn >> 1;
-		for (int i = 0, j = 0; i < nn - 1; i += 1)
-		{
-			if (i < j)
-			{
-				double tx = x[i];
-				double ty = y[i];
-				x[i] = x[j];
-				y[i] = y[j];
-				x[j] = tx;
-				y[j] = ty;
-			}
-			int k = i2;
-			while (k <= j)
-			{
-				j -= k;
-				k >>= 1;
-			}
-			j += k;
-		}
-		double c1 = -1.0, c2 = 0.0;
-		int l2 = 1;
-		for (int l = 0; l < n; l += 1)
-		{
-			int l1 = l2;
-			l2 <<= 1;
-			double u1 = 1.0, u2 = 0.0;
-			for (int j = 0; j < l1; j += 1)
-			{
-				for (int i = j; i < nn; i += l2)
-				{
-					int i1 = i + l1;
-					double t1 = u1 * x[i1] - u2 * y[i1];
-					double t2 = u1 * y[i1] + u2 * x[i1];
-					x[i1] = x[i] - t1;
-					y[i1] = y[i] - t2;
-					x[i] += t1;
-					y[i] += t2;
-				}
-				double z = u1 * c1 - u2 * c2;
-				u2 = u1 * c2 + u2 * c1;
-				u1 = z;
-			}
-			c2 = Math.sqrt((1.0 - c1) / 2.0);
-			if (dir == 1)
-				c2 = -c2;
-			c1 = Math.sqrt((1.0 + c1) / 2.0);
-		}
-		if (dir == 1)
+		// Columns first, then rows
+		transpose();
+		runOnRows(RowTask.TRANSFORM);
+		transpose();
+		runOnRows(RowTask.TRANSFORM);
+		runOnRows(RowTask.MAGNITUDE);
+
+		double scale = maxof();
+		int pixels[] = drawImage ? new int[(size / 2) * (size / 2)] : null;
+		do_halfmag(scale, 0, 0, pixels);
+		if (drawImage)
 		{
-			for (int i = 0; i < nn; i += 1)
-			{
-				x[i] /= (double) nn;
-				y[i] /= (double) nn;
-			}
+			fftImage = new BufferedImage(size / 2, size / 2, BufferedImage.TYPE_INT_RGB);
+			fftImage.setRGB(0, 0, size / 2, size / 2, pixels, 0, size / 2);
 		}
+		else
+			fftImage = null;
 	}
 
-	private void FFT2D(Complex c, int nx, int ny, int dir)
+	private void runOnRows(int pass)
 	{
-		int lognx = logbase2(nx), logny = logbase2(ny);
-		if (lognx == 0 || logny == 0)
+		if (threadCount == 1)
 		{
-			System.out.printf("invalid matrix size: %d x %d, must be powers of 2\n", nx, ny);
-			System.exit(1);
+			processRows(pass, 0, size);
+			return;
 		}
-		int size = nx;
-		if (ny > size)
-			size = ny;
-		double real[] = new double[size];
-		double imag[] = new double[size];
-		if (real == null || imag == null)
+
+		ForkJoinPool pool = new ForkJoinPool(threadCount);
+		try
 		{
-			System.out.printf("memory allocation failure\n");
-			System.exit(1);
+			pool.invoke(new RowTask(pass, 0, size));
 		}
-		for (int j = 0; j < ny; j += 1)
+		finally
 		{
-			for (int i = 0; i < nx; i += 1)
-			{
-				real[i] = c.getReal(i, j);
-				imag[i] = c.getImag(i, j);
-			}
-			FFT_meth(dir, real, imag, lognx);
-			for (int k = 0; k < nx; k += 1)
-			{
-				c.setReal(k, j, real[k]);
-				c.setImag(k, j, imag[k]);
-			}
+			pool.shutdown();
 		}
-		for (int i = 0; i < nx; i += 1)
+	}
+
+	private void processRows(int pass, int start, int end)
+	{
+		for (int i = start; i < end; i += 1)
 		{
-			for (int j = 0; j < ny; j += 1)
-			{
-				real[j] = c.getReal(i, j);
-				imag[j] = c.getImag(i, j);
-			}
-			FFT_meth(dir, real, imag, logny);
-			for (int k = 0; k < ny; k += 1)
+			int base = 2 * i * size;
+			if (pass == RowTask.TRANSFORM)
+				plan.transform(data, base);
+			else
 			{
-				c.setReal(i, k, real[k]);
-				c.setImag(i, k, imag[k]);
+				// Replace the real part by the magnitude
+				for (int k = base; k < base + 2 * size; k += 2)
+					data[k] = Math.sqrt(data[k] * data[k] + data[k + 1] * data[k + 1]);
 			}
 		}
 	}
 
-	private int logbase2(int n)
+	// In place transpose of the square matrix, one block at a time
+	private void transpose()
 	{
-		int p = 0, v = 1;
-		while (true)
+		for (int bi = 0; bi < size; bi += TRANSPOSE_BLOCK)
 		{
-			if (v == n)
-				return p;
-			if (v <= 0)
-				return 0;
-			v <<= 1;
-			p += 1;
+			for (int bj = bi; bj < size; bj += TRANSPOSE_BLOCK)
+			{
+				int iEnd = Math.min(bi + TRANSPOSE_BLOCK, size);
+				int jEnd = Math.min(bj + TRANSPOSE_BLOCK, size);
+				for (int i = bi; i < iEnd; i += 1)
+				{
+					for (int j = (bi == bj ? i + 1 : bj); j < jEnd; j += 1)
+					{
+						int a = 2 * (i * size + j);
+						int b = 2 * (j * size + i);
+						double tr = data[a];
+						double ti = data[a + 1];
+						data[a] = data[b];
+						data[a + 1] = data[b + 1];
+						data[b] = tr;
+						data[b + 1] = ti;
+					}
+				}
+			}
 		}
 	}
 
-	private double mag(Complex c, int i, int j)
+	private double mag(int i, int j)
 	{
-		return Math.sqrt(c.getReal(i, j) * c.getReal(i, j) + c.getImag(i, j) * c.getImag(i, j));
+		return data[2 * (i * size + j)];
 	}
 
-	private double maxof(Complex c, int sz1, int sz2)
+	private double maxof()
 	{
 		double ans = 0.0;
-		for (int i = 3; i < sz1 - 3; i += 1)
+		for (int i = 3; i < size - 3; i += 1)
 		{
-			for (int j = 3; j < sz2 - 3; j += 1)
+			for (int j = 3; j < size - 3; j += 1)
 			{
-				double curr = mag(c, i, j);
+				double curr = mag(i, j);
 				if (curr > ans)
 					ans = curr;
 			}
@@ -253,7 +234,8 @@ public class FFT
 		return ans;
 	}
 
-	private void quarter(Complex c, int start1, int end1, int start2, int end2, double scale, int x, int y)
+	// pixels receives the grey level of the FFT image, row by row (null when no image is drawn)
+	private void quarter(int start1, int end1, int start2, int end2, double scale, int x, int y, int pixels[])
 	{
 		for (int i = start1; i < end1; i += 1)
 		{
@@ -261,7 +243,7 @@ public class FFT
 			for (int j = start2; j < end2; j += 1)
 			{
 				int hj = j >> 1;
-				double m = mag(c, i, j) / scale;
+				double m = mag(i, j) / scale;
 				int n = (int) (Math.sqrt(m) * 255.0);
 				if (n > BRIGHT_THRESHOLD)
 				{
@@ -278,21 +260,60 @@ public class FFT
 					// set THRESHOLD pixels to red
 					// fftImage.setRGB(x + hj, y + hi, 0xFF0000);
 				} 
-				else
-					fftImage.setRGB(x + hj, y + hi, (n << 16) | (n << 8) | (n));
+				else if (pixels != null)
+					pixels[(y + hi) * (size / 2) + x + hj] = (n << 16) | (n << 8) | (n);
 			}
 		}
 	}
 
-	private void do_halfmag(Complex c, int sz1, int sz2, double scale, int x0, int y0)
+	private void do_halfmag(double scale, int x0, int y0, int pixels[])
 	{
 		minCord = new Coordinates(size / 4);
 		maxCord = new Coordinates(0);
-		int half = sz1 / 2;
-		quarter(c, half, sz1, 0, half, scale, y0 + size / 4, x0 - size / 4);
-		quarter(c, 0, half, 0, half, scale, y0 + size / 4, x0 + size / 4);
-		quarter(c, half, sz1, half, sz2, scale, y0 - size / 4, x0 - size / 4);
-		quarter(c, 0, half, half, sz2, scale, y0 - size / 4, x0 + size / 4);
+		int half = size / 2;
+		quarter(half, size, 0, half, scale, y0 + size / 4, x0 - size / 4, pixels);
+		quarter(0, half, 0, half, scale, y0 + size / 4, x0 + size / 4, pixels);
+		quarter(half, size, half, size, scale, y0 - size / 4, x0 - size / 4, pixels);
+		quarter(0, half, half, size, scale, y0 - size / 4, x0 + size / 4, pixels);
+	}
+
+	// Lightness of a pixel in the HLS colour model
+	private static double lightness(int c)
+	{
+		int r = c & 255;
+		int g = (c >> 8) & 255;
+		int b = (c >> 16) & 255;
+		int bst = Math.max(r, Math.max(g, b));
+		int dst = Math.min(r, Math.min(g, b));
+		return (bst / 255.0 + dst / 255.0) / 2.0;
+	}
+
+	private class RowTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		public static final int TRANSFORM = 0;
+		public static final int MAGNITUDE = 1;
+		private int pass;
+		private int start;
+		private int end;
+
+		public RowTask(int pass, int start, int end)
+		{
+			this.pass = pass;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute()
+		{
+			if (end - start <= MIN_ROWS_PER_TASK)
+				processRows(pass, start, end);
+			else
+			{
+				int middle = (start + end) / 2;
+				invokeAll(new RowTask(pass, start, middle), new RowTask(pass, middle, end));
+			}
+		}
 	}
 
 	class Coordinates
@@ -314,75 +335,4 @@ public class FFT
 			this.y = y;
 		}
 	}
-
-	class RGB
-	{
-		public double r, g, b;
-
-		public RGB()
-		{
-			r = 0.0;
-			b = 0.0;
-			b = 0.0;
-		}
-	}
-
-	class HLS
-	{
-		double h, l, s;
-
-		public HLS()
-		{
-			h = 0.0;
-			l = 0.0;
-			s = 0.0;
-		}
-	}
-
-	private RGB DecodeColor(int c)
-	{
-		RGB rgb = new RGB();
-		rgb.r = (c & 255) / 255.0;
-		rgb.g = ((c >> 8) & 255) / 255.0;
-		rgb.b = ((c >> 16) & 255) / 255.0;
-		return rgb;
-	}
-
-	private HLS RGBtoHLS(RGB rgb)
-	{
-		HLS hls = new HLS();
-		final double deg60 = 1.0 / 6.0;
-		double bst = rgb.r;
-		if (rgb.g > bst)
-			bst = rgb.g;
-		if (rgb.b > bst)
-			bst = rgb.b;
-		double dst = rgb.r;
-		if (rgb.g < dst)
-			dst = rgb.g;
-		if (rgb.b < dst)
-			dst = rgb.b;
-		double twol = bst + dst;
-		hls.l = twol / 2.0;
-		double delta = bst - dst;
-		if (twol == 0.0 || twol == 2.0)
-			hls.s = 0.0;
-		else if (twol <= 1.0)
-			hls.s = delta / twol;
-		else
-			hls.s = delta / (2.0 - twol);
-		double h = 0;
-		if (delta == 0.0)
-			h = 0.0;
-		else if (rgb.r >= rgb.g && rgb.r >= rgb.b)
-			h = (rgb.g - rgb.b) / delta;
-		else if (rgb.g >= rgb.r && rgb.g >= rgb.b)
-			h = 2.0 + (rgb.b - rgb.r) / delta;
-		else
-			h = 4.0 + (rgb.r - rgb.g) / delta;
-		if (h < 0.0)
-			h += 6.0;
-		hls.h = h * deg60;
-		return hls;
-	}
 }
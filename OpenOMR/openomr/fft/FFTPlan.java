@@ -0,0 +1,152 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package openomr.fft;
+
+import java.util.HashMap;
+
+/**
+ * The <code> FFTPlan </code> class holds everything needed to compute a radix-2 FFT of a given size
+ * which does not depend on the data: the bit reversal permutation and the table of twiddle factors.
+ * <p>
+ * A plan is built once per size and is never modified afterwards, so the same plan can be used by
+ * several threads at the same time.
+ * <p>
+ * The <code> FFTPlan </code> class is used as follows:
+ * <p>
+ * <code>
+ * FFTPlan plan = FFTPlan.getPlan(512); <br>
+ * plan.transform(data, offset); <br>
+ * </code>
+ * <p>
+ * The data are stored interleaved: <code> data[offset + 2k] </code> is the real part and
+ * <code> data[offset + 2k + 1] </code> the imaginary part of the k-th value.
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class FFTPlan
+{
+	private static final HashMap<Integer, FFTPlan> plans = new HashMap<Integer, FFTPlan>();
+
+	private int n;
+	private int reverse[];		// bit reversed index of each position
+	private double cos[];		// cos(2 pi k / n) for k < n / 2
+	private double sin[];		// -sin(2 pi k / n) for k < n / 2
+
+	private FFTPlan(int n)
+	{
+		this.n = n;
+		int log = Integer.numberOfTrailingZeros(n);
+
+		reverse = new int[n];
+		for (int i = 0; i < n; i += 1)
+			reverse[i] = log == 0 ? 0 : Integer.reverse(i) >>> (32 - log);
+
+		cos = new double[n / 2];
+		sin = new double[n / 2];
+		for (int k = 0; k < n / 2; k += 1)
+		{
+			double angle = 2 * Math.PI * k / n;
+			cos[k] = Math.cos(angle);
+			sin[k] = -Math.sin(angle);
+		}
+	}
+
+	/**
+	 * Returns the plan for FFTs of n values, building it on first use
+	 * @param n The size of the transform, which must be a power of 2
+	 */
+
+	public static synchronized FFTPlan getPlan(int n)
+	{
+		if (n < 2 || Integer.bitCount(n) != 1)
+			throw new IllegalArgumentException("invalid FFT size: " + n + ", must be a power of 2");
+
+		FFTPlan plan = plans.get(n);
+		if (plan == null)
+		{
+			plan = new FFTPlan(n);
+			plans.put(n, plan);
+		}
+		return plan;
+	}
+
+	public int getSize()
+	{
+		return n;
+	}
+
+	/**
+	 * Compute in place the forward FFT of the n values starting at offset. The result is divided by n.
+	 * @param data The interleaved real and imaginary parts
+	 * @param offset Index of the real part of the first value
+	 */
+
+	public void transform(double data[], int offset)
+	{
+		// Bit reversal permutation
+		for (int i = 0; i < n; i += 1)
+		{
+			int j = reverse[i];
+			if (i < j)
+			{
+				int a = offset + 2 * i;
+				int b = offset + 2 * j;
+				double tr = data[a];
+				double ti = data[a + 1];
+				data[a] = data[b];
+				data[a + 1] = data[b + 1];
+				data[b] = tr;
+				data[b + 1] = ti;
+			}
+		}
+
+		// Butterflies
+		for (int span = 1; span < n; span <<= 1)
+		{
+			int step = n / (2 * span);
+			for (int j = 0; j < span; j += 1)
+			{
+				// Same twiddle factor for all the butterflies at this position
+				double wr = cos[j * step];
+				double wi = sin[j * step];
+				for (int start = 0; start < n; start += 2 * span)
+				{
+					int a = offset + 2 * (start + j);
+					int b = a + 2 * span;
+					double tr = wr * data[b] - wi * data[b + 1];
+					double ti = wr * data[b + 1] + wi * data[b];
+					data[b] = data[a] - tr;
+					data[b + 1] = data[a + 1] - ti;
+					data[a] += tr;
+					data[a + 1] += ti;
+				}
+			}
+		}
+
+		// n is a power of 2, so multiplying by 1/n is exact
+		double scale = 1.0 / n;
+		for (int i = offset; i < offset + 2 * n; i += 1)
+			data[i] *= scale;
+	}
+}
@@ -0,0 +1,122 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.gui;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+import openomr.omr_engine.Staves;
+
+/**
+ * The <code> Annotations </code> class records what the OMR engine draws on the recognised image (staves,
+ * segments and note heads) instead of drawing it right away. Nothing is drawn, and no copy of the sheet is
+ * made, until <code> paint </code> is called, which is only needed when the recognised image is displayed.
+ * <p>
+ * An <code> Annotations </code> object is meant to be filled by a single thread; when the staves are processed
+ * in parallel, each stave records its own annotations and they are painted one stave after the other.
+ * <p>
+ * The <code> Annotations </code> class is used as follows:
+ * <p>
+ * <code>
+ * Annotations annotations = new Annotations(); <br>
+ * annotations.drawBox(top, bottom, start, stop, Color.GREEN); <br>
+ * annotations.paint(dupImage); <br>
+ * </code>
+ */
+
+public class Annotations
+{
+	private ArrayList<Annotation> annotations;
+
+	private interface Annotation
+	{
+		public void paint(BufferedImage dupImage);
+	}
+
+	public Annotations()
+	{
+		annotations = new ArrayList<Annotation>();
+	}
+
+	/**
+	 * Record <code> DrawingTools.drawStave </code>
+	 */
+
+	public void drawStave(final int left, final int right, final Staves stave, final Color color)
+	{
+		annotations.add(new Annotation()
+		{
+			public void paint(BufferedImage dupImage)
+			{
+				DrawingTools.drawStave(dupImage, left, right, stave, color);
+			}
+		});
+	}
+
+	/**
+	 * Record <code> DrawingTools.drawBox </code>
+	 */
+
+	public void drawBox(final int top, final int bottom, final int start, final int stop, final Color color)
+	{
+		annotations.add(new Annotation()
+		{
+			public void paint(BufferedImage dupImage)
+			{
+				DrawingTools.drawBox(dupImage, top, bottom, start, stop, color);
+			}
+		});
+	}
+
+	/**
+	 * Record <code> DrawingTools.drawNote </code>
+	 */
+
+	public void drawNote(final int x, final int dx, final int y, final int D2)
+	{
+		annotations.add(new Annotation()
+		{
+			public void paint(BufferedImage dupImage)
+			{
+				DrawingTools.drawNote(dupImage, x, dx, y, D2);
+			}
+		});
+	}
+
+	/**
+	 * Draw everything recorded so far on an image, in the order in which it was recorded
+	 */
+
+	public void paint(BufferedImage dupImage)
+	{
+		for (int i = 0; i < annotations.size(); i += 1)
+			annotations.get(i).paint(dupImage);
+	}
+
+	public int size()
+	{
+		return annotations.size();
+	}
+}
@@ -43,6 +43,8 @@ import javax.swing.*;
 import openomr.ann.ANNBatchModeTester;
 import openomr.ann.ANNInterrogator;
 import openomr.dataanalysis.XYChart;
+import openomr.imageprocessing.BitPlaneImage;
+import openomr.imageprocessing.Binarizer;
 import openomr.imageprocessing.DoBlackandWhite;
 import openomr.omr_engine.NoteHead;
 import openomr.omr_engine.NoteHeadDetection;
@@ -62,6 +64,7 @@ public class GUI extends JFrame
 	private StaveDetection staveDetection = null;
 	private String fileName;
 	private BufferedImage buffImage;
+	private BitPlaneImage bitPlane;
 	private StaveParameters staveParameters;
 	private String fNamePath;
 	private YProjection yProj = null;
@@ -525,7 +528,7 @@ public class GUI extends JFrame
 				if (symbolPos.get(symbol).hasNote)
 					System.out.println("This symbol has a note somewhere");
 				
-				NoteHeadDetection noteHeadDetection = new NoteHeadDetection(buffImage, staveDetection.getStavelineParameters());
+				NoteHeadDetection noteHeadDetection = new NoteHeadDetection(getBitPlane(), staveDetection.getStavelineParameters());
 
 				int start = ((openomr.omr_engine.L0_Segment) symbolPos.get(symbol)).start;
 				int stop = ((openomr.omr_engine.L0_Segment) symbolPos.get(symbol)).stop;
@@ -754,7 +757,7 @@ public class GUI extends JFrame
 				if (!symbolPos.get(symbol).hasNote)
 					System.out.println("DOES NOT HAVE NOTE");
 				
-				//NoteHeadDetection noteHeadDetection = new NoteHeadDetection(buffImage, staveDetection.getStavelineParameters());
+				//NoteHeadDetection noteHeadDetection = new NoteHeadDetection(getBitPlane(), staveDetection.getStavelineParameters());
 
 				int start = ((openomr.omr_engine.L0_Segment) symbolPos.get(symbol)).start;
 				int stop = ((openomr.omr_engine.L0_Segment) symbolPos.get(symbol)).stop;
@@ -762,14 +765,14 @@ public class GUI extends JFrame
 				//int height = stave.getBottom() - stave.getTop() + 160;
 				//LinkedList<Coordinates> posList = noteHeadDetection.findNotes(stave.getStart(), stave.getEnd(), start, stop);
 
-				YProjection yProj = new YProjection(buffImage);
+				YProjection yProj = new YProjection(getBitPlane());
 				yProj.calcYProjection(stave.getStart(), stave.getEnd(), start, stop);
 
 				XYChart yProjChart = new XYChart(stave.getEnd() - stave.getStart(), yProj.getYProjection(), "Y Projection");
 				ImageIcon yPosImage = new ImageIcon(yProjChart.getChart(400, 400));
 				JLabel yPosLabel = new JLabel(yPosImage);
 
-				XProjection xProj = new XProjection(buffImage);
+				XProjection xProj = new XProjection(getBitPlane());
 				xProj.calcXProjection(stave.getStart(), stave.getEnd(), start, stop);
 
 				XYChart xProjChart = new XYChart(xProj.getXProjection(), stop - start,  "X Projection");
@@ -941,7 +944,7 @@ public class GUI extends JFrame
 				
 				//System.out.printf("left %d, right %d, top %d, bottom %d", stave.getLeft(), stave.getRight(), stave.getStart(), stave.getEnd());
 				
-				XProjection xproj = new XProjection(buffImage);
+				XProjection xproj = new XProjection(getBitPlane());
 				xproj.calcXProjection(stave.getStart(), stave.getEnd(), stave.getLeft(), stave.getRight());
 				
 				
@@ -1041,8 +1044,7 @@ public class GUI extends JFrame
 		{
 			JPanel buttonCorner = new JPanel();
 
-			ImageIcon tempImage = new ImageIcon(recognizedImage);
-			ScrollableJLabel picture = new ScrollableJLabel(tempImage, (int) (Toolkit.getDefaultToolkit().getScreenResolution() / 2.54));
+			TiledImageViewer picture = new TiledImageViewer(recognizedImage, (int) (Toolkit.getDefaultToolkit().getScreenResolution() / 2.54));
 			JScrollPane pictureScrollPane = new JScrollPane(picture);
 			pictureScrollPane.setPreferredSize(new Dimension(buffImage.getWidth(), buffImage.getHeight()));
 			pictureScrollPane.setViewportBorder(BorderFactory.createLineBorder(Color.black));
@@ -1085,19 +1087,27 @@ public class GUI extends JFrame
 				BufferedImage tempImage = ImageIO.read(new File(fname));
 				
 				buffImage = tempImage;
+				bitPlane = null;
 
 				int scale = 4;
-				JLabel dispImage = new JLabel(new ImageIcon(buffImage.getScaledInstance(buffImage.getWidth() / scale, buffImage.getHeight() / scale, Image.SCALE_FAST)));
+				TiledImageViewer dispImage = new TiledImageViewer(buffImage, (int) (Toolkit.getDefaultToolkit().getScreenResolution() / 2.54));
+				dispImage.setZoom(1.0 / scale);
 				getContentPane().add(jTabbedPane);
-				jTabbedPane.addTab("Original Score", dispImage);
+				jTabbedPane.addTab("Original Score", new JScrollPane(dispImage));
 
 
-				// Make image black and white
+				// Make image black and white if it is a photo: its paper is not white
 				//DoBlackandWhite doBW = new DoBlackandWhite(buffImage);
 				//doBW.doBW();
+				if (Binarizer.needsBinarization(buffImage))
+				{
+					Binarizer binarizer = new Binarizer(Binarizer.SAUVOLA);
+					binarizer.binarize(buffImage);
+					buffImage = binarizer.getImage();
+					bitPlane = binarizer.getBitPlane();
+				}
 
-				staveParameters = new StaveParameters(buffImage);
-				staveParameters.calcParameters();
+				staveParameters = StaveParameters.forImage(getBitPlane());
 				
 				System.out.printf("n1=%d, n2=%d, d1=%d, d2=%d\n", staveParameters.getN1(), staveParameters.getN2(), staveParameters.getD1(), staveParameters.getD2());
 				
@@ -1166,6 +1176,7 @@ public class GUI extends JFrame
 	public void setImage(BufferedImage buffImage)
 	{
 		this.buffImage = buffImage;
+		bitPlane = null;
 	}
 
 	public BufferedImage getImage()
@@ -1173,6 +1184,18 @@ public class GUI extends JFrame
 		return buffImage;
 	}
 
+	/**
+	 * Returns the packed version of the current image, which is built the first time it is requested
+	 * after the image has been opened or replaced.
+	 */
+	
+	public BitPlaneImage getBitPlane()
+	{
+		if (bitPlane == null)
+			bitPlane = BitPlaneImage.create(buffImage);
+		return bitPlane;
+	}
+
 	public void setStaveDetection(StaveDetection staveDetection)
 	{
 		this.staveDetection = staveDetection;
@@ -36,6 +36,7 @@ import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.border.Border;
 
+import openomr.imageprocessing.BitPlaneImage;
 import openomr.omr_engine.DetectionProcessor;
 import openomr.omr_engine.StaveDetection;
 import openomr.omr_engine.StaveParameters;
@@ -139,7 +140,9 @@ class OMREngineJPanel extends JPanel
 		{
 			buffImage = gui.getImage();
 
-			YProjection yproj = new YProjection(buffImage);
+			BitPlaneImage bitPlane = gui.getBitPlane();
+			
+			YProjection yproj = new YProjection(bitPlane);
 			yproj.calcYProjection(0, buffImage.getHeight(), Integer.valueOf(YprojWstart.getText()), Integer.valueOf(YprojWend.getText()));
 			//yproj.printYProjection();
 			gui.setYproj(yproj);
@@ -162,7 +165,7 @@ class OMREngineJPanel extends JPanel
 			
 			gui.setStaveDetection(staveDetection);
 			
-			DetectionProcessor detection = new DetectionProcessor(buffImage, staveDetection, GUI.getNeuralNetwork());
+			DetectionProcessor detection = new DetectionProcessor(buffImage, bitPlane, staveDetection, GUI.getNeuralNetwork());
 			detection.processAll();
 
 			gui.setBoundaryImage(detection.getDupImage());
@@ -28,14 +28,13 @@ import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 
 import javax.swing.BorderFactory;
-import javax.swing.ImageIcon;
 import javax.swing.JInternalFrame;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 
 public class ScrollableJFrame extends JInternalFrame
 {
-	private ScrollableJLabel picture;
+	private TiledImageViewer picture;
 
 	public ScrollableJFrame(BufferedImage buffImage, String Fname)
 	{
@@ -49,8 +48,7 @@ public class ScrollableJFrame extends JInternalFrame
 
 		JPanel buttonCorner = new JPanel();
 
-		ImageIcon tempImage = new ImageIcon(buffImage);
-		picture = new ScrollableJLabel(tempImage, (int) (Toolkit.getDefaultToolkit().getScreenResolution() / 2.54));
+		picture = new TiledImageViewer(buffImage, (int) (Toolkit.getDefaultToolkit().getScreenResolution() / 2.54));
 		JScrollPane pictureScrollPane = new JScrollPane(picture);
 		pictureScrollPane.setPreferredSize(new Dimension(buffImage.getWidth(), buffImage.getHeight()));
 		pictureScrollPane.setViewportBorder(BorderFactory.createLineBorder(Color.black));
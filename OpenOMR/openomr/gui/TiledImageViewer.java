@@ -0,0 +1,471 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package openomr.gui;
+
+import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseMotionAdapter;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+/**
+ * The <code> TiledImageViewer </code> class displays a sheet at any zoom without ever scaling the whole sheet.
+ * <p>
+ * The sheet is seen as a pyramid of levels, level k being the sheet reduced 2^k times, and every level is cut into
+ * tiles of <code> TILE_SIZE </code> pixels. Only the tiles of the visible part of the sheet are painted, from the
+ * level just finer than the zoom, so a tile is never drawn at less than half its size. A tile of level k is made by
+ * averaging the four tiles of level k - 1 it covers, down to level 0 which is copied from the sheet.
+ * <p>
+ * Tiles are made on background threads. Until a tile is ready, the part of a coarser tile which covers it is drawn
+ * instead, and the component is repainted once the tile is in. Tiles which have scrolled out of view before their
+ * turn are not made at all. The tiles made are kept in a least recently used cache whose size is bounded by a memory
+ * budget.
+ * <p>
+ * Ctrl + mouse wheel zooms around the mouse pointer; the wheel alone scrolls the enclosing <code> JScrollPane </code>.
+ * The sheet must not be modified while it is displayed.
+ * <p>
+ * The <code> TiledImageViewer </code> class is used as follows:
+ * <p>
+ * <code>
+ * TiledImageViewer viewer = new TiledImageViewer(buffImage, maxUnitIncrement); <br>
+ * viewer.setZoom(0.25); <br>
+ * JScrollPane scrollPane = new JScrollPane(viewer); <br>
+ * </code>
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class TiledImageViewer extends JComponent implements Scrollable
+{
+	private static final long serialVersionUID = 1L;
+	public static final int TILE_SIZE = 256;
+	public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+	public static final double MIN_ZOOM = 1.0 / 64;
+	public static final double MAX_ZOOM = 16;
+	private static final double WHEEL_ZOOM_STEP = 1.25;
+
+	// Shared by all viewers; tiles are made by low priority daemon threads
+	private static final ExecutorService tileExecutor = createTileExecutor();
+
+	private BufferedImage buffImage;
+	private int levels;				// level levels - 1 fits in a single tile
+	private double zoom = 1;
+	private int maxUnitIncrement;
+
+	// Tiles made so far, least recently used first, and tiles being made; both guarded by tiles
+	private LinkedHashMap<Long, BufferedImage> tiles;
+	private Set<Long> pending;
+	private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	private long memoryUsed;
+
+	// What was last painted, so that tiles no longer visible are not made
+	private volatile int wantedLevel;
+	private volatile Rectangle wantedArea = new Rectangle();
+
+	public TiledImageViewer(BufferedImage buffImage, int maxUnitIncrement)
+	{
+		this.buffImage = buffImage;
+		this.maxUnitIncrement = Math.max(maxUnitIncrement, 1);
+		levels = 1;
+		while (Math.max(getLevelWidth(levels - 1), getLevelHeight(levels - 1)) > TILE_SIZE)
+			levels += 1;
+		tiles = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true);
+		pending = new HashSet<Long>();
+
+		setOpaque(true);
+		setBackground(Color.WHITE);
+
+		// Let the user scroll by dragging to outside the window.
+		setAutoscrolls(true);
+		addMouseMotionListener(new MouseMotionAdapter()
+		{
+			public void mouseDragged(MouseEvent e)
+			{
+				scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+			}
+		});
+		addMouseWheelListener(new WheelListener());
+	}
+
+	/**
+	 * Set the zoom, 1 showing one pixel of the sheet per pixel on screen
+	 */
+
+	public void setZoom(double zoom)
+	{
+		this.zoom = Math.max(MIN_ZOOM, Math.min(zoom, MAX_ZOOM));
+		revalidate();
+		repaint();
+	}
+
+	public double getZoom()
+	{
+		return zoom;
+	}
+
+	/**
+	 * Set the most memory the tiles kept may use. Tiles are dropped, least recently drawn first, until they fit.
+	 * @param bytes The budget in bytes
+	 */
+
+	public void setMemoryBudget(long bytes)
+	{
+		synchronized (tiles)
+		{
+			memoryBudget = bytes;
+			evict();
+		}
+	}
+
+	/**
+	 * Returns the memory used by the tiles kept, in bytes
+	 */
+
+	public long getMemoryUsed()
+	{
+		synchronized (tiles)
+		{
+			return memoryUsed;
+		}
+	}
+
+	public Dimension getPreferredSize()
+	{
+		return new Dimension((int) Math.ceil(buffImage.getWidth() * zoom), (int) Math.ceil(buffImage.getHeight() * zoom));
+	}
+
+	// Drop the tiles once the viewer is no longer displayed
+	public void removeNotify()
+	{
+		super.removeNotify();
+		synchronized (tiles)
+		{
+			tiles.clear();
+			memoryUsed = 0;
+		}
+	}
+
+	protected void paintComponent(Graphics g)
+	{
+		Rectangle clip = g.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		// The finest level which is not more than twice as large as the zoom
+		int level = 0;
+		while (level < levels - 1 && zoom * (1 << (level + 1)) <= 1)
+			level += 1;
+		double scale = zoom * (1 << level);	// size on screen of one pixel of the level
+
+		int tx0 = Math.max((int) (clip.x / (TILE_SIZE * scale)), 0);
+		int ty0 = Math.max((int) (clip.y / (TILE_SIZE * scale)), 0);
+		int tx1 = Math.min((int) ((clip.x + clip.width) / (TILE_SIZE * scale)), getTileColumns(level) - 1);
+		int ty1 = Math.min((int) ((clip.y + clip.height) / (TILE_SIZE * scale)), getTileRows(level) - 1);
+
+		wantedLevel = level;
+		wantedArea = new Rectangle(tx0, ty0, tx1 - tx0 + 1, ty1 - ty0 + 1);
+
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		for (int ty = ty0; ty <= ty1; ty += 1)
+		{
+			for (int tx = tx0; tx <= tx1; tx += 1)
+			{
+				int x = (int) Math.round(tx * TILE_SIZE * scale);
+				int y = (int) Math.round(ty * TILE_SIZE * scale);
+				int x2 = (int) Math.round(Math.min((tx + 1) * TILE_SIZE, getLevelWidth(level)) * scale);
+				int y2 = (int) Math.round(Math.min((ty + 1) * TILE_SIZE, getLevelHeight(level)) * scale);
+
+				BufferedImage tile = getCachedTile(level, tx, ty);
+				if (tile != null)
+				{
+					g2.drawImage(tile, x, y, x2 - x, y2 - y, null);
+					continue;
+				}
+				requestTile(level, tx, ty);
+
+				// Meanwhile, draw the part of the finest coarser tile available which covers this one
+				for (int parentLevel = level + 1; parentLevel < levels; parentLevel += 1)
+				{
+					int shift = parentLevel - level;
+					BufferedImage parent = getCachedTile(parentLevel, tx >> shift, ty >> shift);
+					if (parent != null)
+					{
+						int size = TILE_SIZE >> shift;
+						int sx = (tx & ((1 << shift) - 1)) * size;
+						int sy = (ty & ((1 << shift) - 1)) * size;
+						int sx2 = Math.min(sx + size, parent.getWidth());
+						int sy2 = Math.min(sy + size, parent.getHeight());
+						g2.drawImage(parent, x, y, x2, y2, sx, sy, sx2, sy2, null);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	public Dimension getPreferredScrollableViewportSize()
+	{
+		return getPreferredSize();
+	}
+
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction)
+	{
+		// Return the number of pixels between the current position
+		// and the nearest tick mark in the indicated direction.
+		int currentPosition = (orientation == SwingConstants.HORIZONTAL) ? visibleRect.x : visibleRect.y;
+		if (direction < 0)
+		{
+			int newPosition = currentPosition - (currentPosition / maxUnitIncrement) * maxUnitIncrement;
+			return (newPosition == 0) ? maxUnitIncrement : newPosition;
+		}
+		return ((currentPosition / maxUnitIncrement) + 1) * maxUnitIncrement - currentPosition;
+	}
+
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction)
+	{
+		if (orientation == SwingConstants.HORIZONTAL)
+			return visibleRect.width - maxUnitIncrement;
+		return visibleRect.height - maxUnitIncrement;
+	}
+
+	public boolean getScrollableTracksViewportWidth()
+	{
+		return false;
+	}
+
+	public boolean getScrollableTracksViewportHeight()
+	{
+		return false;
+	}
+
+	/*	PRIVATE METHODS */
+
+	private int getLevelWidth(int level)
+	{
+		return (buffImage.getWidth() + (1 << level) - 1) >> level;
+	}
+
+	private int getLevelHeight(int level)
+	{
+		return (buffImage.getHeight() + (1 << level) - 1) >> level;
+	}
+
+	private int getTileColumns(int level)
+	{
+		return (getLevelWidth(level) + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	private int getTileRows(int level)
+	{
+		return (getLevelHeight(level) + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	private static long getKey(int level, int tx, int ty)
+	{
+		return ((long) level << 48) | ((long) ty << 24) | tx;
+	}
+
+	private BufferedImage getCachedTile(int level, int tx, int ty)
+	{
+		synchronized (tiles)
+		{
+			return tiles.get(getKey(level, tx, ty));
+		}
+	}
+
+	// Have a tile made in the background, unless it is already on its way
+	private void requestTile(final int level, final int tx, final int ty)
+	{
+		final Long key = getKey(level, tx, ty);
+		synchronized (tiles)
+		{
+			if (!pending.add(key))
+				return;
+		}
+		tileExecutor.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					// Skip tiles which scrolled out of view while waiting
+					if (level != wantedLevel || !wantedArea.contains(tx, ty))
+						return;
+					BufferedImage tile = makeTile(level, tx, ty);
+					synchronized (tiles)
+					{
+						if (tiles.put(key, tile) == null)
+							memoryUsed += getSize(tile);
+						evict();
+					}
+					repaint();
+				}
+				finally
+				{
+					synchronized (tiles)
+					{
+						pending.remove(key);
+					}
+				}
+			}
+		});
+	}
+
+	// Make a tile from the sheet (level 0) or from the four tiles of the level below; the tiles of the level
+	// below which are not cached are made on the way but not kept, so that they do not push visible tiles out
+	private BufferedImage makeTile(int level, int tx, int ty)
+	{
+		int width = Math.min(TILE_SIZE, getLevelWidth(level) - tx * TILE_SIZE);
+		int height = Math.min(TILE_SIZE, getLevelHeight(level) - ty * TILE_SIZE);
+		BufferedImage tile = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = tile.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		if (level == 0)
+		{
+			int x = tx * TILE_SIZE;
+			int y = ty * TILE_SIZE;
+			g.drawImage(buffImage, 0, 0, width, height, x, y, x + width, y + height, null);
+		}
+		else
+		{
+			// Halving with bilinear interpolation averages each square of four pixels
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			for (int dy = 0; dy < 2; dy += 1)
+			{
+				for (int dx = 0; dx < 2; dx += 1)
+				{
+					int childX = 2 * tx + dx;
+					int childY = 2 * ty + dy;
+					if (childX >= getTileColumns(level - 1) || childY >= getTileRows(level - 1))
+						continue;
+					BufferedImage child = getCachedTile(level - 1, childX, childY);
+					if (child == null)
+						child = makeTile(level - 1, childX, childY);
+					g.drawImage(child, dx * TILE_SIZE / 2, dy * TILE_SIZE / 2, (child.getWidth() + 1) / 2, (child.getHeight() + 1) / 2, null);
+				}
+			}
+		}
+		g.dispose();
+		return tile;
+	}
+
+	// Drop the least recently used tiles until the budget is met. The tiles on screen are kept whatever the
+	// budget, otherwise they would be made again at every repaint. We assume that we are holding the tiles monitor.
+	private void evict()
+	{
+		int level = wantedLevel;
+		Rectangle area = wantedArea;
+		Iterator<Map.Entry<Long, BufferedImage>> it = tiles.entrySet().iterator();
+		while (memoryUsed > memoryBudget && it.hasNext())
+		{
+			Map.Entry<Long, BufferedImage> entry = it.next();
+			long key = entry.getKey();
+			if ((int) (key >>> 48) == level && area.contains((int) (key & 0xFFFFFF), (int) ((key >>> 24) & 0xFFFFFF)))
+				continue;
+			memoryUsed -= getSize(entry.getValue());
+			it.remove();
+		}
+	}
+
+	private static long getSize(BufferedImage tile)
+	{
+		return 4L * tile.getWidth() * tile.getHeight();
+	}
+
+	private static ExecutorService createTileExecutor()
+	{
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "TiledImageViewer");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	// Ctrl + wheel zooms around the pointer, anything else goes to the scroll pane
+	private class WheelListener implements MouseWheelListener
+	{
+		public void mouseWheelMoved(MouseWheelEvent e)
+		{
+			if (!e.isControlDown())
+			{
+				Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, TiledImageViewer.this);
+				if (scrollPane != null)
+					scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(TiledImageViewer.this, e, scrollPane));
+				return;
+			}
+
+			double oldZoom = zoom;
+			setZoom(zoom * Math.pow(WHEEL_ZOOM_STEP, -e.getWheelRotation()));
+			Container parent = getParent();
+			if (parent instanceof JViewport)
+			{
+				// Keep the point of the sheet under the pointer where it is
+				JViewport viewport = (JViewport) parent;
+				Point view = viewport.getViewPosition();
+				double ratio = zoom / oldZoom;
+				setSize(getPreferredSize());
+				int x = (int) Math.round(e.getX() * ratio - (e.getX() - view.x));
+				int y = (int) Math.round(e.getY() * ratio - (e.getY() - view.y));
+				Dimension extent = viewport.getExtentSize();
+				x = Math.max(0, Math.min(x, getWidth() - extent.width));
+				y = Math.max(0, Math.min(y, getHeight() - extent.height));
+				viewport.setViewPosition(new Point(x, y));
+			}
+		}
+	}
+}
@@ -140,12 +140,12 @@ public class TrainANNJPanel extends JPanel
 	
 	public void setTrainingRMSE(double value)
 	{
-		trainingRMSE.setText(String.valueOf(value).substring(0, 9));
+		trainingRMSE.setText(String.format("%.7f", value));
 	}
 	
 	public void setValidationRMSE(double value)
 	{
-		validationRMSE.setText(String.valueOf(value).substring(0, 9));
+		validationRMSE.setText(String.format("%.7f", value));
 	}
 
 	public void setEpoch(int value)
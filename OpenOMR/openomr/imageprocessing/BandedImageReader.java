@@ -0,0 +1,113 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.imageprocessing;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * The <code> BandedImageReader </code> class reads an image file one horizontal band at a time, so that a
+ * sheet larger than the available memory can be processed without ever being loaded as a whole.
+ * <p>
+ * Each band is read with an ImageIO source region. Formats which store the image in strips or tiles (such
+ * as TIFF) only decode the requested rows; sequential formats (such as PNG or JPEG) have to decode the image
+ * from the top for every band, so taller bands are faster but use more memory.
+ * <p>
+ * The <code> BandedImageReader </code> class is used as follows:
+ * <p>
+ * <code>
+ * BandedImageReader reader = new BandedImageReader(file); <br>
+ * BufferedImage band = reader.readBand(startH, endH); <br>
+ * reader.close(); <br>
+ * </code>
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class BandedImageReader
+{
+	private ImageInputStream input;
+	private ImageReader reader;
+	private int width;
+	private int height;
+
+	public BandedImageReader(File file) throws IOException
+	{
+		input = ImageIO.createImageInputStream(file);
+		if (input == null)
+			throw new IOException("Could not open file: " + file);
+
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+		if (!readers.hasNext())
+		{
+			input.close();
+			throw new IOException("Unsupported image format: " + file);
+		}
+		reader = readers.next();
+		reader.setInput(input, false, true);
+		width = reader.getWidth(0);
+		height = reader.getHeight(0);
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Read the rows startH (inclusive) to endH (exclusive) of the image, over its whole width
+	 * @return an image of endH - startH rows whose row 0 is row startH of the file
+	 */
+
+	public BufferedImage readBand(int startH, int endH) throws IOException
+	{
+		startH = Math.max(startH, 0);
+		endH = Math.min(endH, height);
+		if (startH >= endH)
+			throw new IllegalArgumentException("Empty band: " + startH + " to " + endH);
+
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setSourceRegion(new Rectangle(0, startH, width, endH - startH));
+		return reader.read(0, param);
+	}
+
+	public void close() throws IOException
+	{
+		reader.dispose();
+		input.close();
+	}
+}
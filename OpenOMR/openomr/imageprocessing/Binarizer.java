@@ -0,0 +1,480 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.imageprocessing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The <code> Binarizer </code> class turns a greyscale or colour sheet (e.g. a photo of a score) into a
+ * black and white image. Forcing every pixel which is not pure white to black, as the rest of the OMR engine
+ * does, turns such a sheet into black blobs.
+ * <p>
+ * Three methods are available:
+ * <ul>
+ * <li> <code> OTSU </code>: one threshold for the whole sheet, which best separates the histogram of its grey levels in two classes
+ * <li> <code> SAUVOLA </code>: a threshold per pixel, <code> m * (1 + k * (s / R - 1)) </code>, where m and s are the mean and
+ * standard deviation of the grey levels of a window around the pixel (k = 0.34 and R = 128 by default)
+ * <li> <code> NIBLACK </code>: a threshold per pixel, <code> m + k * s </code> (k = -0.2 by default)
+ * </ul>
+ * The local methods cope with uneven lighting, such as the shadow of the phone across a photo. A window with almost
+ * no contrast (a standard deviation below <code> minContrast </code>) is taken as blank paper, whatever its
+ * brightness: the ink of a score is made of thin strokes, so a window two or three staveline spacings wide always
+ * holds some paper around them. This keeps Niblack from turning the noise of the paper into ink.
+ * <p>
+ * The mean and standard deviation of any window are obtained in constant time from integral images (summed-area
+ * tables) of the grey levels and of their squares. The sheet is processed in bands of rows on all processors; each
+ * band builds the integral images of its rows plus half a window above and below, so no table of the size of the
+ * sheet is ever needed.
+ * <p>
+ * The <code> Binarizer </code> class is used as follows:
+ * <p>
+ * <code>
+ * Binarizer binarizer = new Binarizer(Binarizer.SAUVOLA); <br>
+ * binarizer.binarize(buffImage); <br>
+ * BitPlaneImage bitPlane = binarizer.getBitPlane(); //given to the stave detection <br>
+ * BufferedImage bwImage = binarizer.getImage(); //given to the DetectionProcessor <br>
+ * </code>
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class Binarizer
+{
+	public static final int OTSU = 0;
+	public static final int SAUVOLA = 1;
+	public static final int NIBLACK = 2;
+	public static final String METHOD_NAMES[] = { "otsu", "sauvola", "niblack" };
+
+	private static final int BAND_HEIGHT = 64;		// a band must not share a word of a column of the BitPlaneImage with another
+	private static final int MAX_WINDOW_SIZE = 181;	// 181 * 181 * 255 * 255 < 2^31, so window sums never overflow
+
+	private int method;
+	private int windowSize;
+	private double k;
+	private double r;
+	private double minContrast;
+	private int threadCount;
+
+	private int width;
+	private int height;
+	private byte grey[];		// grey levels, row by row
+	private int threshold;		// Otsu threshold: levels up to it are black
+	private BitPlaneImage bitPlane;
+	private BufferedImage image;
+	private byte imageData[];	// packed bits of image, 1 = white
+	private int imageScanline;
+
+	public Binarizer(int method)
+	{
+		if (method < OTSU || method > NIBLACK)
+			throw new IllegalArgumentException("Unknown binarization method: " + method);
+		this.method = method;
+		windowSize = 31;
+		k = method == NIBLACK ? -0.2 : 0.34;
+		r = 128;
+		minContrast = 16;
+		threadCount = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Returns the method named <code> name </code> (see <code> METHOD_NAMES </code>), or -1 if there is none
+	 */
+
+	public static int getMethod(String name)
+	{
+		for (int i = 0; i < METHOD_NAMES.length; i += 1)
+			if (METHOD_NAMES[i].equalsIgnoreCase(name))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Returns true if more than half of the pixels of the image are not pure white. The rest of the OMR engine
+	 * takes every such pixel as black, which is right for scans (even anti-aliased ones, where ink rarely covers
+	 * a quarter of the sheet) but turns a photo, whose paper is never pure white, into a black sheet.
+	 */
+
+	public static boolean needsBinarization(BufferedImage buffImage)
+	{
+		int width = buffImage.getWidth();
+		int height = buffImage.getHeight();
+		long limit = (long) width * height / 2;
+		long count = 0;
+		int scanline[] = new int[width];
+		for (int y = 0; y < height; y += 1)
+		{
+			buffImage.getRGB(0, y, width, 1, scanline, 0, width);
+			for (int x = 0; x < width; x += 1)
+				if ((scanline[x] & 0xFFFFFF) != 0xFFFFFF)
+					count += 1;
+			if (count > limit)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Set the size of the window used by the local methods. It should be about two or three times the distance
+	 * between two stavelines.
+	 * @param windowSize Odd number of pixels, at most 181
+	 */
+
+	public void setWindowSize(int windowSize)
+	{
+		if (windowSize < 3 || windowSize > MAX_WINDOW_SIZE || windowSize % 2 == 0)
+			throw new IllegalArgumentException("Window size must be odd and between 3 and " + MAX_WINDOW_SIZE);
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Set the weight k of the standard deviation in the threshold of the local methods
+	 */
+
+	public void setK(double k)
+	{
+		this.k = k;
+	}
+
+	/**
+	 * Set the dynamic range R of the standard deviation used by the Sauvola method
+	 */
+
+	public void setR(double r)
+	{
+		this.r = r;
+	}
+
+	/**
+	 * Set the standard deviation under which a window is considered to have no contrast
+	 */
+
+	public void setMinContrast(double minContrast)
+	{
+		this.minContrast = minContrast;
+	}
+
+	/**
+	 * Set the number of threads used. A value of 1 does all the work in the calling thread.
+	 */
+
+	public void setThreadCount(int threadCount)
+	{
+		if (threadCount < 1)
+			throw new IllegalArgumentException("Thread count must be at least 1");
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Binarize an image. The image itself is not modified.
+	 */
+
+	public void binarize(BufferedImage buffImage)
+	{
+		width = buffImage.getWidth();
+		height = buffImage.getHeight();
+		grey = new byte[width * height];
+		int histogram[] = new int[256];
+		runOnBands(new GreyPass(buffImage, histogram));
+		threshold = otsuThreshold(histogram, width * height);
+
+		bitPlane = BitPlaneImage.create(width, height);
+		image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+		imageData = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		imageScanline = (width + 7) / 8;
+		runOnBands(new ThresholdPass());
+		grey = null;
+		imageData = null;
+	}
+
+	/**
+	 * Returns the packed black and white sheet, to be given to the stave detection
+	 */
+
+	public BitPlaneImage getBitPlane()
+	{
+		return bitPlane;
+	}
+
+	/**
+	 * Returns the black and white sheet, with the same pixels as <code> getBitPlane() </code>
+	 */
+
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+
+	/**
+	 * Returns the global threshold found by the Otsu method: grey levels up to it are black
+	 */
+
+	public int getThreshold()
+	{
+		return threshold;
+	}
+
+	/**
+	 * Returns the threshold which maximizes the variance between the two classes of the histogram
+	 */
+
+	public static int otsuThreshold(int histogram[], long total)
+	{
+		double sum = 0;
+		for (int i = 0; i < 256; i += 1)
+			sum += i * (double) histogram[i];
+
+		double sumB = 0;
+		long wB = 0;
+		double max = -1;
+		int threshold = 0;
+		for (int t = 0; t < 256; t += 1)
+		{
+			wB += histogram[t];
+			if (wB == 0)
+				continue;
+			long wF = total - wB;
+			if (wF == 0)
+				break;
+			sumB += t * (double) histogram[t];
+			double mB = sumB / wB;
+			double mF = (sum - sumB) / wF;
+			double between = (double) wB * (double) wF * (mB - mF) * (mB - mF);
+			if (between > max)
+			{
+				max = between;
+				threshold = t;
+			}
+		}
+		return threshold;
+	}
+
+	// One step of the binarization, run on the bands of rows
+	private interface Pass
+	{
+		public void processBand(int startY, int endY);
+
+		public void merge(Pass other);
+
+		public Pass fork();
+	}
+
+	private void runOnBands(Pass pass)
+	{
+		int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+		if (threadCount == 1 || bands <= 1)
+		{
+			pass.processBand(0, height);
+			return;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threadCount);
+		try
+		{
+			pool.invoke(new BandTask(pass, 0, bands));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	// Split the bands in two until a single band is left; the results of the two halves are merged
+	private class BandTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private Pass pass;
+		private int start;
+		private int end;
+
+		public BandTask(Pass pass, int start, int end)
+		{
+			this.pass = pass;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute()
+		{
+			if (end - start == 1)
+				pass.processBand(start * BAND_HEIGHT, Math.min((start + 1) * BAND_HEIGHT, height));
+			else
+			{
+				int middle = (start + end) / 2;
+				Pass other = pass.fork();
+				invokeAll(new BandTask(pass, start, middle), new BandTask(other, middle, end));
+				pass.merge(other);
+			}
+		}
+	}
+
+	// Grey level of every pixel (ITU-R 601 luma) along with their histogram
+	private class GreyPass implements Pass
+	{
+		private BufferedImage buffImage;
+		private int histogram[];
+
+		public GreyPass(BufferedImage buffImage, int histogram[])
+		{
+			this.buffImage = buffImage;
+			this.histogram = histogram;
+		}
+
+		public void processBand(int startY, int endY)
+		{
+			int scanline[] = new int[width];
+			for (int y = startY; y < endY; y += 1)
+			{
+				buffImage.getRGB(0, y, width, 1, scanline, 0, width);
+				int base = y * width;
+				for (int x = 0; x < width; x += 1)
+				{
+					int rgb = scanline[x];
+					int level = (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+					grey[base + x] = (byte) level;
+					histogram[level] += 1;
+				}
+			}
+		}
+
+		public void merge(Pass other)
+		{
+			int otherHistogram[] = ((GreyPass) other).histogram;
+			for (int i = 0; i < 256; i += 1)
+				histogram[i] += otherHistogram[i];
+		}
+
+		public Pass fork()
+		{
+			return new GreyPass(buffImage, new int[256]);
+		}
+	}
+
+	// Threshold every pixel of a band and write it to the BitPlaneImage and to the image
+	private class ThresholdPass implements Pass
+	{
+		public void processBand(int startY, int endY)
+		{
+			int rows = endY - startY;
+			byte flags[] = new byte[rows * width];
+			if (method == OTSU)
+			{
+				for (int i = 0, p = startY * width; i < flags.length; i += 1, p += 1)
+					if ((grey[p] & 0xFF) <= threshold)
+						flags[i] = 1;
+			}
+			else
+				thresholdLocally(startY, endY, flags);
+
+			bitPlane.packRows(flags, 0, width, startY, rows);
+
+			// TYPE_BYTE_BINARY: 8 pixels per byte, first pixel in the high bit, 1 = white
+			for (int j = 0; j < rows; j += 1)
+			{
+				int base = (startY + j) * imageScanline;
+				for (int x = 0; x < width; x += 8)
+				{
+					int bits = 0;
+					int end = Math.min(x + 8, width);
+					for (int i = x; i < end; i += 1)
+						if (flags[j * width + i] == 0)
+							bits |= 0x80 >> (i - x);
+					imageData[base + (x >> 3)] = (byte) bits;
+				}
+			}
+		}
+
+		// Sauvola or Niblack threshold from the integral images of the band and half a window around it
+		private void thresholdLocally(int startY, int endY, byte flags[])
+		{
+			int half = windowSize / 2;
+			int top = Math.max(startY - half, 0);
+			int bottom = Math.min(endY + half, height);
+			int stride = width + 1;
+
+			// sums[(y - top) * stride + x] = sum of the rows [top, y) and columns [0, x); int overflow
+			// cancels out in the difference of four entries since a window sum always fits in an int
+			int sums[] = new int[(bottom - top + 1) * stride];
+			int squares[] = new int[(bottom - top + 1) * stride];
+			for (int y = top; y < bottom; y += 1)
+			{
+				int prev = (y - top) * stride;
+				int curr = prev + stride;
+				int rowSum = 0;
+				int rowSquares = 0;
+				int base = y * width;
+				for (int x = 0; x < width; x += 1)
+				{
+					int level = grey[base + x] & 0xFF;
+					rowSum += level;
+					rowSquares += level * level;
+					sums[curr + x + 1] = sums[prev + x + 1] + rowSum;
+					squares[curr + x + 1] = squares[prev + x + 1] + rowSquares;
+				}
+			}
+
+			for (int y = startY; y < endY; y += 1)
+			{
+				int y0 = Math.max(y - half, 0) - top;
+				int y1 = Math.min(y + half + 1, height) - top;
+				int a = y0 * stride;
+				int b = y1 * stride;
+				int base = y * width;
+				int flag = (y - startY) * width;
+				for (int x = 0; x < width; x += 1)
+				{
+					int x0 = Math.max(x - half, 0);
+					int x1 = Math.min(x + half + 1, width);
+					double n = (double) (x1 - x0) * (y1 - y0);
+					int sum = sums[b + x1] - sums[b + x0] - sums[a + x1] + sums[a + x0];
+					int sumSquares = squares[b + x1] - squares[b + x0] - squares[a + x1] + squares[a + x0];
+					double mean = sum / n;
+					double deviation = Math.sqrt(Math.max(sumSquares / n - mean * mean, 0));
+
+					int level = grey[base + x] & 0xFF;
+					boolean black;
+					if (deviation < minContrast)
+						black = false;
+					else if (method == SAUVOLA)
+						black = level <= mean * (1 + k * (deviation / r - 1));
+					else
+						black = level <= mean + k * deviation;
+					if (black)
+						flags[flag + x] = 1;
+				}
+			}
+		}
+
+		public void merge(Pass other)
+		{
+		}
+
+		public Pass fork()
+		{
+			return this;
+		}
+	}
+}
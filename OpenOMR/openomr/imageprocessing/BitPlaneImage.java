@@ -0,0 +1,375 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.imageprocessing;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * The <code> BitPlaneImage </code> class is a binarized copy of a sheet in which every pixel is
+ * stored as a single bit (1 = black, 0 = white). A pixel is considered black when it is not pure
+ * white, which is the test used throughout the OMR engine.
+ * <p>
+ * The bits are packed in <code> long[] </code> rows, and a transposed copy is kept packed by
+ * columns, so that the number of black pixels in any part of a row or of a column is obtained with
+ * word-level bit counts instead of one <code> getRGB </code> call per pixel.
+ * <p>
+ * The <code> BitPlaneImage </code> class is used as follows:
+ * <p>
+ * <code>
+ * BitPlaneImage bitPlane = BitPlaneImage.create(buffImage); <br>
+ * int count = bitPlane.countRow(y, startW, endW); <br>
+ * BitPlaneImage view = bitPlane.getView(x, y, width, height); <br>
+ * </code>
+ * <p>
+ * A view shares the bits of the image it was taken from; all its coordinates are relative to its
+ * own top left corner and pixels outside of it are seen as white.
+ *
+ * @author Arnaud Desaedeleer
+ * @version 1.0
+ */
+
+public class BitPlaneImage
+{
+	private static final int WHITE = Color.WHITE.getRGB();
+
+	private long rows[];		// bits packed row by row
+	private long columns[];		// bits packed column by column
+	private int rowWords;		// # of words used by one row
+	private int columnWords;	// # of words used by one column
+	private int xOffset;		// position of this view in the packed planes
+	private int yOffset;
+	private int width;
+	private int height;
+
+	private BitPlaneImage(long rows[], long columns[], int rowWords, int columnWords, int xOffset, int yOffset, int width, int height)
+	{
+		this.rows = rows;
+		this.columns = columns;
+		this.rowWords = rowWords;
+		this.columnWords = columnWords;
+		this.xOffset = xOffset;
+		this.yOffset = yOffset;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Build the packed representation of a <code> BufferedImage </code>. The image is read one
+	 * scanline at a time.
+	 * @param buffImage The image to binarize
+	 * @return the packed image
+	 */
+
+	public static BitPlaneImage create(BufferedImage buffImage)
+	{
+		BitPlaneImage bitPlane = create(buffImage.getWidth(), buffImage.getHeight());
+		bitPlane.packRows(buffImage, 0);
+		return bitPlane;
+	}
+
+	/**
+	 * Create an all white image which is then filled one band at a time with <code> packRows </code>,
+	 * so that a sheet too large to be loaded as a single <code> BufferedImage </code> can still be packed.
+	 * @param width Width of the sheet
+	 * @param height Height of the sheet
+	 * @return the packed image
+	 */
+
+	public static BitPlaneImage create(int width, int height)
+	{
+		int rowWords = (width + 63) >>> 6;
+		int columnWords = (height + 63) >>> 6;
+		return new BitPlaneImage(new long[rowWords * height], new long[columnWords * width], rowWords, columnWords, 0, 0, width, height);
+	}
+
+	/**
+	 * Binarize a horizontal band of the sheet: row j of <code> band </code> becomes row y + j of this image.
+	 * Rows falling outside of this image are ignored. The image must not be used by other threads while
+	 * it is being filled.
+	 * @param band The rows to binarize, as wide as this image
+	 * @param y Y-Coordinate of the first row of the band
+	 */
+
+	public void packRows(BufferedImage band, int y)
+	{
+		int w = Math.min(band.getWidth(), width);
+		int endY = Math.min(y + band.getHeight(), height);
+		int scanline[] = new int[w];
+		for (int j = Math.max(y, 0); j < endY; j += 1)
+		{
+			band.getRGB(0, j - y, w, 1, scanline, 0, w);
+			int py = yOffset + j;
+			int base = py * rowWords;
+			for (int x = 0; x < w; x += 1)
+			{
+				if (scanline[x] != WHITE)
+				{
+					int px = xOffset + x;
+					rows[base + (px >>> 6)] |= 1L << px;
+					columns[px * columnWords + (py >>> 6)] |= 1L << py;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Set rows y to y + count - 1 of this image from one flag per pixel: pixel (x, y + j) is black when
+	 * <code> flags[offset + j * scanline + x] </code> is not 0. Bands of rows may be filled by several threads
+	 * at once as long as each band starts on a multiple of 64 rows, so that no two bands share a word of a column.
+	 * @param flags The flags, row by row
+	 * @param offset Index of the flag of the first pixel of the band
+	 * @param scanline Distance between the flags of two consecutive rows
+	 * @param y Y-Coordinate of the first row of the band
+	 * @param count Number of rows of the band
+	 */
+
+	public void packRows(byte flags[], int offset, int scanline, int y, int count)
+	{
+		int endY = Math.min(y + count, height);
+		for (int j = Math.max(y, 0); j < endY; j += 1)
+		{
+			int py = yOffset + j;
+			int base = py * rowWords;
+			int flag = offset + (j - y) * scanline;
+			for (int x = 0; x < width; x += 1)
+			{
+				if (flags[flag + x] != 0)
+				{
+					int px = xOffset + x;
+					rows[base + (px >>> 6)] |= 1L << px;
+					columns[px * columnWords + (py >>> 6)] |= 1L << py;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a view on a sub-rectangle of this image. The rectangle is clipped to the bounds of
+	 * this image and no pixel is copied.
+	 * @param x X-Coordinate of the top left corner of the view
+	 * @param y Y-Coordinate of the top left corner of the view
+	 * @param w Width of the view
+	 * @param h Height of the view
+	 * @return the view
+	 */
+
+	public BitPlaneImage getView(int x, int y, int w, int h)
+	{
+		int startX = Math.max(x, 0);
+		int startY = Math.max(y, 0);
+		int endX = Math.min(x + w, width);
+		int endY = Math.min(y + h, height);
+		return new BitPlaneImage(rows, columns, rowWords, columnWords, xOffset + startX, yOffset + startY, Math.max(endX - startX, 0), Math.max(endY - startY, 0));
+	}
+
+	/**
+	 * Returns a 1-bit <code> BufferedImage </code> of this image, black where this image is black and white
+	 * elsewhere. It takes about as much memory as this image, so it can stand for a sheet which was only
+	 * read band by band.
+	 * @return the black and white image
+	 */
+
+	public BufferedImage toBinaryImage()
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+		byte data[] = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		int scanline = (width + 7) >>> 3;
+
+		// Index 0 of the palette is black and index 1 is white; pixels are packed from the highest bit
+		Arrays.fill(data, (byte) 0xFF);
+		for (int y = 0; y < height; y += 1)
+		{
+			int base = y * scanline;
+			for (int x = nextBlackInRow(y, 0); x < width; x = nextBlackInRow(y, x + 1))
+				data[base + (x >>> 3)] &= ~(0x80 >>> (x & 7));
+		}
+		return image;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Returns true if the pixel at (x, y) is black. Pixels outside of the image are white.
+	 */
+
+	public boolean isBlack(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return false;
+		int px = xOffset + x;
+		return (rows[(yOffset + y) * rowWords + (px >>> 6)] & (1L << px)) != 0;
+	}
+
+	/**
+	 * Count the black pixels of row y between startX (inclusive) and endX (exclusive)
+	 */
+
+	public int countRow(int y, int startX, int endX)
+	{
+		if (y < 0 || y >= height)
+			return 0;
+		startX = Math.max(startX, 0);
+		endX = Math.min(endX, width);
+		return countBits(rows, (yOffset + y) * rowWords, xOffset + startX, xOffset + endX);
+	}
+
+	/**
+	 * Count the black pixels of column x between startY (inclusive) and endY (exclusive)
+	 */
+
+	public int countColumn(int x, int startY, int endY)
+	{
+		if (x < 0 || x >= width)
+			return 0;
+		startY = Math.max(startY, 0);
+		endY = Math.min(endY, height);
+		return countBits(columns, (xOffset + x) * columnWords, yOffset + startY, yOffset + endY);
+	}
+
+	/**
+	 * Returns the first black pixel of column x between startY (inclusive) and endY (exclusive), or endY
+	 * if there is none. Used with <code> nextWhiteInColumn </code> to walk the runs of a column one word at a time.
+	 */
+
+	public int nextBlackInColumn(int x, int startY, int endY)
+	{
+		if (x < 0 || x >= width)
+			return endY;
+		int from = Math.max(startY, 0);
+		int to = Math.min(endY, height);
+		if (from >= to)
+			return endY;
+		int y = nextBit(columns, (xOffset + x) * columnWords, yOffset + from, yOffset + to, 0L) - yOffset;
+		return y < to ? y : endY;
+	}
+
+	/**
+	 * Returns the first black pixel of row y at or after startX, or the width of the image if there is none
+	 */
+
+	public int nextBlackInRow(int y, int startX)
+	{
+		if (y < 0 || y >= height || startX >= width)
+			return width;
+		int from = xOffset + Math.max(startX, 0);
+		return nextBit(rows, (yOffset + y) * rowWords, from, xOffset + width, 0L) - xOffset;
+	}
+
+	/**
+	 * Returns the first white pixel of column x between startY (inclusive) and endY (exclusive), or endY
+	 * if there is none. Pixels outside of the image are white.
+	 */
+
+	public int nextWhiteInColumn(int x, int startY, int endY)
+	{
+		if (startY >= endY)
+			return endY;
+		if (x < 0 || x >= width || startY < 0 || startY >= height)
+			return startY;
+		int to = Math.min(endY, height);
+		int y = nextBit(columns, (xOffset + x) * columnWords, yOffset + startY, yOffset + to, -1L) - yOffset;
+		return y < to ? y : to;
+	}
+
+	/**
+	 * Calculate the Y-Projection of a rectangle: <code> projection[y - startH] </code> receives the number of
+	 * black pixels of row y between startW and endW, for every y between startH and endH.
+	 * @param startH Desired start Y-Coordinate
+	 * @param endH Desired end Y-Coordinate (exclusive)
+	 * @param startW Desired start X-Coordinate
+	 * @param endW Desired end X-Coordinate (exclusive)
+	 * @param projection Array receiving the projection, at least endH - startH long
+	 */
+
+	public void projectRows(int startH, int endH, int startW, int endW, int projection[])
+	{
+		for (int y = startH; y < endH; y += 1)
+			projection[y - startH] = countRow(y, startW, endW);
+	}
+
+	/**
+	 * Calculate the X-Projection of a rectangle: <code> projection[x - startW] </code> receives the number of
+	 * black pixels of column x between startH and endH, for every x between startW and endW.
+	 * @param startH Desired start Y-Coordinate
+	 * @param endH Desired end Y-Coordinate (exclusive)
+	 * @param startW Desired start X-Coordinate
+	 * @param endW Desired end X-Coordinate (exclusive)
+	 * @param projection Array receiving the projection, at least endW - startW long
+	 */
+
+	public void projectColumns(int startH, int endH, int startW, int endW, int projection[])
+	{
+		for (int x = startW; x < endW; x += 1)
+			projection[x - startW] = countColumn(x, startH, endH);
+	}
+
+	// Position of the first bit between from (inclusive) and to (exclusive) of the bit string starting at
+	// word offset which is set (flip = 0) or clear (flip = -1); to if there is none
+	private static int nextBit(long plane[], int offset, int from, int to, long flip)
+	{
+		int i = from >>> 6;
+		int last = (to - 1) >>> 6;
+		long word = (plane[offset + i] ^ flip) & (-1L << from);
+		while (word == 0)
+		{
+			i += 1;
+			if (i > last)
+				return to;
+			word = plane[offset + i] ^ flip;
+		}
+		return Math.min((i << 6) + Long.numberOfTrailingZeros(word), to);
+	}
+
+	// Count the bits set between positions from (inclusive) and to (exclusive)
+	// of the bit string starting at word offset
+	private static int countBits(long plane[], int offset, int from, int to)
+	{
+		if (from >= to)
+			return 0;
+
+		int first = from >>> 6;
+		int last = (to - 1) >>> 6;
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> (63 - ((to - 1) & 63));
+
+		if (first == last)
+			return Long.bitCount(plane[offset + first] & firstMask & lastMask);
+
+		int count = Long.bitCount(plane[offset + first] & firstMask);
+		for (int i = first + 1; i < last; i += 1)
+			count += Long.bitCount(plane[offset + i]);
+		return count + Long.bitCount(plane[offset + last] & lastMask);
+	}
+}
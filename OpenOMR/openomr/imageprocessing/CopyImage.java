@@ -30,14 +30,16 @@ public class CopyImage
 
 	public CopyImage(BufferedImage buffImage)
 	{
-		newImage = new BufferedImage(buffImage.getWidth(), buffImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-		for (int x = 0; x < buffImage.getWidth(); x += 1)
+		int width = buffImage.getWidth();
+		int height = buffImage.getHeight();
+		newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+		// Copy one scanline at a time
+		int scanline[] = new int[width];
+		for (int y = 0; y < height; y += 1)
 		{
-			for (int y = 0; y < buffImage.getHeight(); y += 1)
-			{
-				int pix = buffImage.getRGB(x, y);
-				newImage.setRGB(x, y, pix);
-			}
+			buffImage.getRGB(0, y, width, 1, scanline, 0, width);
+			newImage.setRGB(0, y, width, 1, scanline, 0, width);
 		}
 	}
 
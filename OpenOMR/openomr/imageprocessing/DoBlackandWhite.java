@@ -29,14 +29,30 @@ import java.awt.image.BufferedImage;
 public class DoBlackandWhite
 {
 	private BufferedImage buffImage;
+	private BitPlaneImage bitPlane;
 	
 	public DoBlackandWhite(BufferedImage buffImage)
 	{
 		this.buffImage = buffImage;
 	}
 	
+	/**
+	 * Returns the packed version of the image, to be shared by all the stages of the OMR engine. It is built
+	 * the first time it is requested, after <code> doBW() </code>, and the same plane is returned until
+	 * <code> doBW() </code> is called again.
+	 */
+	
+	public BitPlaneImage getBitPlane()
+	{
+		if (bitPlane == null)
+			bitPlane = BitPlaneImage.create(buffImage);
+		return bitPlane;
+	}
+	
 	public void doBW()
 	{
+		bitPlane = null;
+		
 		for (int i=0; i<buffImage.getHeight(); i+=1)
 			for (int j=0; j<buffImage.getWidth(); j+=1)
 			{
@@ -23,6 +23,9 @@
 
 package openomr.midi;
 
+import java.io.File;
+import java.io.IOException;
+
 import javax.sound.midi.*;
 
 /**
@@ -31,9 +34,11 @@ import javax.sound.midi.*;
  */
 public abstract class MidiFileGenerator
 {
-	private final Sequencer sequencer;
+	private Sequencer sequencer;
+	private final Sequence sequence;
 	private final Track track;
 	private final int resolution;
+	private final int tempo;
 	private int pos;
 
 	/**
@@ -45,20 +50,37 @@ public abstract class MidiFileGenerator
 	public MidiFileGenerator(int key, int tempo, int resolution) throws MidiUnavailableException, InvalidMidiDataException
 	{
 		this.resolution = resolution;
-		Sequence sequence = new Sequence(Sequence.PPQ, resolution);
+		this.tempo = tempo;
+		sequence = new Sequence(Sequence.PPQ, resolution);
 		track = sequence.createTrack();
+		addTempoEvent();
 		//makeSong(key);
-		sequencer = MidiSystem.getSequencer();
-		sequencer.open();
-		sequencer.setSequence(sequence);
-		sequencer.setTempoInBPM(tempo);
 	}
 
-	public void start()
+	/**
+	 * Play the song. The sequencer is only opened here so that a song can be built
+	 * and written to a file on a machine without any MIDI device.
+	 */
+	public void start() throws MidiUnavailableException, InvalidMidiDataException
 	{
+		if (sequencer == null)
+		{
+			sequencer = MidiSystem.getSequencer();
+			sequencer.open();
+			sequencer.setSequence(sequence);
+			sequencer.setTempoInBPM(tempo);
+		}
 		sequencer.start();
 	}
 
+	/**
+	 * Write the song to a standard MIDI file
+	 */
+	public synchronized void write(File file) throws IOException
+	{
+		MidiSystem.write(sequence, 0, file);
+	}
+
 	//protected abstract void makeSong(int key) throws InvalidMidiDataException;
 
 	protected void add(int note) throws InvalidMidiDataException
@@ -100,6 +122,19 @@ public abstract class MidiFileGenerator
 		track.add(new MidiEvent(message, pos));
 	}
 
+	/**
+	 * Records the tempo at the start of the track, so that a written file plays
+	 * at the same speed as the sequencer
+	 */
+	private void addTempoEvent() throws InvalidMidiDataException
+	{
+		int microsPerQuarter = 60000000 / tempo;
+		byte data[] = { (byte) (microsPerQuarter >> 16), (byte) (microsPerQuarter >> 8), (byte) microsPerQuarter };
+		MetaMessage message = new MetaMessage();
+		message.setMessage(0x51, data, data.length);
+		track.add(new MidiEvent(message, 0));
+	}
+
 	/**
 	 * We assume that we are holding the "this" monitor
 	 */
@@ -0,0 +1,222 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package openomr.midi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The <code> MidiStreamWriter </code> class writes a Standard MIDI File straight to an <code> OutputStream </code>.
+ * No <code> Sequence </code> is built and no sequencer or synthesizer is needed, so it works on a machine without
+ * any MIDI device.
+ * <p>
+ * The header is written when the writer is created, so the number of tracks must be known up front. A file with a
+ * single track is written in format 0 and any other in format 1. Channel messages use running status (the status
+ * byte is left out when it is the same as the one of the previous message). The events of a track are added in tick order and
+ * only the current track is kept in memory: its chunk is written and the stream flushed by <code> endTrack </code>,
+ * so the first tracks of a file are out while the next ones are still being built.
+ * <p>
+ * The <code> MidiStreamWriter </code> class is used as follows:
+ * <p>
+ * <code>
+ * MidiStreamWriter writer = new MidiStreamWriter(out, 1, resolution); <br>
+ * writer.startTrack(); <br>
+ * writer.addTempo(0, bpm); <br>
+ * writer.addEvent(tick, MidiStreamWriter.NOTE_ON, 0, note, velocity); <br>
+ * writer.endTrack(); <br>
+ * writer.close(); <br>
+ * </code>
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class MidiStreamWriter
+{
+	public static final int NOTE_OFF = 0x80;
+	public static final int NOTE_ON = 0x90;
+	private static final int META_EVENT = 0xFF;
+	private static final int META_END_OF_TRACK = 0x2F;
+	private static final int META_TEMPO = 0x51;
+	private static final int MAX_DELTA = 0x0FFFFFFF;	// largest variable length quantity
+
+	private OutputStream out;
+	private int trackCount;
+	private int tracksWritten;
+	private ByteArrayOutputStream track;	// events of the current track, null between two tracks
+	private long lastTick;
+	private int runningStatus;				// status of the previous channel message, -1 after a meta event
+
+	/**
+	 * Write the header of the file
+	 * @param out The stream receiving the file
+	 * @param trackCount The number of tracks of the file
+	 * @param resolution The number of ticks per quarter note
+	 */
+
+	public MidiStreamWriter(OutputStream out, int trackCount, int resolution) throws IOException
+	{
+		if (trackCount < 1 || trackCount > 0xFFFF)
+			throw new IllegalArgumentException("Invalid track count: " + trackCount);
+		if (resolution < 1 || resolution > 0x7FFF)
+			throw new IllegalArgumentException("Invalid resolution: " + resolution);
+		this.out = out;
+		this.trackCount = trackCount;
+
+		byte header[] = new byte[14];
+		writeTag(header, 0, "MThd");
+		writeInt(header, 4, 6);
+		writeShort(header, 8, trackCount == 1 ? 0 : 1);
+		writeShort(header, 10, trackCount);
+		writeShort(header, 12, resolution);
+		out.write(header);
+	}
+
+	public void startTrack()
+	{
+		if (track != null)
+			throw new IllegalStateException("The current track is not finished");
+		if (tracksWritten == trackCount)
+			throw new IllegalStateException("All " + trackCount + " tracks have been written");
+		track = new ByteArrayOutputStream();
+		lastTick = 0;
+		runningStatus = -1;
+	}
+
+	/**
+	 * Add a channel message to the current track
+	 * @param tick The time of the event, no earlier than the previous event of the track
+	 * @param command The command, such as <code> NOTE_ON </code>
+	 * @param channel The channel (0 to 15)
+	 * @param data1 The first data byte (0 to 127), e.g. the note
+	 * @param data2 The second data byte (0 to 127), e.g. the velocity
+	 */
+
+	public void addEvent(long tick, int command, int channel, int data1, int data2)
+	{
+		if ((command & 0x0F) != 0 || command < 0x80 || command >= 0xF0 || channel < 0 || channel > 15)
+			throw new IllegalArgumentException("Invalid command " + command + " on channel " + channel);
+		if (data1 < 0 || data1 > 127 || data2 < 0 || data2 > 127)
+			throw new IllegalArgumentException("Invalid data: " + data1 + ", " + data2);
+		writeDelta(tick);
+		if ((command | channel) != runningStatus)
+		{
+			runningStatus = command | channel;
+			track.write(runningStatus);
+		}
+		track.write(data1);
+		track.write(data2);
+	}
+
+	/**
+	 * Add a tempo change to the current track
+	 * @param tick The time of the change
+	 * @param bpm The tempo in quarter notes per minute
+	 */
+
+	public void addTempo(long tick, int bpm)
+	{
+		if (bpm < 4)
+			throw new IllegalArgumentException("Invalid tempo: " + bpm);
+		int microsPerQuarter = 60000000 / bpm;
+		writeDelta(tick);
+		runningStatus = -1;
+		track.write(META_EVENT);
+		track.write(META_TEMPO);
+		track.write(3);
+		track.write(microsPerQuarter >> 16);
+		track.write(microsPerQuarter >> 8);
+		track.write(microsPerQuarter);
+	}
+
+	/**
+	 * End the current track at the time of its last event and write it out
+	 */
+
+	public void endTrack() throws IOException
+	{
+		if (track == null)
+			throw new IllegalStateException("No track was started");
+		writeDelta(lastTick);
+		track.write(META_EVENT);
+		track.write(META_END_OF_TRACK);
+		track.write(0);
+
+		byte header[] = new byte[8];
+		writeTag(header, 0, "MTrk");
+		writeInt(header, 4, track.size());
+		out.write(header);
+		track.writeTo(out);
+		out.flush();
+		track = null;
+		tracksWritten += 1;
+	}
+
+	/**
+	 * Close the stream. The file is only complete once all the tracks announced in its header have been written.
+	 */
+
+	public void close() throws IOException
+	{
+		out.close();
+	}
+
+	public boolean isComplete()
+	{
+		return tracksWritten == trackCount && track == null;
+	}
+
+	// Delta time from the previous event, as a variable length quantity
+	private void writeDelta(long tick)
+	{
+		if (track == null)
+			throw new IllegalStateException("No track was started");
+		if (tick < lastTick || tick - lastTick > MAX_DELTA)
+			throw new IllegalArgumentException("Events must be added in tick order: " + tick + " after " + lastTick);
+		int delta = (int) (tick - lastTick);
+		lastTick = tick;
+
+		for (int shift = 21; shift > 0; shift -= 7)
+			if (delta >= 1 << shift)
+				track.write(0x80 | (delta >>> shift) & 0x7F);
+		track.write(delta & 0x7F);
+	}
+
+	private static void writeTag(byte buffer[], int offset, String tag)
+	{
+		for (int i = 0; i < 4; i += 1)
+			buffer[offset + i] = (byte) tag.charAt(i);
+	}
+
+	private static void writeInt(byte buffer[], int offset, int value)
+	{
+		writeShort(buffer, offset, value >>> 16);
+		writeShort(buffer, offset + 2, value);
+	}
+
+	private static void writeShort(byte buffer[], int offset, int value)
+	{
+		buffer[offset] = (byte) (value >> 8);
+		buffer[offset + 1] = (byte) value;
+	}
+}
@@ -23,6 +23,7 @@
 
 package openomr.midi;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import javax.sound.midi.InvalidMidiDataException;
@@ -45,17 +46,17 @@ public class ScoreGenerator extends MidiFileGenerator
 	
 	public void makeSong(int key) throws InvalidMidiDataException
 	{
-		for (int j=0; j<staveList.size(); j+=1)
+		// Walk the lists with iterators: get(i) on a LinkedList starts from the head every time
+		Iterator<Staves> staves = staveList.iterator();
+		while (staves.hasNext())
 		{
-			Staves tempStave = staveList.get(j);
-			LinkedList<L0_Segment> tempSymbol = tempStave.getSymbolPos();
-			for (int k=0; k<tempSymbol.size(); k+=1)
+			Iterator<L0_Segment> symbols = staves.next().getSymbolPos().iterator();
+			while (symbols.hasNext())
 			{
-				L0_Segment tempPos = tempSymbol.get(k);
-				LinkedList<PitchCalculation> notes = tempPos.getNotes();
-				for (int i=0; i<notes.size(); i+=1)
+				Iterator<PitchCalculation> notes = symbols.next().getNotes().iterator();
+				while (notes.hasNext())
 				{
-					PitchCalculation tempNote = notes.get(i);
+					PitchCalculation tempNote = notes.next();
 					tempNote.printNote();
 					//System.out.println("Note: " + (tempNote.getNote()+64));
 					add(tempNote.getNote()+64, tempNote.getDuration());
@@ -0,0 +1,161 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+package openomr.midi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import openomr.omr_engine.DetectionProcessor;
+import openomr.omr_engine.L0_Segment;
+import openomr.omr_engine.PitchCalculation;
+import openomr.omr_engine.Staves;
+
+/**
+ * The <code> ScoreWriter </code> class writes the notes recognised on a sheet to a Standard MIDI File through a
+ * <code> MidiStreamWriter </code>. The staves follow each other in time, with the same notes, durations, tempo and
+ * resolution as <code> ScoreGenerator </code>, but without building a <code> Sequence </code> first.
+ * <p>
+ * The staves are added one at a time and in order, either from an iterator or straight from the
+ * <code> DetectionProcessor </code> as soon as each stave has been recognised (the <code> ScoreWriter </code>
+ * is a <code> DetectionProcessor.Listener </code>). By default all the notes go in a single track, which gives the
+ * same file as <code> ScoreGenerator.write </code>; that track is written when the writer is closed. With one track
+ * per stave, the first track only holds the tempo and each stave is written out as soon as it is added, while the
+ * next staves are still being recognised.
+ * <p>
+ * The <code> ScoreWriter </code> class is used as follows:
+ * <p>
+ * <code>
+ * ScoreWriter scoreWriter = new ScoreWriter(out, staveDetection.getNumStavesFound(), false); <br>
+ * detection.setListener(scoreWriter); <br>
+ * detection.processAll(); <br>
+ * scoreWriter.close(); <br>
+ * </code>
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class ScoreWriter implements DetectionProcessor.Listener
+{
+	private static final int RESOLUTION = 8;
+	private static final int TEMPO = 30;
+	private static final int BASE_NOTE = 64;
+	private static final int CHANNEL = 0;
+
+	private MidiStreamWriter writer;
+	private boolean trackPerStave;
+	private long pos;
+	private IOException error;	// first error met while writing a stave for the DetectionProcessor
+
+	/**
+	 * @param out The stream receiving the MIDI file; it is closed by <code> close </code>
+	 * @param staveCount The number of staves which will be added
+	 * @param trackPerStave Whether each stave gets its own track
+	 */
+
+	public ScoreWriter(OutputStream out, int staveCount, boolean trackPerStave) throws IOException
+	{
+		this.trackPerStave = trackPerStave;
+		writer = new MidiStreamWriter(out, trackPerStave ? staveCount + 1 : 1, RESOLUTION);
+		writer.startTrack();
+		writer.addTempo(0, TEMPO);
+		if (trackPerStave)
+			writer.endTrack();
+	}
+
+	/**
+	 * Add the notes of a stave after those of the previous one
+	 */
+
+	public void addStave(Staves stave) throws IOException
+	{
+		if (trackPerStave)
+			writer.startTrack();
+		Iterator<L0_Segment> segments = stave.getSymbolPos().iterator();
+		while (segments.hasNext())
+		{
+			Iterator<PitchCalculation> notes = segments.next().getNotes().iterator();
+			while (notes.hasNext())
+			{
+				PitchCalculation note = notes.next();
+				addNote(note.getNote() + BASE_NOTE, note.getDuration());
+			}
+		}
+		if (trackPerStave)
+			writer.endTrack();
+	}
+
+	public void addStaves(Iterator<Staves> staves) throws IOException
+	{
+		while (staves.hasNext())
+			addStave(staves.next());
+	}
+
+	/**
+	 * Called by the <code> DetectionProcessor </code> for each stave, in order. An error is kept and thrown by
+	 * <code> close </code>, and the staves which come after it are ignored.
+	 */
+
+	public void staveProcessed(int index, Staves stave)
+	{
+		if (error != null)
+			return;
+		try
+		{
+			addStave(stave);
+		}
+		catch (IOException e)
+		{
+			error = e;
+		}
+	}
+
+	/**
+	 * Write what is left of the file and close the stream
+	 */
+
+	public void close() throws IOException
+	{
+		try
+		{
+			if (error == null && !trackPerStave)
+				writer.endTrack();
+		}
+		finally
+		{
+			writer.close();
+		}
+		if (error != null)
+			throw error;
+		if (!writer.isComplete())
+			throw new IllegalStateException("Fewer staves were added than announced");
+	}
+
+	// The first note of each beat is emphasized, as in MidiFileGenerator
+	private void addNote(int note, int length)
+	{
+		writer.addEvent(pos, MidiStreamWriter.NOTE_ON, CHANNEL, note, (pos % RESOLUTION) == 0 ? 100 : 70);
+		pos += length;
+		writer.addEvent(pos, MidiStreamWriter.NOTE_OFF, CHANNEL, note, 0);
+	}
+}
@@ -27,23 +27,122 @@ import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import openomr.gui.DrawingTools;
+import openomr.ann.ANNInterrogator;
+import openomr.gui.Annotations;
+import openomr.gui.GUI;
+import openomr.imageprocessing.BitPlaneImage;
 import openomr.imageprocessing.CopyImage;
 
 import org.joone.net.NeuralNet;
 
+/**
+ * The <code> DetectionProcessor </code> class locates and classifies all the symbols of the staves found
+ * by <code> StaveDetection </code>.
+ * <p>
+ * Once the boundaries of the staves are set, each stave is independent from the others, so the staves are
+ * processed on a fork/join pool. Every stave gets its own <code> SymbolQueue </code>, the image and the
+ * neural network are only read, and the results are stored in the <code> Staves </code> themselves so they
+ * come out in stave order whatever the order in which the staves were processed.
+ * <p>
+ * What is drawn on the recognised image is only recorded while the staves are processed (see
+ * <code> Annotations </code>). The copy of the sheet is made and painted the first time
+ * <code> getDupImage </code> is called, and not at all when annotations are turned off.
+ * <p>
+ * A <code> Listener </code> is given each stave as soon as it and all the staves above it are done, so that
+ * the results can be used (e.g. written to a MIDI file) while the next staves are still being processed.
+ * <p>
+ * The <code> DetectionProcessor </code> class is used as follows:
+ * <p>
+ * <code>
+ * DetectionProcessor detection = new DetectionProcessor(buffImage, bitPlane, staveDetection, neuralNetwork); <br>
+ * detection.setThreadCount(1); //This is optional. With one thread the staves are processed in order in the calling thread <br>
+ * detection.setAnnotate(false); //This is optional. Nothing is drawn and getDupImage returns null <br>
+ * detection.setListener(listener); //This is optional <br>
+ * detection.processAll(); <br>
+ * </code>
+ */
 
 public class DetectionProcessor
 {
 	private BufferedImage buffImage;
+	private BitPlaneImage bitPlane;
 	private StaveDetection staveDetection;
 	private BufferedImage dupImage;
+	private Annotations staveAnnotations[];	// what is drawn on each stave, in stave order
+	private boolean annotate;
+	private ANNInterrogator annInterrogator;
+	private int threadCount;
+	private Listener listener;
+	private boolean staveDone[];	// staves processed, guarded by itself
+	private int staveNotified;		// number of staves given to the listener
+	
+	/**
+	 * Receives the staves once their symbols have been located and classified. The staves are given in order,
+	 * one at a time, from the thread which processed the last stave needed to keep that order.
+	 */
+	
+	public interface Listener
+	{
+		public void staveProcessed(int index, Staves stave);
+	}
 	
 	public DetectionProcessor(BufferedImage buffImage, StaveDetection staveDetection, NeuralNet neuralNetwork)
+	{
+		this(buffImage, BitPlaneImage.create(buffImage), staveDetection, neuralNetwork);
+	}
+	
+	public DetectionProcessor(BufferedImage buffImage, BitPlaneImage bitPlane, StaveDetection staveDetection, NeuralNet neuralNetwork)
 	{
 		this.buffImage = buffImage;
+		this.bitPlane = bitPlane;
 		this.staveDetection = staveDetection;
+		threadCount = Runtime.getRuntime().availableProcessors();
+		annotate = true;
+	}
+	
+	/**
+	 * Set the number of threads used to process the staves. A value of 1 processes the staves one
+	 * after the other in the calling thread, which is the mode to use when debugging.
+	 * @param threadCount The number of worker threads (defaults to the number of processors)
+	 */
+	
+	public void setThreadCount(int threadCount)
+	{
+		if (threadCount < 1)
+			throw new IllegalArgumentException("Thread count must be at least 1");
+		this.threadCount = threadCount;
+	}
+	
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+	
+	/**
+	 * Set the neural network used to classify the symbols. When none is set, the one of the GUI is used.
+	 */
+	
+	public void setANNInterrogator(ANNInterrogator annInterrogator)
+	{
+		this.annInterrogator = annInterrogator;
+	}
+	
+	/**
+	 * Choose whether the staves, segments and note heads found are drawn on a copy of the sheet (the default).
+	 * Turning this off saves a full copy of the sheet when the recognised image is not displayed.
+	 */
+	
+	public void setAnnotate(boolean annotate)
+	{
+		this.annotate = annotate;
+	}
+
+	public void setListener(Listener listener)
+	{
+		this.listener = listener;
 	}
 
 	public void processAll()
@@ -51,8 +150,6 @@ public class DetectionProcessor
 		setTopBottomBoundaries();
 		setBoundaries();
 
-		dupImage = (new CopyImage(buffImage)).getCopyOfImage();
-
 		findAllSymbols();
 	}
 
@@ -77,7 +174,7 @@ public class DetectionProcessor
 	private void setBoundaries()
 	{
 		// Locate stave boundaries, measures and L0_Segments
-		StaveBoundaries staveBoundaries = new StaveBoundaries(buffImage, staveDetection);
+		StaveBoundaries staveBoundaries = new StaveBoundaries(bitPlane, staveDetection);
 		staveBoundaries.findBoundaries();
 		// staveBoundaries.findMeasures();
 		staveBoundaries.findGroupsOfNotes();
@@ -85,40 +182,137 @@ public class DetectionProcessor
 
 	private void findAllSymbols()
 	{
-		int staveCount = 0;
+		if (annInterrogator == null)
+			annInterrogator = GUI.getANNInterrogator();
 
+		LinkedList<Staves> staveList = new LinkedList<Staves>();
 		Iterator it = staveDetection.getStaveInfo();
-		while (true)
+		while (it.hasNext())
+			staveList.add((Staves) it.next());
+		Staves staves[] = staveList.toArray(new Staves[staveList.size()]);
+		
+		dupImage = null;
+		staveAnnotations = new Annotations[staves.length];
+		if (annotate)
+			for (int i = 0; i < staves.length; i += 1)
+				staveAnnotations[i] = new Annotations();
+		staveDone = new boolean[staves.length];
+		staveNotified = 0;
+
+		if (threadCount == 1 || staves.length < 2)
 		{
-			if (!it.hasNext())
-				break;
+			for (int i = 0; i < staves.length; i += 1)
+			{
+				processStave(staves[i], staveAnnotations[i]);
+				notifyListener(staves, i);
+			}
+		}
+		else
+		{
+			ForkJoinPool pool = new ForkJoinPool(Math.min(threadCount, staves.length));
+			try
+			{
+				pool.invoke(new StaveTask(staves, 0, staves.length));
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+		}
+	}
 
-			// Process all staves found
-			Staves stave = (Staves) it.next();
+	// Locate and classify all symbols of one stave. Only this stave and its L0_Segments are modified.
+	private void processStave(Staves stave, Annotations annotations)
+	{
+		SymbolQueue symbolQueue = new SymbolQueue();
+		
+		// All projections of this stave are looked up in the same summed-area table
+		ProjectionIndex projections = new ProjectionIndex(bitPlane, stave.getStart(), stave.getEnd() + 1);
 
-			staveCount += 1;
+		if (annotations != null)
+			annotations.drawStave(stave.getLeft(), stave.getRight(), stave, Color.RED);
+//		DrawingTools.drawMeasures(dupImage, stave);
 
-			DrawingTools.drawStave(dupImage, stave.getLeft(), stave.getRight(), stave, Color.RED);
-//			DrawingTools.drawMeasures(dupImage, stave);
+		// Linked list with all L0_Segments
+		LinkedList<openomr.omr_engine.L0_Segment> l0_segmentList = stave.getSymbolPos();
+		int capacity = l0_segmentList.size();
+		
+		//Process each L0 segment present in current stave
+		for (int i = 0; i < capacity; i += 1)
+		{
+			//System.out.printf("*** Segment: %d ***\n", i);
+			l0_segmentList.get(i).setParameters(projections, buffImage, annotations, staveDetection, stave, symbolQueue);
+			l0_segmentList.get(i).processL0_Segment();
+		}
+		
+		//Classify all symbols of the stave in a single pass through the neural network
+		symbolQueue.classify(annInterrogator);
+		
+		for (int i = 0; i < capacity; i += 1)
+			l0_segmentList.get(i).calculateNoteDuration();
+	}
 
-			// Linked list with all L0_Segments
-			LinkedList<openomr.omr_engine.L0_Segment> l0_segmentList = stave.getSymbolPos();
-			int capacity = l0_segmentList.size();
-			//System.out.println("Stave " + staveCount);
-			
-			//Process each L0 segment present in current stave
-			for (int i = 0; i < capacity; i += 1)
+	// Give the listener every stave which is done and comes right after the last one it was given
+	private void notifyListener(Staves staves[], int index)
+	{
+		if (listener == null)
+			return;
+		synchronized (staveDone)
+		{
+			staveDone[index] = true;
+			while (staveNotified < staves.length && staveDone[staveNotified])
 			{
-				//System.out.printf("*** Segment: %d ***\n", i);
-				l0_segmentList.get(i).setParameters(buffImage, dupImage, staveDetection, stave);
-				l0_segmentList.get(i).processL0_Segment();
-				l0_segmentList.get(i).calculateNoteDuration();
+				listener.staveProcessed(staveNotified, staves[staveNotified]);
+				staveNotified += 1;
 			}
 		}
 	}
 
-	public BufferedImage getDupImage()
+	// Split the staves in two until a single stave is left
+	private class StaveTask extends RecursiveAction
 	{
+		private static final long serialVersionUID = 1L;
+		private Staves staves[];
+		private int start;
+		private int end;
+
+		public StaveTask(Staves staves[], int start, int end)
+		{
+			this.staves = staves;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute()
+		{
+			if (end - start == 1)
+			{
+				processStave(staves[start], staveAnnotations[start]);
+				notifyListener(staves, start);
+			}
+			else
+			{
+				int middle = (start + end) / 2;
+				invokeAll(new StaveTask(staves, start, middle), new StaveTask(staves, middle, end));
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the sheet on which the staves, segments and note heads found are drawn. The copy is
+	 * made the first time this method is called after <code> processAll </code>.
+	 * @return the annotated image, or null when annotations are turned off or nothing was processed
+	 */
+	
+	public synchronized BufferedImage getDupImage()
+	{
+		if (dupImage == null && annotate && staveAnnotations != null)
+		{
+			dupImage = (new CopyImage(buffImage)).getCopyOfImage();
+			for (int i = 0; i < staveAnnotations.length; i += 1)
+				if (staveAnnotations[i] != null)
+					staveAnnotations[i].paint(dupImage);
+		}
 		return dupImage;
 	}
 }
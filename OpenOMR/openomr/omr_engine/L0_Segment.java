@@ -28,7 +28,7 @@ import java.awt.image.BufferedImage;
 import java.util.Iterator;
 import java.util.LinkedList;
 
-import openomr.gui.DrawingTools;
+import openomr.gui.Annotations;
 
 
 public class L0_Segment
@@ -38,10 +38,12 @@ public class L0_Segment
 	
 	public boolean hasNote;
 	
+	private ProjectionIndex projections;
 	private BufferedImage buffImage;
-	private BufferedImage dupImage;
+	private Annotations annotations;	// null when nothing is drawn
 	private StaveDetection staveDetection;
 	private Staves stave;
+	private SymbolQueue symbolQueue;
 	
 	//Consider moving this somewhere else
 	LinkedList<PitchCalculation> noteList;
@@ -60,12 +62,14 @@ public class L0_Segment
 		hasNote = false;
 	}
 	
-	public void setParameters(BufferedImage buffImage, BufferedImage dupImage, StaveDetection staveDetection, Staves stave)
+	public void setParameters(ProjectionIndex projections, BufferedImage buffImage, Annotations annotations, StaveDetection staveDetection, Staves stave, SymbolQueue symbolQueue)
 	{
+		this.projections = projections;
 		this.buffImage = buffImage;
-		this.dupImage = dupImage;
+		this.annotations = annotations;
 		this.staveDetection = staveDetection;
 		this.stave = stave;
+		this.symbolQueue = symbolQueue;
 	}
 	
 	public void processL0_Segment()
@@ -84,7 +88,7 @@ public class L0_Segment
 				//System.out.printf("Stem position: %d\n", noteHeadTemp.stemInfo.stemDirection);
 				
 				L1_Segment l1_temp = new L1_Segment(noteHeadTemp.x-staveDetection.getStavelineParameters().getN2(), noteHeadTemp.x+staveDetection.getStavelineParameters().getD2(), noteHeadTemp.stemInfo);
-				l1_temp.setParameters(buffImage, dupImage, staveDetection, stave);
+				l1_temp.setParameters(projections, buffImage, annotations, staveDetection, stave, symbolQueue);
 				l1_temp.doL1_Segment();
 				l1_segmentList.add(l1_temp);
 				
@@ -98,7 +102,7 @@ public class L0_Segment
 						if (xStop - xStart > 14) //we don't want to process very small sgements
 						{
 							L1_Segment l1_temp2 = new L1_Segment(xStart, xStop, new NoteStem());
-							l1_temp2.setParameters(buffImage, dupImage, staveDetection, stave);
+							l1_temp2.setParameters(projections, buffImage, annotations, staveDetection, stave, symbolQueue);
 							l1_temp2.doL1_Segment();
 							l1_segmentList.add(l1_temp2);
 						}
@@ -111,7 +115,7 @@ public class L0_Segment
 						if (xStop - xStart > 14) //we don't want to process very small sgements
 						{
 							L1_Segment l1_temp2 = new L1_Segment(xStart, xStop, new NoteStem());
-							l1_temp2.setParameters(buffImage, dupImage, staveDetection, stave);
+							l1_temp2.setParameters(projections, buffImage, annotations, staveDetection, stave, symbolQueue);
 							l1_temp2.doL1_Segment();
 							l1_segmentList.add(l1_temp2);
 						}
@@ -138,10 +142,11 @@ public class L0_Segment
 	private void findNoteHeads()
 	{
 		
-		DrawingTools.drawBox(dupImage, stave.getStart(), stave.getEnd(), start, stop, Color.GREEN);
+		if (annotations != null)
+			annotations.drawBox(stave.getStart(), stave.getEnd(), start, stop, Color.GREEN);
 		
 		//Locate all noteheads
-		NoteHeadDetection noteHeadDetection = new NoteHeadDetection(buffImage, staveDetection.getStavelineParameters());
+		NoteHeadDetection noteHeadDetection = new NoteHeadDetection(projections, staveDetection.getStavelineParameters());
 		noteCoordList = noteHeadDetection.findNotes(stave.getStart() , stave.getEnd(), start, stop);
 
 		//Traverse linked list containing noteHeads and draw them
@@ -153,7 +158,8 @@ public class L0_Segment
 			addNote(pos.y + 8, stave.getNoteDistance(), stave.getStave_line(4).getEnd());
 
 			// draw note
-			DrawingTools.drawNote(dupImage, pos.x, 20, pos.y, staveDetection.getStavelineParameters().getD2());
+			if (annotations != null)
+				annotations.drawNote(pos.x, 20, pos.y, staveDetection.getStavelineParameters().getD2());
 		}
 		
 		
@@ -161,10 +167,8 @@ public class L0_Segment
 	
 	private void segmentNonNoteSymbols()
 	{
-		YProjection yProj = new YProjection(buffImage);
-		yProj.calcYProjection(stave.getStart(), stave.getEnd(), start, stop);
-
-		int yProjection[] = yProj.getYProjection();
+		int yProjection[] = new int[stave.getEnd() - stave.getStart() + 1];
+		projections.projectRows(stave.getStart(), stave.getEnd(), start, stop, yProjection);
 
 		boolean start = false;
 		int count = 0;
@@ -185,7 +189,8 @@ public class L0_Segment
 			{
 				if (start && count > staveDetection.getStavelineParameters().getN2())
 				{
-					DrawingTools.drawBox(dupImage, stave.getStart() + startPos, stave.getStart() + j, this.start, this.stop, Color.MAGENTA);
+					if (annotations != null)
+						annotations.drawBox(stave.getStart() + startPos, stave.getStart() + j, this.start, this.stop, Color.MAGENTA);
 				}
 				start = false;
 				count = 0;
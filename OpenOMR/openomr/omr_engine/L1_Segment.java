@@ -28,9 +28,7 @@ import java.awt.image.BufferedImage;
 import java.util.LinkedList;
 
 import openomr.ann.ANNPrepare;
-import openomr.ann.SymbolConfidence;
-import openomr.gui.DrawingTools;
-import openomr.gui.GUI;
+import openomr.gui.Annotations;
 
 
 public class L1_Segment
@@ -40,10 +38,12 @@ public class L1_Segment
 	private int xStop;
 	private NoteStem stemInfo;
 
-	private BufferedImage buffImage;
-	private BufferedImage dupImage;
+	private ProjectionIndex projections;
+	private BufferedImage buffImage;	// only used to crop the symbols given to the neural network
+	private Annotations annotations;	// null when nothing is drawn
 	private StaveDetection staveDetection;
 	private Staves stave;
+	private SymbolQueue symbolQueue;
 
 	// Linked list of L2_Segments
 	private LinkedList<L2_Segment> l2_Segments;
@@ -56,12 +56,14 @@ public class L1_Segment
 		this.stemInfo = stemInfo;
 	}
 
-	public void setParameters(BufferedImage buffImage, BufferedImage dupImage, StaveDetection staveDetection, Staves stave)
+	public void setParameters(ProjectionIndex projections, BufferedImage buffImage, Annotations annotations, StaveDetection staveDetection, Staves stave, SymbolQueue symbolQueue)
 	{
+		this.projections = projections;
 		this.buffImage = buffImage;
-		this.dupImage = dupImage;
+		this.annotations = annotations;
 		this.staveDetection = staveDetection;
 		this.stave = stave;
+		this.symbolQueue = symbolQueue;
 	}
 
 	public void doL1_Segment()
@@ -74,7 +76,8 @@ public class L1_Segment
 		}
 		else
 		{
-			DrawingTools.drawBox(dupImage, stave.getStart(), stave.getEnd(), xStart, xStop, Color.PINK);
+			if (annotations != null)
+				annotations.drawBox(stave.getStart(), stave.getEnd(), xStart, xStop, Color.PINK);
 			segmentVertically();
 		}
 	}
@@ -91,12 +94,8 @@ public class L1_Segment
 		
 		//System.out.println("Stem position: " + stem);
 
-		YProjection yProj = new YProjection(buffImage);
-		yProj.calcYProjection(stave.getStart(), stave.getEnd(), xStart, xStop);
-
-		//yProj.printYProjection();
-		
-		int yProjection[] = yProj.getYProjection();
+		int yProjection[] = new int[stave.getEnd() - stave.getStart() + 1];
+		projections.projectRows(stave.getStart(), stave.getEnd(), xStart, xStop, yProjection);
 
 		// Threshold function to remove stems
 		for (int j = 0; j < stave.getEnd() - stave.getStart(); j += 1)
@@ -172,20 +171,16 @@ public class L1_Segment
 						//System.out.printf("xStart=%d, xEnd=%d, yStart=%d, yEnd=%d\n", xStart, xStop, yStart, yEnd);
 						
 						//Draw L2_Segment
-						DrawingTools.drawBox(dupImage, yStart, yStart+yEnd, xStart, xStop, Color.ORANGE);
+						if (annotations != null)
+							annotations.drawBox(yStart, yStart+yEnd, xStart, xStop, Color.ORANGE);
 
 						
 						//Test neural network
 						double data[] = ANNPrepare.prepareImage(buffImage.getSubimage(xStart+4, yStart, xStop - xStart+3, yEnd+6));
 						
-						//GUI.getNeuralNetwork().testNet(neuralData);
-						double neuralData[][] = new double[1][128];
-						neuralData[0] = data;
-						SymbolConfidence result = GUI.getANNInterrogator().interogateNN(neuralData);
-						
-						//Uncomment when NN is taken care of
-						L2_Segment l2_temp = new L2_Segment(yStart, result.getName(), result.getRMSE());
-						l2_temp.printInfo();
+						//Symbol is classified with the rest of the stave
+						L2_Segment l2_temp = new L2_Segment(yStart);
+						symbolQueue.add(data, l2_temp);
 						l2_Segments.add(l2_temp);
 
 						//System.out.printf("Symbol: %s  Percentage: %f\n", res.symbolName, res.percentage);
@@ -36,6 +36,22 @@ public class L2_Segment
 		this.accuracy = accuracy;
 	}
 	
+	/**
+	 * Creates an L2_Segment whose symbol has not been classified yet. The symbol name and
+	 * accuracy are set by the SymbolQueue once the whole stave has been segmented.
+	 */
+	
+	public L2_Segment(int yPosition)
+	{
+		this(yPosition, null, 0);
+	}
+	
+	void setClassification(String symbolName, double accuracy)
+	{
+		this.symbolName = symbolName;
+		this.accuracy = accuracy;
+	}
+	
 	public void printInfo()
 	{
 		System.out.printf("Symbol: %s, accuracy: %f\n", symbolName, accuracy);
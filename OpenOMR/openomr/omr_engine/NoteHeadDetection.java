@@ -23,11 +23,29 @@
 
 package openomr.omr_engine;
 
-import java.awt.image.BufferedImage;
 import java.util.LinkedList;
 
 import openomr.dataanalysis.GNUPlotGenerator;
-
+import openomr.imageprocessing.BitPlaneImage;
+
+
+/**
+ * The <code> NoteHeadDetection </code> class locates the note heads of a part of a stave. Each column is
+ * walked run by run to find its tallest run (the X-Projection) and the position of its tallest run which is
+ * no taller than a note head (yPos). Both are filtered, and every run of columns left with a non-zero yPos
+ * is a note head, whose stem is then looked for on both sides.
+ * <p>
+ * Every step is a single pass over the columns: the filters look for the nearest lower values around each
+ * peak by following chains of lower values instead of rescanning the projection, so the time taken grows
+ * with the width of the area searched even on dense passages.
+ * <p>
+ * The <code> NoteHeadDetection </code> class is used as follows:
+ * <p>
+ * <code>
+ * NoteHeadDetection noteHeadDetection = new NoteHeadDetection(projections, staveParams); <br>
+ * LinkedList&lt;NoteHead&gt; noteHeads = noteHeadDetection.findNotes(startH, endH, startW, endW); <br>
+ * </code>
+ */
 
 public class NoteHeadDetection
 {
@@ -36,18 +54,24 @@ public class NoteHeadDetection
 	private int yPosBeforeFilter[];
 	private int xProjection[];
 	private int xProjectionBeforeFilter[];
-	private int yProjection[];
-	private YProjection yProj;
+	private int previousLower[];	// scratch arrays of filterYpos, kept for the next call
+	private int nextLower[];
 	private int height;
 	private int width;
-	private BufferedImage buffImage;
+	private BitPlaneImage bitPlane;
+	private ProjectionIndex projections;
 
-	public NoteHeadDetection(BufferedImage buffImage, StaveParameters staveParams)
+	public NoteHeadDetection(ProjectionIndex projections, StaveParameters staveParams)
 	{
-		this.buffImage = buffImage;
+		this.projections = projections;
+		this.bitPlane = projections.getBitPlane();
 		this.staveParams = staveParams;
-		yProj = new YProjection(buffImage);
+	}
 
+	public NoteHeadDetection(BitPlaneImage bitPlane, StaveParameters staveParams)
+	{
+		this.bitPlane = bitPlane;
+		this.staveParams = staveParams;
 	}
 
 	public LinkedList<NoteHead> findNotes(int startH, int endH, int startW, int endW)
@@ -60,97 +84,63 @@ public class NoteHeadDetection
 		yPos = new int[width];
 		yPosBeforeFilter = new int[width];
 
-		LinkedList<NoteHead> coordList = new LinkedList<NoteHead>();
-
-		
-		//BEGIN --> better note detection, but not yet in use
-		for (int i = startW; i < endW; i += 1)
-		{
-			XProjection(startH, endH, i, startW);
-		}
-		for (int i=0; i<width; i+=1)
-			xProjectionBeforeFilter[i] = xProjection[i];
-		//filterXproj();
-		filterMeanXProjection();
-
-		//END
-		
 		for (int i = startW; i < endW; i += 1)
 		{
-			YProjRLE(startH, endH, i, startW);
+			scanColumn(startH, endH, i, startW);
 		}
 
-		//printYPos(width, 0);
-		
-		for (int i = 0; i < width; i += 1)
-			yPosBeforeFilter[i] = yPos[i];
+		System.arraycopy(xProjection, 0, xProjectionBeforeFilter, 0, width);
+		filterMeanXProjection();
 
 		//printYPos(width, 0);
 		
-		filterYpos(startW, startH);
+		System.arraycopy(yPos, 0, yPosBeforeFilter, 0, width);
+		filterYpos();
 
 		//printYPos(width, 0);
 		
-		
+		// Every run of non-zero values of yPos is a note head
+		LinkedList<NoteHead> coordList = new LinkedList<NoteHead>();
+		int xTempPos = -1;
 		for (int i = 0; i < width; i += 1)
 		{
-			boolean start = true;
-			int xTempPos = 0;
-			for (int j = i; j < width; j += 1)
+			if (yPos[i] != 0)
 			{
-				if (yPos[j] != 0)
-				{
-					if (start)
-						xTempPos = j;
-					start = false;
-				}
-				if (yPos[j] == 0)
-				{
-					if (!start)
-					{
-						NoteHead temp = new NoteHead();
-						temp.x = startW + xTempPos;
-						temp.y = startH + findyPos(xTempPos);
-						//System.out.println("Found note @ x: " + xTempPos + " y: " + temp.y + " ::: " + findyPos(xTempPos));
-						
-						//Locate position of stem (left or right)
-						temp.stemInfo = locateStem(temp.x, startH, endH);
-						
-						//Add note to linked list
-
-						coordList.add(temp);
-						i = j;
-						break;
-					}
-					start = true;
-				}
+				if (xTempPos < 0)
+					xTempPos = i;
+			}
+			else if (xTempPos >= 0)
+			{
+				NoteHead temp = new NoteHead();
+				temp.x = startW + xTempPos;
+				temp.y = startH + findyPos(xTempPos);
+				//System.out.println("Found note @ x: " + xTempPos + " y: " + temp.y + " ::: " + findyPos(xTempPos));
+				
+				//Locate position of stem (left or right)
+				temp.stemInfo = locateStem(temp.x, startH, endH);
+				
+				//Add note to linked list
+				coordList.add(temp);
+				xTempPos = -1;
 			}
 		}
 		return coordList;
 	}
 
-	private int locateStartNote()
-	{
-		
-		return 0;
-	}
-	
 	private NoteStem locateStem(int x, int startH, int endH)
 	{
 		int xStart = x - 14;
 		int xEnd = staveParams.getD1()*2 + xStart;
 		
-		XProjection xProj = new XProjection(buffImage);
-		xProj.calcXProjection(startH, endH, xStart, xEnd);
-		
-		int xProjArray[] = xProj.getXProjection();
-		int max = xProjArray[0];
+		// The stem is the first of the tallest columns
+		int max = xEnd > xStart ? stemColumn(xStart, startH, endH) : 0;
 		int pos = 0;
 		for (int i=1; i<xEnd-xStart; i+=1)
 		{
-			if (xProjArray[i] > max)
+			int value = stemColumn(i + xStart, startH, endH);
+			if (value > max)
 			{
-				max = xProjArray[i];
+				max = value;
 				pos = i;
 			}
 		}
@@ -174,143 +164,61 @@ public class NoteHeadDetection
 		}
 	}
 	
-	public void XProjection(int startH, int endH, int i, int startW)
+	// Same result as XProjection.calcXProjection for one column: pixels outside of the image are counted as black
+	private int stemColumn(int x, int startH, int endH)
+	{
+		if (endH <= startH)
+			return 0;
+
+		int rows = endH - startH;
+		if (x < 0 || x >= bitPlane.getWidth())
+			return rows;
+		int inside = Math.min(endH, bitPlane.getHeight()) - Math.max(startH, 0);
+		int outside = rows - Math.max(inside, 0);
+		if (projections != null)
+			return projections.countColumn(x, startH, endH) + outside;
+		return bitPlane.countColumn(x, startH, endH) + outside;
+	}
+	
+	/*
+	 * Walk the black runs of column i between startH and endH. The tallest run gives the X-Projection
+	 * (if taller than 5 pixels). The tallest run which is no taller than D2 + 2 * N2 gives yPos, the
+	 * position of its first pixel, if its height is that of a note head: this gets rid of two notes
+	 * directly above one another.
+	 */
+	private void scanColumn(int startH, int endH, int i, int startW)
 	{
 		int N2 = staveParams.getN2();
 		int D1 = staveParams.getD1();
 		int D2 = staveParams.getD2();
 
-		yProj.calcYProjection(startH, endH, i, i + 1);
-		yProjection = yProj.getYProjection();
-
-		boolean start = false;
-		int counter = 0;
 		int max = 0;
-		int tempPos = 0;
-
-		for (int j = 0; j < height; j += 1)
+		int headMax = 0;
+		int headPos = 0;
+		int y = bitPlane.nextBlackInColumn(i, startH, endH);
+		while (y < endH)
 		{
-			if (yProjection[j] == 1)
+			int end = bitPlane.nextWhiteInColumn(i, y, endH);
+			int counter = end - y;
+			if (counter > max)
+				max = counter;
+			if (counter <= D2 + 2 * N2 && counter > headMax)
 			{
-				if (!start)
-				{
-					tempPos = j;
-				}
-				start = true;
-				counter += 1;
-			} else
-			{
-				if (start)
-				{
-					if (counter > max)
-					{
-						max = counter;
-					}
-				}
-				counter = 0;
-				start = false;
+				headMax = counter;
+				headPos = y - startH;
 			}
+			y = bitPlane.nextBlackInColumn(i, end, endH);
 		}
 
 		if (max > 5) // && max < 4*D2 ) // + 2 * N2) // && max < 2 * N2 + D1)
-		{
 			xProjection[i - startW] = max;
-			return;
-		}
-		xProjection[i - startW] = 0;
-		return;
-	}
-
-	private void YProjRLE(int startH, int endH, int i, int startW)
-	{
-		int D1 = staveParams.getD1();
-		int D2 = staveParams.getD2();
-		int N2 = staveParams.getN2();
-		yProj.calcYProjection(startH, endH, i, i + 1);
-		yProjection = yProj.getYProjection();
-
-		boolean start = false;
-		int counter = 0;
-		int max = 0;
-		int tempPos = 0;
-		int tempMaxPos = 0;
-
-		// filter yProjection. Get rid of values greater than D2
-		filteryProj();
-
-		for (int j = 0; j < height; j += 1)
-		{
-			if (yProjection[j] == 1)
-			{
-				if (!start)
-				{
-					tempPos = j;
-				}
-				start = true;
-				counter += 1;
-			} else
-			{
-				if (start)
-				{
-					if (counter > max)
-					{
-						max = counter;
-						tempMaxPos = tempPos;
-
-					}
-				}
-				counter = 0;
-				start = false;
-			}
-		}
-
-		if (max > 2 * N2)// && max < D2 + 2 * N2) // && max < 2 * N2 + D1)
-		{
-			// xProjection[i - startW] = max;
-			if (max > D1 && max < D2 + 2 * N2) // This will get rid of two
-				// notes directly above one
-				// another
-				yPos[i - startW] = tempMaxPos;
-			else
-				yPos[i - startW] = 0;
-			return;
-		}
-		// xProjection[i - startW] = 0;
-		yPos[i - startW] = 0;
-		return;
-	}
+		else
+			xProjection[i - startW] = 0;
 
-	private void filteryProj()
-	{
-		boolean start = false;
-		int N2 = staveParams.getN2();
-		int D2 = staveParams.getD2();
-		int counter = 0;
-		int tempPos = 0;
-		for (int j = 0; j < height; j += 1)
-		{
-			if (yProjection[j] == 1)
-			{
-				if (!start)
-				{
-					tempPos = j;
-				}
-				start = true;
-				counter += 1;
-			} else
-			{
-				if (start)
-				{
-					if (counter > D2 + 2* N2)
-					{
-						for (int i = tempPos; i < j; i += 1)
-							yProjection[i] = 0;
-					}
-				}
-				counter = 0;
-				start = false;
-			}
-		}
+		if (headMax > 2 * N2 && headMax > D1 && headMax < D2 + 2 * N2)
+			yPos[i - startW] = headPos;
+		else
+			yPos[i - startW] = 0;
 	}
 
 	private int findyPos(int tempPos)
@@ -346,170 +254,132 @@ public class NoteHeadDetection
 		return 0;
 	}
 
-	private void filterXproj()
-	{
-		int N2 = staveParams.getN2();
-		int D2 = staveParams.getD2();
-		int D1 = staveParams.getD1();
-
-		// first find all local maximas. Then find all peaks in array
-		for (int i = 1; i < width - 1; i += 1)
-		{
-			int forward = 0;
-			int backward = 0;
-			if (xProjection[i - 1] < xProjection[i] && xProjection[i] >= xProjection[i + 1])
-			{
-				int val = (int) (xProjection[i] * 0.5);
-
-				// search backwards
-				for (int j = i - 1; j >= 0; j -= 1)
-				{
-					if (xProjection[j] < val)
-					{
-						backward = j;
-						break;
-					}
-				}
-
-				// search forwards
-				for (int j = i + 1; j < width - 1; j += 1)
-				{
-					if (xProjection[j] < val)
-					{
-						forward = j - 1;
-						break;
-					}
-				}
-
-				int distance = forward - backward;
-				if (distance < D1) // Flatten
-																	// the graph
-																	// if
-																	// distance
-				// < 3/2 N2
-				{
-					// System.out.println("Flatten...");
-					for (int j = i; j >= backward; j -= 1)
-						xProjection[j] = 0;
-					for (int j = i + 1; j < forward; j += 1)
-						xProjection[j] = 0;
-				}
-			}
-
-		}
-	}
-
+	/*
+	 * In each run of non-zero values of the X-Projection, clear the values more than 20% away from the
+	 * average of the run, then clear the pieces of the run which are left narrower than 0.3 * D1.
+	 * The last value of the X-Projection is always 0, so every run ends inside the array.
+	 */
 	private void filterMeanXProjection()
 	{
 		final double UPPER_BOUND = 1.2;
 		final double LOWER_BOUND = 0.8;
-		int start = 0;
-		int stop = 0;
-		//System.out.println("Width: " + width);
-		for (int i = 0; i < width; i += 1)
+		int i = 0;
+		while (i < width)
 		{
-			if (xProjection[i] != 0)
+			if (xProjection[i] == 0)
 			{
-				start = i;
-				for (int j = i + 1; j < width; j += 1)
-				{
-					if (xProjection[j] == 0)
-					{
-						stop = j;
-						break;
-					}
-				}
-
-				// find average values
-				//System.out.println("Start: " + start + "  stop: " + stop);
-				float average = 0;
-				for (int j = start; j < stop; j += 1)
-					average += xProjection[j];
-				average = average / (float) (stop - start);
-				int upperB = (int) Math.round(average * UPPER_BOUND);
-				int lowerB = (int) Math.round(average * LOWER_BOUND);
-				//System.out.println("average: " + average);
-				//System.out.println("Upper: " + upperB + "  lower: " + lowerB);
-				for (int j = start; j < stop; j += 1)
-					if (xProjection[j] < lowerB || xProjection[j] > upperB)
-						xProjection[j] = 0;
-
-				i = stop - 1;
+				i += 1;
+				continue;
 			}
-		}
-		for (int i = 0; i < width; i += 1)
-		{
-			if (xProjection[i] != 0)
+
+			int start = i;
+			int stop = i + 1;
+			while (stop < width && xProjection[stop] != 0)
+				stop += 1;
+
+			// find average values
+			float average = 0;
+			for (int j = start; j < stop; j += 1)
+				average += xProjection[j];
+			average = average / (float) (stop - start);
+			int upperB = (int) Math.round(average * UPPER_BOUND);
+			int lowerB = (int) Math.round(average * LOWER_BOUND);
+			for (int j = start; j < stop; j += 1)
+				if (xProjection[j] < lowerB || xProjection[j] > upperB)
+					xProjection[j] = 0;
+
+			// the pieces left can only be inside the run
+			int j = start;
+			while (j < stop)
 			{
-				start = i;
-				for (int j = i + 1; j < width; j += 1)
+				if (xProjection[j] == 0)
 				{
-					if (xProjection[j] == 0)
-					{
-						stop = j;
-						break;
-					}
+					j += 1;
+					continue;
 				}
-
-				if ((stop - start) < staveParams.getD1()*0.3)
+				int pieceStart = j;
+				while (j < stop && xProjection[j] != 0)
+					j += 1;
+				if ((j - pieceStart) < staveParams.getD1()*0.3)
 				{
-					for (int j = start; j < stop; j += 1)
-						xProjection[j] = 0;
+					for (int k = pieceStart; k < j; k += 1)
+						xProjection[k] = 0;
 				}
-				i = stop - 1;
 			}
+			i = stop;
 		}
 	}
 
-	private void filterYpos(int startW, int startH)
+	/*
+	 * Flatten the peaks of yPos which are narrower than D2 / 2 at half their value. The nearest value below
+	 * the half on each side of a peak is found by following the chain of the next (or previous) lower values,
+	 * which skips every value that cannot be below it. When a peak is processed, the values after it have not
+	 * been modified yet, so the next lower values are computed once beforehand. The previous lower values are
+	 * computed as the peaks are processed, since flattening a peak sets the values before it to 0.
+	 */
+	private void filterYpos()
 	{
-		int N2 = staveParams.getN2();
 		int D2 = staveParams.getD2();
+		if (previousLower == null || previousLower.length < width)
+		{
+			previousLower = new int[width];
+			nextLower = new int[width];
+		}
+
+		for (int i = width - 1; i >= 0; i -= 1)
+		{
+			int j = i + 1;
+			while (j < width && yPos[j] >= yPos[i])
+				j = nextLower[j];
+			nextLower[i] = j;
+		}
 
-		// first find all local maximas. Then find all peaks in array
+		if (width > 0)
+			previousLower[0] = -1;
 		for (int i = 1; i < width - 1; i += 1)
 		{
-			int forward = 0;
-			int backward = 0;
+			// the previous lower value of every position before i is known
+			int k = i - 1;
+			if (k > 0)
+			{
+				int p = k - 1;
+				while (p >= 0 && yPos[p] >= yPos[k])
+					p = previousLower[p];
+				previousLower[k] = p;
+			}
+
 			if (yPos[i - 1] < yPos[i] && yPos[i] >= yPos[i + 1])
 			{
 				int val = (int) (yPos[i] * 0.5);
 
 				// search backwards
-				for (int j = i - 1; j >= 0; j -= 1)
-				{
-					if (yPos[j] < val)
-					{
-						backward = j;
-						break;
-					}
-				}
+				int backward = i - 1;
+				while (backward >= 0 && yPos[backward] >= val)
+					backward = previousLower[backward];
+				if (backward < 0)
+					backward = 0;
 
 				// search forwards
-				for (int j = i + 1; j < width - 1; j += 1)
-				{
-					if (yPos[j] < val)
-					{
-						forward = j - 1;
-						break;
-					}
-				}
+				int forward = i + 1;
+				while (forward < width - 1 && yPos[forward] >= val)
+					forward = nextLower[forward];
+				if (forward < width - 1)
+					forward -= 1;
+				else
+					forward = 0;
 
 				int distance = forward - backward;
-				if (/*(3 * N2) / 2 > distance ||*/ distance < D2 / 2) // Flatten
-																	// the graph
-																	// if
-																	// distance
-				// < 3/2 N2
+				if (distance < D2 / 2) // Flatten the graph
 				{
-					// System.out.println("Flatten...");
 					for (int j = i; j >= backward; j -= 1)
+					{
 						yPos[j] = 0;
+						previousLower[j] = -1;
+					}
 					for (int j = i + 1; j < forward; j += 1)
 						yPos[j] = 0;
 				}
 			}
-
 		}
 	}
 
@@ -0,0 +1,213 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.omr_engine;
+
+import openomr.imageprocessing.BitPlaneImage;
+
+/**
+ * The <code> ProjectionIndex </code> class is a summed-area table of the black pixels of a horizontal band
+ * of an image, usually the area of one stave. It is built once per stave and then gives the number of black
+ * pixels of any rectangle of the band with four lookups, so that every X-Projection or Y-Projection
+ * computed while segmenting the stave costs one lookup per entry whatever the size of the rectangle.
+ * <p>
+ * The <code> ProjectionIndex </code> class is used as follows:
+ * <p>
+ * <code>
+ * ProjectionIndex projections = new ProjectionIndex(bitPlane, stave.getStart(), stave.getEnd() + 1); <br>
+ * projections.projectRows(startH, endH, startW, endW, yProjection); <br>
+ * projections.projectColumns(startH, endH, startW, endW, xProjection); <br>
+ * </code>
+ * <p>
+ * The results are the same as the ones of the <code> BitPlaneImage </code>: pixels outside of the image are
+ * white. Rows of the image which are outside of the band are still counted, directly on the
+ * <code> BitPlaneImage </code>.
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class ProjectionIndex
+{
+	private BitPlaneImage bitPlane;
+	private int top;		// first row of the band
+	private int bottom;		// first row after the band
+	private int width;
+	private int stride;		// bottom - top + 1
+	private int sums[];		// sums[x * stride + y] = # black pixels in columns [0, x) and rows [top, top + y)
+
+	/**
+	 * Build the summed-area table of the rows startH (inclusive) to endH (exclusive) of an image.
+	 * The table is stored column by column, so that a Y-Projection reads consecutive entries.
+	 */
+
+	public ProjectionIndex(BitPlaneImage bitPlane, int startH, int endH)
+	{
+		this.bitPlane = bitPlane;
+		width = bitPlane.getWidth();
+		top = Math.max(startH, 0);
+		bottom = Math.max(Math.min(endH, bitPlane.getHeight()), top);
+		stride = bottom - top + 1;
+
+		sums = new int[(width + 1) * stride];
+		for (int x = 0; x < width; x += 1)
+		{
+			int prev = x * stride;
+			int curr = prev + stride;
+			int columnSum = 0;
+			for (int y = top; y < bottom; y += 1)
+			{
+				if (bitPlane.isBlack(x, y))
+					columnSum += 1;
+				sums[curr + y - top + 1] = sums[prev + y - top + 1] + columnSum;
+			}
+		}
+	}
+
+	public BitPlaneImage getBitPlane()
+	{
+		return bitPlane;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return bitPlane.getHeight();
+	}
+
+	/**
+	 * Count the black pixels of the rectangle made of rows startH to endH and columns startW to endW
+	 * (end coordinates are exclusive)
+	 */
+
+	public int count(int startH, int endH, int startW, int endW)
+	{
+		startW = Math.max(startW, 0);
+		endW = Math.min(endW, width);
+		if (startW >= endW || startH >= endH)
+			return 0;
+
+		int count = 0;
+		int y0 = Math.max(startH, top);
+		int y1 = Math.min(endH, bottom);
+		if (y0 < y1)
+		{
+			int a = startW * stride;
+			int b = endW * stride;
+			count = sums[b + y1 - top] - sums[a + y1 - top] - sums[b + y0 - top] + sums[a + y0 - top];
+		}
+
+		// Rows outside of the band
+		for (int y = startH; y < Math.min(endH, top); y += 1)
+			count += bitPlane.countRow(y, startW, endW);
+		for (int y = Math.max(startH, bottom); y < endH; y += 1)
+			count += bitPlane.countRow(y, startW, endW);
+		return count;
+	}
+
+	/**
+	 * Count the black pixels of row y between startX (inclusive) and endX (exclusive)
+	 */
+
+	public int countRow(int y, int startX, int endX)
+	{
+		return count(y, y + 1, startX, endX);
+	}
+
+	/**
+	 * Count the black pixels of column x between startY (inclusive) and endY (exclusive)
+	 */
+
+	public int countColumn(int x, int startY, int endY)
+	{
+		return count(startY, endY, x, x + 1);
+	}
+
+	/**
+	 * Calculate the Y-Projection of a rectangle: <code> projection[y - startH] </code> receives the number of
+	 * black pixels of row y between startW and endW, for every y between startH and endH (exclusive).
+	 */
+
+	public void projectRows(int startH, int endH, int startW, int endW, int projection[])
+	{
+		int y0 = Math.max(startH, top);
+		int y1 = Math.min(endH, bottom);
+		int s = Math.max(startW, 0);
+		int e = Math.min(endW, width);
+		if (y0 >= y1 || s >= e)
+		{
+			for (int y = startH; y < endH; y += 1)
+				projection[y - startH] = count(y, y + 1, startW, endW);
+			return;
+		}
+
+		for (int y = startH; y < y0; y += 1)
+			projection[y - startH] = bitPlane.countRow(y, s, e);
+
+		// Each row is the difference between two consecutive entries of columns s and e of the table
+		int a = s * stride - top;
+		int b = e * stride - top;
+		int prev = sums[b + y0] - sums[a + y0];
+		for (int y = y0; y < y1; y += 1)
+		{
+			int curr = sums[b + y + 1] - sums[a + y + 1];
+			projection[y - startH] = curr - prev;
+			prev = curr;
+		}
+
+		for (int y = y1; y < endH; y += 1)
+			projection[y - startH] = bitPlane.countRow(y, s, e);
+	}
+
+	/**
+	 * Calculate the X-Projection of a rectangle: <code> projection[x - startW] </code> receives the number of
+	 * black pixels of column x between startH and endH, for every x between startW and endW (exclusive).
+	 */
+
+	public void projectColumns(int startH, int endH, int startW, int endW, int projection[])
+	{
+		if (startH < top || endH > bottom || startH >= endH)
+		{
+			for (int x = startW; x < endW; x += 1)
+				projection[x - startW] = count(startH, endH, x, x + 1);
+			return;
+		}
+
+		// Each column is the difference between two entries of two consecutive columns of the table
+		int a = startH - top;
+		int b = endH - top;
+		for (int x = startW; x < endW; x += 1)
+		{
+			if (x < 0 || x >= width)
+				projection[x - startW] = 0;
+			else
+			{
+				int column = x * stride;
+				projection[x - startW] = sums[column + stride + b] - sums[column + stride + a] - sums[column + b] + sums[column + a];
+			}
+		}
+	}
+}
@@ -23,18 +23,19 @@
 
 package openomr.omr_engine;
 
-import java.awt.image.BufferedImage;
 import java.util.Iterator;
 
+import openomr.imageprocessing.BitPlaneImage;
+
 public class StaveBoundaries
 {
 	private double MEASURE_PIXELS = 0.9;
-	private BufferedImage buffImage;
+	private BitPlaneImage bitPlane;
 	private StaveDetection staveDetection;
 
-	public StaveBoundaries(BufferedImage buffImage, StaveDetection staveDetection)
+	public StaveBoundaries(BitPlaneImage bitPlane, StaveDetection staveDetection)
 	{
-		this.buffImage = buffImage;
+		this.bitPlane = bitPlane;
 		this.staveDetection = staveDetection;
 	}
 
@@ -56,7 +57,7 @@ public class StaveBoundaries
 
 	private int doLeftBoundaries(Staves stave)
 	{
-		for (int i = 0; i < buffImage.getWidth(); i += 1)
+		for (int i = 0; i < bitPlane.getWidth(); i += 1)
 		{
 			boolean res = isStaveOnly(stave, i, 1);
 			if (!res)
@@ -69,7 +70,7 @@ public class StaveBoundaries
 
 	private int doRightBoundaries(Staves stave)
 	{
-		for (int i = buffImage.getWidth() - 1; i >= 0; i -= 1)
+		for (int i = bitPlane.getWidth() - 1; i >= 0; i -= 1)
 		{
 			boolean res = isStaveOnly(stave, i, 1);
 			if (!res)
@@ -82,7 +83,7 @@ public class StaveBoundaries
 				}
 			}
 		}
-		return buffImage.getWidth() - 1;
+		return bitPlane.getWidth() - 1;
 	}
 
 	public void findMeasures()
@@ -102,15 +103,9 @@ public class StaveBoundaries
 			boolean found = false;
 			int count = 0;
 			int remember = 0;
-			for (int i = 0; i < buffImage.getWidth(); i += 1)
+			for (int i = 0; i < bitPlane.getWidth(); i += 1)
 			{
-				int bCount = 0;
-				for (int j = start; j < height + start; j += 1)
-				{
-					int bPix = buffImage.getRGB(i, j);
-					if (bPix != -1)
-						bCount += 1;
-				}
+				int bCount = bitPlane.countColumn(i, start, height + start);
 				if (bCount > height * MEASURE_PIXELS)
 				{
 					if (!found)
@@ -145,7 +140,7 @@ public class StaveBoundaries
 			int SPACING_BEFORE = 2;
 			int SPACING_AFTER = 6;
 			
-			for (int i = 0; i < buffImage.getWidth(); i += SPACING_BEFORE)
+			for (int i = 0; i < bitPlane.getWidth(); i += SPACING_BEFORE)
 			{
 
 				//Do we have a an empty stave spanning accross a distance of SPACING_BEFORE pixels?
@@ -155,7 +150,7 @@ public class StaveBoundaries
 				int end = i;
 				if (!res)
 				{
-					for (int j = i + 1; j < buffImage.getWidth(); j += /*SPACING_AFTER*/+1)
+					for (int j = i + 1; j < bitPlane.getWidth(); j += /*SPACING_AFTER*/+1)
 					{
 						//Do we have a an empty stave spanning accross a distance of SPACING_AFTER pixels?
 						res = isStaveOnly(stave, j, SPACING_AFTER);
@@ -188,20 +183,15 @@ public class StaveBoundaries
 
 		if (start < 0)
 			start = 0;
-		if (stop >= buffImage.getHeight())
-			stop = buffImage.getHeight() - 1;
+		if (stop >= bitPlane.getHeight())
+			stop = bitPlane.getHeight() - 1;
 
 		int j=0;
 		for (j = 0; j < step; j += 1)
 		{
-			if (xStart+j >= buffImage.getWidth())
+			if (xStart+j >= bitPlane.getWidth())
 				break;
-			for (int i = start; i < stop; i += 1)
-			{
-				int pix = buffImage.getRGB(xStart + j, i);
-				if (pix != -1)
-					bCount += 1;
-			}
+			bCount += bitPlane.countColumn(xStart + j, start, stop);
 		}
 
 		bCount /= j+1;
@@ -23,6 +23,7 @@
 
 package openomr.omr_engine;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 
@@ -39,6 +40,10 @@ import java.util.LinkedList;
  * sDetection.locateStaves(); <br>
  * sDetection.calcNoteDistance(); <br>
  * </code>
+ * <p>
+ * The peaks of the Y-Projection are kept in an array in top to bottom order, and a stave is matched by
+ * chaining each line to the first peak found within the stave line spacing below it. Each step only looks
+ * at the peaks in that window, so the staves are found in a single pass over the peaks.
  * 
  * 
  * @author Arnaud Desaedeleer
@@ -51,7 +56,8 @@ public class StaveDetection
 	private double PEAK_THRESHOLD;
 	private int height;
 	private int bPixels[];
-	private LinkedList<StavePeaks> localMaxList;
+	private StavePeaks peaks[];		// local maximums of the Y-Projection, top to bottom
+	private int peakCount;
 	private StaveParameters staveParams;
 	private LinkedList<Staves> staveList;
 	private int stavesfound;
@@ -61,7 +67,6 @@ public class StaveDetection
 		bPixels = yproj.getYProjection();
 		this.height = yproj.getHeight();
 		this.staveParams = staveParams;
-		localMaxList = new LinkedList<StavePeaks>();
 		staveList = new LinkedList<Staves>();
 		stavesfound = 0;
 		
@@ -80,126 +85,47 @@ public class StaveDetection
 	public void locateStaves()
 	{
 		findLocalMaximums();
+		filterStavelines();
 		stavesfound = 0;
-		// process each local maxima one at a time
-		Iterator iter = localMaxList.iterator();
-		while (true)
-		{
-			if (!iter.hasNext())
-			{
-				break;
-			}
+		staveList.clear();
 
-			StavePeaks temp = (StavePeaks) iter.next();
-			// Percentage of local maximum used as threshold to search for other
-			// neighbouring peaks
-			int val = (int) (temp.getValue() * STAVE_THRESHOLD);
-
-			// search backwards bPixel array for values >= to threshold value
-			int count = 1;
-			for (int i = temp.getPos() - 1; i >= 0; i -= 1)
-			{
-				if (bPixels[i] < val || count >= staveParams.getN2() / 2)
-				{
-					temp.SetStart(temp.getPos() - count + 1);
-					break;
-				}
-				count += 1;
-			}
-
-			// search forwards bPixel array for values >= to threshold value
-			int count2 = 1;
-			for (int i = temp.getPos() + 1; i < height; i += 1)
-			{
-				if (bPixels[i] < val || count2 >= staveParams.getN2() / 2)
-				{
-					temp.SetEnd(temp.getPos() + count2 - 1);
-					break;
-				}
-				count2 += 1;
-			}
-
-			// calculate the width of potential staveline
-			count += count2 - 1;
-			if (count > staveParams.getN2() || count < staveParams.getN1())
-			{
-				// remove any items that are thicker or narrower than staveline
-				// parameters N1 and N2
-				iter.remove();
-			}
-		}
-
-		// We now want to locate all the staves by processing each item in
-		// linked list
-		iter = localMaxList.iterator();
-		boolean found = false;
-		StavePeaks first = null;
-		StavePeaks nextPeak = null;
-		int min = 0;
-		int max = 0;
+		// Chain each peak to the next staveline below it; five lines in a row make a stave.
+		// When a chain breaks, a new one starts from the peak after the one it started from.
+		int next = 0;		// next peak to start a chain from
+		int line = -1;		// current line of the chain, -1 if there is no chain
 		int linecount = 1;
-		Staves temp;
-		temp = new Staves(stavesfound);
-		while (true)
+		Staves temp = null;
+		while (next < peakCount)
 		{
-			if (!iter.hasNext())
-				break;
-
-			if (!found)
+			if (line < 0)
 			{
-				// We haven't found a staveline, get next item in list to
-				// process
-				first = (StavePeaks) iter.next();
-				// min and max values to determine acceptable distance between
-				// end of stave and beginning of next stave
-				min = first.getEnd() + staveParams.getD1();
-				max = first.getEnd() + staveParams.getD2();
-
+				line = next;
+				next += 1;
 				temp = new Staves(stavesfound);
-				temp.addStaveline(0, first);
-			} else
-			{
-				// We could have a stave, find the next staveline
-				min = nextPeak.getEnd() + staveParams.getD1();
-				max = nextPeak.getEnd() + staveParams.getD2();
-				first = nextPeak;
+				temp.addStaveline(0, peaks[line]);
 			}
 
-			// Use a second iterator and get it to same position as first
-			Iterator iter2 = localMaxList.iterator();
-			iter2 = getToSamePosition(iter2, first);
-
-			nextPeak = findNextStave(min, max, first.getValue(), iter2);
-			if (nextPeak == null)
+			StavePeaks first = peaks[line];
+			line = findNextStave(line, first.getEnd() + staveParams.getD1(), first.getEnd() + staveParams.getD2(), first.getValue());
+			if (line < 0)
 			{
-				// Current item in list has been determined not to be part of a
-				// stave
-				// Reset found to false and linecount to 1
-				found = false;
+				// Current item in list has been determined not to be part of a stave
 				linecount = 1;
 			} else
 			{
 				// Current item could be part of a stave
 				linecount += 1;
 				if (linecount < 6)
-					temp.addStaveline(linecount - 1, nextPeak);
+					temp.addStaveline(linecount - 1, peaks[line]);
 
-				// When linecount == 5, we have found a stave
+				// When linecount == 5, we have found a stave; carry on after its bottom line,
+				// although the chain itself goes on until it breaks
 				if (linecount == 5)
 				{
 					stavesfound += 1;
-
-					// advance iter to nextPeak
-					iter = getToSamePosition(iter, nextPeak);
-					found = false;
-
-					// add stave to linked list
+					next = line + 1;
 					staveList.add(temp);
-					
-					//print location of bottom staveline
-					//System.out.println("Bottom stave: " + temp.getStave(4).getEnd());
 				}
-				found = true;
 			}
 		}
 	}
@@ -305,26 +231,20 @@ public class StaveDetection
 	/*
 	public void printList()
 	{
-		Iterator iter = localMaxList.iterator();
-		while (true)
-		{
-			if (iter.hasNext())
-			{
-				StavePeaks temp = (StavePeaks) iter.next();
-				System.out.println("Local Max: " + temp.getValue() + " Position: " + temp.getPos());
-			} else
-				break;
-		}
+		for (int i = 0; i < peakCount; i += 1)
+			System.out.println("Local Max: " + peaks[i].getValue() + " Position: " + peaks[i].getPos());
 	}
 	*/
 	
 	
 	
 	// Find local maximums in bPixel array
-	// place all local maximums in locaMaxList linked list
+	// place all local maximums in the peaks array
 	// Eg: 1, 3, 5, 3, 2, 8, 3, 5, 9, 2 --> would return 5, 8, 9
 	private void findLocalMaximums()
 	{
+		peaks = new StavePeaks[16];
+		peakCount = 0;
 		for (int i = 1; i < height - 1; i += 1)
 		{
 			int pixA = bPixels[i - 1];
@@ -332,59 +252,87 @@ public class StaveDetection
 			int pix = bPixels[i];
 			if (pix >= pixA && pix > pixB)
 			{
-				StavePeaks temp = new StavePeaks(i, pix);
-				localMaxList.add(temp);
+				if (peakCount == peaks.length)
+					peaks = Arrays.copyOf(peaks, peakCount * 2);
+				peaks[peakCount] = new StavePeaks(i, pix);
+				peakCount += 1;
 			}
 		}
 	}
 	
 	
-	// Method to advance an iterator to same position as object StavePeaks in
-	// linked list
-	private Iterator getToSamePosition(Iterator it1, StavePeaks tester)
+	// Set the extent of each peak (the rows around it above STAVE_THRESHOLD of its value, at most
+	// n2 / 2 on each side) and only keep those as thick as a staveline
+	private void filterStavelines()
 	{
-		while (true)
+		int kept = 0;
+		for (int k = 0; k < peakCount; k += 1)
 		{
-			if (!it1.hasNext())
-				break;
-			StavePeaks t = (StavePeaks) it1.next();
-			if (t.equals(tester))
-				break;
+			StavePeaks temp = peaks[k];
+			// Percentage of local maximum used as threshold to search for other
+			// neighbouring peaks
+			int val = (int) (temp.getValue() * STAVE_THRESHOLD);
+
+			// search backwards bPixel array for values >= to threshold value
+			int count = 1;
+			for (int i = temp.getPos() - 1; i >= 0; i -= 1)
+			{
+				if (bPixels[i] < val || count >= staveParams.getN2() / 2)
+				{
+					temp.SetStart(temp.getPos() - count + 1);
+					break;
+				}
+				count += 1;
+			}
+
+			// search forwards bPixel array for values >= to threshold value
+			int count2 = 1;
+			for (int i = temp.getPos() + 1; i < height; i += 1)
+			{
+				if (bPixels[i] < val || count2 >= staveParams.getN2() / 2)
+				{
+					temp.SetEnd(temp.getPos() + count2 - 1);
+					break;
+				}
+				count2 += 1;
+			}
+
+			// calculate the width of potential staveline and remove any items that
+			// are thicker or narrower than staveline parameters N1 and N2
+			count += count2 - 1;
+			if (count <= staveParams.getN2() && count >= staveParams.getN1())
+			{
+				peaks[kept] = temp;
+				kept += 1;
+			}
 		}
-		return it1;
+		Arrays.fill(peaks, kept, peakCount, null);
+		peakCount = kept;
 	}
 
-	// Method to find a potential staveline in linked list
-	private StavePeaks findNextStave(int min, int max, int val, Iterator iter)
+	// Index of the peak following peak line which could be the next staveline: it must start between min and
+	// max, and the value of peak line must be >= PEAK_THRESHOLD of its value. The peaks are in top to bottom order,
+	// so the search stops at the first peak starting after max. The last peak is never taken, as it always has been.
+	// Returns -1 if there is none
+	private int findNextStave(int line, int min, int max, int val)
 	{
-		if (!iter.hasNext())
-			return null;
-		StavePeaks next = (StavePeaks) iter.next();
-
-		while (true)
+		for (int k = line + 1; k < peakCount - 1; k += 1)
 		{
-			if (!iter.hasNext())
-				break;
+			StavePeaks next = peaks[k];
 
 			// If starting position of next item in list > max, then we can't
 			// consider that item to be part of stave
 			if (next.getStart() > max)
-				return null;
+				return -1;
 
 			// If start is in between min and max, we can consider that item
-			else if (next.getStart() >= min && next.getStart() <= max)
-			{
-				// consider this stave only if previous staveline maximum is >=
-				// than 2/3 of current maximum
-				// 2/3 seems to be a value that works for all test cases
-				int val1 = (int) (next.getValue() * PEAK_THRESHOLD);
-				if (val >= val1)
-					return next;
-			}
-			next = (StavePeaks) iter.next();
+			// only if previous staveline maximum is >= than 2/3 of current maximum
+			// 2/3 seems to be a value that works for all test cases
+			if (next.getStart() >= min && val >= (int) (next.getValue() * PEAK_THRESHOLD))
+				return k;
 		}
 
-		// Found nothing, return null
-		return null;
+		// Found nothing
+		return -1;
 	}
 }
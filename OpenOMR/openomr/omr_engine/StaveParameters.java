@@ -24,16 +24,32 @@
 package openomr.omr_engine;
 
 import java.awt.image.*;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import openomr.imageprocessing.BitPlaneImage;
 
 /** The <code> StaveParameters </code> is a class responsible for calculating two important paramters
  * in a BufferedImage. Those two parameters are the thickness of a stave line and the distance between
  * two stave lines. Given those two parameters, a lower and upper threshold value is determined.
  * <p>
+ * Both come from histograms of the lengths of the vertical runs of black and white pixels. Each column is
+ * run-length encoded straight from the packed columns of the <code> BitPlaneImage </code>, one run at a time,
+ * so the cost depends on the number of runs rather than on the number of pixels. The parameters of a
+ * <code> BitPlaneImage </code> can be shared through <code> StaveParameters.forImage </code>, which
+ * only scans each image once.
+ * <p>
  * The <code> StaveParameters </code> class is used as follows:
  * <p> 
  * <code>
  * StaveParameters sParams = new StaveParameters(buffImage); <br>
- * sParams.calcParameters();
+ * sParams.calcParameters(); <br>
+ * </code>
+ * <p>
+ * or, for parameters shared by everything working on the same image:
+ * <p>
+ * <code>
+ * StaveParameters sParams = StaveParameters.forImage(bitPlane); <br>
  * </code>
  * <p>
  * Calling the calcParameters() method will calculate values for the following private fields:
@@ -49,7 +65,7 @@ import java.awt.image.*;
 
 public class StaveParameters
 {
-	private BufferedImage buffImage;
+	private BitPlaneImage bitPlane;
 	private int len = 100;
 	private int wPixels[], bPixels[];
 	private int height, width;
@@ -61,6 +77,43 @@ public class StaveParameters
 	private int d1 = 0;
 	private int d2 = 0;
 
+	// State of the RLE of each column, so that the image can be added band by band
+	private int bcnt[], wcnt[];
+	private int rowsDone = 0;	// rows 0 to rowsDone - 1 have been compared with the next row
+
+	private static Map<BitPlaneImage, StaveParameters> cache = new WeakHashMap<BitPlaneImage, StaveParameters>();
+
+	/**
+	 * Returns the parameters of a whole image, calculated the first time they are asked for
+	 * and then kept for as long as the image is in use. The image is scanned outside the lock
+	 * of the cache, so that different images can be scanned at the same time.
+	 * @param bitPlane The packed image
+	 * @return the calculated parameters
+	 */
+
+	public static StaveParameters forImage(BitPlaneImage bitPlane)
+	{
+		synchronized (cache)
+		{
+			StaveParameters params = cache.get(bitPlane);
+			if (params != null)
+				return params;
+		}
+
+		StaveParameters params = new StaveParameters(bitPlane);
+		params.calcParameters();
+
+		synchronized (cache)
+		{
+			// Keep the parameters of a thread that scanned the same image first
+			StaveParameters previous = cache.get(bitPlane);
+			if (previous != null)
+				return previous;
+			cache.put(bitPlane, params);
+			return params;
+		}
+	}
+
 	/**
 	 * 
 	 * @param buffImage
@@ -70,13 +123,27 @@ public class StaveParameters
 	
 	public StaveParameters(BufferedImage buffImage)
 	{
-		this.buffImage = buffImage;
+		this(BitPlaneImage.create(buffImage));
+	}
+
+	/**
+	 * 
+	 * @param bitPlane
+	 * 
+	 * Initialises the StaveParameters class with the packed version of the image
+	 */
+	
+	public StaveParameters(BitPlaneImage bitPlane)
+	{
+		this.bitPlane = bitPlane;
 		wPixels = new int[len];
 		bPixels = new int[len];
-		height = buffImage.getHeight();
-		width = buffImage.getWidth();
+		height = bitPlane.getHeight();
+		width = bitPlane.getWidth();
+		bcnt = new int[width];
+		wcnt = new int[width];
 
-		//calcRLE(0, width - 1);
+		//addRows(height);
 		//calcParams();
 	}
 
@@ -88,11 +155,75 @@ public class StaveParameters
 	
 	public void calcParameters()
 	{
-		calcRLE(0, width - 1);
+		addRows(height);
+
+		// Every row is in, so the image is no longer needed; the cache of forImage
+		// must not keep it alive either
+		bitPlane = null;
+		bcnt = null;
+		wcnt = null;
 		calcParams();
 	}
 	
 	
+	/**
+	 * Count the runs of black and white pixels of the rows 0 to endH (exclusive) which have not been counted yet.
+	 * When the image is packed band by band, this is called after each band and <code> calcParameters </code>
+	 * once the last band is in: the runs crossing the boundary between two bands carry on in the next band,
+	 * so the result is the same as for the whole image at once.
+	 * @param endH Number of rows of the image available so far
+	 */
+	
+	public void addRows(int endH)
+	{
+		// Row j is compared with row j + 1, so the run a pixel belongs to is known
+		// once the next pixel of its column is in
+		int last = Math.min(endH, height) - 1;
+		if (last <= rowsDone)
+			return;
+		for (int i = 0; i < width - 1; i += 1)
+			addColumn(i, rowsDone, last);
+		rowsDone = last;
+	}
+
+	// Add the runs of column i between rows from and last (exclusive); a run is only complete when
+	// the pixel which follows it, at most at row last, is of the other colour
+	private void addColumn(int i, int from, int last)
+	{
+		int j = from;
+		while (j < last)
+		{
+			if (bitPlane.isBlack(i, j))
+			{
+				int end = bitPlane.nextWhiteInColumn(i, j, last + 1);
+				if (end > last)
+				{
+					bcnt[i] += last - j;
+					return;
+				}
+				bcnt[i] += end - j;
+				if (bcnt[i] > bThreshold && bcnt[i] < 100)
+					bPixels[bcnt[i]] += 1;
+				bcnt[i] = 0;
+				j = end;
+			} else
+			{
+				int end = bitPlane.nextBlackInColumn(i, j, last + 1);
+				if (end > last)
+				{
+					wcnt[i] += last - j;
+					return;
+				}
+				wcnt[i] += end - j;
+				if (wcnt[i] > wThreshold && wcnt[i] < 100)
+					wPixels[wcnt[i]] += 1;
+				wcnt[i] = 0;
+				j = end;
+			}
+		}
+	}
+	
+	
 	/**
 	 * Returns the value n1 which is the lower threshold value for the thickness of a stave line
 	 * @return n1
@@ -151,44 +282,6 @@ public class StaveParameters
 	
 	/*	PRIVATE METHODS */
 	
-	private void calcRLE(int startW, int endW)
-	{
-		for (int i = startW; i < endW; i += 1)
-		{
-			int bcnt = 0, wcnt = 0;
-			boolean stop = false;
-
-			for (int j = 0; j < height - 1; j += 1)
-			{
-				int color = buffImage.getRGB(i, j);
-
-				if (color != -1 && !stop) // -1 == white pixel
-				{
-					bcnt += 1;
-					color = buffImage.getRGB(i, j + 1);
-					if (color == -1)
-					{
-						stop = true;
-						if (bcnt > bThreshold && bcnt < 100)
-							bPixels[bcnt] += 1;
-						bcnt = 0;
-					}
-				} else
-				{
-					wcnt += 1;
-					color = buffImage.getRGB(i, j + 1);
-					if (color != -1)
-					{
-						stop = false;
-						if (wcnt > wThreshold && wcnt < 100)
-							wPixels[wcnt] += 1;
-						wcnt = 0;
-					}
-				}
-			}
-		}
-	}
-	
 	private int calcParams()
 	{
 		int wMax = wPixels[0];
@@ -0,0 +1,110 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.omr_engine;
+
+import openomr.ann.ANNInterrogator;
+
+/**
+ * The <code> SymbolQueue </code> class collects the symbols (L2_Segments) found while segmenting a stave
+ * so that they can all be given to the neural network in a single batch once the stave has been segmented.
+ * <p>
+ * The <code> SymbolQueue </code> class is used as follows:
+ * <p>
+ * <code>
+ * symbolQueue.add(ANNPrepare.prepareImage(symbolImage), l2_segment); <br>
+ * ... <br>
+ * symbolQueue.classify(annInterrogator); <br>
+ * </code>
+ * <p>
+ * Once <code> classify </code> has been called, the symbol name and accuracy of every queued L2_Segment are set
+ * and the queue is empty again. The arrays of the queue are kept and reused for the next stave.
+ */
+
+public class SymbolQueue
+{
+	private double inputs[][];
+	private L2_Segment segments[];
+	private int symbols[];
+	private double confidences[];
+	private int size;
+
+	public SymbolQueue()
+	{
+		inputs = new double[16][];
+		segments = new L2_Segment[16];
+		symbols = new int[16];
+		confidences = new double[16];
+		size = 0;
+	}
+
+	/**
+	 * Queue a symbol for classification
+	 * @param data The input vector of the symbol, as returned by <code> ANNPrepare.prepareImage </code>
+	 * @param segment The L2_Segment which will receive the result
+	 */
+
+	public void add(double data[], L2_Segment segment)
+	{
+		if (size == inputs.length)
+			grow();
+		inputs[size] = data;
+		segments[size] = segment;
+		size += 1;
+	}
+
+	/**
+	 * Classify all queued symbols and empty the queue
+	 */
+
+	public void classify(ANNInterrogator interrogator)
+	{
+		interrogator.interogateNN(inputs, size, symbols, confidences);
+		for (int i = 0; i < size; i += 1)
+		{
+			segments[i].setClassification(interrogator.getSymbolName(symbols[i]), confidences[i]);
+			segments[i].printInfo();
+			inputs[i] = null;
+			segments[i] = null;
+		}
+		size = 0;
+	}
+
+	public int getSize()
+	{
+		return size;
+	}
+
+	private void grow()
+	{
+		int capacity = inputs.length * 2;
+		double newInputs[][] = new double[capacity][];
+		L2_Segment newSegments[] = new L2_Segment[capacity];
+		System.arraycopy(inputs, 0, newInputs, 0, size);
+		System.arraycopy(segments, 0, newSegments, 0, size);
+		inputs = newInputs;
+		segments = newSegments;
+		symbols = new int[capacity];
+		confidences = new double[capacity];
+	}
+}
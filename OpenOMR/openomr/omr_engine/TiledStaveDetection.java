@@ -0,0 +1,154 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+
+package openomr.omr_engine;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import openomr.imageprocessing.BandedImageReader;
+import openomr.imageprocessing.BitPlaneImage;
+
+/**
+ * The <code> TiledStaveDetection </code> class locates the staves of a sheet which is read from disk one
+ * horizontal band at a time, for scans too large to be loaded as a single <code> BufferedImage </code>.
+ * Only the band being read is kept in full colour; it is binarized into a <code> BitPlaneImage </code>
+ * (one bit per pixel) and then dropped.
+ * <p>
+ * Everything the stave detection needs is accumulated while the bands go by: the runs of black and white
+ * pixels used by <code> StaveParameters </code>, whose state is carried from one band to the next, and the
+ * Y-Projection of each row. Both carry on exactly where the previous band stopped, so no overlap between bands
+ * is needed and the parameters, the Y-Projection and the staves found are the same as when the whole image is
+ * loaded at once. The staves themselves are located once the last band is in, as the stave parameters depend
+ * on the whole sheet.
+ * <p>
+ * The <code> TiledStaveDetection </code> class is used as follows:
+ * <p>
+ * <code>
+ * TiledStaveDetection tiled = new TiledStaveDetection(file); <br>
+ * tiled.locateStaves(); <br>
+ * StaveDetection sDetection = tiled.getStaveDetection(); <br>
+ * BitPlaneImage bitPlane = tiled.getBitPlane(); <br>
+ * </code>
+ * <p>
+ * <code> BatchOMR -bands </code> processes its pages this way; the symbols are then read from
+ * <code> BitPlaneImage.toBinaryImage </code> since the sheet is never loaded whole.
+ *
+ * @author Arnaud Desaedeleer
+ */
+
+public class TiledStaveDetection
+{
+	public static final int DEFAULT_BAND_HEIGHT = 1024;
+
+	private File file;
+	private int bandHeight;
+	private BitPlaneImage bitPlane;
+	private StaveParameters staveParams;
+	private YProjection yProj;
+	private StaveDetection staveDetection;
+
+	public TiledStaveDetection(File file)
+	{
+		this(file, DEFAULT_BAND_HEIGHT);
+	}
+
+	/**
+	 * @param file The image file of the sheet
+	 * @param bandHeight The number of rows read at a time
+	 */
+
+	public TiledStaveDetection(File file, int bandHeight)
+	{
+		if (bandHeight < 2)
+			throw new IllegalArgumentException("Band height must be at least 2");
+		this.file = file;
+		this.bandHeight = bandHeight;
+	}
+
+	/**
+	 * Read the sheet band by band, packing it and accumulating what the stave detection needs
+	 */
+
+	public void readBands() throws IOException
+	{
+		BandedImageReader reader = new BandedImageReader(file);
+		try
+		{
+			int height = reader.getHeight();
+			bitPlane = BitPlaneImage.create(reader.getWidth(), height);
+			staveParams = new StaveParameters(bitPlane);
+			yProj = new YProjection(bitPlane);
+			yProj.startYProjection();
+
+			for (int startH = 0; startH < height; startH += bandHeight)
+			{
+				int endH = Math.min(startH + bandHeight, height);
+				BufferedImage band = reader.readBand(startH, endH);
+				bitPlane.packRows(band, startH);
+				staveParams.addRows(endH);
+				yProj.addRows(startH, endH);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read the sheet band by band if not done yet, then calculate the stave parameters and locate the staves
+	 */
+
+	public void locateStaves() throws IOException
+	{
+		if (bitPlane == null)
+			readBands();
+
+		staveParams.calcParameters();
+		staveDetection = new StaveDetection(yProj, staveParams);
+		staveDetection.locateStaves();
+	}
+
+	public BitPlaneImage getBitPlane()
+	{
+		return bitPlane;
+	}
+
+	public StaveParameters getStaveParameters()
+	{
+		return staveParams;
+	}
+
+	public YProjection getYProjection()
+	{
+		return yProj;
+	}
+
+	public StaveDetection getStaveDetection()
+	{
+		return staveDetection;
+	}
+}
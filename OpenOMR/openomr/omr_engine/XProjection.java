@@ -25,15 +25,18 @@ package openomr.omr_engine;
 
 import java.awt.image.BufferedImage;
 
+import openomr.imageprocessing.BitPlaneImage;
+
 /**
  * The <code> XProjection </code> class will calculate the X-Projection of an image. The constructor
- * is given a <code> BufferedImage </code> and then the <code> calcXProjection </method> is invoked
- * to calculate the X-Projection of the <code> BufferedImage </code>.
+ * is given a <code> BitPlaneImage </code> (or a <code> BufferedImage </code>) and then the <code> calcXProjection </method> is invoked
+ * to calculate the X-Projection of the image. Each entry of the projection is a word-level bit count
+ * over one column of the <code> BitPlaneImage </code>.
  * <p>
  * The <code> XProjection </code> class is used as follows:
  * <p> 
  * <code>
- * XProjection xProj = new XProjection(BufferedImage); <br>
+ * XProjection xProj = new XProjection(BitPlaneImage); <br>
  * xProj.calcXProjection(startH, endH, startW, endW); <br>
  * </code>
  * <p>
@@ -49,11 +52,21 @@ public class XProjection
 {
 	private int xProjection[];
 	private int size;
-	private BufferedImage buffImage;
+	private BitPlaneImage bitPlane;
+	
+	public XProjection(BitPlaneImage bitPlane)
+	{
+		this.bitPlane = bitPlane;
+	}
+	
+	/**
+	 * Convenience constructor which packs the <code> BufferedImage </code> first. Callers computing several
+	 * projections of the same image should build the <code> BitPlaneImage </code> once and share it.
+	 */
 	
 	public XProjection(BufferedImage buffImage)
 	{
-		this.buffImage = buffImage;
+		this(BitPlaneImage.create(buffImage));
 	}
 	
 	/**
@@ -71,24 +84,19 @@ public class XProjection
 		this.size = size;
 		xProjection = new int[size];
 		
+		if (endH <= startH)
+			return;
+		
+		// Pixels outside of the image are counted as black
+		int rows = endH - startH;
+		int inside = Math.min(endH, bitPlane.getHeight()) - Math.max(startH, 0);
+		int outside = rows - Math.max(inside, 0);
 		for (int i = startW; i < endW; i += 1)
 		{
-			for (int j = startH; j < endH; j += 1)
-			{
-				int color = 0;
-				try
-				{
-					color = buffImage.getRGB(i, j);
-				}
-				catch (ArrayIndexOutOfBoundsException e)
-				{
-					
-				}
-				if (color != -1) //if black pixel
-				{
-					xProjection[i-startW] += 1;
-				}
-			}
+			if (i < 0 || i >= bitPlane.getWidth())
+				xProjection[i-startW] = rows;
+			else
+				xProjection[i-startW] = bitPlane.countColumn(i, startH, endH) + outside;
 		}
 	}
 	
@@ -25,15 +25,18 @@ package openomr.omr_engine;
 
 import java.awt.image.*;
 
+import openomr.imageprocessing.BitPlaneImage;
+
 /**
  * The <code> YProjection </code> class will calculate the Y-Projection of an image. The constructor
- * is given a <code> BufferedImage </code> and then the <code> calcYProjection </method> is invoked
- * to calculate the Y-Projection of the <code> BufferedImage </code>.
+ * is given a <code> BitPlaneImage </code> (or a <code> BufferedImage </code>) and then the <code> calcYProjection </method> is invoked
+ * to calculate the Y-Projection of the image. Each entry of the projection is a word-level bit count
+ * over one row of the <code> BitPlaneImage </code>.
  * <p>
  * The <code> YProjection </code> class is used as follows:
  * <p> 
  * <code>
- * YProjection yProj = new YProjection(BufferedImage); <br>
+ * YProjection yProj = new YProjection(BitPlaneImage); <br>
  * yProj.calcYProjection(startH, endH, startW, endW); <br>
  * </code>
  * <p>
@@ -47,14 +50,24 @@ import java.awt.image.*;
 
 public class YProjection
 {
-	private BufferedImage buffImage;
+	private BitPlaneImage bitPlane;
 	private int height;
 	private int yProjection[];
 	
+	public YProjection(BitPlaneImage bitPlane)
+	{
+		this.bitPlane = bitPlane;
+		height = bitPlane.getHeight();
+	}
+	
+	/**
+	 * Convenience constructor which packs the <code> BufferedImage </code> first. Callers computing several
+	 * projections of the same image should build the <code> BitPlaneImage </code> once and share it.
+	 */
+	
 	public YProjection(BufferedImage buffImage)
 	{
-		this.buffImage = buffImage;
-		height = buffImage.getHeight();
+		this(BitPlaneImage.create(buffImage));
 	}
 	
 	
@@ -72,30 +85,33 @@ public class YProjection
 		this.height = height;
 		yProjection = new int[height];
 
-		for (int i = startH; i < endH; i += 1)
-		{
-			for (int j = startW; j < endW; j += 1)
-			{
-				int color;
-				try
-				{
-					color = buffImage.getRGB(j, i);
-					if (color == -1) // white pixel
-					{
-						// Do nothing
-					} else
-					{
-						yProjection[i - startH] += 1;
-					}	
-				}
-				catch (ArrayIndexOutOfBoundsException e)
-				{
-					//ABSOLUTELY NEED TO FIX THIS
-					//System.out.println("Array out of bounds exception -- calcYProjection");
-					//System.out.println("Values:  i=" + i + "  j=" + j);
-				}
-			}
-		}
+		// Pixels outside of the image are white
+		bitPlane.projectRows(startH, endH, startW, endW, yProjection);
+	}
+
+
+	/**
+	 * Start the Y-Projection of the whole image, which is then filled band by band with <code> addRows </code>
+	 * while the image is being packed. Once every row has been added, the result is the same as the one of
+	 * <code> calcYProjection(0, height, 0, width) </code>.
+	 */
+
+	public void startYProjection()
+	{
+		height = bitPlane.getHeight() + 1;
+		yProjection = new int[height];
+	}
+
+
+	/**
+	 * Add the rows startH (inclusive) to endH (exclusive) to a Y-Projection started with <code> startYProjection </code>
+	 */
+
+	public void addRows(int startH, int endH)
+	{
+		int width = bitPlane.getWidth();
+		for (int y = Math.max(startH, 0); y < Math.min(endH, bitPlane.getHeight()); y += 1)
+			yProjection[y] = bitPlane.countRow(y, 0, width);
 	}
 
 	/**
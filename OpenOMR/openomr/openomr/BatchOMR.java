@@ -0,0 +1,476 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.openomr;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import openomr.ann.ANNInterrogator;
+import openomr.imageprocessing.Binarizer;
+import openomr.imageprocessing.BitPlaneImage;
+import openomr.midi.ScoreWriter;
+import openomr.omr_engine.DetectionProcessor;
+import openomr.omr_engine.StaveDetection;
+import openomr.omr_engine.StaveParameters;
+import openomr.omr_engine.TiledStaveDetection;
+import openomr.omr_engine.YProjection;
+
+/**
+ * The <code> BatchOMR </code> class runs the whole OMR engine on every image of a directory without
+ * any user interface, so that OpenOMR can be run on a server without a display.
+ * <p>
+ * Every page goes through the same steps as in the GUI (stave parameters, stave detection, symbol
+ * detection and classification) and the notes found are written to a MIDI file named after the image.
+ * Each stave is written to the file as soon as it has been recognised; with <code> -multitrack </code> every
+ * stave gets its own track.
+ * Pages are processed on a bounded pool of worker threads which all share the same neural network.
+ * Once all pages are done, the number of pages per second, the latency percentiles of each step and
+ * the peak heap usage are printed.
+ * <p>
+ * Usage:
+ * <p>
+ * <code>
+ * java -Djava.awt.headless=true openomr.openomr.BatchOMR [-threads n] [-binarize method] [-bands rows] [-multitrack] [-verbose] inputDir outputDir
+ * </code>
+ * <p>
+ * By default only the pages which look like photographs (see <code> Binarizer.needsBinarization </code>) are
+ * binarized, with Sauvola's method; <code> -binarize </code> can force <code> otsu </code>, <code> sauvola </code>
+ * or <code> niblack </code> on every page, or <code> none </code> to treat every non-white pixel as black.
+ * <p>
+ * With <code> -bands </code>, every page is read from its file a band of rows at a time (see
+ * <code> TiledStaveDetection </code>) so that sheets too large to be loaded whole can be processed.
+ * <code> -bands </code> ignores <code> -binarize </code>: each band is thresholded as it is read, every
+ * non-white pixel being black.
+ * <p>
+ * The neural network is read from the <code> neuralnetwork </code> directory of the working directory,
+ * as in the GUI.
+ */
+
+public class BatchOMR
+{
+	private static final String IMAGE_EXTENSIONS[] = { ".png", ".jpg", ".jpeg", ".gif", ".bmp" };
+	private static final String STAGES[] = { "load", "staves", "symbols", "midi", "total" };
+	private static final int LOAD = 0;
+	private static final int STAVES = 1;
+	private static final int SYMBOLS = 2;
+	private static final int MIDI = 3;
+	private static final int TOTAL = 4;
+	public static final int BINARIZE_AUTO = -1;
+	public static final int BINARIZE_NONE = -2;
+
+	private File inputDir;
+	private File outputDir;
+	private int threadCount;
+	private int binarization = BINARIZE_AUTO;
+	private boolean trackPerStave;
+	private int bandHeight;
+	private ANNInterrogator annInterrogator;
+	private LatencyRecorder latencies[];
+	private AtomicInteger pagesDone;
+	private AtomicInteger pagesFailed;
+	private AtomicInteger pagesWithoutStaves;
+
+	public BatchOMR(File inputDir, File outputDir, int threadCount, ANNInterrogator annInterrogator)
+	{
+		this.inputDir = inputDir;
+		this.outputDir = outputDir;
+		this.threadCount = threadCount;
+		this.annInterrogator = annInterrogator;
+		latencies = new LatencyRecorder[STAGES.length];
+		for (int i = 0; i < STAGES.length; i += 1)
+			latencies[i] = new LatencyRecorder();
+		pagesDone = new AtomicInteger();
+		pagesFailed = new AtomicInteger();
+		pagesWithoutStaves = new AtomicInteger();
+	}
+
+	/**
+	 * Choose how pages are made black and white: <code> BINARIZE_AUTO </code>, <code> BINARIZE_NONE </code>
+	 * or one of the methods of <code> Binarizer </code>
+	 */
+
+	public void setBinarization(int binarization)
+	{
+		this.binarization = binarization;
+	}
+
+	/**
+	 * Choose whether the MIDI files get one track per stave instead of a single track
+	 */
+
+	public void setTrackPerStave(boolean trackPerStave)
+	{
+		this.trackPerStave = trackPerStave;
+	}
+
+	/**
+	 * Choose whether pages are read band by band, and how many rows each band has; 0 loads pages whole
+	 */
+
+	public void setBandHeight(int bandHeight)
+	{
+		this.bandHeight = bandHeight;
+	}
+
+	/**
+	 * Process all images of the input directory and print a report on <code> report </code>
+	 */
+
+	public void run(PrintStream report) throws InterruptedException
+	{
+		File pages[] = listImages(inputDir);
+		outputDir.mkdirs();
+		resetPeakHeap();
+
+		// At most threadCount pages are processed and threadCount pages are waiting at any time;
+		// when the queue is full the submitting thread processes the page itself
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(threadCount), new ThreadPoolExecutor.CallerRunsPolicy());
+
+		long start = System.nanoTime();
+		for (int i = 0; i < pages.length; i += 1)
+		{
+			final File page = pages[i];
+			pool.execute(new Runnable()
+			{
+				public void run()
+				{
+					processPage(page);
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		long elapsed = System.nanoTime() - start;
+
+		printReport(report, pages.length, elapsed);
+	}
+
+	/**
+	 * Run the OMR engine on one page and write its MIDI file
+	 */
+
+	public void processPage(File page)
+	{
+		try
+		{
+			long t0 = System.nanoTime();
+			BufferedImage buffImage = null;
+			BitPlaneImage bitPlane;
+			TiledStaveDetection tiled = null;
+			if (bandHeight > 0)
+			{
+				tiled = new TiledStaveDetection(page, bandHeight);
+				tiled.readBands();
+				bitPlane = tiled.getBitPlane();
+			}
+			else
+			{
+				buffImage = ImageIO.read(page);
+				if (buffImage == null)
+					throw new IllegalArgumentException("Unsupported image format");
+				int method = binarization;
+				if (method == BINARIZE_AUTO)
+					method = Binarizer.needsBinarization(buffImage) ? Binarizer.SAUVOLA : BINARIZE_NONE;
+				if (method == BINARIZE_NONE)
+					bitPlane = BitPlaneImage.create(buffImage);
+				else
+				{
+					Binarizer binarizer = new Binarizer(method);
+					binarizer.setThreadCount(1);	// pages are already processed in parallel
+					binarizer.binarize(buffImage);
+					buffImage = binarizer.getImage();
+					bitPlane = binarizer.getBitPlane();
+				}
+			}
+
+			long t1 = System.nanoTime();
+			StaveDetection staveDetection;
+			if (tiled != null)
+			{
+				tiled.locateStaves();
+				staveDetection = tiled.getStaveDetection();
+			}
+			else
+			{
+				// Each page is only scanned once, no need for the shared cache
+				StaveParameters params = new StaveParameters(bitPlane);
+				params.calcParameters();
+				YProjection yproj = new YProjection(bitPlane);
+				yproj.calcYProjection(0, bitPlane.getHeight(), 0, bitPlane.getWidth());
+				staveDetection = new StaveDetection(yproj, params);
+				staveDetection.locateStaves();
+			}
+
+			long t2 = System.nanoTime();
+			long t3 = t2;
+			long t4 = t2;
+			boolean hasStaves = staveDetection.getNumStavesFound() > 0;
+			if (hasStaves)
+			{
+				staveDetection.calcNoteDistance();
+				if (buffImage == null)
+					buffImage = bitPlane.toBinaryImage();	// the symbols are cut out of the page image
+				DetectionProcessor detection = new DetectionProcessor(buffImage, bitPlane, staveDetection, null);
+				detection.setANNInterrogator(annInterrogator);
+				detection.setThreadCount(1);	// pages are already processed in parallel
+				detection.setAnnotate(false);	// the annotated image is never displayed
+
+				// The notes of each stave are written out as soon as the stave is recognised,
+				// so the midi step is only what is left once the last stave is done
+				File midiFile = new File(outputDir, getBaseName(page) + ".mid");
+				ScoreWriter scoreWriter = new ScoreWriter(new BufferedOutputStream(new FileOutputStream(midiFile)), staveDetection.getNumStavesFound(), trackPerStave);
+				detection.setListener(scoreWriter);
+				boolean written = false;
+				try
+				{
+					detection.processAll();
+					t3 = System.nanoTime();
+					scoreWriter.close();
+					written = true;
+				}
+				finally
+				{
+					if (!written)
+					{
+						// The page failed and its file is dropped, whatever state it is in
+						try
+						{
+							scoreWriter.close();
+						}
+						catch (Exception e)
+						{
+						}
+						midiFile.delete();
+					}
+				}
+				t4 = System.nanoTime();
+			}
+			else
+				pagesWithoutStaves.incrementAndGet();
+
+			latencies[LOAD].add(t1 - t0);
+			latencies[STAVES].add(t2 - t1);
+			if (hasStaves)
+			{
+				latencies[SYMBOLS].add(t3 - t2);
+				latencies[MIDI].add(t4 - t3);
+			}
+			latencies[TOTAL].add(t4 - t0);
+			pagesDone.incrementAndGet();
+		}
+		catch (Exception e)
+		{
+			pagesFailed.incrementAndGet();
+			System.err.println("Could not process " + page + ": " + e);
+		}
+	}
+
+	private void printReport(PrintStream report, int pageCount, long elapsed)
+	{
+		double seconds = elapsed / 1e9;
+		report.printf("Pages: %d processed, %d without staves, %d failed (%d threads)\n", pagesDone.get(), pagesWithoutStaves.get(), pagesFailed.get(), threadCount);
+		report.printf("Time: %.2f s, %.2f pages/sec\n", seconds, pageCount == 0 ? 0 : pagesDone.get() / seconds);
+		report.printf("%-8s %8s %10s %10s %10s %10s\n", "Stage", "Count", "p50 (ms)", "p90 (ms)", "p99 (ms)", "max (ms)");
+		for (int i = 0; i < STAGES.length; i += 1)
+		{
+			LatencyRecorder rec = latencies[i];
+			report.printf("%-8s %8d %10.1f %10.1f %10.1f %10.1f\n", STAGES[i], rec.getCount(), rec.getPercentile(50) / 1e6, rec.getPercentile(90) / 1e6, rec.getPercentile(99) / 1e6, rec.getPercentile(100) / 1e6);
+		}
+		report.printf("Peak heap: %.1f MB\n", getPeakHeap() / (1024.0 * 1024.0));
+	}
+
+	private static File[] listImages(File dir)
+	{
+		File files[] = dir.listFiles();
+		if (files == null)
+			throw new IllegalArgumentException("Not a directory: " + dir);
+
+		List<File> images = new LinkedList<File>();
+		for (int i = 0; i < files.length; i += 1)
+		{
+			String name = files[i].getName().toLowerCase();
+			for (int j = 0; j < IMAGE_EXTENSIONS.length; j += 1)
+			{
+				if (files[i].isFile() && name.endsWith(IMAGE_EXTENSIONS[j]))
+				{
+					images.add(files[i]);
+					break;
+				}
+			}
+		}
+		File result[] = images.toArray(new File[images.size()]);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static String getBaseName(File file)
+	{
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	private static void resetPeakHeap()
+	{
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				pool.resetPeakUsage();
+	}
+
+	// Sum of the peak usage of every heap pool. This is an upper bound of the peak heap usage
+	// as the pools do not necessarily reach their peak at the same time.
+	private static long getPeakHeap()
+	{
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		return peak;
+	}
+
+	/*
+	 * Keeps every latency of a stage so that exact percentiles can be computed at the end
+	 */
+	private static class LatencyRecorder
+	{
+		private long values[] = new long[64];
+		private int count = 0;
+
+		public synchronized void add(long nanos)
+		{
+			if (count == values.length)
+				values = Arrays.copyOf(values, count * 2);
+			values[count] = nanos;
+			count += 1;
+		}
+
+		public synchronized int getCount()
+		{
+			return count;
+		}
+
+		// Nearest-rank percentile
+		public synchronized long getPercentile(int percent)
+		{
+			if (count == 0)
+				return 0;
+			long sorted[] = Arrays.copyOf(values, count);
+			Arrays.sort(sorted);
+			int rank = (int) Math.ceil(percent / 100.0 * count);
+			return sorted[Math.max(rank, 1) - 1];
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		int binarization = BINARIZE_AUTO;
+		boolean trackPerStave = false;
+		int bandHeight = 0;
+		boolean verbose = false;
+		int i = 0;
+		while (i < args.length && args[i].startsWith("-"))
+		{
+			if (args[i].equals("-threads") && i + 1 < args.length)
+			{
+				threadCount = Integer.parseInt(args[i + 1]);
+				i += 2;
+			}
+			else if (args[i].equals("-binarize") && i + 1 < args.length)
+			{
+				if (args[i + 1].equals("auto"))
+					binarization = BINARIZE_AUTO;
+				else if (args[i + 1].equals("none"))
+					binarization = BINARIZE_NONE;
+				else if ((binarization = Binarizer.getMethod(args[i + 1])) < 0)
+					break;
+				i += 2;
+			}
+			else if (args[i].equals("-bands") && i + 1 < args.length)
+			{
+				bandHeight = Integer.parseInt(args[i + 1]);
+				i += 2;
+			}
+			else if (args[i].equals("-multitrack"))
+			{
+				trackPerStave = true;
+				i += 1;
+			}
+			else if (args[i].equals("-verbose"))
+			{
+				verbose = true;
+				i += 1;
+			}
+			else
+				break;
+		}
+		if (args.length - i != 2 || threadCount < 1 || (bandHeight != 0 && bandHeight < 2))
+		{
+			System.err.println("Usage: BatchOMR [-threads n] [-binarize auto|none|otsu|sauvola|niblack] [-bands rows] [-multitrack] [-verbose] inputDir outputDir");
+			System.exit(1);
+		}
+
+		PrintStream report = System.out;
+		if (!verbose)
+		{
+			// The engine logs every symbol it finds; this is unreadable once pages run in parallel
+			System.setOut(new PrintStream(new OutputStream()
+			{
+				public void write(int b)
+				{
+				}
+			}));
+		}
+
+		ANNInterrogator annInterrogator = new ANNInterrogator();
+		if (annInterrogator.getClassifier() == null)
+		{
+			System.err.println("Could not load the neural network");
+			System.exit(1);
+		}
+
+		BatchOMR batch = new BatchOMR(new File(args[i]), new File(args[i + 1]), threadCount, annInterrogator);
+		batch.setBinarization(binarization);
+		batch.setTrackPerStave(trackPerStave);
+		batch.setBandHeight(bandHeight);
+		batch.run(report);
+	}
+}
@@ -0,0 +1,315 @@
+/***************************************************************************
+ *   Copyright (C) 2006 by Arnaud Desaedeleer                              *
+ *   arnaud@desaedeleer.com                                                *
+ *                                                                         *
+ *   This file is part of OpenOMR                                          *                                                      
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU General Public License     *
+ *   along with this program; if not, write to the                         *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ ***************************************************************************/
+
+
+package openomr.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import openomr.imageprocessing.BitPlaneImage;
+import openomr.omr_engine.NoteHead;
+import openomr.omr_engine.NoteHeadDetection;
+import openomr.omr_engine.ProjectionIndex;
+import openomr.omr_engine.StaveDetection;
+import openomr.omr_engine.StaveParameters;
+import openomr.omr_engine.Staves;
+import openomr.omr_engine.YProjection;
+
+/**
+ * The <code> NoteHeadRegression </code> class checks that <code> NoteHeadDetection </code> finds exactly the
+ * same note heads as the previous implementation (<code> LegacyNoteHeadDetection </code>), and measures how
+ * much faster it is.
+ * <p>
+ * Both are run on every stave of the test images, at every scale, over the whole width of the stave and over
+ * windows of a few note heads the way the L0_Segments are searched. The note heads (position and stem) and the
+ * projections exposed to the GUI must be identical. Both are then timed on a generated page of dense passages
+ * (runs of sixteenth notes and chords), which is also checked.
+ * <p>
+ * Usage:
+ * <p>
+ * <code>
+ * java -Djava.awt.headless=true openomr.benchmark.NoteHeadRegression [-scales 1,2] [-width n] [-repeat n]
+ * [image or directory ...]
+ * </code>
+ * <p>
+ * The exit status is 1 if any difference is found.
+ */
+
+public class NoteHeadRegression
+{
+	private int searches;
+	private int noteHeads;
+	private int differences;
+	private long timedNoteHeads;	// note heads found while timing, reported so that the searches are not optimized away
+
+	/**
+	 * Compare both implementations on every stave of an image
+	 * @return the number of staves found
+	 */
+
+	public int compareImage(BufferedImage buffImage, String name)
+	{
+		Page page = new Page(buffImage);
+		for (Staves stave : page.staves)
+		{
+			int top = PipelineBenchmark.getStaveTop(stave);
+			int bottom = PipelineBenchmark.getStaveBottom(stave, buffImage.getHeight());
+			ProjectionIndex projections = new ProjectionIndex(page.bitPlane, top, bottom + 1);
+
+			compare(projections, page.params, top, bottom, 0, buffImage.getWidth(), name);
+
+			int window = Math.max(4 * page.params.getD2(), 1);
+			for (int x = 0; x < buffImage.getWidth(); x += Math.max(window / 3, 1))
+				compare(projections, page.params, top, bottom, x, Math.min(x + window, buffImage.getWidth()), name);
+		}
+		return page.staves.size();
+	}
+
+	private void compare(ProjectionIndex projections, StaveParameters params, int startH, int endH, int startW, int endW, String name)
+	{
+		LegacyNoteHeadDetection legacy = new LegacyNoteHeadDetection(projections, params);
+		NoteHeadDetection current = new NoteHeadDetection(projections, params);
+		LinkedList<NoteHead> expected = legacy.findNotes(startH, endH, startW, endW);
+		LinkedList<NoteHead> actual = current.findNotes(startH, endH, startW, endW);
+		searches += 1;
+		noteHeads += expected.size();
+
+		String what = null;
+		if (!format(expected).equals(format(actual)))
+			what = "note heads " + format(expected) + " != " + format(actual);
+		else if (!Arrays.equals(legacy.getXProjectionBeforeFilter(), current.getXProjectionBeforeFilter()))
+			what = "X-Projection";
+		else if (!Arrays.equals(legacy.getXProjection(), current.getXProjection()))
+			what = "filtered X-Projection";
+		else if (!Arrays.equals(legacy.getYposBeforeFilter(), current.getYposBeforeFilter()))
+			what = "yPos";
+		else if (!Arrays.equals(legacy.getYPos(), current.getYPos()))
+			what = "filtered yPos";
+
+		if (what != null)
+		{
+			differences += 1;
+			System.out.printf("DIFFERENT %s rows %d-%d columns %d-%d: %s\n", name, startH, endH, startW, endW, what);
+		}
+	}
+
+	private static String format(List<NoteHead> noteHeads)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (NoteHead noteHead : noteHeads)
+			sb.append('[').append(noteHead.x).append(',').append(noteHead.y).append(',').append(noteHead.stemInfo.stemDirection).append(',').append(noteHead.stemInfo.stemPosition).append(']');
+		return sb.toString();
+	}
+
+	/**
+	 * Time both implementations over the whole width of every stave of an image
+	 * @return the time per page of the legacy and of the current implementation, in milliseconds
+	 */
+
+	public double[] time(BufferedImage buffImage, int repeat)
+	{
+		Page page = new Page(buffImage);
+		int count = page.staves.size();
+		int tops[] = new int[count];
+		int bottoms[] = new int[count];
+		ProjectionIndex projections[] = new ProjectionIndex[count];
+		for (int i = 0; i < count; i += 1)
+		{
+			Staves stave = page.staves.get(i);
+			tops[i] = PipelineBenchmark.getStaveTop(stave);
+			bottoms[i] = PipelineBenchmark.getStaveBottom(stave, buffImage.getHeight());
+			projections[i] = new ProjectionIndex(page.bitPlane, tops[i], bottoms[i] + 1);
+		}
+
+		double times[] = new double[2];
+		timedNoteHeads = 0;
+		for (int pass = 0; pass < 2; pass += 1)	// the first pass warms up the JIT compiler
+		{
+			long start = System.nanoTime();
+			for (int r = 0; r < repeat; r += 1)
+				for (int i = 0; i < count; i += 1)
+					timedNoteHeads += new LegacyNoteHeadDetection(projections[i], page.params).findNotes(tops[i], bottoms[i], 0, buffImage.getWidth()).size();
+			times[0] = (System.nanoTime() - start) / 1e6 / repeat;
+
+			start = System.nanoTime();
+			for (int r = 0; r < repeat; r += 1)
+				for (int i = 0; i < count; i += 1)
+					timedNoteHeads += new NoteHeadDetection(projections[i], page.params).findNotes(tops[i], bottoms[i], 0, buffImage.getWidth()).size();
+			times[1] = (System.nanoTime() - start) / 1e6 / repeat;
+		}
+		return times;
+	}
+
+	/**
+	 * Draw a page of dense passages: staves filled with beamed sixteenth notes and three note chords packed
+	 * as tightly as they would be engraved, with the end of each stave left empty.
+	 */
+
+	public static BufferedImage createDensePage(int width, int staveCount, long seed)
+	{
+		final int SPACE = 16;		// distance between two stavelines
+		final int LINE = 2;			// thickness of a staveline
+		final int HEAD_WIDTH = 18;
+		final int HEAD_HEIGHT = 14;
+		final int STEP = 24;		// distance between two notes
+		final int STEM = 3 * SPACE + SPACE / 2;
+		int staveHeight = 4 * SPACE;
+		int margin = 5 * SPACE;
+		int height = staveCount * (staveHeight + 2 * margin);
+
+		BufferedImage page = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = page.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.setColor(Color.BLACK);
+
+		Random random = new Random(seed);
+		for (int s = 0; s < staveCount; s += 1)
+		{
+			int top = s * (staveHeight + 2 * margin) + margin;
+			for (int line = 0; line < 5; line += 1)
+				g.fillRect(SPACE, top + line * SPACE, width - 2 * SPACE, LINE);
+
+			int end = width - width / 5;
+			int group = 0;
+			int beamStart = 0;
+			int beamY = 0;
+			for (int x = 4 * SPACE; x + HEAD_WIDTH < end; x += STEP)
+			{
+				// Position of the lowest note head, in half spaces from the top line
+				int step = random.nextInt(9);
+				int heads = group % 4 == 3 ? 3 : 1;
+				int stemX = x + HEAD_WIDTH - 2;
+				int highest = 0;
+				for (int h = 0; h < heads; h += 1)
+				{
+					int y = top + (step - 2 * h) * SPACE / 2 + LINE / 2 - HEAD_HEIGHT / 2;
+					g.fillOval(x, y, HEAD_WIDTH, HEAD_HEIGHT);
+					highest = y + HEAD_HEIGHT / 2;
+				}
+				int stemTop = Math.min(highest - STEM, top - SPACE);
+				g.fillRect(stemX, stemTop, 2, top + step * SPACE / 2 - stemTop);
+
+				// Two beams over every group of four notes
+				if (group % 4 == 0)
+				{
+					beamStart = stemX;
+					beamY = stemTop;
+				}
+				else if (group % 4 == 3)
+				{
+					g.fillRect(beamStart, beamY, stemX + 2 - beamStart, SPACE / 2);
+					g.fillRect(beamStart, beamY + SPACE, stemX + 2 - beamStart, SPACE / 2);
+				}
+				group += 1;
+			}
+		}
+		g.dispose();
+		return page;
+	}
+
+	/*
+	 * Stave detection of a page, as done before the symbols are searched
+	 */
+	private static class Page
+	{
+		public BitPlaneImage bitPlane;
+		public StaveParameters params;
+		public LinkedList<Staves> staves;
+
+		public Page(BufferedImage buffImage)
+		{
+			bitPlane = BitPlaneImage.create(buffImage);
+			params = new StaveParameters(bitPlane);
+			params.calcParameters();
+			YProjection yProj = new YProjection(bitPlane);
+			yProj.calcYProjection(0, bitPlane.getHeight(), 0, bitPlane.getWidth());
+			StaveDetection staveDetection = new StaveDetection(yProj, params);
+			staveDetection.locateStaves();
+			staveDetection.calcNoteDistance();
+			staves = staveDetection.getStaveList();
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		int scales[] = { 1, 2 };
+		int width = 8000;
+		int repeat = 5;
+		List<File> images = new ArrayList<File>();
+		for (int i = 0; i < args.length; i += 1)
+		{
+			if (args[i].equals("-scales") && i + 1 < args.length)
+				scales = PipelineBenchmark.parseScales(args[++i]);
+			else if (args[i].equals("-width") && i + 1 < args.length)
+				width = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-repeat") && i + 1 < args.length)
+				repeat = Integer.parseInt(args[++i]);
+			else if (args[i].startsWith("-"))
+			{
+				System.err.println("Usage: NoteHeadRegression [-scales 1,2] [-width n] [-repeat n] [image or directory ...]");
+				System.exit(1);
+			}
+			else
+				PipelineBenchmark.addImages(new File(args[i]), images);
+		}
+		if (images.isEmpty())
+			PipelineBenchmark.addImages(new File(System.getProperty("user.dir"), "testImages" + File.separator + "demo"), images);
+
+		NoteHeadRegression regression = new NoteHeadRegression();
+		for (File file : images)
+		{
+			BufferedImage original = ImageIO.read(file);
+			if (original == null)
+				throw new IllegalArgumentException("Unsupported image format: " + file);
+			for (int i = 0; i < scales.length; i += 1)
+			{
+				String name = file.getName() + " x" + scales[i];
+				int staves = regression.compareImage(PipelineBenchmark.upscale(original, scales[i]), name);
+				System.out.printf("%-24s %d staves\n", name, staves);
+			}
+		}
+
+		BufferedImage dense = createDensePage(width, 4, 1);
+		int staves = regression.compareImage(dense, "dense page");
+		System.out.printf("%-24s %d staves\n", "dense page", staves);
+		System.out.printf("%d searches, %d note heads, %d differences\n", regression.searches, regression.noteHeads, regression.differences);
+
+		double times[] = regression.time(dense, repeat);
+		// Two passes of both implementations, repeat times each
+		long noteHeadsPerPage = regression.timedNoteHeads / (4L * repeat);
+		System.out.printf("Dense page %dx%d, %d note heads: legacy %.1f ms, current %.1f ms, speedup %.1fx\n", dense.getWidth(), dense.getHeight(), noteHeadsPerPage, times[0], times[1], times[0] / times[1]);
+
+		if (regression.differences > 0)
+			System.exit(1);
+	}
+}
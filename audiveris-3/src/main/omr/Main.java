@@ -23,7 +23,10 @@ import omr.script.Script;
 import omr.script.ScriptManager;
 
 import omr.sheet.Sheet;
+import omr.sheet.picture.PictureLoader;
 
+import omr.step.CheckpointStore;
+import omr.step.DocumentPipeline;
 import omr.step.ProcessingCancellationException;
 
 import omr.ui.MainGui;
@@ -133,10 +136,15 @@ public class Main
     //-----------------//
     /**
      * Report the properties set at the CLI level
-     * @return the CLI-defined constant values
+     * @return the CLI-defined constant values, or null if the CLI has not been
+     * parsed (when classes are used outside of the application, by tests)
      */
     public static Properties getCliConstants ()
     {
+        if (parameters == null) {
+            return null;
+        }
+
         return parameters.constants;
     }
 
@@ -256,7 +264,16 @@ public class Main
                                 "Launching " + parameters.targetStep + " on " +
                                 name);
 
-                            if (file.exists()) {
+                            if (file.exists() &&
+                                (gui == null) &&
+                                (PictureLoader.getImageCount(file) > 1)) {
+                                // Multi-page document, all pages in batch
+                                new DocumentPipeline(
+                                    file,
+                                    parameters.targetStep).process();
+
+                                return null;
+                            } else if (file.exists()) {
                                 final Sheet sheet = new Sheet(file);
 
                                 try {
@@ -429,6 +446,10 @@ public class Main
             }
 
             // At this point all tasks have completed (normally or not)
+            // Let pending checkpoints be written to disk
+            CheckpointStore.getInstance()
+                           .flush();
+
             // So shutdown immediately the executors
             OmrExecutors.shutdown(true);
 
@@ -19,6 +19,7 @@ import omr.log.Logger;
 import net.jcip.annotations.ThreadSafe;
 
 import java.io.*;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -209,6 +210,67 @@ public class ConstantManager
         return props;
     }
 
+    //-----------------//
+    // getValuesDigest //
+    //-----------------//
+    /**
+     * Report a digest of the current values of all constants whose qualified
+     * name starts with one of the provided prefixes. Values are those set at
+     * CLI level, or in USER and DEFAULT properties, or modified since then.
+     * Constants still using their source value do not contribute, so the
+     * result does not depend on which classes have already been loaded.
+     * @param prefixes the qualified name prefixes, such as "omr.sheet.Scale."
+     * @return the hexadecimal SHA-1 digest of the matching values
+     */
+    public String getValuesDigest (String... prefixes)
+    {
+        SortedMap<String, String> values = new TreeMap<String, String>();
+        Properties                cliConstants = Main.getCliConstants();
+        Collection<String>        keys = getAllProperties();
+
+        if (cliConstants != null) {
+            keys.addAll(cliConstants.stringPropertyNames());
+        }
+
+        for (String key : keys) {
+            if (matches(key, prefixes)) {
+                String value = (cliConstants != null)
+                               ? cliConstants.getProperty(key) : null;
+                values.put(
+                    key,
+                    (value != null) ? value : userHolder.getProperty(key));
+            }
+        }
+
+        for (Constant constant : constants.values()) {
+            String qName = constant.getQualifiedName();
+
+            if (matches(qName, prefixes) && constant.isModified()) {
+                values.put(qName, constant.getCurrentString());
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+            for (Entry<String, String> entry : values.entrySet()) {
+                digest.update(
+                    (entry.getKey() + "=" + entry.getValue() + "\n").getBytes(
+                        "UTF-8"));
+            }
+
+            StringBuilder sb = new StringBuilder();
+
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+
+            return sb.toString();
+        } catch (Exception ex) {
+            throw new RuntimeException(ex); // SHA-1 & UTF-8 are always there
+        }
+    }
+
     //----------------------------//
     // getUnusedDefaultProperties //
     //----------------------------//
@@ -338,6 +400,21 @@ public class ConstantManager
         return userHolder.getProperty(qName);
     }
 
+    //---------//
+    // matches //
+    //---------//
+    private static boolean matches (String    qName,
+                                    String... prefixes)
+    {
+        for (String prefix : prefixes) {
+            if (qName.startsWith(prefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
     //----------------//
@@ -185,16 +185,36 @@ public abstract class GlyphEvaluator
             ins = new double[paramCount];
         }
 
+        return feedInput(glyph, ins, 0);
+    }
+
+    //-----------//
+    // feedInput //
+    //-----------//
+    /**
+     * Prepare the evaluator input within a larger array, typically an array
+     * that gathers the inputs of several glyphs
+     *
+     * @param glyph  the glyph to be evaluated
+     * @param ins    the array to be filled
+     * @param offset the index in array of the first input value
+     *
+     * @return the filled input array
+     */
+    public static double[] feedInput (Glyph    glyph,
+                                      double[] ins,
+                                      int      offset)
+    {
         // We take all the first moments
         Double[] k = glyph.getMoments()
                           .getValues();
 
         for (int i = 0; i < inMoments; i++) {
-            ins[i] = k[i];
+            ins[offset + i] = k[i];
         }
 
         // We append flags and step position
-        int i = inMoments;
+        int i = offset + inMoments;
         /* 10 */ ins[i++] = boolAsDouble(glyph.isWithLedger());
         /* 11 */ ins[i++] = glyph.getStemNumber();
 
@@ -242,6 +262,57 @@ public abstract class GlyphEvaluator
         return kept.toArray(new Evaluation[kept.size()]);
     }
 
+    //-------------------//
+    // getTopEvaluations //
+    //-------------------//
+    /**
+     * Run the evaluator with the specified glyph, and return only the first
+     * best evaluations of {@link #getEvaluations}.
+     *
+     * @param glyph the glyph to be examined
+     * @param count the maximum number of evaluations to report
+     *
+     * @return the ordered best evaluations, perhaps fewer than count
+     */
+    public Evaluation[] getTopEvaluations (Glyph glyph,
+                                           int   count)
+    {
+        return getTopEvaluations(Collections.singletonList(glyph), count)[0];
+    }
+
+    //-------------------//
+    // getTopEvaluations //
+    //-------------------//
+    /**
+     * Run the evaluator on a collection of glyphs, and return for each glyph
+     * the first best evaluations of {@link #getEvaluations}. Subclasses may
+     * override this method, to process the glyphs at once and to avoid
+     * building the evaluations not reported.
+     *
+     * @param glyphs the glyphs to be examined
+     * @param count  the maximum number of evaluations to report per glyph
+     *
+     * @return for each glyph (in the same order) its ordered best evaluations
+     */
+    public Evaluation[][] getTopEvaluations (List<Glyph> glyphs,
+                                             int         count)
+    {
+        Evaluation[][] tops = new Evaluation[glyphs.size()][];
+        int            ig = 0;
+
+        for (Glyph glyph : glyphs) {
+            Evaluation[] evals = getEvaluations(glyph);
+
+            if (evals.length > count) {
+                evals = Arrays.copyOf(evals, count);
+            }
+
+            tops[ig++] = evals;
+        }
+
+        return tops;
+    }
+
     //------//
     // stop //
     //------//
@@ -311,30 +382,34 @@ public abstract class GlyphEvaluator
     public Evaluation vote (Glyph  glyph,
                             double maxDoubt)
     {
-        Evaluation[] evaluations = getEvaluations(glyph);
-
-        if ((evaluations.length > 0) && (evaluations[0].doubt <= maxDoubt)) {
-            Evaluation best = evaluations[0];
-
-            // Temporary logic, to be validated:
-            // If the best shape found is a CLUTTER while a second best is also
-            // acceptable wrt maxDoubt, we choose the second
-            if ((best.shape == Shape.CLUTTER) &&
-                (evaluations.length > 1) &&
-                (evaluations[1].doubt <= maxDoubt)) {
-                best = evaluations[1];
+        return vote(glyph, getTopEvaluations(glyph, 2), maxDoubt);
+    }
 
-                if (logger.isFineEnabled()) {
-                    logger.fine(
-                        "Shape CLUTTER discarded for " + best.shape +
-                        " at glyph #" + glyph.getId());
-                }
-            }
+    //------//
+    // vote //
+    //------//
+    /**
+     * Run the evaluator on a collection of glyphs at once, and infer a shape
+     * for each of them.
+     *
+     * @param glyphs the glyphs to be examined
+     * @param maxDoubt the maximum doubt to be accepted
+     * @return for each glyph (in the same order) the best acceptable
+     * evaluation, or null
+     */
+    public Evaluation[] vote (List<Glyph> glyphs,
+                              double      maxDoubt)
+    {
+        Evaluation[][] tops = getTopEvaluations(glyphs, 2);
+        Evaluation[]   votes = new Evaluation[tops.length];
+        int            ig = 0;
 
-            return best;
-        } else {
-            return null;
+        for (Glyph glyph : glyphs) {
+            votes[ig] = vote(glyph, tops[ig], maxDoubt);
+            ig++;
         }
+
+        return votes;
     }
 
     //---------//
@@ -449,6 +524,45 @@ public abstract class GlyphEvaluator
         return null;
     }
 
+    //------//
+    // vote //
+    //------//
+    /**
+     * Infer a shape from the best evaluations of a glyph
+     *
+     * @param glyph the glyph at hand
+     * @param evaluations the ordered best evaluations, at least the first two
+     * @param maxDoubt the maximum doubt to be accepted
+     * @return the best acceptable evaluation, or null
+     */
+    private Evaluation vote (Glyph        glyph,
+                             Evaluation[] evaluations,
+                             double       maxDoubt)
+    {
+        if ((evaluations.length > 0) && (evaluations[0].doubt <= maxDoubt)) {
+            Evaluation best = evaluations[0];
+
+            // Temporary logic, to be validated:
+            // If the best shape found is a CLUTTER while a second best is also
+            // acceptable wrt maxDoubt, we choose the second
+            if ((best.shape == Shape.CLUTTER) &&
+                (evaluations.length > 1) &&
+                (evaluations[1].doubt <= maxDoubt)) {
+                best = evaluations[1];
+
+                if (logger.isFineEnabled()) {
+                    logger.fine(
+                        "Shape CLUTTER discarded for " + best.shape +
+                        " at glyph #" + glyph.getId());
+                }
+            }
+
+            return best;
+        } else {
+            return null;
+        }
+    }
+
     //~ Inner Interfaces -------------------------------------------------------
 
     //---------//
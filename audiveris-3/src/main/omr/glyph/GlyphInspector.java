@@ -56,9 +56,6 @@ public class GlyphInspector
     /** Related scale */
     private final Scale scale;
 
-    /** Related lag */
-    private final GlyphLag lag;
-
     /** Related compound builder */
     private final CompoundBuilder compoundBuilder;
 
@@ -91,8 +88,6 @@ public class GlyphInspector
         this.system = system;
         scale = system.getSheet()
                       .getScale();
-        lag = system.getSheet()
-                    .getVerticalLag();
         compoundBuilder = new CompoundBuilder(system);
 
         maxCloseStemDx = scale.toPixels(constants.maxCloseStemDx);
@@ -201,15 +196,23 @@ public class GlyphInspector
     public void evaluateGlyphs (double maxDoubt)
     {
         GlyphEvaluator evaluator = GlyphNetwork.getInstance();
+        List<Glyph>    glyphs = new ArrayList<Glyph>();
 
         for (Glyph glyph : system.getGlyphs()) {
             if (glyph.getShape() == null) {
-                // Get vote
-                Evaluation vote = evaluator.vote(glyph, maxDoubt);
+                glyphs.add(glyph);
+            }
+        }
 
-                if ((vote != null) && !glyph.isShapeForbidden(vote.shape)) {
-                    glyph.setShape(vote.shape, vote.doubt);
-                }
+        // Get votes, all at once
+        Evaluation[] votes = evaluator.vote(glyphs, maxDoubt);
+        int          ig = 0;
+
+        for (Glyph glyph : glyphs) {
+            Evaluation vote = votes[ig++];
+
+            if ((vote != null) && !glyph.isShapeForbidden(vote.shape)) {
+                glyph.setShape(vote.shape, vote.doubt);
             }
         }
     }
@@ -355,11 +358,21 @@ public class GlyphInspector
                 continue;
             }
 
-            int       topX = top.getCentroid().x;
-            StaffInfo topStaff = system.getStaffAtY(top.getCentroid().y);
+            PixelPoint topCenter = top.getCentroid();
+            int        topX = topCenter.x;
+            StaffInfo  topStaff = system.getStaffAtY(topCenter.y);
 
             // Look for bottom dot right underneath, and in the same staff
-            for (Glyph bot : system.getGlyphs()) {
+            // The bottom dot being one interline below, look only in a narrow
+            // band below the top dot, bounded by the staff height
+            int            dx = (int) Math.ceil(maxBassDotDx);
+            PixelRectangle band = new PixelRectangle(
+                topX - dx,
+                topCenter.y,
+                (2 * dx) + 1,
+                topStaff.getHeight() + 1);
+
+            for (Glyph bot : system.lookupIntersectedGlyphs(band, top)) {
                 if ((bot.getShape() != Shape.DOT) ||
                     (Math.abs(bot.getPitchPosition() - -1) > maxBassDotPitchDy)) {
                     continue;
@@ -604,7 +617,7 @@ public class GlyphInspector
             }
 
             // Look for glyphs in this outer box
-            final Set<Glyph> glyphs = lag.lookupGlyphs(system.getGlyphs(), box);
+            final Set<Glyph> glyphs = system.lookupContainedGlyphs(box);
             Glyphs.purgeManualShapes(glyphs);
 
             if (glyphs.isEmpty()) {
@@ -45,6 +45,11 @@ import javax.xml.bind.JAXBException;
  * the custom definition in the local file 'config/neural-network.xml', which
  * will be picked first when the application is run again.</p>
  *
+ * <p>When several glyphs are to be evaluated, {@link #getTopEvaluations(List,
+ * int)} runs the network on all of them at once, and builds only the few
+ * best evaluations of each glyph, looking at shapes by decreasing network
+ * output until enough shapes pass the specific checks.</p>
+ *
  * @author Hervé Bitteur
  */
 public class GlyphNetwork
@@ -69,6 +74,9 @@ public class GlyphNetwork
     /** The underlying neural network */
     private NeuralNetwork engine;
 
+    /** Per-thread buffers for batch evaluation */
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>();
+
     //~ Constructors -----------------------------------------------------------
 
     //--------------//
@@ -157,6 +165,60 @@ public class GlyphNetwork
         }
     }
 
+    //-------------------//
+    // getTopEvaluations //
+    //-------------------//
+    @Override
+    public Evaluation[][] getTopEvaluations (List<Glyph> glyphs,
+                                             int         count)
+    {
+        final int      glyphNb = glyphs.size();
+        Evaluation[][] tops = new Evaluation[glyphNb][];
+
+        // Gather the inputs of glyphs that are not just NOISE
+        Workspace ws = workspaces.get();
+
+        if ((ws == null) || (ws.rows.length < glyphNb)) {
+            ws = new Workspace(glyphNb);
+            workspaces.set(ws);
+        }
+
+        int rowNb = 0;
+        int ig = 0;
+
+        for (Glyph glyph : glyphs) {
+            if (isBigEnough(glyph)) {
+                feedInput(glyph, ws.ins, rowNb * paramCount);
+                ws.rows[ig] = rowNb++;
+            } else {
+                ws.rows[ig] = -1;
+            }
+
+            ig++;
+        }
+
+        // Run the network on all of them
+        if (rowNb > 0) {
+            engine.run(ws.ins, rowNb, ws.outs);
+        }
+
+        ig = 0;
+
+        for (Glyph glyph : glyphs) {
+            final int row = ws.rows[ig];
+
+            if (row == -1) {
+                tops[ig] = selectNoise(glyph, count);
+            } else {
+                tops[ig] = selectBest(glyph, ws.outs, row * shapeCount, count);
+            }
+
+            ig++;
+        }
+
+        return tops;
+    }
+
     //--------------//
     // setAmplitude //
     //--------------//
@@ -484,8 +546,115 @@ public class GlyphNetwork
         return nn;
     }
 
+    //------------//
+    // selectBest //
+    //------------//
+    /**
+     * Select the best evaluations from the network outputs of a glyph. Shapes
+     * are considered by decreasing output, and are kept only if they pass the
+     * specific checks and are not forbidden for the glyph. If fewer than count
+     * shapes pass, the shapes that fail their checks follow, in shape order
+     * with a maximum doubt, so the result is the beginning of what
+     * {@link #getEvaluations} would report.
+     *
+     * @param glyph  the evaluated glyph
+     * @param outs   the network outputs, which get consumed
+     * @param offset index of glyph first output
+     * @param count  the maximum number of evaluations
+     * @return the best evaluations, perhaps fewer than count
+     */
+    private Evaluation[] selectBest (Glyph    glyph,
+                                     double[] outs,
+                                     int      offset,
+                                     int      count)
+    {
+        final Shape[]    shapes = Shape.values();
+        List<Evaluation> best = new ArrayList<Evaluation>(count);
+        boolean[]        failed = new boolean[shapeCount];
+
+        while (best.size() < count) {
+            // Pick the highest remaining output (the first one, if equal)
+            int    s = -1;
+            double max = -1;
+
+            for (int i = 0; i < shapeCount; i++) {
+                if (outs[offset + i] > max) {
+                    max = outs[offset + i];
+                    s = i;
+                }
+            }
+
+            if (s == -1) {
+                break; // All outputs consumed
+            }
+
+            outs[offset + s] = -1;
+
+            Shape shape = GlyphChecks.specificCheck(shapes[s], glyph);
+
+            if (shape == null) {
+                failed[s] = true;
+            } else if (!glyph.isShapeForbidden(shape)) {
+                best.add(new Evaluation(shape, 1d / max));
+            }
+        }
+
+        // Then the shapes that failed their checks, if room is left
+        for (int i = 0; (i < shapeCount) && (best.size() < count); i++) {
+            if (failed[i] && !glyph.isShapeForbidden(shapes[i])) {
+                best.add(new Evaluation(shapes[i], Double.MAX_VALUE));
+            }
+        }
+
+        return best.toArray(new Evaluation[best.size()]);
+    }
+
+    //-------------//
+    // selectNoise //
+    //-------------//
+    private Evaluation[] selectNoise (Glyph glyph,
+                                      int   count)
+    {
+        if ((count == 0) || glyph.isShapeForbidden(Shape.NOISE)) {
+            return new Evaluation[0];
+        } else {
+            return noiseEvaluations.clone();
+        }
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
+    //-----------//
+    // Workspace //
+    //-----------//
+    /**
+     * Buffers used by one thread to evaluate a batch of glyphs
+     */
+    private static class Workspace
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        /** Network row of each glyph, or -1 for a NOISE glyph */
+        final int[] rows;
+
+        /** Network inputs, one row per glyph */
+        final double[] ins;
+
+        /** Network outputs, one row per glyph */
+        final double[] outs;
+
+        //~ Constructors -------------------------------------------------------
+
+        Workspace (int glyphNb)
+        {
+            // Room for a few more glyphs, to limit reallocations
+            final int capacity = Math.max(2 * glyphNb, 16);
+            rows = new int[capacity];
+            ins = new double[capacity * paramCount];
+            outs = new double[capacity * shapeCount];
+        }
+    }
+
     private static final class Constants
         extends ConstantSet
     {
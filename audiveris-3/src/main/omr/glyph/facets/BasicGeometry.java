@@ -20,6 +20,7 @@ import omr.lag.Section;
 import omr.log.Logger;
 
 import omr.math.Moments;
+import omr.math.RawMoments;
 
 import omr.score.common.PixelPoint;
 import omr.score.common.PixelRectangle;
@@ -306,19 +307,19 @@ class BasicGeometry
      */
     public void computeMoments ()
     {
-        // First cumulate point from member sections
-        weight = getWeight();
+        // First cumulate the raw moments of member sections, which are
+        // additive, so that no pixel is browsed
+        RawMoments raw = new RawMoments();
 
-        int[] coord = new int[weight];
-        int[] pos = new int[weight];
+        for (GlyphSection section : glyph.getMembers()) {
+            raw.add(section.getRawMoments());
+        }
 
-        // Append recursively all points
-        cumulatePoints(coord, pos, 0);
+        weight = raw.getWeight();
 
-        // Then compute the moments, swapping pos & coord since the lag is
-        // vertical
+        // Then compute the moments
         try {
-            moments = new Moments(pos, coord, weight, getInterline());
+            moments = new Moments(raw, getInterline());
         } catch (Exception ex) {
             logger.warning(
                 "Glyph #" + glyph.getId() +
@@ -368,18 +369,4 @@ class BasicGeometry
 
         glyph.invalidateCache();
     }
-
-    //----------------//
-    // cumulatePoints //
-    //----------------//
-    private int cumulatePoints (int[] coord,
-                                int[] pos,
-                                int   nb)
-    {
-        for (Section section : glyph.getMembers()) {
-            nb = section.cumulatePoints(coord, pos, nb);
-        }
-
-        return nb;
-    }
 }
@@ -0,0 +1,464 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                           G l y p h C o r p u s                            //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.glyph.ui;
+
+import omr.glyph.GlyphSection;
+import omr.glyph.Shape;
+import omr.glyph.facets.BasicGlyph;
+import omr.glyph.facets.Glyph;
+import omr.glyph.facets.GlyphValue;
+
+import omr.lag.Run;
+
+import omr.log.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Class <code>GlyphCorpus</code> is a compact binary form of the training
+ * material, gathering in one file the glyphs otherwise stored as one XML file
+ * per glyph.
+ *
+ * <p>The corpus file is memory-mapped, and only its index is read when the
+ * corpus is opened. Each glyph record (shape, interline, id, stem number,
+ * ledger, pitch position, then sections and their runs) is decoded on demand
+ * by {@link #decode}, which can be called concurrently.
+ *
+ * <p>Each record is keyed by the path of its XML source relative to the train
+ * folder (for example <B>sheets/chula/BEAM.0835.xml</B>, whose parent folder
+ * gives the sheet of origin). The length and the modification time of the
+ * source file are recorded as well, so that a glyph whose XML file has been
+ * rewritten since the corpus was built is no longer served by the corpus.
+ *
+ * <p>File layout, all values being big-endian:<pre>
+ * header : magic, version, glyph count (int), index offset (long)
+ * record : shape name (string), interline, id, stem number (int),
+ *          with ledger (byte), pitch position (double), section count (int),
+ *          then for each section : id, first pos, run count (int),
+ *          then for each run : start (int), length (char), level (byte)
+ * index  : for each glyph : key (string), source length, source time (long),
+ *          record offset (int)
+ * string : byte length (char), followed by UTF-8 bytes</pre>
+ * A corpus is built through a {@link Writer}.
+ *
+ * @author Hervé Bitteur
+ */
+public class GlyphCorpus
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Usual logger utility */
+    private static final Logger logger = Logger.getLogger(GlyphCorpus.class);
+
+    /** File signature */
+    private static final int MAGIC = 0x41474331; // "AGC1"
+
+    /** Current format version */
+    private static final int VERSION = 1;
+
+    /** Size of file header */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    //~ Instance fields --------------------------------------------------------
+
+    /** The corpus file */
+    private final File file;
+
+    /** The mapped content of the corpus file */
+    private final ByteBuffer buffer;
+
+    /** The index of records, by key */
+    private final Map<String, Entry> entries;
+
+    //~ Constructors -----------------------------------------------------------
+
+    //-------------//
+    // GlyphCorpus //
+    //-------------//
+    /**
+     * Open an existing corpus file, and read its index
+     *
+     * @param file the corpus file
+     * @throws IOException if the file cannot be mapped or is not a corpus
+     */
+    public GlyphCorpus (File file)
+        throws IOException
+    {
+        this.file = file;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close(); // The mapping remains valid
+        }
+
+        if ((buffer.capacity() < HEADER_SIZE) ||
+            (buffer.getInt(0) != MAGIC) ||
+            (buffer.getInt(4) != VERSION)) {
+            throw new IOException("Not a glyph corpus: " + file);
+        }
+
+        int        count = buffer.getInt(8);
+        ByteBuffer index = buffer.duplicate();
+        index.position((int) buffer.getLong(12));
+        entries = new HashMap<String, Entry>(2 * count);
+
+        for (int i = 0; i < count; i++) {
+            String key = getString(index);
+            entries.put(
+                key,
+                new Entry(index.getLong(), index.getLong(), index.getInt()));
+        }
+
+        if (logger.isFineEnabled()) {
+            logger.fine("Opened " + this);
+        }
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    //---------//
+    // getSize //
+    //---------//
+    /**
+     * Report the number of glyphs in this corpus
+     *
+     * @return the number of glyphs
+     */
+    public int getSize ()
+    {
+        return entries.size();
+    }
+
+    //------//
+    // main //
+    //------//
+    /**
+     * Converter from the XML training material to the binary corpus file
+     *
+     * @param args not used
+     */
+    public static void main (String... args)
+    {
+        GlyphRepository.getInstance()
+                       .storeCorpus();
+    }
+
+    //----------//
+    // contains //
+    //----------//
+    /**
+     * Check whether the corpus holds an up-to-date record for a glyph source
+     *
+     * @param key    the source path, relative to train folder
+     * @param source the XML source file
+     * @return true if the record exists and matches the source file
+     */
+    public boolean contains (String key,
+                             File   source)
+    {
+        Entry entry = entries.get(key);
+
+        return (entry != null) && entry.matches(source);
+    }
+
+    //--------//
+    // decode //
+    //--------//
+    /**
+     * Build the glyph of a source file, if the corpus has an up-to-date record
+     * for it. This method is thread-safe.
+     *
+     * @param key    the source path, relative to train folder
+     * @param source the XML source file
+     * @return the glyph built, or null if not available in corpus
+     */
+    public Glyph decode (String key,
+                         File   source)
+    {
+        Entry entry = entries.get(key);
+
+        if ((entry == null) || !entry.matches(source)) {
+            return null;
+        }
+
+        // Each decoding uses its own view of the mapped content
+        ByteBuffer              in = buffer.duplicate();
+        in.position(entry.offset);
+
+        String                  shapeName = getString(in);
+        Shape                   shape = (shapeName.length() == 0) ? null
+                                        : Shape.valueOf(shapeName);
+        int                     interline = in.getInt();
+        int                     id = in.getInt();
+        int                     stemNumber = in.getInt();
+        boolean                 withLedger = in.get() != 0;
+        double                  pitchPosition = in.getDouble();
+        int                     sectionCount = in.getInt();
+        SortedSet<GlyphSection> members = new TreeSet<GlyphSection>();
+
+        for (int s = 0; s < sectionCount; s++) {
+            GlyphSection section = new GlyphSection();
+            section.setId(in.getInt());
+            section.setFirstPos(in.getInt());
+
+            int runCount = in.getInt();
+
+            for (int r = 0; r < runCount; r++) {
+                int start = in.getInt();
+                int length = in.getChar();
+                int level = in.get() & 0xff;
+                section.append(new Run(start, length, level));
+            }
+
+            members.add(section);
+        }
+
+        return new BasicGlyph(
+            new GlyphValue(
+                shape,
+                interline,
+                id,
+                stemNumber,
+                withLedger,
+                pitchPosition,
+                members));
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        return "{GlyphCorpus " + file + " glyphs:" + entries.size() + "}";
+    }
+
+    //-----------//
+    // getString //
+    //-----------//
+    private static String getString (ByteBuffer in)
+    {
+        byte[] bytes = new byte[in.getChar()];
+        in.get(bytes);
+
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex); // Cannot happen
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    //--------//
+    // Writer //
+    //--------//
+    /**
+     * Class <code>Writer</code> builds a corpus file, one glyph after the
+     * other. The file is written under a temporary name, and renamed only
+     * when the writer is closed.
+     */
+    public static class Writer
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        /** The target corpus file */
+        private final File file;
+
+        /** The temporary file being written */
+        private final File temp;
+
+        /** Output on temporary file */
+        private final DataOutputStream out;
+
+        /** Index being built */
+        private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        private final DataOutputStream      index = new DataOutputStream(
+            indexBytes);
+
+        /** Number of glyphs written so far */
+        private int count;
+
+        //~ Constructors -------------------------------------------------------
+
+        //--------//
+        // Writer //
+        //--------//
+        /**
+         * Create a writer for the provided corpus file
+         *
+         * @param file the corpus file to (re)write
+         * @throws IOException if the file cannot be created
+         */
+        public Writer (File file)
+            throws IOException
+        {
+            this.file = file;
+            temp = new File(file.getPath() + ".tmp");
+            out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)));
+
+            // Header, whose index offset will be patched when closing
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0);
+            out.writeLong(0);
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        //-----//
+        // add //
+        //-----//
+        /**
+         * Append a glyph to the corpus
+         *
+         * @param key    the source path, relative to train folder
+         * @param source the XML source file the glyph was loaded from
+         * @param glyph  the glyph to record
+         * @throws IOException if writing fails
+         */
+        public void add (String key,
+                         File   source,
+                         Glyph  glyph)
+            throws IOException
+        {
+            int offset = out.size();
+
+            putString(out, (glyph.getShape() == null) ? ""
+                           : glyph.getShape().name());
+            out.writeInt(glyph.getInterline());
+            out.writeInt(glyph.getId());
+            out.writeInt(glyph.getStemNumber());
+            out.writeByte(glyph.isWithLedger() ? 1 : 0);
+            out.writeDouble(glyph.getPitchPosition());
+            out.writeInt(glyph.getMembers().size());
+
+            for (GlyphSection section : glyph.getMembers()) {
+                out.writeInt(section.getId());
+                out.writeInt(section.getFirstPos());
+                out.writeInt(section.getRunNb());
+
+                for (Run run : section.getRuns()) {
+                    if (run.getLength() > Character.MAX_VALUE) {
+                        throw new IOException("Run too long in " + key);
+                    }
+
+                    out.writeInt(run.getStart());
+                    out.writeChar(run.getLength());
+                    out.writeByte(run.getLevel());
+                }
+            }
+
+            putString(index, key);
+            index.writeLong(source.length());
+            index.writeLong(source.lastModified());
+            index.writeInt(offset);
+            count++;
+        }
+
+        //-------//
+        // close //
+        //-------//
+        /**
+         * Write the index, and make the corpus file available
+         *
+         * @throws IOException if writing fails
+         */
+        public void close ()
+            throws IOException
+        {
+            long indexOffset = out.size();
+            index.flush();
+            indexBytes.writeTo(out);
+            out.close();
+
+            // Patch the header
+            RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+
+            try {
+                raf.seek(8);
+                raf.writeInt(count);
+                raf.writeLong(indexOffset);
+            } finally {
+                raf.close();
+            }
+
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot replace " + file);
+            }
+
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot rename " + temp + " as " + file);
+            }
+        }
+
+        //-----------//
+        // putString //
+        //-----------//
+        private static void putString (DataOutputStream out,
+                                       String           str)
+            throws IOException
+        {
+            byte[] bytes = str.getBytes("UTF-8");
+            out.writeChar(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    //-------//
+    // Entry //
+    //-------//
+    /**
+     * Index information about one glyph record
+     */
+    private static class Entry
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        /** Length of source file */
+        final long sourceLength;
+
+        /** Modification time of source file */
+        final long sourceTime;
+
+        /** Offset of record in corpus */
+        final int offset;
+
+        //~ Constructors -------------------------------------------------------
+
+        Entry (long sourceLength,
+               long sourceTime,
+               int  offset)
+        {
+            this.sourceLength = sourceLength;
+            this.sourceTime = sourceTime;
+            this.offset = offset;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        /** Check that the source file has not been modified since recorded */
+        boolean matches (File source)
+        {
+            return (source.lastModified() == sourceTime) &&
+                   (source.length() == sourceLength);
+        }
+    }
+}
@@ -30,9 +30,12 @@ import omr.ui.symbol.SymbolManager;
 
 import omr.util.BlackList;
 import omr.util.FileUtil;
+import omr.util.OmrExecutors;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.*;
 
@@ -50,6 +53,12 @@ import javax.xml.bind.*;
  * <p> The repository handles a private map of all deserialized glyphs so far,
  * since the deserialization is a rather expensive operation.
  *
+ * <p> To avoid the unmarshalling of thousands of XML files, the training
+ * material can also be converted by {@link #storeCorpus} into a single
+ * {@link GlyphCorpus} file. When this corpus is present, glyphs are decoded
+ * from it rather than from their XML file, as long as this file has not been
+ * modified since the corpus was built.
+ *
  * <p> It handles two bases : the "whole base" (all glyphs) and the "core base"
  * (just the glyphs of the core) which are accessible respectively by {@link
  * #getWholeBase} and {@link #getCoreBase} methods.
@@ -86,6 +95,11 @@ public class GlyphRepository
     /** Specific subdirectory for icons */
     private static final File iconsFolder = WellKnowns.SYMBOLS_FOLDER;
 
+    /** Binary corpus of the core and sheets glyphs */
+    private static final File corpusFile = new File(
+        WellKnowns.TRAIN_FOLDER,
+        "glyphs.corpus");
+
     /** Specific filter for glyph files */
     private static final FileFilter glyphFilter = new FileFilter() {
         public boolean accept (File file)
@@ -129,6 +143,12 @@ public class GlyphRepository
     /** Inverse map */
     private final Map<Glyph, String> namesMap = new HashMap<Glyph, String>();
 
+    /** The binary corpus, if any, lazily opened */
+    private GlyphCorpus corpus;
+
+    /** Has the opening of corpus been attempted? */
+    private boolean corpusChecked;
+
     //~ Constructors -----------------------------------------------------------
 
     /** Private singleton constructor */
@@ -189,24 +209,27 @@ public class GlyphRepository
         Glyph glyph = glyphsMap.get(gName);
 
         if (glyph == null) {
-            // If failed, actually load the glyph from XML backup file.
+            // If failed, actually load the glyph from corpus or XML backup file
             if (isIcon(gName)) {
                 glyph = buildIconGlyph(gName);
             } else {
-                File file = new File(coreFolder, gName);
+                File file = fileOf(gName);
 
-                if (!file.exists()) {
-                    file = new File(getSheetsFolder(), gName);
+                if (file == null) {
+                    logger.warning("Unable to find file for glyph " + gName);
 
-                    if (!file.exists()) {
-                        logger.warning(
-                            "Unable to find file for glyph " + gName);
+                    return null;
+                }
 
-                        return null;
-                    }
+                GlyphCorpus corpus = getCorpus();
+
+                if (corpus != null) {
+                    glyph = corpus.decode(corpusKeyOf(file), file);
                 }
 
-                glyph = buildGlyph(gName, file);
+                if (glyph == null) {
+                    glyph = buildGlyph(gName, file);
+                }
             }
 
             if (glyph != null) {
@@ -572,6 +595,47 @@ public class GlyphRepository
         logger.info(copyNb + " glyphs copied as core training material");
     }
 
+    //-------------//
+    // storeCorpus //
+    //-------------//
+    /**
+     * Convert all the core and sheets XML glyph files into the binary corpus
+     * file, which then replaces the XML files for loading glyphs
+     */
+    public synchronized void storeCorpus ()
+    {
+        List<File> files = new ArrayList<File>(6000);
+
+        for (File folder : new File[] { coreFolder, getSheetsFolder() }) {
+            if (folder.isDirectory()) {
+                loadDirectory(folder, files);
+            }
+        }
+
+        // Forget current corpus
+        corpus = null;
+        corpusChecked = false;
+
+        try {
+            GlyphCorpus.Writer writer = new GlyphCorpus.Writer(corpusFile);
+            int                glyphNb = 0;
+
+            for (File file : files) {
+                Glyph glyph = buildGlyph(glyphNameOf(file), file);
+
+                if (glyph != null) {
+                    writer.add(corpusKeyOf(file), file, glyph);
+                    glyphNb++;
+                }
+            }
+
+            writer.close();
+            logger.info(glyphNb + " glyphs stored in " + corpusFile);
+        } catch (IOException ex) {
+            logger.warning("Cannot store glyph corpus " + corpusFile, ex);
+        }
+    }
+
     //---------------//
     // isIconsFolder //
     //---------------//
@@ -646,6 +710,34 @@ public class GlyphRepository
         return isIconsFolder(folder);
     }
 
+    //-----------//
+    // getCorpus //
+    //-----------//
+    /**
+     * Report the binary corpus, if any
+     *
+     * @return the corpus, or null
+     */
+    private synchronized GlyphCorpus getCorpus ()
+    {
+        if (!corpusChecked) {
+            corpusChecked = true;
+
+            if (corpusFile.exists()) {
+                try {
+                    corpus = new GlyphCorpus(corpusFile);
+                    logger.info(
+                        "Using " + corpus.getSize() + " glyphs from " +
+                        corpusFile);
+                } catch (IOException ex) {
+                    logger.warning("Cannot open glyph corpus " + corpusFile, ex);
+                }
+            }
+        }
+
+        return corpus;
+    }
+
     //----------------//
     // getJaxbContext //
     //----------------//
@@ -716,6 +808,23 @@ public class GlyphRepository
         return glyph;
     }
 
+    //-------------//
+    // corpusKeyOf //
+    //-------------//
+    /**
+     * Report the key of a glyph file within the corpus, that is its path
+     * relative to the train folder
+     *
+     * @param file the glyph backup file
+     * @return the corpus key (format is: area/sheetName/Shape.id.xml)
+     */
+    private String corpusKeyOf (File file)
+    {
+        return file.getParentFile()
+                   .getParentFile()
+                   .getName() + "/" + glyphNameOf(file);
+    }
+
     //----------------//
     // deleteXmlFiles //
     //----------------//
@@ -733,6 +842,31 @@ public class GlyphRepository
         }
     }
 
+    //--------//
+    // fileOf //
+    //--------//
+    /**
+     * Report the backup file of a (non-icon) glyph, searching first in the
+     * core area, then in the global sheets area
+     *
+     * @param gName the full glyph name
+     * @return the glyph file, or null if not found
+     */
+    private File fileOf (String gName)
+    {
+        File file = new File(coreFolder, gName);
+
+        if (!file.exists()) {
+            file = new File(getSheetsFolder(), gName);
+
+            if (!file.exists()) {
+                return null;
+            }
+        }
+
+        return file;
+    }
+
     //-------------//
     // glyphNameOf //
     //-------------//
@@ -823,9 +957,100 @@ public class GlyphRepository
         }
 
         ///logger.info(files.size() + " glyphs names collected");
+
+        // Decode in parallel the glyphs available in corpus
+        loadCorpusGlyphs(base);
+
         return base;
     }
 
+    //------------------//
+    // loadCorpusGlyphs //
+    //------------------//
+    /**
+     * Decode, in parallel, those of the provided glyphs which are not yet
+     * loaded and which are available in the corpus
+     *
+     * @param gNames the names of glyphs to load
+     */
+    private void loadCorpusGlyphs (List<String> gNames)
+    {
+        final GlyphCorpus corpus = getCorpus();
+
+        if (corpus == null) {
+            return;
+        }
+
+        // Select the glyphs to decode
+        final List<String> names = new ArrayList<String>();
+        final List<File>   files = new ArrayList<File>();
+
+        for (String gName : gNames) {
+            if (!isIcon(gName) && !isLoaded(gName)) {
+                File file = fileOf(gName);
+
+                if ((file != null) && corpus.contains(corpusKeyOf(file), file)) {
+                    names.add(gName);
+                    files.add(file);
+                }
+            }
+        }
+
+        if (names.isEmpty()) {
+            return;
+        }
+
+        // One task per range of glyphs
+        final Glyph[]        glyphs = new Glyph[names.size()];
+        final int            taskNb = OmrExecutors.useParallelism()
+                                      ? OmrExecutors.getNumberOfCpus() : 1;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(taskNb);
+
+        for (int t = 0; t < taskNb; t++) {
+            final int first = (t * glyphs.length) / taskNb;
+            final int last = ((t + 1) * glyphs.length) / taskNb;
+
+            tasks.add(
+                new Callable<Void>() {
+                        public Void call ()
+                            throws Exception
+                        {
+                            for (int i = first; i < last; i++) {
+                                File file = files.get(i);
+                                glyphs[i] = corpus.decode(
+                                    corpusKeyOf(file),
+                                    file);
+                            }
+
+                            return null;
+                        }
+                    });
+        }
+
+        try {
+            for (Future<Void> future : OmrExecutors.getHighExecutor()
+                                                   .invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (Exception ex) {
+            logger.warning("Error decoding glyph corpus", ex);
+
+            return;
+        }
+
+        // Register the decoded glyphs
+        for (int i = 0; i < glyphs.length; i++) {
+            if ((glyphs[i] != null) && !isLoaded(names.get(i))) {
+                glyphsMap.put(names.get(i), glyphs[i]);
+                namesMap.put(glyphs[i], names.get(i));
+            }
+        }
+
+        if (logger.isFineEnabled()) {
+            logger.fine(glyphs.length + " glyphs decoded from corpus");
+        }
+    }
+
     //--------------//
     // loadCoreBase //
     //--------------//
@@ -222,6 +222,7 @@ public class Digraph<D extends Digraph<D, V, SIG>, V extends Vertex, SIG>
         vertex.setGraph(this); // Unchecked
         vertex.setId(globalVertexId.incrementAndGet()); // Atomic increment
         vertices.put(vertex.getId(), vertex); // Atomic insertion
+        vertexAdded(vertex);
     }
 
     //---------//
@@ -237,6 +238,20 @@ public class Digraph<D extends Digraph<D, V, SIG>, V extends Vertex, SIG>
         views.add(view);
     }
 
+    //----------------//
+    // containsVertex //
+    //----------------//
+    /**
+     * Check whether the provided vertex is currently part of the graph
+     *
+     * @param vertex the vertex to check
+     * @return true if found among the current (not removed) vertices
+     */
+    public boolean containsVertex (V vertex)
+    {
+        return vertices.get(vertex.getId()) == vertex;
+    }
+
     //--------------//
     // createVertex //
     //--------------//
@@ -315,6 +330,7 @@ public class Digraph<D extends Digraph<D, V, SIG>, V extends Vertex, SIG>
     public void restoreVertex (V vertex)
     {
         vertices.put(vertex.getId(), vertex); // Atomic insertion
+        vertexAdded(vertex);
     }
 
     //----------//
@@ -401,6 +417,32 @@ public class Digraph<D extends Digraph<D, V, SIG>, V extends Vertex, SIG>
                 "Trying to remove an unknown vertex: " + vertex);
         } else {
             oldVertices.put(vertex.getId(), vertex);
+            vertexRemoved(vertex);
         }
     }
+
+    //-------------//
+    // vertexAdded //
+    //-------------//
+    /**
+     * Hook called when a vertex has been added to (or restored in) the graph,
+     * meant for subclasses which maintain additional data on vertices
+     *
+     * @param vertex the added vertex
+     */
+    protected void vertexAdded (V vertex)
+    {
+    }
+
+    //---------------//
+    // vertexRemoved //
+    //---------------//
+    /**
+     * Hook called when a vertex has been removed from the graph
+     *
+     * @param vertex the removed vertex
+     */
+    protected void vertexRemoved (V vertex)
+    {
+    }
 }
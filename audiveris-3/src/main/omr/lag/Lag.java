@@ -24,6 +24,7 @@ import omr.selection.SelectionService;
 
 import omr.util.Implement;
 import omr.util.Predicate;
+import omr.util.SpatialIndex;
 
 import java.awt.*;
 import java.util.*;
@@ -43,6 +44,12 @@ import java.util.List;
  * methods are just convenient ways to retrieve the last selected section or
  * sectionSet from the lag selection service.</p>
  *
+ * <p>The lag keeps a spatial index of its sections bounds, so that the
+ * sections found at a given point or within a given rectangle are retrieved
+ * without browsing all the sections. The index follows the sections as they
+ * are created, modified (through their runs or by translation) and removed.
+ * </p>
+ *
  * @author Hervé Bitteur
  *
  * @param <L> precise lag (sub)type
@@ -71,6 +78,12 @@ public class Lag<L extends Lag<L, S>, S extends Section>
     /** Cache of last section found through a lookup action */
     private S cachedSection;
 
+    /** Spatial index of sections, based on their (coord, pos) bounds */
+    private final SpatialIndex<S> sectionIndex = new SpatialIndex<S>(64);
+
+    /** Sections whose bounds are to be (re)indexed, guarded by sectionIndex */
+    private final Set<S> dirtySections = new LinkedHashSet<S>();
+
     /**
      * Hosted event service for UI events related to this lag
      * (Run, Section, SectionSet and more)
@@ -179,14 +192,10 @@ public class Lag<L extends Lag<L, S>, S extends Section>
      */
     public List<S> getSectionsIn (Rectangle rect)
     {
-        List<S> found = new ArrayList<S>();
+        updateIndex();
 
-        // Iterate on (all?) sections
-        for (S section : getSections()) {
-            if (rect.intersects(section.getBounds())) {
-                found.add(section);
-            }
-        }
+        List<S> found = sectionIndex.intersecting(rect);
+        Collections.sort(found, Section.idComparator);
 
         return found;
     }
@@ -302,7 +311,54 @@ public class Lag<L extends Lag<L, S>, S extends Section>
     //---------------//
     /**
      * Given an absolute point, retrieve the <b>first</b> containing section if
-     * any, using the provided collection of sections
+     * any, among all the sections of the lag
+     *
+     * @param pt coordinates of the given point
+     *
+     * @return the (first) section found, or null otherwise
+     */
+    public S lookupSection (Point pt)
+    {
+        Point target = switchRef(pt, null); // Involutive!
+
+        // Local copy (in case of concurrent accesses)
+        S cached = cachedSection;
+
+        // Just in case we have not moved a lot since previous lookup ...
+        if ((cached != null) &&
+            cached.contains(target.x, target.y) &&
+            containsVertex(cached)) {
+            return cached;
+        } else {
+            cached = null;
+        }
+
+        // Use the index to check only the sections around
+        updateIndex();
+
+        List<S> candidates = sectionIndex.containing(target.x, target.y);
+        Collections.sort(candidates, Section.idComparator);
+
+        for (S section : candidates) {
+            if (section.contains(target.x, target.y)) {
+                cached = section;
+
+                break;
+            }
+        }
+
+        cachedSection = cached;
+
+        return cached;
+    }
+
+    //---------------//
+    // lookupSection //
+    //---------------//
+    /**
+     * Given an absolute point, retrieve the <b>first</b> containing section if
+     * any, using the provided collection of sections. When looking among all
+     * the lag sections, {@link #lookupSection(Point)} is much faster.
      *
      * @param collection the desired collection of sections
      * @param pt         coordinates of the given point
@@ -354,15 +410,13 @@ public class Lag<L extends Lag<L, S>, S extends Section>
     public Set<S> lookupSections (Rectangle rect)
     {
         Rectangle target = switchRef(rect, null);
-        Set<S>    found = new LinkedHashSet<S>();
 
-        for (S section : getSections()) {
-            if (target.contains(section.getBounds())) {
-                found.add(section);
-            }
-        }
+        updateIndex();
 
-        return found;
+        List<S> sections = sectionIndex.containedIn(target);
+        Collections.sort(sections, Section.idComparator);
+
+        return new LinkedHashSet<S>(sections);
     }
 
     //---------------//
@@ -463,6 +517,23 @@ public class Lag<L extends Lag<L, S>, S extends Section>
         return orientation.switchRef(cplt, xywh);
     }
 
+    //-----------------//
+    // sectionModified //
+    //-----------------//
+    /**
+     * (package access from {@link Section}) to signal that the bounds of a
+     * section may have changed, so that the index gets updated before the
+     * next lookup
+     *
+     * @param section the modified section
+     */
+    void sectionModified (S section)
+    {
+        synchronized (sectionIndex) {
+            dirtySections.add(section);
+        }
+    }
+
     //-----------------//
     // internalsString //
     //-----------------//
@@ -495,6 +566,54 @@ public class Lag<L extends Lag<L, S>, S extends Section>
         this.runs = runs;
     }
 
+    //-------------//
+    // vertexAdded //
+    //-------------//
+    @Override
+    protected void vertexAdded (S section)
+    {
+        // The section bounds are to be indexed (in this lag)
+        section.setIndexPending(false);
+        section.invalidateCache();
+    }
+
+    //---------------//
+    // vertexRemoved //
+    //---------------//
+    @Override
+    protected void vertexRemoved (S section)
+    {
+        synchronized (sectionIndex) {
+            dirtySections.remove(section);
+            sectionIndex.remove(section);
+            section.setIndexPending(false);
+        }
+    }
+
+    //-------------//
+    // updateIndex //
+    //-------------//
+    /**
+     * Update the index with the current bounds of all the sections that have
+     * been modified since the previous update
+     */
+    private void updateIndex ()
+    {
+        synchronized (sectionIndex) {
+            for (S section : dirtySections) {
+                section.setIndexPending(false);
+
+                if ((section.getRunNb() > 0) && containsVertex(section)) {
+                    sectionIndex.add(section, section.getBounds());
+                } else {
+                    sectionIndex.remove(section);
+                }
+            }
+
+            dirtySections.clear();
+        }
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
     //-----//
@@ -86,7 +86,8 @@ public class RunsBuilder
     //--------------------//
     /**
      * This method handles the pixels run either in a parallel or a serial way,
-     * according to the possibilities of the high OMR executor.
+     * according to the possibilities of the high OMR executor. Positions are
+     * split into ranges of contiguous positions, one task per range.
      */
     private void createParallelRuns (int       pMin,
                                      int       pMax,
@@ -94,18 +95,29 @@ public class RunsBuilder
                                      final int cMax)
     {
         try {
-            // Browse one dimension
+            // Browse one dimension, range by range
+            final int            size = pMax - pMin + 1;
+            final int            rangeCount = Math.min(
+                size,
+                OmrExecutors.useParallelism()
+                                ? OmrExecutors.getNumberOfCpus() : 1);
             List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
-                pMax - pMin + 1);
-
-            for (int p = pMin; p <= pMax; p++) {
-                final int pp = p;
+                rangeCount);
+
+            for (int r = 0; r < rangeCount; r++) {
+                final int first = pMin +
+                                  (int) (((long) size * r) / rangeCount);
+                final int last = (pMin +
+                                 (int) (((long) size * (r + 1)) / rangeCount)) -
+                                 1;
                 tasks.add(
                     new Callable<Void>() {
                             public Void call ()
                                 throws Exception
                             {
-                                processPosition(pp, cMin, cMax);
+                                for (int p = first; p <= last; p++) {
+                                    processPosition(p, cMin, cMax);
+                                }
 
                                 return null;
                             }
@@ -0,0 +1,210 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                             R u n s T a b l e                              //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.lag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class <code>RunsTable</code> holds the foreground runs of a whole source,
+ * position after position, in primitive arrays rather than in {@link Run}
+ * instances.
+ *
+ * <p>The runs of position p are indexed from {@link #getFirstRun}(p) up to
+ * {@link #getFirstRun}(p + 1) excluded, in increasing order of their start
+ * coordinate. A table is built by {@link RunsTableBuilder}.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunsTable
+{
+    //~ Instance fields --------------------------------------------------------
+
+    /** Are the runs vertical, that is positions are abscissae? */
+    private final boolean vertical;
+
+    /** Index of the first run of each position, plus the total count at end */
+    private final int[] firsts;
+
+    /** Starting coordinate of each run */
+    private final int[] starts;
+
+    /** Length of each run */
+    private final int[] lengths;
+
+    /** Average gray level of each run */
+    private final int[] levels;
+
+    //~ Constructors -----------------------------------------------------------
+
+    //-----------//
+    // RunsTable //
+    //-----------//
+    /**
+     * Creates a new RunsTable object, from already filled arrays
+     *
+     * @param vertical true for vertical runs
+     * @param firsts   index of the first run of each position, with one more
+     *                 cell for the total number of runs
+     * @param starts   starting coordinate of each run
+     * @param lengths  length of each run
+     * @param levels   average gray level of each run
+     */
+    RunsTable (boolean vertical,
+               int[]   firsts,
+               int[]   starts,
+               int[]   lengths,
+               int[]   levels)
+    {
+        this.vertical = vertical;
+        this.firsts = firsts;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.levels = levels;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    //-------------//
+    // getFirstRun //
+    //-------------//
+    /**
+     * Report the index of the first run of a position. This is also the index
+     * just past the last run of the previous position.
+     *
+     * @param pos the position, from 0 up to {@link #getSize} included
+     * @return the run index
+     */
+    public int getFirstRun (int pos)
+    {
+        return firsts[pos];
+    }
+
+    //-----------//
+    // getLength //
+    //-----------//
+    /**
+     * Report the length of a run
+     *
+     * @param index the run index
+     * @return the run length, in pixels
+     */
+    public int getLength (int index)
+    {
+        return lengths[index];
+    }
+
+    //----------//
+    // getLevel //
+    //----------//
+    /**
+     * Report the average gray level of a run
+     *
+     * @param index the run index
+     * @return the run level, from 0 for black up to 255 for white
+     */
+    public int getLevel (int index)
+    {
+        return levels[index];
+    }
+
+    //-------------//
+    // getRunCount //
+    //-------------//
+    /**
+     * Report the total number of runs in the table
+     *
+     * @return the number of runs
+     */
+    public int getRunCount ()
+    {
+        return firsts[firsts.length - 1];
+    }
+
+    //---------//
+    // getSize //
+    //---------//
+    /**
+     * Report the number of positions (columns for vertical runs, rows for
+     * horizontal runs)
+     *
+     * @return the number of positions
+     */
+    public int getSize ()
+    {
+        return firsts.length - 1;
+    }
+
+    //----------//
+    // getStart //
+    //----------//
+    /**
+     * Report the coordinate of the first pixel of a run
+     *
+     * @param index the run index
+     * @return the run start (y for vertical, x for horizontal)
+     */
+    public int getStart (int index)
+    {
+        return starts[index];
+    }
+
+    //------------//
+    // isVertical //
+    //------------//
+    /**
+     * Report whether the runs are vertical
+     *
+     * @return true for vertical runs
+     */
+    public boolean isVertical ()
+    {
+        return vertical;
+    }
+
+    //------------//
+    // createRuns //
+    //------------//
+    /**
+     * Build the {@link Run} instances of this table, one list per position,
+     * as expected by a lag
+     *
+     * @return the lists of runs
+     */
+    public List<List<Run>> createRuns ()
+    {
+        int             size = getSize();
+        List<List<Run>> runs = new ArrayList<List<Run>>(size);
+
+        for (int pos = 0; pos < size; pos++) {
+            List<Run> list = new ArrayList<Run>(firsts[pos + 1] - firsts[pos]);
+
+            for (int i = firsts[pos]; i < firsts[pos + 1]; i++) {
+                list.add(new Run(starts[i], lengths[i], levels[i]));
+            }
+
+            runs.add(list);
+        }
+
+        return runs;
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        return "{RunsTable " + (vertical ? "vertical" : "horizontal") +
+               " size:" + getSize() + " runs:" + getRunCount() + "}";
+    }
+}
@@ -0,0 +1,462 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                      R u n s T a b l e B u i l d e r                       //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.lag;
+
+import omr.constant.Constant;
+import omr.constant.ConstantSet;
+
+import omr.log.Logger;
+
+import omr.step.ProcessingCancellationException;
+
+import omr.util.OmrExecutors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Class <code>RunsTableBuilder</code> retrieves all the foreground runs of a
+ * {@link ScanlineSource} into a {@link RunsTable}.
+ *
+ * <p>Rather than one task per position, the positions are split into a few
+ * ranges of contiguous positions, one range per processor. Each task reads
+ * its pixels one scanline segment at a time and appends its runs to its own
+ * primitive arrays, which are finally merged into the table. For vertical
+ * runs, a task thus owns a band of columns which it reads row after row.
+ *
+ * <p>The runs are the same as the ones a {@link RunsBuilder} would report
+ * through a {@link LagReader} on the same source.
+ *
+ * @author Hervé Bitteur
+ */
+public class RunsTableBuilder
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Specific application parameters */
+    private static final Constants constants = new Constants();
+
+    /** Usual logger utility */
+    private static final Logger logger = Logger.getLogger(
+        RunsTableBuilder.class);
+
+    //~ Instance fields --------------------------------------------------------
+
+    /** The source to read pixels from */
+    private final ScanlineSource source;
+
+    /** Are we looking for vertical runs? */
+    private final boolean vertical;
+
+    /** The maximum pixel gray level to be foreground */
+    private final int maxLevel;
+
+    /** The minimum value for a run length to be considered */
+    private final int minLength;
+
+    //~ Constructors -----------------------------------------------------------
+
+    //------------------//
+    // RunsTableBuilder //
+    //------------------//
+    /**
+     * Creates a new RunsTableBuilder object.
+     *
+     * @param source    the source to read pixels from
+     * @param vertical  true for vertical runs, false for horizontal runs
+     * @param maxLevel  the maximum pixel gray level to be foreground
+     * @param minLength the minimum length for each run
+     */
+    public RunsTableBuilder (ScanlineSource source,
+                             boolean        vertical,
+                             int            maxLevel,
+                             int            minLength)
+    {
+        this.source = source;
+        this.vertical = vertical;
+        this.maxLevel = maxLevel;
+        this.minLength = minLength;
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    //-------------//
+    // createTable //
+    //-------------//
+    /**
+     * Retrieve the runs of the whole source
+     *
+     * @return the table of runs
+     */
+    public RunsTable createTable ()
+    {
+        return createTable(
+            getChunkCount(vertical ? source.getWidth() : source.getHeight()));
+    }
+
+    //-------------//
+    // createTable //
+    //-------------//
+    /**
+     * Retrieve the runs of the whole source, using a given number of chunks
+     *
+     * @param chunkCount the number of ranges of positions, at least 1
+     * @return the table of runs
+     */
+    RunsTable createTable (int chunkCount)
+    {
+        final int size = vertical ? source.getWidth() : source.getHeight();
+        Chunk[]   chunks = new Chunk[chunkCount];
+
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i] = new Chunk(
+                (int) (((long) size * i) / chunkCount),
+                (int) (((long) size * (i + 1)) / chunkCount));
+        }
+
+        if (chunkCount == 1) {
+            chunks[0].scan();
+        } else {
+            scanChunks(chunks);
+        }
+
+        return merge(size, chunks);
+    }
+
+    //---------------//
+    // getChunkCount //
+    //---------------//
+    /**
+     * Report how many ranges of positions the source is to be split into
+     */
+    private int getChunkCount (int size)
+    {
+        int count = OmrExecutors.useParallelism()
+                    ? OmrExecutors.getNumberOfCpus() : 1;
+
+        return Math.max(
+            1,
+            Math.min(count, size / constants.minChunkSize.getValue()));
+    }
+
+    //-------//
+    // merge //
+    //-------//
+    /**
+     * Gather the runs of all chunks into one table, position after position
+     */
+    private RunsTable merge (int     size,
+                             Chunk[] chunks)
+    {
+        int[] firsts = new int[size + 1];
+
+        for (Chunk chunk : chunks) {
+            for (int p = chunk.pMin; p < chunk.pMax; p++) {
+                firsts[p + 1] = firsts[p] + chunk.counts[p - chunk.pMin];
+            }
+        }
+
+        final int total = firsts[size];
+        int[]     starts = new int[total];
+        int[]     lengths = new int[total];
+        int[]     levels = new int[total];
+
+        for (Chunk chunk : chunks) {
+            int first = firsts[chunk.pMin];
+
+            if (!vertical) {
+                // Runs were found position after position
+                System.arraycopy(chunk.starts, 0, starts, first, chunk.count);
+                System.arraycopy(chunk.lengths, 0, lengths, first, chunk.count);
+                System.arraycopy(chunk.levels, 0, levels, first, chunk.count);
+            } else {
+                // Runs were found row after row, hence interleaved
+                int[] cursors = Arrays.copyOfRange(
+                    firsts,
+                    chunk.pMin,
+                    chunk.pMax);
+
+                for (int k = 0; k < chunk.count; k++) {
+                    int i = cursors[chunk.positions[k] - chunk.pMin]++;
+                    starts[i] = chunk.starts[k];
+                    lengths[i] = chunk.lengths[k];
+                    levels[i] = chunk.levels[k];
+                }
+            }
+        }
+
+        return new RunsTable(vertical, firsts, starts, lengths, levels);
+    }
+
+    //------------//
+    // scanChunks //
+    //------------//
+    /**
+     * Scan the chunks in parallel, using the high OMR executor
+     */
+    private void scanChunks (Chunk[] chunks)
+    {
+        try {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
+                chunks.length);
+
+            for (final Chunk chunk : chunks) {
+                tasks.add(
+                    new Callable<Void>() {
+                            public Void call ()
+                                throws Exception
+                            {
+                                chunk.scan();
+
+                                return null;
+                            }
+                        });
+            }
+
+            for (Future<Void> future : OmrExecutors.getHighExecutor()
+                                                   .invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            logger.warning("RunsTableBuilder got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ProcessingCancellationException) {
+                throw (ProcessingCancellationException) ex.getCause();
+            }
+
+            logger.warning("Exception raised in RunsTableBuilder", ex);
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    //-------//
+    // Chunk //
+    //-------//
+    /**
+     * A range of contiguous positions, scanned by one task, with the runs
+     * found so far.
+     */
+    private class Chunk
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        /** First position of the range */
+        final int pMin;
+
+        /** Position just past the range */
+        final int pMax;
+
+        /** Number of runs per position */
+        final int[] counts;
+
+        /** Number of runs found */
+        int count;
+
+        /** Position of each run (for vertical runs only) */
+        int[] positions;
+
+        /** Start of each run */
+        int[] starts;
+
+        /** Length of each run */
+        int[] lengths;
+
+        /** Average level of each run */
+        int[] levels;
+
+        //~ Constructors -------------------------------------------------------
+
+        public Chunk (int pMin,
+                      int pMax)
+        {
+            this.pMin = pMin;
+            this.pMax = pMax;
+
+            counts = new int[pMax - pMin];
+
+            int capacity = Math.max(16, 4 * (pMax - pMin));
+            positions = vertical ? new int[capacity] : null;
+            starts = new int[capacity];
+            lengths = new int[capacity];
+            levels = new int[capacity];
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        //------//
+        // scan //
+        //------//
+        public void scan ()
+        {
+            if (vertical) {
+                scanColumns();
+            } else {
+                scanRows();
+            }
+        }
+
+        //--------//
+        // addRun //
+        //--------//
+        private void addRun (int pos,
+                             int start,
+                             int length,
+                             int cumul)
+        {
+            // We consider only runs that are longer than minLength
+            if (length < minLength) {
+                return;
+            }
+
+            if (count == starts.length) {
+                int capacity = 2 * count;
+
+                if (vertical) {
+                    positions = Arrays.copyOf(positions, capacity);
+                }
+
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                levels = Arrays.copyOf(levels, capacity);
+            }
+
+            if (vertical) {
+                positions[count] = pos;
+            }
+
+            starts[count] = start;
+            lengths[count] = length;
+            levels[count] = ((2 * cumul) + length) / (2 * length);
+            count++;
+            counts[pos - pMin]++;
+        }
+
+        //-------------//
+        // scanColumns //
+        //-------------//
+        /**
+         * Vertical runs: read the band of columns row after row, with one
+         * run in progress per column
+         */
+        private void scanColumns ()
+        {
+            final int    width = pMax - pMin;
+            final int    height = source.getHeight();
+            final byte[] line = new byte[width];
+
+            // Start of the run in progress in each column, or -1
+            final int[] runStarts = new int[width];
+
+            // Cumulated gray level of the run in progress in each column
+            final int[] cumuls = new int[width];
+
+            Arrays.fill(runStarts, -1);
+
+            for (int y = 0; y < height; y++) {
+                source.getScanline(pMin, y, width, line, 0);
+
+                for (int i = 0; i < width; i++) {
+                    final int level = line[i] & 0xff;
+
+                    if (level <= maxLevel) {
+                        if (runStarts[i] < 0) {
+                            runStarts[i] = y;
+                            cumuls[i] = level;
+                        } else {
+                            cumuls[i] += level;
+                        }
+                    } else if (runStarts[i] >= 0) {
+                        addRun(
+                            pMin + i,
+                            runStarts[i],
+                            y - runStarts[i],
+                            cumuls[i]);
+                        runStarts[i] = -1;
+                    }
+                }
+            }
+
+            // Process end of last run in each column
+            for (int i = 0; i < width; i++) {
+                if (runStarts[i] >= 0) {
+                    addRun(
+                        pMin + i,
+                        runStarts[i],
+                        height - runStarts[i],
+                        cumuls[i]);
+                }
+            }
+        }
+
+        //----------//
+        // scanRows //
+        //----------//
+        /**
+         * Horizontal runs: read each row of the range in turn
+         */
+        private void scanRows ()
+        {
+            final int    width = source.getWidth();
+            final byte[] line = new byte[width];
+
+            for (int y = pMin; y < pMax; y++) {
+                source.getScanline(0, y, width, line, 0);
+
+                int runStart = -1;
+                int cumul = 0;
+
+                for (int x = 0; x < width; x++) {
+                    final int level = line[x] & 0xff;
+
+                    if (level <= maxLevel) {
+                        if (runStart < 0) {
+                            runStart = x;
+                            cumul = level;
+                        } else {
+                            cumul += level;
+                        }
+                    } else if (runStart >= 0) {
+                        addRun(y, runStart, x - runStart, cumul);
+                        runStart = -1;
+                    }
+                }
+
+                // Process end of last run in this row
+                if (runStart >= 0) {
+                    addRun(y, runStart, width - runStart, cumul);
+                }
+            }
+        }
+    }
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static final class Constants
+        extends ConstantSet
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        /** Minimum number of positions for a chunk */
+        Constant.Integer minChunkSize = new Constant.Integer(
+            "Positions",
+            64,
+            "Minimum number of contiguous positions scanned by one task");
+    }
+}
@@ -0,0 +1,50 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                        S c a n l i n e S o u r c e                         //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.lag;
+
+
+/**
+ * Interface <code>ScanlineSource</code> is a {@link PixelSource} which can
+ * also deliver its pixels in bulk, one horizontal segment at a time, rather
+ * than through one {@link #getPixel} call per pixel.
+ *
+ * <p>This is what {@link RunsTableBuilder} uses to retrieve the runs of a
+ * whole picture.
+ *
+ * @author Hervé Bitteur
+ */
+public interface ScanlineSource
+    extends PixelSource
+{
+    //~ Methods ----------------------------------------------------------------
+
+    //-------------//
+    // getScanline //
+    //-------------//
+    /**
+     * Copy the pixel values of the horizontal segment that goes from (x, y)
+     * to (x + width - 1, y) into the provided array.
+     *
+     * @param x      abscissa of the first pixel of the segment
+     * @param y      ordinate of the segment
+     * @param width  number of pixels in the segment
+     * @param levels the array to fill, with one unsigned byte per pixel using
+     *               range 0..255 (0/black for foreground, 255/white for
+     *               background), as {@link #getPixel} would report
+     * @param offset index in levels array for the first pixel
+     */
+    void getScanline (int    x,
+                      int    y,
+                      int    width,
+                      byte[] levels,
+                      int    offset);
+}
@@ -17,6 +17,8 @@ import omr.lag.ui.LagView;
 
 import omr.log.Logger;
 
+import omr.math.RawMoments;
+
 import omr.score.common.PixelPoint;
 import omr.score.common.PixelRectangle;
 
@@ -87,6 +89,9 @@ public class Section<L extends Lag, S extends Section<L, S>>
     /** Mass center */
     private Point centroid;
 
+    /** Raw moments, in absolute (x, y) frame */
+    private RawMoments rawMoments;
+
     /** Model contour points, which depend on orientation */
     private Polygon contour;
 
@@ -102,6 +107,9 @@ public class Section<L extends Lag, S extends Section<L, S>>
     /** Number of pixels, whatever the gray level */
     private int weight;
 
+    /** Are the bounds waiting to be (re)indexed by the containing lag? */
+    private volatile boolean indexPending;
+
     //~ Constructors -----------------------------------------------------------
 
     //---------//
@@ -315,6 +323,7 @@ public class Section<L extends Lag, S extends Section<L, S>>
     public void setFirstPos (int firstPos)
     {
         this.firstPos = firstPos;
+        invalidateCache();
     }
 
     //-------------//
@@ -479,6 +488,42 @@ public class Section<L extends Lag, S extends Section<L, S>>
         return weight / getRunNb();
     }
 
+    //---------------//
+    // getRawMoments //
+    //---------------//
+    /**
+     * Report the raw moments of the section pixels, in the absolute (x, y)
+     * frame, as summed from the closed-form moments of each run. They are
+     * meant to be added into glyph moments, and must not be modified.
+     *
+     * @return the (cached) section raw moments
+     */
+    public RawMoments getRawMoments ()
+    {
+        if (rawMoments == null) {
+            RawMoments raw = new RawMoments();
+            boolean    vertical = (graph == null) || graph.isVertical();
+            int        pos = firstPos;
+
+            for (Run run : runs) {
+                if (vertical) {
+                    raw.addVerticalSegment(pos, run.getStart(), run.getLength());
+                } else {
+                    raw.addHorizontalSegment(
+                        run.getStart(),
+                        pos,
+                        run.getLength());
+                }
+
+                pos++;
+            }
+
+            rawMoments = raw;
+        }
+
+        return rawMoments;
+    }
+
     //----------//
     // getRunAt //
     //----------//
@@ -1184,12 +1229,34 @@ public class Section<L extends Lag, S extends Section<L, S>>
     //-----------------//
     // invalidateCache //
     //-----------------//
+    @SuppressWarnings("unchecked")
     protected void invalidateCache ()
     {
         bounds = null;
         centroid = null;
         contour = null;
         contourBox = null;
+        rawMoments = null;
+
+        // Let the lag know, once, that the section bounds have changed
+        if (!indexPending && (graph != null)) {
+            indexPending = true;
+            graph.sectionModified(this); // Unchecked
+        }
+    }
+
+    //-----------------//
+    // setIndexPending //
+    //-----------------//
+    /**
+     * (package private) Used by the lag to record whether the section bounds
+     * are waiting to be indexed
+     *
+     * @param indexPending true when the section is registered for indexing
+     */
+    void setIndexPending (boolean indexPending)
+    {
+        this.indexPending = indexPending;
     }
 
     //--------//
@@ -86,7 +86,10 @@ public class SectionsBuilder<L extends Lag<L, S>, S extends Section<L, S>>
     // createSections //
     //----------------//
     /**
-     * Populate a lag with sections created by ripping a picture
+     * Populate a lag with sections created by ripping a picture. A source
+     * which is a {@link ScanlineSource} is read in bulk by a
+     * {@link RunsTableBuilder}, any other source pixel per pixel by a
+     * {@link RunsBuilder}.
      *
      * @param source         the source to read pixels from
      * @param minRunLength   minimum length to consider a run
@@ -99,19 +102,30 @@ public class SectionsBuilder<L extends Lag<L, S>, S extends Section<L, S>>
             new Rectangle(0, 0, source.getWidth(), source.getHeight()),
             null);
 
-        // Prepare the collections of runs, one collection per pos value
-        runs = new ArrayList<List<Run>>(rect.height);
+        long start = System.currentTimeMillis();
+
+        if (source instanceof ScanlineSource) {
+            // Populate the runs, in bulk
+            RunsTable table = new RunsTableBuilder(
+                (ScanlineSource) source,
+                lag.isVertical(),
+                source.getMaxForeground(),
+                minRunLength).createTable();
+            runs = table.createRuns();
+        } else {
+            // Prepare the collections of runs, one collection per pos value
+            runs = new ArrayList<List<Run>>(rect.height);
+
+            for (int i = 0; i < rect.height; i++) {
+                runs.add(new ArrayList<Run>());
+            }
 
-        for (int i = 0; i < rect.height; i++) {
-            runs.add(new ArrayList<Run>());
+            // Populate the runs.
+            RunsBuilder runsBuilder = new RunsBuilder(
+                new LagReader(lag, runs, source, minRunLength));
+            runsBuilder.createRuns(rect);
         }
 
-        // Populate the runs.
-        RunsBuilder runsBuilder = new RunsBuilder(
-            new LagReader(lag, runs, source, minRunLength));
-        long        start = System.currentTimeMillis();
-        runsBuilder.createRuns(rect);
-
         if (logger.isFineEnabled()) {
             long stop = System.currentTimeMillis();
             logger.fine(
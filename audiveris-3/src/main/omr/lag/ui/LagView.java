@@ -265,7 +265,7 @@ public class LagView<L extends Lag<L, S>, S extends Section<L, S>>
             }
         }
 
-        return lag.lookupSection(lag.getVertices(), pt);
+        return lag.lookupSection(pt);
     }
 
     //-----------------------//
@@ -726,7 +726,7 @@ public class LagView<L extends Lag<L, S>, S extends Section<L, S>>
                 Point pt = rect.getLocation();
 
                 // No specifics, look into lag
-                S     section = lag.lookupSection(lag.getVertices(), pt);
+                S     section = lag.lookupSection(pt);
 
                 // Publish Run information
                 Point apt = lag.switchRef(pt, null);
@@ -749,7 +749,7 @@ public class LagView<L extends Lag<L, S>, S extends Section<L, S>>
 
             // If not found in specifics, now look into lag
             if (section == null) {
-                section = lag.lookupSection(lag.getVertices(), pt);
+                section = lag.lookupSection(pt);
             }
 
             // Publish Run information
@@ -19,23 +19,30 @@ import java.util.Arrays;
  * range, or codomain).
  *
  * <p>It finds a mapping that minimizes the global mapping distance, given
- * the individual distance for each domain/range elements pair. This
- * implementation uses brute force, and thus should be used with small
- * sizes only.
+ * the individual distance for each domain/range elements pair. The range must
+ * be at least as large as the domain.
+ *
+ * <p>This implementation uses the Hungarian method, in its shortest augmenting
+ * path form: domain elements are inserted one after the other, each insertion
+ * re-arranging the current mapping along a path of minimum additional
+ * distance, while potentials on domain and range elements keep track of the
+ * reduced distances. The cost is O(domainSize<sup>2</sup> * rangeSize), and
+ * each individual distance is asked only once.
  *
  * @author Hervé Bitteur
  */
 public class InjectionSolver
 {
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Infinite reduced distance */
+    private static final long INFINITE = Long.MAX_VALUE;
+
     //~ Instance fields --------------------------------------------------------
 
-    private final int       domainSize;
-    private final int       rangeSize;
-    private final Distance  distance;
-    private final boolean[] free;
-    private int             bestCost = Integer.MAX_VALUE;
-    private final int[]     bestConfig;
-    private final int[]     config;
+    private final int      domainSize;
+    private final int      rangeSize;
+    private final Distance distance;
 
     //~ Constructors -----------------------------------------------------------
 
@@ -43,25 +50,24 @@ public class InjectionSolver
      * Creates a new instance of InjectionSolver
      *
      * @param domainSize size of the domain collection
-     * @param rangeSize size of the range collection
-     * @param distance
+     * @param rangeSize size of the range collection, not smaller than
+     * domainSize
+     * @param distance the individual distance of each domain/range pair
      */
     public InjectionSolver (int      domainSize,
                             int      rangeSize,
                             Distance distance)
     {
+        if (rangeSize < domainSize) {
+            throw new IllegalArgumentException(
+                "Range size " + rangeSize + " smaller than domain size " +
+                domainSize);
+        }
+
         // Parameters of the solver
         this.domainSize = domainSize;
         this.rangeSize = rangeSize;
         this.distance = distance;
-
-        free = new boolean[rangeSize];
-        bestConfig = new int[domainSize];
-        config = new int[domainSize];
-
-        //        System.out.println(
-        //            "InjectionSolver domainSize=" + domainSize + " rangeSize=" +
-        //            rangeSize);
     }
 
     //~ Methods ----------------------------------------------------------------
@@ -77,60 +83,90 @@ public class InjectionSolver
      */
     public int[] solve ()
     {
-        Arrays.fill(free, true);
-        inspect(0, 0);
+        // Individual distances, domain element after domain element
+        final int[] costs = new int[domainSize * rangeSize];
 
-        return bestConfig;
-    }
+        for (int id = 0; id < domainSize; id++) {
+            for (int ir = 0; ir < rangeSize; ir++) {
+                costs[(id * rangeSize) + ir] = distance.getDistance(id, ir);
+            }
+        }
 
-    //---------//
-    // inspect //
-    //---------//
-    private final void inspect (int id,
-                                int cost)
-    {
-        //        System.out.println("inspect id=" + id + " cost=" + cost);
-        for (int ir = 0; ir < rangeSize; ir++) {
-            if (free[ir]) {
-                free[ir] = false;
-                config[id] = ir;
-
-                int newCost = cost + distance.getDistance(id, ir);
-
-                //                System.out.println("ir=" + ir + " newCost=" + newCost);
-                if (id < (domainSize - 1)) {
-                    inspect(id + 1, newCost);
-                } else if (newCost < bestCost) {
-                    // Record best config so far
-                    System.arraycopy(config, 0, bestConfig, 0, domainSize);
-                    bestCost = newCost;
-
-                    // dump();
+        // Indices below are shifted by one, range index 0 being a virtual
+        // element used as the root of augmenting paths
+        final long[]    domainPot = new long[domainSize + 1];
+        final long[]    rangePot = new long[rangeSize + 1];
+        final int[]     mappedTo = new int[rangeSize + 1]; // Domain, or 0
+        final int[]     previous = new int[rangeSize + 1]; // Along path
+        final long[]    minReduced = new long[rangeSize + 1];
+        final boolean[] visited = new boolean[rangeSize + 1];
+
+        for (int id = 1; id <= domainSize; id++) {
+            // Insert domain element id, starting from the virtual element
+            mappedTo[0] = id;
+
+            int r0 = 0;
+            Arrays.fill(minReduced, INFINITE);
+            Arrays.fill(visited, false);
+
+            // Grow a tree of shortest reduced paths, until a free range
+            // element is reached
+            do {
+                visited[r0] = true;
+
+                final int d0 = mappedTo[r0];
+                final int row = (d0 - 1) * rangeSize;
+                long      delta = INFINITE;
+                int       r1 = 0;
+
+                for (int r = 1; r <= rangeSize; r++) {
+                    if (!visited[r]) {
+                        long reduced = costs[(row + r) - 1] - domainPot[d0] -
+                                       rangePot[r];
+
+                        if (reduced < minReduced[r]) {
+                            minReduced[r] = reduced;
+                            previous[r] = r0;
+                        }
+
+                        if (minReduced[r] < delta) {
+                            delta = minReduced[r];
+                            r1 = r;
+                        }
+                    }
                 }
 
-                free[ir] = true;
-            }
-        }
-    }
+                // Update potentials, so that the tree edges remain tight
+                for (int r = 0; r <= rangeSize; r++) {
+                    if (visited[r]) {
+                        domainPot[mappedTo[r]] += delta;
+                        rangePot[r] -= delta;
+                    } else {
+                        minReduced[r] -= delta;
+                    }
+                }
 
-    //------//
-    // dump //
-    //------//
-    private void dump ()
-    {
-        StringBuilder sb = new StringBuilder();
-        sb.append("bestCost=")
-          .append(bestCost);
-        sb.append(" [");
-
-        for (int i = 0; i < bestConfig.length; i++) {
-            sb.append(" ")
-              .append(bestConfig[i]);
+                r0 = r1;
+            } while (mappedTo[r0] != 0);
+
+            // Shift the mapping along the augmenting path
+            do {
+                final int r1 = previous[r0];
+                mappedTo[r0] = mappedTo[r1];
+                r0 = r1;
+            } while (r0 != 0);
         }
 
-        sb.append("]");
+        // Read the mapping
+        final int[] config = new int[domainSize];
+
+        for (int r = 1; r <= rangeSize; r++) {
+            if (mappedTo[r] != 0) {
+                config[mappedTo[r] - 1] = r - 1;
+            }
+        }
 
-        System.out.println(sb.toString());
+        return config;
     }
 
     //~ Inner Interfaces -------------------------------------------------------
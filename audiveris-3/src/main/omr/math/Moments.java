@@ -104,8 +104,7 @@ public class Moments
         double dx;
         double dy;
 
-        // Normalized Moments
-        double n00 = (double) dim / (double) (unit * unit);
+        // Centralized Moments
         double n01 = 0d;
         double n02 = 0d;
         double n03 = 0d;
@@ -116,11 +115,6 @@ public class Moments
         double n21 = 0d;
         double n30 = 0d;
 
-        // Total weight
-        double w = dim; // For p+q = 0
-        double w2 = w * w; // For p+q = 2
-        double w3 = Math.sqrt(w * w * w * w * w); // For p+q = 3
-
         // Mean x & y
         for (int i = dim - 1; i >= 0; i--) {
             n10 += x[i];
@@ -165,65 +159,81 @@ public class Moments
             n03 += (dy * dy * dy);
         }
 
-        // Normalize
-        //
-        // p + q = 2
-        n11 /= w2;
-        n20 /= w2;
-        n02 /= w2;
-        //
-        // p + q = 3
-        n12 /= w3;
-        n21 /= w3;
-        n30 /= w3;
-        n03 /= w3;
-
-        // Assign non-orthogonal centralized moments
-        // (invariant to translation & scaling)
-        k[0] = n00; // Weight
-        k[1] = (double) (xMax - xMin + 1) / unit; // Width
-        k[2] = (double) (yMax - yMin + 1) / unit; // Height
-        k[3] = n20; // X absolute eccentricity
-        k[4] = n11; // XY covariance
-        k[5] = n02; // Y absolute eccentricity
-        k[6] = n30; // X signed eccentricity
-        k[7] = n21; //
-        k[8] = n12; //
-        k[9] = n03; // Y signed eccentricity
-                    //
-                    // Assign orthogonals moments (Hu set)
-                    // (Invariant to translation / scaling / rotation)
+        assign(
+            dim,
+            unit,
+            xMax - xMin + 1,
+            yMax - yMin + 1,
+            n10,
+            n01,
+            n20,
+            n11,
+            n02,
+            n30,
+            n21,
+            n12,
+            n03);
+    }
 
-        k[10] = n20 + n02;
-        //
-        k[11] = ((n20 - n02) * (n20 - n02)) + (4 * n11 * n11);
-        //
-        k[12] = ((n30 - (3 * n12)) * (n30 - (3 * n12))) +
-                ((n03 - (3 * n21)) * (n03 - (3 * n21)));
-        //
-        k[13] = ((n30 + n12) * (n30 + n12)) + ((n03 + n21) * (n03 + n21));
-        //
-        k[14] = ((n30 - (3 * n12)) * (n30 + n12) * (((n30 + n12) * (n30 + n12)) -
-                                                   (3 * (n21 + n03) * (n21 +
-                                                                      n03)))) +
-                ((n03 - (3 * n21)) * (n03 + n21) * (((n03 + n21) * (n03 + n21)) -
-                                                   (3 * (n12 + n30) * (n12 +
-                                                                      n30))));
-        //
-        k[15] = ((n20 - n02) * (((n30 + n12) * (n30 + n12)) -
-                               ((n03 + n21) * (n03 + n21)))) +
-                (4 * n11 * (n30 + n12) * (n03 + n21));
-        //
-        k[16] = (((3 * n21) - n03) * (n30 + n12) * (((n30 + n12) * (n30 + n12)) -
-                                                   (3 * (n21 + n03) * (n21 +
-                                                                      n03)))) -
-                (((3 * n12) - n30) * (n03 + n21) * (((n03 + n21) * (n03 + n21)) -
-                                                   (3 * (n12 + n30) * (n12 +
-                                                                      n30))));
+    //---------//
+    // Moments //
+    //---------//
+    /**
+     * Compute the moments of a figure from its cumulated raw moments, all
+     * values being normed by the provided unit value. This gives the same
+     * results as the point-based constructor, without browsing the points.
+     *
+     * @param raw  the raw moments of the figure
+     * @param unit the length (number of pixels, for example 20) of norming unit
+     */
+    public Moments (RawMoments raw,
+                    int        unit)
+    {
+        // Safety check
+        if (unit == 0) {
+            throw new RuntimeException("Zero-valued unit");
+        }
 
-        // Mass center placed here
-        k[17] = n10; // xBar
-        k[18] = n01; // yBar
+        // Move the origin to the top left corner, using exact integer
+        // arithmetic, to avoid any loss of precision on large coordinates
+        final long ox = raw.xMin;
+        final long oy = raw.yMin;
+        final long w = raw.m00;
+        final long s10 = raw.m10 - (ox * w);
+        final long s01 = raw.m01 - (oy * w);
+        final long s20 = raw.m20 - (2 * ox * raw.m10) + (ox * ox * w);
+        final long s02 = raw.m02 - (2 * oy * raw.m01) + (oy * oy * w);
+        final long s11 = raw.m11 - (ox * raw.m01) - (oy * raw.m10) +
+                         (ox * oy * w);
+        final long s30 = raw.m30 - (3 * ox * raw.m20) +
+                         (3 * ox * ox * raw.m10) - (ox * ox * ox * w);
+        final long s03 = raw.m03 - (3 * oy * raw.m02) +
+                         (3 * oy * oy * raw.m01) - (oy * oy * oy * w);
+        final long s21 = raw.m21 - (oy * raw.m20) - (2 * ox * raw.m11) +
+                         (2 * ox * oy * raw.m10) + (ox * ox * raw.m01) -
+                         (ox * ox * oy * w);
+        final long s12 = raw.m12 - (ox * raw.m02) - (2 * oy * raw.m11) +
+                         (2 * ox * oy * raw.m01) + (oy * oy * raw.m10) -
+                         (ox * oy * oy * w);
+
+        // Then centralize
+        final double xb = (double) s10 / w;
+        final double yb = (double) s01 / w;
+
+        assign(
+            raw.getWeight(),
+            unit,
+            raw.xMax - raw.xMin + 1,
+            raw.yMax - raw.yMin + 1,
+            ox + xb,
+            oy + yb,
+            s20 - (xb * s10),
+            s11 - (xb * s01),
+            s02 - (yb * s01),
+            s30 - (3 * xb * s20) + (2 * w * xb * xb * xb),
+            s21 - (yb * s20) - (2 * xb * s11) + (2 * w * xb * xb * yb),
+            s12 - (xb * s02) - (2 * yb * s11) + (2 * w * xb * yb * yb),
+            s03 - (3 * yb * s02) + (2 * w * yb * yb * yb));
     }
 
     //~ Methods ----------------------------------------------------------------
@@ -334,4 +344,107 @@ public class Moments
 
         return sb.toString();
     }
+
+    //--------//
+    // assign //
+    //--------//
+    /**
+     * Normalize the centralized moments, and assign all the moment values
+     *
+     * @param dim    the number of points
+     * @param unit   the norming unit
+     * @param width  the figure width, in pixels
+     * @param height the figure height, in pixels
+     * @param n10    the mean abscissa
+     * @param n01    the mean ordinate
+     * @param n20    centralized sum of dx.dx
+     * @param n11    centralized sum of dx.dy
+     * @param n02    centralized sum of dy.dy
+     * @param n30    centralized sum of dx.dx.dx
+     * @param n21    centralized sum of dx.dx.dy
+     * @param n12    centralized sum of dx.dy.dy
+     * @param n03    centralized sum of dy.dy.dy
+     */
+    private void assign (int    dim,
+                         int    unit,
+                         int    width,
+                         int    height,
+                         double n10,
+                         double n01,
+                         double n20,
+                         double n11,
+                         double n02,
+                         double n30,
+                         double n21,
+                         double n12,
+                         double n03)
+    {
+        // Normalized Moments
+        double n00 = (double) dim / (double) (unit * unit);
+
+        // Total weight
+        double w = dim; // For p+q = 0
+        double w2 = w * w; // For p+q = 2
+        double w3 = Math.sqrt(w * w * w * w * w); // For p+q = 3
+
+        // Normalize
+        //
+        // p + q = 2
+        n11 /= w2;
+        n20 /= w2;
+        n02 /= w2;
+        //
+        // p + q = 3
+        n12 /= w3;
+        n21 /= w3;
+        n30 /= w3;
+        n03 /= w3;
+
+        // Assign non-orthogonal centralized moments
+        // (invariant to translation & scaling)
+        k[0] = n00; // Weight
+        k[1] = (double) width / unit; // Width
+        k[2] = (double) height / unit; // Height
+        k[3] = n20; // X absolute eccentricity
+        k[4] = n11; // XY covariance
+        k[5] = n02; // Y absolute eccentricity
+        k[6] = n30; // X signed eccentricity
+        k[7] = n21; //
+        k[8] = n12; //
+        k[9] = n03; // Y signed eccentricity
+                    //
+                    // Assign orthogonals moments (Hu set)
+                    // (Invariant to translation / scaling / rotation)
+
+        k[10] = n20 + n02;
+        //
+        k[11] = ((n20 - n02) * (n20 - n02)) + (4 * n11 * n11);
+        //
+        k[12] = ((n30 - (3 * n12)) * (n30 - (3 * n12))) +
+                ((n03 - (3 * n21)) * (n03 - (3 * n21)));
+        //
+        k[13] = ((n30 + n12) * (n30 + n12)) + ((n03 + n21) * (n03 + n21));
+        //
+        k[14] = ((n30 - (3 * n12)) * (n30 + n12) * (((n30 + n12) * (n30 + n12)) -
+                                                   (3 * (n21 + n03) * (n21 +
+                                                                      n03)))) +
+                ((n03 - (3 * n21)) * (n03 + n21) * (((n03 + n21) * (n03 + n21)) -
+                                                   (3 * (n12 + n30) * (n12 +
+                                                                      n30))));
+        //
+        k[15] = ((n20 - n02) * (((n30 + n12) * (n30 + n12)) -
+                               ((n03 + n21) * (n03 + n21)))) +
+                (4 * n11 * (n30 + n12) * (n03 + n21));
+        //
+        k[16] = (((3 * n21) - n03) * (n30 + n12) * (((n30 + n12) * (n30 + n12)) -
+                                                   (3 * (n21 + n03) * (n21 +
+                                                                      n03)))) -
+                (((3 * n12) - n30) * (n03 + n21) * (((n03 + n21) * (n03 + n21)) -
+                                                   (3 * (n12 + n30) * (n12 +
+                                                                      n30))));
+
+        // Mass center placed here
+        k[17] = n10; // xBar
+        k[18] = n01; // yBar
+    }
 }
@@ -30,6 +30,13 @@ import javax.xml.bind.annotation.*;
  * operation, mainly used to save the most performant weight values during the
  * network training.
  *
+ * <p>Besides the evaluation of one input vector through {@link #run(double[],
+ * double[], double[])}, a whole batch of input vectors can be evaluated at
+ * once through {@link #run(double[], int, double[])}. The batch evaluation
+ * works on a flat (row-major) copy of the weights, and processes the batch by
+ * blocks of inputs and blocks of cells, so that the weights and inputs being
+ * combined remain in cache.
+ *
  * @author Hervé Bitteur
  */
 @XmlAccessorType(XmlAccessType.NONE)
@@ -44,6 +51,9 @@ public class NeuralNetwork
     /** Un/marshalling context for use with JAXB */
     private static volatile JAXBContext jaxbContext;
 
+    /** Number of rows (inputs or cells) processed together in batch mode */
+    private static final int BLOCK_SIZE = 32;
+
     //~ Instance fields --------------------------------------------------------
 
     /** Size of input layer */
@@ -83,6 +93,12 @@ public class NeuralNetwork
     /** Number of epochs when training */
     private transient volatile int epochs = 1000;
 
+    /** Flat copy of weights, lazily built for batch evaluation */
+    private transient volatile FlatWeights flatWeights;
+
+    /** Per-thread buffer for hidden values in batch evaluation */
+    private final transient ThreadLocal<double[]> batchHiddens = new ThreadLocal<double[]>();
+
     //~ Constructors -----------------------------------------------------------
 
     //---------------//
@@ -372,6 +388,7 @@ public class NeuralNetwork
         logger.fine("Network memory restore");
         this.hiddenWeights = cloneMatrix(backup.hiddenWeights);
         this.outputWeights = cloneMatrix(backup.outputWeights);
+        flatWeights = null;
     }
 
     //-----//
@@ -424,6 +441,57 @@ public class NeuralNetwork
         return outputs;
     }
 
+    //-----//
+    // run //
+    //-----//
+    /**
+     * Run the neural network on a batch of input vectors, and compute the
+     * related output vectors. Each output vector is identical to the one
+     * {@link #run(double[], double[], double[])} would compute for the same
+     * input vector. This method is thread-safe, the buffer of hidden values
+     * being allocated once per thread.
+     *
+     * @param inputs  the input vectors, one after the other, so that input
+     *                vector #n starts at index n * inputSize
+     * @param count   the number of input vectors
+     * @param outputs array for the computed output vectors, one after the
+     *                other, so that output vector #n starts at index
+     *                n * outputSize
+     */
+    public void run (double[] inputs,
+                     int      count,
+                     double[] outputs)
+    {
+        // Check size consistencies.
+        if (inputs.length < (count * inputSize)) {
+            throw new IllegalArgumentException(
+                "Too few inputs for " + count + " vectors: " + inputs.length);
+        }
+
+        if (outputs.length < (count * outputSize)) {
+            throw new IllegalArgumentException(
+                "Too few outputs for " + count + " vectors: " + outputs.length);
+        }
+
+        FlatWeights weights = flatWeights;
+
+        if (weights == null) {
+            flatWeights = weights = new FlatWeights(hiddenWeights, outputWeights);
+        }
+
+        // Allocate the hiddens if not large enough
+        double[] hiddens = batchHiddens.get();
+
+        if ((hiddens == null) || (hiddens.length < (count * hiddenSize))) {
+            hiddens = new double[Math.max(count, BLOCK_SIZE) * hiddenSize];
+            batchHiddens.set(hiddens);
+        }
+
+        // Compute the hidden values, then the output values
+        forward(inputs, count, inputSize, weights.hidden, hiddenSize, hiddens);
+        forward(hiddens, count, hiddenSize, weights.output, outputSize, outputs);
+    }
+
     //------//
     // stop //
     //------//
@@ -570,6 +638,9 @@ public class NeuralNetwork
                 }
             } // for (int ip = 0; i < patternNb; i++)
 
+            // Weights have changed
+            flatWeights = null;
+
             // Compute true current mse
             mse = 0d;
 
@@ -745,6 +816,59 @@ public class NeuralNetwork
         }
     }
 
+    //---------//
+    // forward //
+    //---------//
+    /**
+     * Batch version of the forward computation of one layer. The batch is
+     * processed by blocks of input vectors, and within each block by blocks of
+     * cells, to keep both sets of rows in cache. Sums are computed in the same
+     * order as the single-vector version.
+     *
+     * @param ins     the input vectors, one after the other
+     * @param count   the number of input vectors
+     * @param inSize  the size of one input vector
+     * @param weights the flat weights, one row of (1 + inSize) per cell
+     * @param outSize the number of cells in the layer
+     * @param outs    the output vectors, one after the other
+     */
+    private void forward (double[] ins,
+                          int      count,
+                          int      inSize,
+                          double[] weights,
+                          int      outSize,
+                          double[] outs)
+    {
+        final int rowSize = inSize + 1;
+
+        for (int n0 = 0; n0 < count; n0 += BLOCK_SIZE) {
+            final int n1 = Math.min(count, n0 + BLOCK_SIZE);
+
+            for (int o0 = 0; o0 < outSize; o0 += BLOCK_SIZE) {
+                final int o1 = Math.min(outSize, o0 + BLOCK_SIZE);
+
+                for (int n = n0; n < n1; n++) {
+                    final int in = n * inSize;
+                    final int out = n * outSize;
+
+                    for (int o = o0; o < o1; o++) {
+                        final int ws = o * rowSize;
+                        double    sum = 0;
+
+                        for (int i = inSize - 1; i >= 0; i--) {
+                            sum += (weights[ws + i + 1] * ins[in + i]);
+                        }
+
+                        // Bias
+                        sum += weights[ws];
+
+                        outs[out + o] = sigmoid(sum);
+                    }
+                }
+            }
+        }
+    }
+
     //---------//
     // sigmoid //
     //---------//
@@ -823,4 +947,42 @@ public class NeuralNetwork
             this.outputWeights = cloneMatrix(outputWeights);
         }
     }
+
+    //-------------//
+    // FlatWeights //
+    //-------------//
+    /**
+     * Flat copy of the weight matrices, each matrix being stored row after
+     * row in a single array
+     */
+    private static class FlatWeights
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        final double[] hidden;
+        final double[] output;
+
+        //~ Constructors -------------------------------------------------------
+
+        FlatWeights (double[][] hiddenWeights,
+                     double[][] outputWeights)
+        {
+            hidden = flatten(hiddenWeights);
+            output = flatten(outputWeights);
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        private static double[] flatten (double[][] matrix)
+        {
+            final int colNb = matrix[0].length;
+            double[]  flat = new double[matrix.length * colNb];
+
+            for (int row = matrix.length - 1; row >= 0; row--) {
+                System.arraycopy(matrix[row], 0, flat, row * colNb, colNb);
+            }
+
+            return flat;
+        }
+    }
 }
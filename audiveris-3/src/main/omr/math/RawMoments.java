@@ -0,0 +1,222 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                            R a w M o m e n t s                             //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.math;
+
+
+/**
+ * Class <code>RawMoments</code> cumulates the raw moments (sums of
+ * x<sup>p</sup>.y<sup>q</sup> for p + q up to 3) of a figure made of points,
+ * together with the figure extrema.
+ *
+ * <p>Raw moments are additive: the moments of a figure made of disjoint parts
+ * are the sums of the moments of the parts. Moreover the moments of a segment
+ * of contiguous pixels are known in closed form. So the raw moments of a glyph
+ * can be obtained by summing the moments of its runs, or of its sections,
+ * without browsing any pixel. The {@link Moments} are then derived from the
+ * raw moments by {@link Moments#Moments(RawMoments, int)}.
+ *
+ * <p>Sums are exact, since they are kept as long integers.
+ *
+ * @author Hervé Bitteur
+ */
+public class RawMoments
+{
+    //~ Instance fields --------------------------------------------------------
+
+    /** Sums of x^p.y^q, with mpq standing for p & q */
+    long m00;
+    long m10;
+    long m01;
+    long m20;
+    long m11;
+    long m02;
+    long m30;
+    long m21;
+    long m12;
+    long m03;
+
+    /** Extrema */
+    int xMin = Integer.MAX_VALUE;
+    int xMax = Integer.MIN_VALUE;
+    int yMin = Integer.MAX_VALUE;
+    int yMax = Integer.MIN_VALUE;
+
+    //~ Constructors -----------------------------------------------------------
+
+    //------------//
+    // RawMoments //
+    //------------//
+    /**
+     * Create an empty RawMoments object, to be filled by the various add
+     * methods
+     */
+    public RawMoments ()
+    {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    //-----------//
+    // getWeight //
+    //-----------//
+    /**
+     * Report the number of points cumulated so far
+     *
+     * @return the figure weight, in pixels
+     */
+    public int getWeight ()
+    {
+        return (int) m00;
+    }
+
+    //-----//
+    // add //
+    //-----//
+    /**
+     * Cumulate the moments of another (disjoint) figure
+     *
+     * @param that the moments to add, which are not modified
+     */
+    public void add (RawMoments that)
+    {
+        m00 += that.m00;
+        m10 += that.m10;
+        m01 += that.m01;
+        m20 += that.m20;
+        m11 += that.m11;
+        m02 += that.m02;
+        m30 += that.m30;
+        m21 += that.m21;
+        m12 += that.m12;
+        m03 += that.m03;
+
+        xMin = Math.min(xMin, that.xMin);
+        xMax = Math.max(xMax, that.xMax);
+        yMin = Math.min(yMin, that.yMin);
+        yMax = Math.max(yMax, that.yMax);
+    }
+
+    //----------------------//
+    // addHorizontalSegment //
+    //----------------------//
+    /**
+     * Cumulate the points of a horizontal segment, from (x, y) to
+     * (x + length - 1, y)
+     *
+     * @param x      abscissa of the first point
+     * @param y      ordinate of all points
+     * @param length number of points, which must be positive
+     */
+    public void addHorizontalSegment (int x,
+                                      int y,
+                                      int length)
+    {
+        final long last = (x + length) - 1L;
+        final long s1 = sum1(last) - sum1(x - 1L);
+        final long s2 = sum2(last) - sum2(x - 1L);
+        final long s3 = sum3(last) - sum3(x - 1L);
+        final long yy = y;
+
+        m00 += length;
+        m10 += s1;
+        m01 += yy * length;
+        m20 += s2;
+        m11 += yy * s1;
+        m02 += yy * yy * length;
+        m30 += s3;
+        m21 += yy * s2;
+        m12 += yy * yy * s1;
+        m03 += yy * yy * yy * length;
+
+        xMin = Math.min(xMin, x);
+        xMax = Math.max(xMax, (int) last);
+        yMin = Math.min(yMin, y);
+        yMax = Math.max(yMax, y);
+    }
+
+    //--------------------//
+    // addVerticalSegment //
+    //--------------------//
+    /**
+     * Cumulate the points of a vertical segment, from (x, y) to
+     * (x, y + length - 1)
+     *
+     * @param x      abscissa of all points
+     * @param y      ordinate of the first point
+     * @param length number of points, which must be positive
+     */
+    public void addVerticalSegment (int x,
+                                    int y,
+                                    int length)
+    {
+        final long last = (y + length) - 1L;
+        final long s1 = sum1(last) - sum1(y - 1L);
+        final long s2 = sum2(last) - sum2(y - 1L);
+        final long s3 = sum3(last) - sum3(y - 1L);
+        final long xx = x;
+
+        m00 += length;
+        m10 += xx * length;
+        m01 += s1;
+        m20 += xx * xx * length;
+        m11 += xx * s1;
+        m02 += s2;
+        m30 += xx * xx * xx * length;
+        m21 += xx * xx * s1;
+        m12 += xx * s2;
+        m03 += s3;
+
+        xMin = Math.min(xMin, x);
+        xMax = Math.max(xMax, x);
+        yMin = Math.min(yMin, y);
+        yMax = Math.max(yMax, (int) last);
+    }
+
+    //----------//
+    // toString //
+    //----------//
+    @Override
+    public String toString ()
+    {
+        return "{RawMoments weight:" + m00 + " x:" + xMin + "-" + xMax +
+               " y:" + yMin + "-" + yMax + "}";
+    }
+
+    //------//
+    // sum1 //
+    //------//
+    /** Sum of t, for t from 0 to n (this is valid for negative n as well) */
+    private static long sum1 (long n)
+    {
+        return (n * (n + 1)) / 2;
+    }
+
+    //------//
+    // sum2 //
+    //------//
+    /** Sum of t^2, for t from 0 to n */
+    private static long sum2 (long n)
+    {
+        return (n * (n + 1) * ((2 * n) + 1)) / 6;
+    }
+
+    //------//
+    // sum3 //
+    //------//
+    /** Sum of t^3, for t from 0 to n */
+    private static long sum3 (long n)
+    {
+        final long s1 = sum1(n);
+
+        return s1 * s1;
+    }
+}
@@ -13,6 +13,9 @@ package omr.score;
 
 import omr.Main;
 
+import omr.constant.Constant;
+import omr.constant.ConstantSet;
+
 import omr.glyph.Shape;
 import static omr.glyph.Shape.*;
 
@@ -76,11 +79,24 @@ import java.util.concurrent.*;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Class <code>ScoreExporter</code> can visit the score hierarchy to export
  * the score to a MusicXML file, stream or DOM.
  *
+ * <p>Export to a file or stream can be streamed (see the streamedExport
+ * constant, off by default): a first visit on the score texts completes the
+ * document header, then a second visit writes each measure as soon as it is
+ * built, so that the whole proxymusic document never resides in memory. The
+ * streamed document is not indented, each measure being written on one line.
+ *
  * @author Hervé Bitteur
  */
 public class ScoreExporter
@@ -88,6 +104,9 @@ public class ScoreExporter
 {
     //~ Static fields/initializers ---------------------------------------------
 
+    /** Specific application parameters */
+    private static final Constants constants = new Constants();
+
     /** Usual logger utility */
     private static final Logger logger = Logger.getLogger(ScoreExporter.class);
 
@@ -112,9 +131,24 @@ public class ScoreExporter
 
     //~ Instance fields --------------------------------------------------------
 
-    /** The related score */
+    /** The related score (the page being visited, for a multi-page export) */
     private Score score;
 
+    /** Number of score pages already visited */
+    private int pageCount;
+
+    /** Measure number offset for the page being visited */
+    private int measureOffset;
+
+    /** Highest measure number exported so far */
+    private int lastMeasureNumber;
+
+    /** Parts of the exported document, as defined by its first page */
+    private List<ScorePart> docParts;
+
+    /** Proxy part for each document part id */
+    private final Map<Integer, proxymusic.ScorePartwise.Part> pmParts = new HashMap<Integer, proxymusic.ScorePartwise.Part>();
+
     /** The score proxy built precisely for export via JAXB */
     private final ScorePartwise scorePartwise = new ScorePartwise();
 
@@ -136,6 +170,24 @@ public class ScoreExporter
     /** Factory for proxymusic entities */
     private final proxymusic.ObjectFactory factory = new proxymusic.ObjectFactory();
 
+    /** Should score texts be visited? (not when streaming measures) */
+    private boolean exportTexts = true;
+
+    /** Should score measures be visited? (not when gathering the header) */
+    private boolean exportMeasures = true;
+
+    /** The XML writer, when the export is streamed */
+    private XMLStreamWriter streamWriter;
+
+    /** The marshaller of streamed elements */
+    private Marshaller fragmentMarshaller;
+
+    /** Should the export to a file or stream be streamed? */
+    private boolean streamed = constants.streamedExport.getValue();
+
+    /** The signature elements injected by the latest streamed export */
+    private List<JAXBElement<?>> signature;
+
     //~ Constructors -----------------------------------------------------------
 
     //---------------//
@@ -185,6 +237,43 @@ public class ScoreExporter
         this.measureRange = measureRange;
     }
 
+    //-------------//
+    // setStreamed //
+    //-------------//
+    /**
+     * Choose how the score is exported to a file or stream, overriding the
+     * streamedExport constant
+     *
+     * @param streamed true to write measures on the fly, false to build the
+     * whole document first
+     */
+    public void setStreamed (boolean streamed)
+    {
+        this.streamed = streamed;
+    }
+
+    //---------//
+    // addPage //
+    //---------//
+    /**
+     * Append the content of another page to the exported document, after the
+     * pages already visited. The parts of the document are those of the first
+     * page, and measure numbers go on from the previous page.
+     *
+     * @param page the score of the next page (cannot be null)
+     */
+    public void addPage (Score page)
+    {
+        if (page == null) {
+            throw new IllegalArgumentException("Trying to add a null page");
+        }
+
+        // Make sure the first page is there
+        buildScorePartwise();
+
+        page.accept(this);
+    }
+
     //--------------------//
     // buildScorePartwise //
     //--------------------//
@@ -194,8 +283,10 @@ public class ScoreExporter
      */
     public ScorePartwise buildScorePartwise ()
     {
-        // Let visited nodes fill the scorePartwise proxy
-        score.accept(this);
+        // Let visited nodes fill the scorePartwise proxy, just once
+        if (pageCount == 0) {
+            score.accept(this);
+        }
 
         return scorePartwise;
     }
@@ -214,7 +305,13 @@ public class ScoreExporter
                         boolean injectSignature)
         throws Exception
     {
-        export(new FileOutputStream(xmlFile), injectSignature);
+        OutputStream os = new FileOutputStream(xmlFile);
+
+        try {
+            export(os, injectSignature);
+        } finally {
+            os.close();
+        }
     }
 
     //--------//
@@ -237,11 +334,16 @@ public class ScoreExporter
                 "Trying to export a score to a null output stream");
         }
 
-        // Let visited nodes fill the scorePartWise proxy
-        score.accept(this);
+        if (streamed && (pageCount == 0)) {
+            // Write measures as they are visited
+            stream(os, injectSignature);
+        } else {
+            // Let visited nodes fill the scorePartWise proxy
+            buildScorePartwise();
 
-        //  Finally, marshal the proxy
-        Marshalling.marshal(scorePartwise, os, injectSignature);
+            //  Finally, marshal the proxy
+            Marshalling.marshal(scorePartwise, os, injectSignature);
+        }
     }
 
     //--------//
@@ -753,7 +855,9 @@ public class ScoreExporter
         current.pmMeasure = factory.createScorePartwisePartMeasure();
         current.pmPart.getMeasure()
                       .add(current.pmMeasure);
-        current.pmMeasure.setNumber("" + measure.getId());
+        int number = measureOffset + measure.getId();
+        current.pmMeasure.setNumber("" + number);
+        lastMeasureNumber = Math.max(lastMeasureNumber, number);
 
         if (measure.getWidth() != null) {
             current.pmMeasure.setWidth(toTenths(measure.getWidth()));
@@ -789,7 +893,10 @@ public class ScoreExporter
                              .add(current.pmPrint);
 
             if (isFirst.system) {
-                // New Page ? TODO
+                // New Page?
+                if (pageCount > 0) {
+                    current.pmPrint.setNewPage(YesNo.YES);
+                }
 
                 // Divisions
                 try {
@@ -840,8 +947,9 @@ public class ScoreExporter
                     systemLayout.setTopSystemDistance(
                         toTenths(current.system.getTopLeft().y));
 
-                    // Tempo? Volume?
-                    if (score.hasTempo() || score.hasVolume()) {
+                    // Tempo? Volume? (for the whole document)
+                    if ((pageCount == 0) &&
+                        (score.hasTempo() || score.hasVolume())) {
                         Direction direction = factory.createDirection();
                         current.pmMeasure.getNoteOrBackupOrForward()
                                          .add(direction);
@@ -994,6 +1102,16 @@ public class ScoreExporter
         } catch (Exception ex) {
         }
 
+        // Streamed export?
+        if (streamWriter != null) {
+            writeFragment(
+                "measure",
+                ScorePartwise.Part.Measure.class,
+                current.pmMeasure);
+            current.pmPart.getMeasure()
+                          .remove(current.pmMeasure);
+        }
+
         // Safer...
         current.endMeasure();
         tupletNumbers.clear();
@@ -1299,7 +1417,8 @@ public class ScoreExporter
     /**
      * Allocate/populate everything that directly relates to the score instance.
      * The rest of processing is delegated to the score children, that is to
-     * say pages (TBI), then systems, etc...
+     * say systems, etc... For the pages after the first one, only the parts
+     * defined by the first page are populated.
      *
      * @param score visit the score to export
      * @return false, since no further processing is required after this node
@@ -1313,129 +1432,136 @@ public class ScoreExporter
 
         // Reset durations for the score
         score.setDurationDivisor(null);
+        this.score = score;
 
-        // No version inserted
-        // Let the marshalling class handle it
-
-        // Identification
-        Identification identification = factory.createIdentification();
-        scorePartwise.setIdentification(identification);
-
-        // Source
-        identification.setSource(score.getImagePath());
-
-        // Encoding
-        Encoding encoding = factory.createEncoding();
-        identification.setEncoding(encoding);
+        if (pageCount == 0) {
+            // No version inserted
+            // Let the marshalling class handle it
 
-        // [Encoding]/Software
-        java.lang.String soft = Main.getToolName();
+            // Identification
+            Identification identification = factory.createIdentification();
+            scorePartwise.setIdentification(identification);
 
-        if ((Main.getToolBuild() != null) && !Main.getToolBuild()
-                                                  .equals("")) {
-            soft += (" " + Main.getToolBuild());
-        } else if ((Main.getToolVersion() != null) &&
-                   !Main.getToolVersion()
-                        .equals("")) {
-            soft += (" " + Main.getToolVersion());
-        }
+            // Source
+            identification.setSource(score.getImagePath());
 
-        encoding.getEncodingDateOrEncoderOrSoftware()
-                .add(factory.createEncodingSoftware(soft));
+            // Encoding
+            Encoding encoding = factory.createEncoding();
+            identification.setEncoding(encoding);
 
-        // [Encoding]/EncodingDate
-        // Let the Marshalling class handle it
+            // [Encoding]/Software
+            java.lang.String soft = Main.getToolName();
 
-        // Defaults
-        Defaults defaults = new Defaults();
-        scorePartwise.setDefaults(defaults);
+            if ((Main.getToolBuild() != null) && !Main.getToolBuild()
+                                                      .equals("")) {
+                soft += (" " + Main.getToolBuild());
+            } else if ((Main.getToolVersion() != null) &&
+                       !Main.getToolVersion()
+                            .equals("")) {
+                soft += (" " + Main.getToolVersion());
+            }
 
-        // [Defaults]/Scaling
-        Scale scale = score.getSheet()
-                           .getScale();
+            encoding.getEncodingDateOrEncoderOrSoftware()
+                    .add(factory.createEncodingSoftware(soft));
 
-        if (scale != null) {
-            Scaling scaling = factory.createScaling();
-            defaults.setScaling(scaling);
-            scaling.setMillimeters(
-                createDecimal((scale.interline() * 25.4 * 4) / 300)); // Assuming 300 DPI
-            scaling.setTenths(new BigDecimal("40"));
-        }
+            // [Encoding]/EncodingDate
+            // Let the Marshalling class handle it
 
-        // [Defaults]/PageLayout
-        if (score.getDimension() != null) {
-            PageLayout pageLayout = factory.createPageLayout();
-            defaults.setPageLayout(pageLayout);
-            pageLayout.setPageHeight(toTenths(score.getDimension().height));
-            pageLayout.setPageWidth(toTenths(score.getDimension().width));
-        }
+            // Defaults
+            Defaults defaults = new Defaults();
+            scorePartwise.setDefaults(defaults);
 
-        // [Defaults]/LyricFont
-        Font      lyricFont = omr.score.entity.Text.getLyricsFont();
-        LyricFont pmLyricFont = factory.createLyricFont();
-        defaults.getLyricFont()
-                .add(pmLyricFont);
-        pmLyricFont.setFontFamily(lyricFont.getName());
-        pmLyricFont.setFontSize("" + omr.score.entity.Text.getLyricsFontSize());
-        pmLyricFont.setFontStyle(
-            (lyricFont.getStyle() == Font.ITALIC) ? FontStyle.ITALIC
-                        : FontStyle.NORMAL);
+            // [Defaults]/Scaling
+            Scale scale = score.getSheet()
+                               .getScale();
 
-        // PartList
-        PartList partList = factory.createPartList();
-        scorePartwise.setPartList(partList);
-        isFirst.part = true;
-
-        for (ScorePart p : score.getPartList()) {
-            current.part = p;
+            if (scale != null) {
+                Scaling scaling = factory.createScaling();
+                defaults.setScaling(scaling);
+                scaling.setMillimeters(
+                    createDecimal((scale.interline() * 25.4 * 4) / 300)); // Assuming 300 DPI
+                scaling.setTenths(new BigDecimal("40"));
+            }
 
-            ///logger.info("Processing " + p);
-
-            // Scorepart in partList
-            proxymusic.ScorePart scorePart = factory.createScorePart();
-            partList.getPartGroupOrScorePart()
-                    .add(scorePart);
-            scorePart.setId(current.part.getPid());
-
-            PartName partName = factory.createPartName();
-            scorePart.setPartName(partName);
-            partName.setValue(current.part.getName());
-
-            if (p.getMidiProgram() != null) {
-                // Score instrument
-                ScoreInstrument scoreInstrument = new ScoreInstrument();
-                scorePart.getScoreInstrument()
-                         .add(scoreInstrument);
-                scoreInstrument.setId(scorePart.getId() + "-I1");
-                scoreInstrument.setInstrumentName(
-                    MidiAbstractions.getProgramName(p.getMidiProgram()));
-
-                // Midi instrument
-                MidiInstrument midiInstrument = factory.createMidiInstrument();
-                scorePart.getMidiInstrument()
-                         .add(midiInstrument);
-                midiInstrument.setId(scoreInstrument);
-                midiInstrument.setMidiChannel(p.getId());
-                midiInstrument.setMidiProgram(p.getMidiProgram());
+            // [Defaults]/PageLayout
+            if (score.getDimension() != null) {
+                PageLayout pageLayout = factory.createPageLayout();
+                defaults.setPageLayout(pageLayout);
+                pageLayout.setPageHeight(toTenths(score.getDimension().height));
+                pageLayout.setPageWidth(toTenths(score.getDimension().width));
             }
 
-            // ScorePart in scorePartwise
-            current.pmPart = factory.createScorePartwisePart();
-            scorePartwise.getPart()
-                         .add(current.pmPart);
-            current.pmPart.setId(scorePart);
+            // [Defaults]/LyricFont
+            Font      lyricFont = omr.score.entity.Text.getLyricsFont();
+            LyricFont pmLyricFont = factory.createLyricFont();
+            defaults.getLyricFont()
+                    .add(pmLyricFont);
+            pmLyricFont.setFontFamily(lyricFont.getName());
+            pmLyricFont.setFontSize("" + omr.score.entity.Text.getLyricsFontSize());
+            pmLyricFont.setFontStyle(
+                (lyricFont.getStyle() == Font.ITALIC) ? FontStyle.ITALIC
+                            : FontStyle.NORMAL);
+
+            // PartList
+            PartList partList = factory.createPartList();
+            scorePartwise.setPartList(partList);
+            docParts = score.getPartList();
+
+            for (ScorePart p : docParts) {
+                current.part = p;
+
+                ///logger.info("Processing " + p);
+
+                // Scorepart in partList
+                proxymusic.ScorePart scorePart = factory.createScorePart();
+                partList.getPartGroupOrScorePart()
+                        .add(scorePart);
+                scorePart.setId(current.part.getPid());
+
+                PartName partName = factory.createPartName();
+                scorePart.setPartName(partName);
+                partName.setValue(current.part.getName());
+
+                if (p.getMidiProgram() != null) {
+                    // Score instrument
+                    ScoreInstrument scoreInstrument = new ScoreInstrument();
+                    scorePart.getScoreInstrument()
+                             .add(scoreInstrument);
+                    scoreInstrument.setId(scorePart.getId() + "-I1");
+                    scoreInstrument.setInstrumentName(
+                        MidiAbstractions.getProgramName(p.getMidiProgram()));
+
+                    // Midi instrument
+                    MidiInstrument midiInstrument = factory.createMidiInstrument();
+                    scorePart.getMidiInstrument()
+                             .add(midiInstrument);
+                    midiInstrument.setId(scoreInstrument);
+                    midiInstrument.setMidiChannel(p.getId());
+                    midiInstrument.setMidiProgram(p.getMidiProgram());
+                }
 
-            // Delegate to children the filling of measures
-            if (logger.isFineEnabled()) {
-                logger.fine("Populating " + current.part);
+                // ScorePart in scorePartwise
+                proxymusic.ScorePartwise.Part pmPart = factory.createScorePartwisePart();
+                scorePartwise.getPart()
+                             .add(pmPart);
+                pmPart.setId(scorePart);
+                pmParts.put(p.getId(), pmPart);
             }
+        } else if (score.getPartList()
+                        .size() > docParts.size()) {
+            logger.warning(
+                "Parts beyond the " + docParts.size() +
+                " parts of the first page are not exported for " +
+                score.getRadix());
+        }
 
-            isFirst.system = true; // TODO: to be reviewed when adding pages
-            slurNumbers.clear(); // Reset slur numbers
-            score.acceptChildren(this);
+        // Measure numbers go on from the previous page
+        measureOffset = lastMeasureNumber;
+        visitParts();
 
-            // Next part, if any
-            isFirst.part = false;
+        // A header-only visit does not account for a page
+        if (exportMeasures) {
+            pageCount++;
         }
 
         return false; // That's all
@@ -1663,13 +1789,17 @@ public class ScoreExporter
         }
 
         // Delegate to texts
-        for (TreeNode node : systemPart.getTexts()) {
-            ((Text) node).accept(this);
+        if (exportTexts) {
+            for (TreeNode node : systemPart.getTexts()) {
+                ((Text) node).accept(this);
+            }
         }
 
         // Delegate to measures
-        for (TreeNode node : systemPart.getMeasures()) {
-            ((Measure) node).accept(this);
+        if (exportMeasures) {
+            for (TreeNode node : systemPart.getMeasures()) {
+                ((Measure) node).accept(this);
+            }
         }
 
         return false; // No default browsing this way
@@ -2259,8 +2389,252 @@ public class ScoreExporter
         }
     }
 
+    //------//
+    // sign //
+    //------//
+    /**
+     * Set the document version, and if so desired our signature, the same
+     * way Marshalling does for a whole document. A signature injected by a
+     * previous export is replaced, so that exporting twice does not sign the
+     * document twice.
+     */
+    private void sign (boolean injectSignature)
+        throws Exception
+    {
+        if (Marshalling.specificationVersion != null) {
+            scorePartwise.setVersion(Marshalling.specificationVersion);
+        }
+
+        if (injectSignature &&
+            (Marshalling.specificationTitle != null) &&
+            (Marshalling.implementationVersion != null)) {
+            Identification identification = scorePartwise.getIdentification();
+
+            if (identification == null) {
+                identification = factory.createIdentification();
+                scorePartwise.setIdentification(identification);
+            }
+
+            Encoding encoding = identification.getEncoding();
+
+            if (encoding == null) {
+                encoding = factory.createEncoding();
+                identification.setEncoding(encoding);
+            }
+
+            List<JAXBElement<?>> items = encoding.getEncodingDateOrEncoderOrSoftware();
+
+            if (signature != null) {
+                items.removeAll(signature);
+            }
+
+            signature = new ArrayList<JAXBElement<?>>();
+            signature.add(
+                factory.createEncodingSoftware(
+                    Marshalling.specificationTitle + " " +
+                    Marshalling.implementationVersion));
+            signature.add(
+                factory.createEncodingEncodingDate(
+                    DatatypeFactory.newInstance().newXMLGregorianCalendar(
+                        new GregorianCalendar())));
+            items.addAll(signature);
+        }
+    }
+
+    //--------//
+    // stream //
+    //--------//
+    /**
+     * Export the score to an output stream, each measure being written and
+     * then forgotten as soon as it has been visited.
+     *
+     * @param os the output stream where XML data is written
+     * @param injectSignature should we inject our signature?
+     */
+    private void stream (OutputStream os,
+                         boolean      injectSignature)
+        throws Exception
+    {
+        // First visit, on texts only, to complete the document header
+        if (docParts == null) {
+            exportMeasures = false;
+            score.accept(this);
+            exportMeasures = true;
+        }
+
+        sign(injectSignature);
+
+        try {
+            fragmentMarshaller = Marshalling.getContext()
+                                            .createMarshaller();
+            fragmentMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            streamWriter = new NamespaceFilter(
+                XMLOutputFactory.newInstance().createXMLStreamWriter(os, "UTF-8"));
+
+            streamWriter.writeStartDocument("UTF-8", "1.0");
+            streamWriter.writeCharacters("\n");
+            streamWriter.writeDTD(
+                "<!DOCTYPE score-partwise PUBLIC \"-//Recordare//DTD MusicXML " +
+                scorePartwise.getVersion() +
+                " Partwise//EN\" \"http://www.musicxml.org/dtds/partwise.dtd\">");
+            streamWriter.writeCharacters("\n");
+            streamWriter.writeStartElement("score-partwise");
+
+            if (scorePartwise.getVersion() != null) {
+                streamWriter.writeAttribute(
+                    "version",
+                    scorePartwise.getVersion());
+            }
+
+            streamWriter.writeCharacters("\n");
+
+            // Header
+            writeFragment("work", Work.class, scorePartwise.getWork());
+            writeFragment(
+                "movement-number",
+                java.lang.String.class,
+                scorePartwise.getMovementNumber());
+            writeFragment(
+                "movement-title",
+                java.lang.String.class,
+                scorePartwise.getMovementTitle());
+            writeFragment(
+                "identification",
+                Identification.class,
+                scorePartwise.getIdentification());
+            writeFragment(
+                "defaults",
+                Defaults.class,
+                scorePartwise.getDefaults());
+
+            for (Credit credit : scorePartwise.getCredit()) {
+                writeFragment("credit", Credit.class, credit);
+            }
+
+            writeFragment(
+                "part-list",
+                PartList.class,
+                scorePartwise.getPartList());
+
+            // Second visit, on measures only, part after part
+            exportTexts = false;
+            visitParts();
+
+            streamWriter.writeEndElement();
+            streamWriter.writeEndDocument();
+            streamWriter.flush();
+        } finally {
+            exportTexts = true;
+            streamWriter = null;
+            fragmentMarshaller = null;
+        }
+    }
+
+    //------------//
+    // visitParts //
+    //------------//
+    /**
+     * Populate every part of the document with the measures of the current
+     * score (page)
+     */
+    private void visitParts ()
+    {
+        isFirst.part = true;
+
+        for (ScorePart p : docParts) {
+            current.part = p;
+            current.pmPart = pmParts.get(p.getId());
+
+            // Delegate to children the filling of measures
+            if (logger.isFineEnabled()) {
+                logger.fine("Populating " + current.part);
+            }
+
+            if (streamWriter != null) {
+                writePartStart(p);
+            }
+
+            isFirst.system = true; // First system in this page
+            slurNumbers.clear(); // Reset slur numbers
+            score.acceptChildren(this);
+
+            if (streamWriter != null) {
+                writePartStop();
+            }
+
+            // Next part, if any
+            isFirst.part = false;
+        }
+    }
+
+    //---------------//
+    // writeFragment //
+    //---------------//
+    /**
+     * Write an element of the streamed document
+     *
+     * @param name the element name
+     * @param classe the element class
+     * @param value the element value, if null nothing is written
+     */
+    private <T> void writeFragment (java.lang.String name,
+                                    Class<T>         classe,
+                                    T                value)
+    {
+        if (value != null) {
+            try {
+                fragmentMarshaller.marshal(
+                    new JAXBElement<T>(new QName(name), classe, value),
+                    streamWriter);
+                streamWriter.writeCharacters("\n");
+            } catch (Exception ex) {
+                throw new RuntimeException("Cannot write " + name, ex);
+            }
+        }
+    }
+
+    //----------------//
+    // writePartStart //
+    //----------------//
+    private void writePartStart (ScorePart part)
+    {
+        try {
+            streamWriter.writeStartElement("part");
+            streamWriter.writeAttribute("id", part.getPid());
+            streamWriter.writeCharacters("\n");
+        } catch (XMLStreamException ex) {
+            throw new RuntimeException("Cannot write " + part, ex);
+        }
+    }
+
+    //---------------//
+    // writePartStop //
+    //---------------//
+    private void writePartStop ()
+    {
+        try {
+            streamWriter.writeEndElement();
+            streamWriter.writeCharacters("\n");
+        } catch (XMLStreamException ex) {
+            throw new RuntimeException("Cannot end " + current.part, ex);
+        }
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
+    //-----------//
+    // Constants //
+    //-----------//
+    private static final class Constants
+        extends ConstantSet
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        Constant.Boolean streamedExport = new Constant.Boolean(
+            false,
+            "Should export write measures on the fly, rather than build the whole document first?");
+    }
+
     //---------//
     // Current //
     //---------//
@@ -2353,4 +2727,251 @@ public class ScoreExporter
             return sb.toString();
         }
     }
+
+    //-----------------//
+    // NamespaceFilter //
+    //-----------------//
+    /**
+     * An XMLStreamWriter which drops the namespace declarations that JAXB
+     * writes on each marshalled fragment, that is the xlink namespace and the
+     * empty default namespace, since the partwise DTD does not allow them.
+     * This mimics what Marshalling does on a whole document.
+     */
+    private static class NamespaceFilter
+        implements XMLStreamWriter
+    {
+        //~ Static fields/initializers -----------------------------------------
+
+        /** The xlink namespace, bound by proxymusic */
+        private static final java.lang.String XLINK = "http://www.w3.org/1999/xlink";
+
+        //~ Instance fields ----------------------------------------------------
+
+        /** The actual writer */
+        private final XMLStreamWriter writer;
+
+        //~ Constructors -------------------------------------------------------
+
+        public NamespaceFilter (XMLStreamWriter writer)
+        {
+            this.writer = writer;
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        public void setDefaultNamespace (java.lang.String uri)
+            throws XMLStreamException
+        {
+            writer.setDefaultNamespace(uri);
+        }
+
+        public void setNamespaceContext (NamespaceContext context)
+            throws XMLStreamException
+        {
+            writer.setNamespaceContext(context);
+        }
+
+        public NamespaceContext getNamespaceContext ()
+        {
+            return writer.getNamespaceContext();
+        }
+
+        public void setPrefix (java.lang.String prefix,
+                               java.lang.String uri)
+            throws XMLStreamException
+        {
+            writer.setPrefix(prefix, uri);
+        }
+
+        public java.lang.String getPrefix (java.lang.String uri)
+            throws XMLStreamException
+        {
+            return writer.getPrefix(uri);
+        }
+
+        public java.lang.Object getProperty (java.lang.String name)
+        {
+            return writer.getProperty(name);
+        }
+
+        public void close ()
+            throws XMLStreamException
+        {
+            writer.close();
+        }
+
+        public void flush ()
+            throws XMLStreamException
+        {
+            writer.flush();
+        }
+
+        public void writeAttribute (java.lang.String localName,
+                                    java.lang.String value)
+            throws XMLStreamException
+        {
+            writer.writeAttribute(localName, value);
+        }
+
+        public void writeAttribute (java.lang.String prefix,
+                                    java.lang.String namespaceURI,
+                                    java.lang.String localName,
+                                    java.lang.String value)
+            throws XMLStreamException
+        {
+            writer.writeAttribute(prefix, namespaceURI, localName, value);
+        }
+
+        public void writeAttribute (java.lang.String namespaceURI,
+                                    java.lang.String localName,
+                                    java.lang.String value)
+            throws XMLStreamException
+        {
+            writer.writeAttribute(namespaceURI, localName, value);
+        }
+
+        public void writeCData (java.lang.String data)
+            throws XMLStreamException
+        {
+            writer.writeCData(data);
+        }
+
+        public void writeCharacters (java.lang.String text)
+            throws XMLStreamException
+        {
+            writer.writeCharacters(text);
+        }
+
+        public void writeCharacters (char[] text,
+                                     int    start,
+                                     int    len)
+            throws XMLStreamException
+        {
+            writer.writeCharacters(text, start, len);
+        }
+
+        public void writeComment (java.lang.String data)
+            throws XMLStreamException
+        {
+            writer.writeComment(data);
+        }
+
+        public void writeDTD (java.lang.String dtd)
+            throws XMLStreamException
+        {
+            writer.writeDTD(dtd);
+        }
+
+        public void writeDefaultNamespace (java.lang.String namespaceURI)
+            throws XMLStreamException
+        {
+            if ((namespaceURI != null) && (namespaceURI.length() > 0)) {
+                writer.writeDefaultNamespace(namespaceURI);
+            }
+        }
+
+        public void writeEmptyElement (java.lang.String localName)
+            throws XMLStreamException
+        {
+            writer.writeEmptyElement(localName);
+        }
+
+        public void writeEmptyElement (java.lang.String namespaceURI,
+                                       java.lang.String localName)
+            throws XMLStreamException
+        {
+            writer.writeEmptyElement(namespaceURI, localName);
+        }
+
+        public void writeEmptyElement (java.lang.String prefix,
+                                       java.lang.String localName,
+                                       java.lang.String namespaceURI)
+            throws XMLStreamException
+        {
+            writer.writeEmptyElement(prefix, localName, namespaceURI);
+        }
+
+        public void writeEndDocument ()
+            throws XMLStreamException
+        {
+            writer.writeEndDocument();
+        }
+
+        public void writeEndElement ()
+            throws XMLStreamException
+        {
+            writer.writeEndElement();
+        }
+
+        public void writeEntityRef (java.lang.String name)
+            throws XMLStreamException
+        {
+            writer.writeEntityRef(name);
+        }
+
+        public void writeNamespace (java.lang.String prefix,
+                                    java.lang.String namespaceURI)
+            throws XMLStreamException
+        {
+            if ((prefix == null) || (prefix.length() == 0) ||
+                prefix.equals("xmlns")) {
+                writeDefaultNamespace(namespaceURI);
+            } else if (!XLINK.equals(namespaceURI)) {
+                writer.writeNamespace(prefix, namespaceURI);
+            }
+        }
+
+        public void writeProcessingInstruction (java.lang.String target)
+            throws XMLStreamException
+        {
+            writer.writeProcessingInstruction(target);
+        }
+
+        public void writeProcessingInstruction (java.lang.String target,
+                                                java.lang.String data)
+            throws XMLStreamException
+        {
+            writer.writeProcessingInstruction(target, data);
+        }
+
+        public void writeStartDocument ()
+            throws XMLStreamException
+        {
+            writer.writeStartDocument();
+        }
+
+        public void writeStartDocument (java.lang.String version)
+            throws XMLStreamException
+        {
+            writer.writeStartDocument(version);
+        }
+
+        public void writeStartDocument (java.lang.String encoding,
+                                        java.lang.String version)
+            throws XMLStreamException
+        {
+            writer.writeStartDocument(encoding, version);
+        }
+
+        public void writeStartElement (java.lang.String localName)
+            throws XMLStreamException
+        {
+            writer.writeStartElement(localName);
+        }
+
+        public void writeStartElement (java.lang.String namespaceURI,
+                                       java.lang.String localName)
+            throws XMLStreamException
+        {
+            writer.writeStartElement(namespaceURI, localName);
+        }
+
+        public void writeStartElement (java.lang.String prefix,
+                                       java.lang.String localName,
+                                       java.lang.String namespaceURI)
+            throws XMLStreamException
+        {
+            writer.writeStartElement(prefix, localName, namespaceURI);
+        }
+    }
 }
@@ -27,6 +27,8 @@ import omr.sheet.SheetBench;
 import omr.ui.util.OmrFileFilter;
 import omr.ui.util.UIUtilities;
 
+import omr.util.Zip;
+
 import java.io.*;
 
 /**
@@ -159,16 +161,13 @@ public class ScoreManager
         // Actually export the score material
         try {
             ScoreExporter exporter = new ScoreExporter(score);
+            File          written = write(
+                exporter,
+                exportFile,
+                (injectSignature != null) ? injectSignature
+                                : constants.defaultInjectSignature.getValue());
 
-            if (injectSignature != null) {
-                exporter.export(exportFile, injectSignature);
-            } else {
-                exporter.export(
-                    exportFile,
-                    constants.defaultInjectSignature.getValue());
-            }
-
-            logger.info("Score exported to " + exportFile);
+            logger.info("Score exported to " + written);
 
             // Remember (even across runs) the selected directory
             constants.defaultScoreDirectory.setValue(exportFile.getParent());
@@ -180,6 +179,41 @@ public class ScoreManager
         }
     }
 
+    //----------------//
+    // exportDocument //
+    //----------------//
+    /**
+     * Export a multi-page document, whose pages have already been gathered by
+     * the provided exporter, to the default score folder
+     *
+     * @param exporter the exporter loaded with all document pages
+     * @param radix the document radix, used to name the xml file
+     */
+    public void exportDocument (ScoreExporter exporter,
+                                String        radix)
+    {
+        File exportFile = new File(
+            constants.defaultScoreDirectory.getValue(),
+            radix + SCORE_EXTENSION);
+
+        // Make sure the folder exists
+        File folder = new File(exportFile.getParent());
+
+        if (folder.mkdirs()) {
+            logger.info("Creating folder " + folder);
+        }
+
+        try {
+            File written = write(
+                exporter,
+                exportFile,
+                constants.defaultInjectSignature.getValue());
+            logger.info("Document exported to " + written);
+        } catch (Exception ex) {
+            logger.warning("Error storing document to " + exportFile, ex);
+        }
+    }
+
     //-----------//
     // midiClose //
     //-----------//
@@ -320,6 +354,44 @@ public class ScoreManager
         }
     }
 
+    //-------//
+    // write //
+    //-------//
+    /**
+     * Write the exporter material to the provided xml file, or to its zipped
+     * version if so desired
+     *
+     * @param exporter the exporter to use
+     * @param exportFile the xml file
+     * @param injectSignature should we inject our signature?
+     * @return the file actually written
+     */
+    private File write (ScoreExporter exporter,
+                        File          exportFile,
+                        boolean       injectSignature)
+        throws Exception
+    {
+        if (!constants.zippedExport.getValue()) {
+            exporter.export(exportFile, injectSignature);
+
+            return exportFile;
+        }
+
+        OutputStream os = Zip.createOutputStream(exportFile);
+
+        if (os == null) {
+            throw new IOException("Cannot create zip for " + exportFile);
+        }
+
+        try {
+            exporter.export(os, injectSignature);
+        } finally {
+            os.close();
+        }
+
+        return new File(exportFile.getPath() + ".zip");
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
     //-----------//
@@ -349,5 +421,10 @@ public class ScoreManager
         Constant.Boolean defaultInjectSignature = new Constant.Boolean(
             true,
             "Should we export our signature?");
+
+        /** Should we compress the exported files? */
+        Constant.Boolean zippedExport = new Constant.Boolean(
+            false,
+            "Should we export scores as zipped xml files?");
     }
 }
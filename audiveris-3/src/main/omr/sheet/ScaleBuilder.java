@@ -16,7 +16,8 @@ import omr.Main;
 import omr.constant.Constant;
 import omr.constant.ConstantSet;
 
-import omr.lag.RunsBuilder;
+import omr.lag.RunsTable;
+import omr.lag.RunsTableBuilder;
 
 import omr.log.Logger;
 
@@ -24,8 +25,6 @@ import omr.sheet.picture.Picture;
 
 import omr.step.StepException;
 
-import omr.util.Implement;
-
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartFrame;
 import org.jfree.chart.JFreeChart;
@@ -34,8 +33,6 @@ import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import org.jfree.ui.RefineryUtilities;
 
-import java.awt.Rectangle;
-
 import javax.swing.WindowConstants;
 
 /**
@@ -171,10 +168,8 @@ public class ScaleBuilder
         Picture picture = sheet.getPicture();
         adapter = new Adapter(sheet, picture.getHeight() - 1);
 
-        // Read the picture runs
-        RunsBuilder runsBuilder = new RunsBuilder(adapter);
-        runsBuilder.createRuns(
-            new Rectangle(0, 0, picture.getHeight(), picture.getWidth()));
+        // Read the picture vertical runs
+        adapter.readRuns();
 
         logger.info(
             "Scale black is " + mainFore + ", white is " + mainBack +
@@ -199,10 +194,9 @@ public class ScaleBuilder
     //~ Inner Classes ----------------------------------------------------------
 
     //---------//
-    // Adapter //          Needed for createRuns
+    // Adapter //          Histograms of vertical run lengths
     //---------//
     private class Adapter
-        implements RunsBuilder.Reader
     {
         //~ Instance fields ----------------------------------------------------
 
@@ -237,54 +231,51 @@ public class ScaleBuilder
 
         //~ Methods ------------------------------------------------------------
 
-        //--------//
-        // isFore //
-        //--------//
-        @Implement(RunsBuilder.Reader.class)
-        public boolean isFore (int level)
-        {
-            // Assuming black=0, white=255
-            return level <= maxForeground;
-        }
-
         //----------//
-        // getLevel //
+        // readRuns //
         //----------//
-        @Implement(RunsBuilder.Reader.class)
-        public int getLevel (int coord,
-                             int pos)
+        /**
+         * Retrieve all vertical runs of the picture, to populate the
+         * histograms of foreground runs and of the background runs in
+         * between, and determine the biggest buckets
+         */
+        public void readRuns ()
         {
-            return picture.getPixel(pos, coord); // swap pos & coord
-        }
+            RunsTable table = new RunsTableBuilder(
+                picture,
+                true,
+                maxForeground,
+                1).createTable();
+            int       height = picture.getHeight();
+
+            for (int x = 0; x < table.getSize(); x++) {
+                // Coordinate just past the previous foreground run
+                int stop = 0;
+
+                for (int i = table.getFirstRun(x);
+                     i < table.getFirstRun(x + 1); i++) {
+                    int start = table.getStart(i);
+
+                    if (start > stop) {
+                        back[start - stop]++;
+                    }
+
+                    fore[table.getLength(i)]++;
+                    stop = start + table.getLength(i);
+                }
 
-        //---------//
-        // backRun //
-        //---------//
-        @Implement(RunsBuilder.Reader.class)
-        public void backRun (int w,
-                             int h,
-                             int length)
-        {
-            back[length]++;
-        }
+                if (height > stop) {
+                    back[height - stop]++;
+                }
+            }
 
-        //---------//
-        // foreRun //
-        //---------//
-        @Implement(RunsBuilder.Reader.class)
-        public void foreRun (int w,
-                             int h,
-                             int length,
-                             int cumul)
-        {
-            fore[length]++;
+            terminate();
         }
 
         //-----------//
         // terminate //
         //-----------//
-        @Implement(RunsBuilder.Reader.class)
-        public void terminate ()
+        private void terminate ()
         {
             // Determine the biggest buckets
             int maxFore = 0;
@@ -97,6 +97,9 @@ public class Sheet
     /** Link with sheet original image url. Set by constructor. */
     private URL imageUrl;
 
+    /** Index of sheet image within a multi-image file, or null. */
+    private final Integer pageIndex;
+
     /** The related picture */
     private Picture picture;
 
@@ -194,18 +197,23 @@ public class Sheet
      */
     public Sheet (File imageFile)
     {
-        this(imageFile.getPath());
-
-        if (logger.isFineEnabled()) {
-            logger.fine("creating Sheet from image " + imageFile);
-        }
+        this(imageFile, null);
+    }
 
-        try {
-            // We make sure we have a canonical form for the file name
-            this.imageFile = imageFile.getCanonicalFile();
-        } catch (IOException ex) {
-            logger.warning(ex.toString(), ex);
-        }
+    //-------//
+    // Sheet //
+    //-------//
+    /**
+     * Create a new <code>Sheet</code> instance, based on one of the images
+     * contained in a multi-image file, such as a multi-page TIFF or PDF file.
+     *
+     * @param imageFile the file which contains the image
+     * @param pageIndex the index of the image in the file, counted from 0
+     */
+    public Sheet (File imageFile,
+                  int  pageIndex)
+    {
+        this(imageFile, Integer.valueOf(pageIndex));
     }
 
     /**
@@ -215,7 +223,7 @@ public class Sheet
      */
     public Sheet (URL imageUrl)
     {
-        this(imageUrl.getPath());
+        this(imageUrl.getPath(), null);
 
         if (logger.isFineEnabled()) {
             logger.fine("creating Sheet from url " + imageUrl);
@@ -224,8 +232,27 @@ public class Sheet
         this.imageUrl = imageUrl;
     }
 
-    private Sheet (String path)
+    private Sheet (File    imageFile,
+                   Integer pageIndex)
     {
+        this(imageFile.getPath(), pageIndex);
+
+        if (logger.isFineEnabled()) {
+            logger.fine("creating Sheet from image " + imageFile);
+        }
+
+        try {
+            // We make sure we have a canonical form for the file name
+            this.imageFile = imageFile.getCanonicalFile();
+        } catch (IOException ex) {
+            logger.warning(ex.toString(), ex);
+        }
+    }
+
+    private Sheet (String  path,
+                   Integer pageIndex)
+    {
+        this.pageIndex = pageIndex;
         sheetSteps = new SheetSteps(this);
 
         // Insert in list of handled sheets
@@ -566,6 +593,34 @@ public class Sheet
                    .getLatestStep() == SYMBOLS;
     }
 
+    //--------------//
+    // getPageIndex //
+    //--------------//
+    /**
+     * Report the index of the sheet image within a multi-image file
+     *
+     * @return the image index, counted from 0, or null if the sheet does not
+     * come from a multi-image file
+     */
+    public Integer getPageIndex ()
+    {
+        return pageIndex;
+    }
+
+    //---------------//
+    // getPageSuffix //
+    //---------------//
+    /**
+     * Report the suffix which distinguishes the radix of this sheet from the
+     * radix of the other pages of the same file
+     *
+     * @return the suffix, such as "#3" for the third page, or an empty string
+     */
+    String getPageSuffix ()
+    {
+        return (pageIndex != null) ? ("#" + (pageIndex + 1)) : "";
+    }
+
     //---------//
     // getPath //
     //---------//
@@ -643,7 +698,7 @@ public class Sheet
     public String getRadix ()
     {
         if (imageFile != null) {
-            return FileUtil.getNameSansExtension(imageFile);
+            return FileUtil.getNameSansExtension(imageFile) + getPageSuffix();
         }
 
         if (imageUrl != null) {
@@ -1270,6 +1325,22 @@ public class Sheet
         }
     }
 
+    //----------------//
+    // releasePicture //
+    //----------------//
+    /**
+     * Release the sheet picture, once the steps that read its pixels have been
+     * performed. This is meant for batch processing, where the picture is not
+     * displayed.
+     */
+    public void releasePicture ()
+    {
+        if (picture != null) {
+            picture.close();
+            picture = null;
+        }
+    }
+
     //----------//
     // colorize //
     //----------//
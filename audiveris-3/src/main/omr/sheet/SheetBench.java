@@ -111,7 +111,8 @@ public class SheetBench
         addProp("revision", Main.getToolBuild());
         addProp("image", path);
 
-        radix = FileUtil.getNameSansExtension(new File(path));
+        radix = FileUtil.getNameSansExtension(new File(path)) +
+                sheet.getPageSuffix();
 
         flushBench();
     }
@@ -49,7 +49,7 @@ public class SheetsManager
     //~ Instance fields --------------------------------------------------------
 
     /** Instances of sheet */
-    private List<Sheet> instances = new ArrayList<Sheet>();
+    private final List<Sheet> instances = new ArrayList<Sheet>();
 
     /** Sheet file history  (filled only when sheets are successfully loaded) */
     private NameSet history;
@@ -162,7 +162,7 @@ public class SheetsManager
         }
 
         // Remove from list of instances
-        if (instances.contains(sheet)) {
+        synchronized (instances) {
             instances.remove(sheet);
         }
 
@@ -210,25 +210,33 @@ public class SheetsManager
             logger.fine("insertInstance " + sheet);
         }
 
-        // Remove duplicate if any
-        for (Iterator<Sheet> it = instances.iterator(); it.hasNext();) {
-            Sheet s = it.next();
+        synchronized (instances) {
+            // Remove duplicate if any (same image, and same page if any)
+            String path = sheet.getPath();
 
-            if (s.getPath()
-                 .equals(sheet.getPath())) {
-                if (logger.isFineEnabled()) {
-                    logger.fine("Removing duplicate " + s);
-                }
+            for (Iterator<Sheet> it = instances.iterator(); it.hasNext();) {
+                Sheet s = it.next();
+
+                if ((path != null) &&
+                    path.equals(s.getPath()) &&
+                    ((sheet.getPageIndex() == null)
+                     ? (s.getPageIndex() == null)
+                     : sheet.getPageIndex()
+                            .equals(s.getPageIndex()))) {
+                    if (logger.isFineEnabled()) {
+                        logger.fine("Removing duplicate " + s);
+                    }
 
-                it.remove();
-                s.close();
+                    it.remove();
+                    s.close();
 
-                break;
+                    break;
+                }
             }
-        }
 
-        // Insert new sheet instances
-        instances.add(sheet);
+            // Insert new sheet instances
+            instances.add(sheet);
+        }
     }
 
     //~ Inner Classes ----------------------------------------------------------
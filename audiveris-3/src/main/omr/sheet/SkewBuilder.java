@@ -76,6 +76,12 @@ public class SkewBuilder
     /** Usual logger utility */
     private static final Logger logger = Logger.getLogger(SkewBuilder.class);
 
+    /** Slope units per radian, in the histogram */
+    private static final int RESOLUTION = 10000;
+
+    /** Histogram size: range -0.02 .. +0.02 Radians */
+    private static final int MAX_INDEX = 400;
+
     //~ Instance fields --------------------------------------------------------
 
     /** (Skewed) lag of horizontal significant runs */
@@ -96,6 +102,9 @@ public class SkewBuilder
     /** Length Threshold, for slope computation */
     private int lengthThreshold;
 
+    /** Slope histogram of the longest sticks, once computed or restored */
+    private double[] histo;
+
     /** Maximum accetable section thickness */
     private int maxThickness;
 
@@ -118,6 +127,27 @@ public class SkewBuilder
         this.sheet = sheet;
     }
 
+    //-------------//
+    // SkewBuilder //
+    //-------------//
+    /**
+     * Create a builder whose results have been saved before, so that its
+     * slope histogram can still be displayed.
+     *
+     * @param sheet the related sheet
+     * @param angle the skew angle, as computed
+     * @param histo the slope histogram, as computed
+     * @see #getSlopeHistogram
+     */
+    public SkewBuilder (Sheet    sheet,
+                        double   angle,
+                        double[] histo)
+    {
+        this.sheet = sheet;
+        this.angle = angle;
+        this.histo = histo;
+    }
+
     //~ Methods ----------------------------------------------------------------
 
     //-----------//
@@ -203,6 +233,46 @@ public class SkewBuilder
         writePlot();
     }
 
+    //-------------------//
+    // getSlopeHistogram //
+    //-------------------//
+    /**
+     * Report the histogram of the slopes of lengthy horizontal sticks, in
+     * slope units of 1/10000 radian, from -0.02 to +0.02 radian.
+     *
+     * @return the cumulated stick length for each slope value
+     */
+    public double[] getSlopeHistogram ()
+    {
+        if (histo == null) {
+            if (logger.isFineEnabled()) {
+                logger.fine("Slope computation based on following sticks :");
+            }
+
+            histo = new double[MAX_INDEX];
+
+            for (Stick stick : sticks) {
+                if (stick.getLength() >= lengthThreshold) {
+                    if (logger.isFineEnabled()) {
+                        stick.dump();
+                    }
+
+                    double slope = stick.getLine()
+                                        .getSlope();
+                    int    index = (int) (slope * RESOLUTION) + (MAX_INDEX / 2);
+
+                    if ((index >= 0) && (index < MAX_INDEX)) {
+                        histo[index] += stick.getLength();
+                    }
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return histo;
+    }
+
     //--------------//
     // isMajorChunk //
     //--------------//
@@ -357,38 +427,7 @@ public class SkewBuilder
     //-----------//
     private void writePlot ()
     {
-        if (logger.isFineEnabled()) {
-            logger.fine("Slope computation based on following sticks :");
-        }
-
-        final int RESOLUTION = 10000;
-
-        // Range -0.4 .. +0.4 Radians (-24 .. +24 Degrees)
-        final int MAX_INDEX = 400;
-        double[]  histo = new double[MAX_INDEX];
-
-        for (int i = MAX_INDEX - 1; i >= 0; i--) {
-            histo[i] = 0;
-        }
-
-        for (Stick stick : sticks) {
-            if (stick.getLength() >= lengthThreshold) {
-                if (logger.isFineEnabled()) {
-                    stick.dump();
-                }
-
-                double slope = stick.getLine()
-                                    .getSlope();
-                int    length = stick.getLength();
-                int    index = (int) (slope * RESOLUTION) + (MAX_INDEX / 2);
-
-                if ((index >= 0) && (index < MAX_INDEX)) {
-                    histo[index] += stick.getLength();
-                }
-            } else {
-                break;
-            }
-        }
+        double[] histo = getSlopeHistogram();
 
         XYSeriesCollection dataset = new XYSeriesCollection();
         XYSeries           slopeSeries = new XYSeries("Slope");
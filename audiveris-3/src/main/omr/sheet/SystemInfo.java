@@ -38,6 +38,7 @@ import omr.score.entity.SystemPart;
 import omr.step.StepException;
 
 import omr.util.Predicate;
+import omr.util.SpatialIndex;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentSkipListSet;
@@ -131,6 +132,14 @@ public class SystemInfo
     private final SortedSet<Glyph> glyphsView = Collections.unmodifiableSortedSet(
         glyphs);
 
+    /**
+     * Spatial index of the glyphs collection, based on their contour box.
+     * Like the sorted collection, it assumes that a glyph is not modified
+     * while registered in the system.
+     */
+    private final SpatialIndex<Glyph> glyphIndex = new SpatialIndex<Glyph>(
+        64);
+
     /** Set of sentences made of text glyphs */
     private Set<Sentence> sentences = new LinkedHashSet<Sentence>();
 
@@ -616,7 +625,9 @@ public class SystemInfo
      */
     public void addToGlyphsCollection (Glyph glyph)
     {
-        glyphs.add(glyph);
+        if (glyphs.add(glyph)) {
+            glyphIndex.add(glyph, glyph.getContourBox());
+        }
     }
 
     //------------------------//
@@ -720,6 +731,7 @@ public class SystemInfo
     public void clearGlyphs ()
     {
         glyphs.clear();
+        glyphIndex.clear();
     }
 
     //-----------//
@@ -908,8 +920,7 @@ public class SystemInfo
     {
         List<Glyph> found = new ArrayList<Glyph>();
 
-        // System glyphs are kept sorted on abscissa then ordinate of topLeft
-        for (Glyph glyph : getGlyphs()) {
+        for (Glyph glyph : glyphIndex.intersecting(rect)) {
             if (glyph != excluded) {
                 if (rect.intersects(glyph.getContourBox())) {
                     found.add(glyph);
@@ -917,9 +928,30 @@ public class SystemInfo
             }
         }
 
+        // Keep the order of system glyphs: abscissa then ordinate of topLeft
+        Collections.sort(found, Glyph.globalComparator);
+
         return found;
     }
 
+    //-----------------------//
+    // lookupContainedGlyphs //
+    //-----------------------//
+    /**
+     * Look up in system glyphs for the glyphs contained by a provided
+     * rectangle
+     *
+     * @param rect the coordinates rectangle, in pixels
+     * @return the glyphs found, which may be an empty set
+     */
+    public Set<Glyph> lookupContainedGlyphs (PixelRectangle rect)
+    {
+        List<Glyph> found = glyphIndex.containedIn(rect);
+        Collections.sort(found, Glyph.globalComparator);
+
+        return new LinkedHashSet<Glyph>(found);
+    }
+
     //-------------------------//
     // lookupIntersectedGlyphs //
     //-------------------------//
@@ -946,6 +978,8 @@ public class SystemInfo
      */
     public boolean removeFromGlyphsCollection (Glyph glyph)
     {
+        glyphIndex.remove(glyph);
+
         return glyphs.remove(glyph);
     }
 
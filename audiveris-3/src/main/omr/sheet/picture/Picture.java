@@ -15,6 +15,7 @@ import omr.constant.Constant;
 import omr.constant.ConstantSet;
 
 import omr.lag.PixelSource;
+import omr.lag.ScanlineSource;
 
 import omr.log.Logger;
 
@@ -23,20 +24,29 @@ import omr.selection.PixelLevelEvent;
 import omr.selection.SelectionService;
 import omr.selection.SheetLocationEvent;
 
+import omr.step.ProcessingCancellationException;
+
 import omr.util.Implement;
 import omr.util.JaiLoader;
+import omr.util.OmrExecutors;
 
 import org.bushe.swing.event.EventSubscriber;
 
 import java.awt.*;
 import java.awt.color.ColorSpace;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
 import java.awt.image.*;
 import java.awt.image.renderable.ParameterBlock;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.media.jai.BorderExtender;
 import javax.media.jai.InterpolationBilinear;
@@ -71,7 +81,7 @@ import javax.media.jai.operator.MosaicDescriptor;
  * @author Hervé Bitteur and Brenton Partridge
  */
 public class Picture
-    implements PixelSource, EventSubscriber<SheetLocationEvent>
+    implements ScanlineSource, EventSubscriber<SheetLocationEvent>
 {
     //~ Static fields/initializers ---------------------------------------------
 
@@ -117,6 +127,15 @@ public class Picture
     /** The image (writable) raster */
     private WritableRaster raster;
 
+    /** The raster bytes, when pixels are stored one byte each, or null */
+    private byte[] scanlines;
+
+    /** Index in scanlines of the pixel at (0, 0) */
+    private int scanlineOffset;
+
+    /** Distance in scanlines between two vertically adjacent pixels */
+    private int scanlineStride;
+
     /** The factor to apply to raw pixel value to get gray level on 0..255 */
     private int grayFactor = 1;
 
@@ -220,7 +239,29 @@ public class Picture
     public Picture (File imgFile)
         throws FileNotFoundException, IOException, ImageFormatException
     {
-        setImage(PictureLoader.loadFile(imgFile));
+        this(imgFile, 0);
+    }
+
+    //---------//
+    // Picture //
+    //---------//
+    /**
+     * Build a picture instance, given the name of a file which may contain
+     * several images (such as a multi-page TIFF or PDF file), and the index
+     * of the image to read.
+     *
+     * @param imgFile the image file
+     * @param index   the index of the image in the file, counted from 0
+     *
+     * @throws FileNotFoundException raised when the file is not found
+     * @throws IOException           raised when an IO error occurred
+     * @throws ImageFormatException
+     */
+    public Picture (File imgFile,
+                    int  index)
+        throws FileNotFoundException, IOException, ImageFormatException
+    {
+        setImage(PictureLoader.loadFile(imgFile, index));
 
         logger.info(
             "Image loaded " + image.getWidth() + " x " + image.getHeight());
@@ -521,13 +562,50 @@ public class Picture
     public final int getPixel (int x,
                                int y)
     {
-        int[] pixel = raster.getPixel(x, y, (int[]) null); // Allocates pixel!
+        int sample = raster.getSample(x, y, 0);
 
         if (grayFactor == 1) {
             // Speed up the normal case
-            return pixel[0];
+            return sample;
+        } else {
+            return (grayFactor / 2) + (grayFactor * sample);
+        }
+    }
+
+    //-------------//
+    // getScanline //
+    //-------------//
+    /**
+     * Copy the pixel values of a horizontal segment of the picture. When the
+     * raster stores one byte per pixel, this is a mere copy of raster bytes.
+     *
+     * @param x      abscissa of the first pixel of the segment
+     * @param y      ordinate of the segment
+     * @param width  number of pixels in the segment
+     * @param levels the array to fill, one unsigned byte per pixel
+     * @param offset index in levels array for the first pixel
+     */
+    @Implement(ScanlineSource.class)
+    public final void getScanline (int    x,
+                                   int    y,
+                                   int    width,
+                                   byte[] levels,
+                                   int    offset)
+    {
+        if (scanlines != null) {
+            System.arraycopy(
+                scanlines,
+                scanlineOffset + (y * scanlineStride) + x,
+                levels,
+                offset,
+                width);
         } else {
-            return (grayFactor / 2) + (grayFactor * pixel[0]);
+            int[] samples = raster.getSamples(x, y, width, 1, 0, (int[]) null);
+
+            for (int i = 0; i < width; i++) {
+                levels[offset + i] = (byte) ((grayFactor / 2) +
+                                     (grayFactor * samples[i]));
+            }
         }
     }
 
@@ -717,45 +795,56 @@ public class Picture
     public void rotate (double theta)
         throws ImageFormatException
     {
-        // Invert
-        PlanarImage img = invert(image);
+        rotate(theta, constants.rotateOnRaster.getValue());
+    }
 
-        // Rotate
-        image = JAI.create(
-            "Rotate",
-            new ParameterBlock().addSource(img) // Source image
-            .add(0f) // x origin
-            .add(0f) // y origin
-            .add((float) theta) // angle
-            .add(new InterpolationBilinear()), // Interpolation hint
-            null);
+    //--------//
+    // rotate //
+    //--------//
+    /**
+     * Rotate the image according to the provided angle, by the chosen
+     * implementation.
+     *
+     * @param theta the desired rotation angle, in radians
+     * @param onRaster true for a rotation on the raster bytes, when available,
+     * false for a rotation through JAI
+     * @throws ImageFormatException
+     */
+    void rotate (double  theta,
+                 boolean onRaster)
+        throws ImageFormatException
+    {
+        if (onRaster && (scanlines != null)) {
+            rotateOnRaster((float) theta);
+        } else {
+            rotateWithJai((float) theta);
+        }
 
-        //        // Crop the image to fit the size of the previous one
-        //        ParameterBlock cpb = new ParameterBlock().addSource(image) // The source image
-        //                                                 .add(0f) // x
-        //                                                 .add(0f); // y
-        //
-        //        if (theta < 0d) { // counter-clock wise
-        //            cpb.add((float) (dimension.width));
-        //            cpb.add((float) ((dimension.height * Math.cos(theta)) - 1f));
-        //        } else { // clock wise
-        //            cpb.add((float) ((dimension.width * Math.cos(theta)) - 1f));
-        //            cpb.add((float) (dimension.height));
-        //        }
-        //
-        //        image = JAI.create("crop", cpb, null);
+        // Update relevant parameters
+        rotated = true;
+        updateParams();
 
-        // de-Invert
-        image = invert(image);
+        logger.info("Image rotated " + getWidth() + " x " + getHeight());
+    }
 
-        // Force immediate mode
-        image.getTiles();
+    //-----------------//
+    // setRotatedImage //
+    //-----------------//
+    /**
+     * Replace the image by a rotated version of it, as a previous call to
+     * {@link #rotate} would have computed. The original dimension is kept.
+     *
+     * @param rotatedImage the already rotated image
+     * @throws ImageFormatException
+     */
+    public void setRotatedImage (BufferedImage rotatedImage)
+        throws ImageFormatException
+    {
+        image = PlanarImage.wrapRenderedImage(rotatedImage);
 
         // Update relevant parameters
         rotated = true;
         updateParams();
-
-        logger.info("Image rotated " + getWidth() + " x " + getHeight());
     }
 
     //-------//
@@ -966,6 +1055,76 @@ public class Picture
         }
     }
 
+    //----------------//
+    // createRotation //
+    //----------------//
+    private static PlanarImage createRotation (PlanarImage image,
+                                               float       theta)
+    {
+        return JAI.create(
+            "Rotate",
+            new ParameterBlock().addSource(image) // Source image
+            .add(0f) // x origin
+            .add(0f) // y origin
+            .add(theta) // angle
+            .add(new InterpolationBilinear()), // Interpolation hint
+            null);
+    }
+
+    //-------------------//
+    // getComputableArea //
+    //-------------------//
+    /**
+     * Report the destination area where the JAI bilinear rotation computes
+     * pixels, that is the bounds of the source area, half a pixel inside the
+     * interpolation padding, once rotated. The JAI affine operator fills the
+     * other pixels with background, and so must the raster rotation.
+     *
+     * @param width the source width
+     * @param height the source height
+     * @param theta the rotation angle, in radians
+     * @return the computable destination area
+     */
+    private static Rectangle getComputableArea (int   width,
+                                                int   height,
+                                                float theta)
+    {
+        // Bilinear padding is 0 on left and top, 1 on right and bottom
+        float           x = 0.5f;
+        float           y = 0.5f;
+        float           w = width - 2f;
+        float           h = height - 2f;
+        Point2D[]       corners = new Point2D[] {
+                                      new Point2D.Float(x, y),
+                                      new Point2D.Float(x + w, y),
+                                      new Point2D.Float(x + w, y + h),
+                                      new Point2D.Float(x, y + h)
+                                  };
+        AffineTransform.getRotateInstance(theta)
+                       .transform(corners, 0, corners, 0, 4);
+
+        float           minX = Float.MAX_VALUE;
+        float           minY = Float.MAX_VALUE;
+        float           maxX = -Float.MAX_VALUE;
+        float           maxY = -Float.MAX_VALUE;
+
+        for (Point2D corner : corners) {
+            minX = Math.min(minX, (float) corner.getX());
+            minY = Math.min(minY, (float) corner.getY());
+            maxX = Math.max(maxX, (float) corner.getX());
+            maxY = Math.max(maxY, (float) corner.getY());
+        }
+
+        int xMin = (int) Math.ceil(minX);
+        int yMin = (int) Math.ceil(minY);
+
+        return new Rectangle(
+            xMin,
+            yMin,
+            (int) Math.floor(maxX) - xMin,
+            (int) Math.floor(maxY) - yMin);
+    }
+
     //--------//
     // invert //
     //--------//
@@ -978,6 +1137,174 @@ public class Picture
             null);
     }
 
+    //----------------//
+    // rotateOnRaster //
+    //----------------//
+    /**
+     * Rotate the image directly on the raster bytes, using bilinear
+     * interpolation like JAI does. The destination rows are split into
+     * strips, processed in parallel, and the result gets the same bounds as
+     * the JAI rotation, with a background (white) filling. If a strip fails,
+     * the whole rotation is done through JAI instead.
+     *
+     * @param theta the rotation angle, in radians
+     */
+    private void rotateOnRaster (float theta)
+    {
+        // Destination layout, as the JAI operator would define it (no pixel
+        // is computed here, since JAI evaluation is deferred)
+        PlanarImage layout = createRotation(image, theta);
+        final int   minX = layout.getMinX();
+        final int   minY = layout.getMinY();
+        final int   width = layout.getWidth();
+        final int   height = layout.getHeight();
+
+        BufferedImage target = new BufferedImage(
+            width,
+            height,
+            BufferedImage.TYPE_BYTE_GRAY);
+        final byte[]  dst = ((DataBufferByte) target.getRaster()
+                                                    .getDataBuffer()).getData();
+        final byte[]  src = scanlines;
+        final int     srcWidth = dimension.width;
+        final int     srcHeight = dimension.height;
+        final double  cos = Math.cos(theta);
+        final double  sin = Math.sin(theta);
+
+        // Pixels outside the area that JAI computes are left as background
+        Rectangle     area = getComputableArea(srcWidth, srcHeight, theta);
+        final int     iMin = area.x - minX;
+        final int     iMax = (area.x + area.width) - minX;
+        final int     jMin = area.y - minY;
+        final int     jMax = (area.y + area.height) - minY;
+
+        try {
+            final int            stripCount = Math.min(
+                height,
+                OmrExecutors.useParallelism()
+                                ? OmrExecutors.getNumberOfCpus() : 1);
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
+                stripCount);
+
+            for (int s = 0; s < stripCount; s++) {
+                final int first = (int) (((long) height * s) / stripCount);
+                final int stop = (int) (((long) height * (s + 1)) / stripCount);
+                tasks.add(
+                    new Callable<Void>() {
+                            public Void call ()
+                                throws Exception
+                            {
+                                for (int j = first; j < stop; j++) {
+                                    // Source location of the row first pixel
+                                    double x = minX + 0.5;
+                                    double y = minY + j + 0.5;
+                                    double sx = ((x * cos) + (y * sin)) - 0.5;
+                                    double sy = ((y * cos) - (x * sin)) - 0.5;
+                                    int    d = j * width;
+
+                                    for (int i = 0; i < width;
+                                         i++, sx += cos, sy -= sin, d++) {
+                                        int x0 = (int) Math.floor(sx);
+                                        int y0 = (int) Math.floor(sy);
+
+                                        if ((i < iMin) ||
+                                            (i >= iMax) ||
+                                            (j < jMin) ||
+                                            (j >= jMax) ||
+                                            (x0 < 0) ||
+                                            (y0 < 0) ||
+                                            (x0 >= (srcWidth - 1)) ||
+                                            (y0 >= (srcHeight - 1))) {
+                                            dst[d] = (byte) BACKGROUND;
+
+                                            continue;
+                                        }
+
+                                        double fx = sx - x0;
+                                        double fy = sy - y0;
+                                        int    p = scanlineOffset +
+                                                   (y0 * scanlineStride) + x0;
+                                        int    v00 = src[p] & 0xff;
+                                        int    v01 = src[p + 1] & 0xff;
+                                        int    v10 = src[p + scanlineStride] &
+                                                     0xff;
+                                        int    v11 = src[p + scanlineStride +
+                                                     1] & 0xff;
+                                        double top = v00 + (fx * (v01 - v00));
+                                        double bot = v10 + (fx * (v11 - v10));
+                                        dst[d] = (byte) (int) (top +
+                                                 (fy * (bot - top)) + 0.5);
+                                    }
+                                }
+
+                                return null;
+                            }
+                        });
+            }
+
+            for (Future<Void> future : OmrExecutors.getHighExecutor()
+                                                   .invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            logger.warning("Image rotation got interrupted");
+            throw new ProcessingCancellationException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ProcessingCancellationException) {
+                throw (ProcessingCancellationException) ex.getCause();
+            }
+
+            // The target is only partly filled, let JAI do the whole rotation
+            logger.warning(
+                "Exception raised in raster rotation, using JAI instead",
+                ex.getCause());
+            rotateWithJai(theta);
+
+            return;
+        }
+
+        image = PlanarImage.wrapRenderedImage(target);
+    }
+
+    //---------------//
+    // rotateWithJai //
+    //---------------//
+    /**
+     * Rotate the image through JAI, on the inverted image so that the new
+     * image regions get filled with background.
+     *
+     * @param theta the rotation angle, in radians
+     */
+    private void rotateWithJai (float theta)
+    {
+        // Invert
+        PlanarImage img = invert(image);
+
+        // Rotate
+        image = createRotation(img, theta);
+
+        //        // Crop the image to fit the size of the previous one
+        //        ParameterBlock cpb = new ParameterBlock().addSource(image) // The source image
+        //                                                 .add(0f) // x
+        //                                                 .add(0f); // y
+        //
+        //        if (theta < 0d) { // counter-clock wise
+        //            cpb.add((float) (dimension.width));
+        //            cpb.add((float) ((dimension.height * Math.cos(theta)) - 1f));
+        //        } else { // clock wise
+        //            cpb.add((float) ((dimension.width * Math.cos(theta)) - 1f));
+        //            cpb.add((float) (dimension.height));
+        //        }
+        //
+        //        image = JAI.create("crop", cpb, null);
+
+        // de-Invert
+        image = invert(image);
+
+        // Force immediate mode
+        image.getTiles();
+    }
+
     //--------------//
     // updateParams //
     //--------------//
@@ -1014,6 +1341,33 @@ public class Picture
             throw new RuntimeException("Unsupported pixel size:" + pixelSize);
         }
 
+        // Direct access to raster bytes, if pixels are stored that way
+        scanlines = null;
+
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer  dataBuffer = raster.getDataBuffer();
+
+        if ((grayFactor == 1) &&
+            dataBuffer instanceof DataBufferByte &&
+            sampleModel instanceof ComponentSampleModel) {
+            ComponentSampleModel csm = (ComponentSampleModel) sampleModel;
+
+            if (csm.getPixelStride() == 1) {
+                int bank = csm.getBankIndices()[0];
+                scanlines = ((DataBufferByte) dataBuffer).getData(bank);
+                scanlineOffset = dataBuffer.getOffsets()[bank] +
+                                 csm.getOffset(
+                    -raster.getSampleModelTranslateX(),
+                    -raster.getSampleModelTranslateY(),
+                    0);
+                scanlineStride = csm.getScanlineStride();
+            }
+        }
+
+        if (logger.isFineEnabled()) {
+            logger.fine("direct scanlines=" + (scanlines != null));
+        }
+
         if (pixelSize != 8) {
             logger.warning(
                 "The input image has a pixel size of " + pixelSize + " bits." +
@@ -1035,6 +1389,10 @@ public class Picture
     {
         //~ Instance fields ----------------------------------------------------
 
+        Constant.Boolean rotateOnRaster = new Constant.Boolean(
+            true,
+            "Should we rotate a byte image directly on its raster, by parallel strips, rather than through JAI?");
+
         Constant.Ratio binaryToGrayscaleSubsampling = new Constant.Ratio(
             1,
             "Subsampling ratio between 0 and 1, or 1 for no subsampling (memory intensive)");
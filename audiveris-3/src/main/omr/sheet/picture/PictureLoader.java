@@ -17,6 +17,7 @@ import omr.constant.ConstantSet;
 import omr.log.Logger;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Rectangle;
@@ -77,6 +78,90 @@ public class PictureLoader
 
     //~ Methods ----------------------------------------------------------------
 
+    //---------------//
+    // getImageCount //
+    //---------------//
+    /**
+     * Report the number of images (or pages) contained in a file, without
+     * loading them.
+     *
+     * @param imgFile the image file to inspect
+     * @return the number of images, 1 if the count cannot be determined
+     */
+    public static int getImageCount (File imgFile)
+    {
+        ImageReader reader = getReader(imgFile);
+
+        if (reader != null) {
+            try {
+                return Math.max(1, reader.getNumImages(true));
+            } catch (IOException ex) {
+                logger.warning("Cannot count images in " + imgFile, ex);
+            } finally {
+                closeReader(reader);
+            }
+        } else if (imgFile.getName()
+                          .endsWith(".pdf")) {
+            Object pdf = openPDF(imgFile);
+
+            if (pdf != null) {
+                try {
+                    return Math.max(
+                        1,
+                        (Integer) pdf.getClass().getMethod("getNumPages").invoke(
+                            pdf));
+                } catch (Exception ex) {
+                    logger.warning("Cannot count pages in " + imgFile, ex);
+                }
+            }
+        }
+
+        return 1;
+    }
+
+    //-------------------//
+    // getImageDimension //
+    //-------------------//
+    /**
+     * Report the dimension of an image contained in a file, without loading
+     * the image.
+     *
+     * @param imgFile the image file to inspect
+     * @param index the index of the image (or page) in the file, from 0
+     * @return the image dimension, in pixels, or null if unknown
+     */
+    public static Dimension getImageDimension (File imgFile,
+                                               int  index)
+    {
+        ImageReader reader = getReader(imgFile);
+
+        if (reader != null) {
+            try {
+                return new Dimension(
+                    reader.getWidth(index),
+                    reader.getHeight(index));
+            } catch (IOException ex) {
+                logger.warning("Cannot read dimension in " + imgFile, ex);
+            } finally {
+                closeReader(reader);
+            }
+        } else if (imgFile.getName()
+                          .endsWith(".pdf")) {
+            Object pdf = openPDF(imgFile);
+
+            if (pdf != null) {
+                try {
+                    return getBounds(getPage(pdf, index))
+                               .getSize();
+                } catch (Exception ex) {
+                    logger.warning("Cannot read dimension in " + imgFile, ex);
+                }
+            }
+        }
+
+        return null;
+    }
+
     //----------//
     // loadFile //
     //----------//
@@ -93,12 +178,35 @@ public class PictureLoader
      * @throws RuntimeException if all libraries unable to load file
      */
     public static RenderedImage loadFile (File imgFile)
+    {
+        return loadFile(imgFile, 0);
+    }
+
+    //----------//
+    // loadFile //
+    //----------//
+    /**
+     * Loads a RenderedImage from a file which may contain several images (or
+     * pages), such as a multi-page TIFF or PDF file. Only the desired image is
+     * actually loaded.
+     *
+     * @param imgFile the image file to load
+     * @param index the index of the desired image in the file, from 0
+     * @return the RenderedImage (often but not always a BufferedImage),
+     * guaranteed not to be null
+     * @throws IllegalArgumentException if file does not exist
+     * @throws RuntimeException if all libraries unable to load file
+     */
+    public static RenderedImage loadFile (File imgFile,
+                                          int  index)
     {
         if (!imgFile.exists()) {
             throw new IllegalArgumentException(imgFile + " does not exist");
         }
 
-        logger.info("Loading image from " + imgFile + " ...");
+        logger.info(
+            "Loading image " + ((index > 0) ? ("#" + (index + 1) + " ") : "") +
+            "from " + imgFile + " ...");
 
         ImageInputStream stream = null;
 
@@ -110,14 +218,14 @@ public class PictureLoader
             return null;
         }
 
-        RenderedImage image = loadImageIO(stream);
+        RenderedImage image = loadImageIO(stream, index);
 
         if (image == null) {
             if (imgFile.getName()
                        .endsWith(".pdf")) {
                 logger.fine("Using PDF renderer");
-                image = loadPDF(imgFile);
-            } else {
+                image = loadPDF(imgFile, index);
+            } else if (index == 0) {
                 logger.fine("Using JAI");
                 image = (JAI.create("fileload", imgFile.getPath()));
             }
@@ -134,6 +242,22 @@ public class PictureLoader
     // loadImageIO //
     //-------------//
     public static BufferedImage loadImageIO (ImageInputStream stream)
+    {
+        return loadImageIO(stream, 0);
+    }
+
+    //-------------//
+    // loadImageIO //
+    //-------------//
+    /**
+     * Read one image through ImageIO
+     *
+     * @param stream the input stream, which is closed on return
+     * @param index the index of the desired image in the stream, from 0
+     * @return the image read, or null if ImageIO cannot read it
+     */
+    public static BufferedImage loadImageIO (ImageInputStream stream,
+                                             int              index)
     {
         try {
             if (stream == null) {
@@ -156,11 +280,11 @@ public class PictureLoader
                 reader.addIIOReadProgressListener(new Listener());
                 reader.setInput(stream, false);
 
-                if (reader.getNumImages(false) > 1) {
+                if ((index == 0) && (reader.getNumImages(false) > 1)) {
                     logger.info("Using only first image in multi-image file");
                 }
 
-                return reader.read(0);
+                return reader.read(index);
             } catch (Exception ex) {
                 logger.warning("ImageIO failed", ex);
 
@@ -231,13 +355,163 @@ public class PictureLoader
         return image;
     }
 
+    //-------------//
+    // closeReader //
+    //-------------//
+    private static void closeReader (ImageReader reader)
+    {
+        try {
+            ((ImageInputStream) reader.getInput()).close();
+        } catch (IOException ignored) {
+        }
+
+        reader.dispose();
+    }
+
+    //-----------//
+    // getBounds //
+    //-----------//
+    /**
+     * Report the bounds of the rendered PDF page
+     */
+    private static Rectangle getBounds (Object page)
+        throws Exception
+    {
+        double      res = constants.pdfScale.getValue();
+        Rectangle2D bbox = (Rectangle2D) page.getClass()
+                                             .getMethod("getBBox")
+                                             .invoke(page);
+
+        return new Rectangle(
+            0,
+            0,
+            (int) (bbox.getWidth() * res),
+            (int) (bbox.getHeight() * res));
+    }
+
+    //---------//
+    // getPage //
+    //---------//
+    private static Object getPage (Object pdf,
+                                   int    index)
+        throws Exception
+    {
+        // PDF pages are numbered from 1
+        return pdf.getClass()
+                  .getMethod("getPage", int.class)
+                  .invoke(pdf, index + 1);
+    }
+
+    //-----------//
+    // getReader //
+    //-----------//
+    /**
+     * Report an ImageIO reader on the provided file, if any
+     */
+    private static ImageReader getReader (File imgFile)
+    {
+        try {
+            ImageInputStream stream = ImageIO.createImageInputStream(imgFile);
+
+            if (stream != null) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+
+                if (readers.hasNext()) {
+                    ImageReader reader = readers.next();
+                    reader.setInput(stream, false);
+
+                    return reader;
+                }
+
+                stream.close();
+            }
+        } catch (IOException ex) {
+            logger.warning("Unable to make ImageIO stream", ex);
+        }
+
+        return null;
+    }
+
     //---------//
     // loadPDF //
     //---------//
-    private static BufferedImage loadPDF (File file)
+    private static BufferedImage loadPDF (File file,
+                                          int  index)
     {
-        double res = constants.pdfScale.getValue();
+        Object pdf = openPDF(file);
+
+        if (pdf == null) {
+            return null;
+        }
 
+        try {
+            /*
+               PDFFile pdffile = new PDFFile(buf);
+               // get the desired page
+               PDFPage page = pdffile.getPage(index + 1);
+               // do the actual drawing
+               PDFRenderer renderer = new PDFRenderer(page, g2,
+                   [bounding box], null, Color.RED);
+               page.waitForFinish();
+               renderer.run();
+             */
+            Class<?>       PDFPage = Class.forName("com.sun.pdfview.PDFPage");
+            Object         page = getPage(pdf, index);
+
+            // get the dimensions
+            Rectangle      rect = getBounds(page);
+
+            // create and configure a graphics object
+            BufferedImage  img = new BufferedImage(
+                rect.width,
+                rect.height,
+                BufferedImage.TYPE_BYTE_GRAY);
+
+            Graphics2D     g2 = img.createGraphics();
+            g2.setRenderingHint(
+                RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+
+            // do the actual drawing
+            Class<?>       PDFRenderer = Class.forName(
+                "com.sun.pdfview.PDFRenderer");
+            Constructor<?> renderConst = PDFRenderer.getConstructor(
+                PDFPage,
+                Graphics2D.class,
+                Rectangle.class,
+                Rectangle2D.class,
+                Color.class);
+            Object         renderer = renderConst.newInstance(
+                page,
+                g2,
+                rect,
+                null,
+                Color.WHITE);
+            logger.info("");
+            PDFPage.getMethod("waitForFinish")
+                   .invoke(page);
+            logger.info("");
+            PDFRenderer.getMethod("run")
+                       .invoke(renderer);
+
+            return img;
+        } catch (Exception e) {
+            logger.warning("Unable to render PDF", e);
+
+            return null;
+        }
+    }
+
+    //---------//
+    // openPDF //
+    //---------//
+    /**
+     * Open a PDF file through the PDF Renderer library
+     *
+     * @return the PDFFile instance, or null
+     */
+    private static Object openPDF (File file)
+    {
         try {
             // set up the PDF reading
             RandomAccessFile raf = new RandomAccessFile(file, "r");
@@ -248,80 +522,20 @@ public class PictureLoader
                 channel.size());
 
             try {
-                /*
-                   PDFFile pdffile = new PDFFile(buf);
-                   // get the first page
-                   PDFPage page = pdffile.getPage(0);
-                   // do the actual drawing
-                   PDFRenderer renderer = new PDFRenderer(page, g2,
-                       [bounding box], null, Color.RED);
-                   page.waitForFinish();
-                   renderer.run();
-                 */
-                Class<?>      PDFFile = Class.forName(
-                    "com.sun.pdfview.PDFFile");
-                Object        pdf = PDFFile.getConstructor(ByteBuffer.class)
-                                           .newInstance(buf);
-
-                // get the first page
-                Class<?>      PDFPage = Class.forName(
-                    "com.sun.pdfview.PDFPage");
-                Object        page = PDFFile.getMethod("getPage", int.class)
-                                            .invoke(pdf, 0);
-
-                // get the dimensions
-                Rectangle2D   bbox = (Rectangle2D) PDFPage.getMethod("getBBox")
-                                                          .invoke(page);
-                Rectangle     rect = new Rectangle(
-                    0,
-                    0,
-                    (int) (bbox.getWidth() * res),
-                    (int) (bbox.getHeight() * res));
-
-                // create and configure a graphics object
-                BufferedImage img = new BufferedImage(
-                    rect.width,
-                    rect.height,
-                    BufferedImage.TYPE_BYTE_GRAY);
-
-                Graphics2D    g2 = img.createGraphics();
-                g2.setRenderingHint(
-                    RenderingHints.KEY_ANTIALIASING,
-                    RenderingHints.VALUE_ANTIALIAS_ON);
-
-                // do the actual drawing
-                Class<?>       PDFRenderer = Class.forName(
-                    "com.sun.pdfview.PDFRenderer");
-                Constructor<?> renderConst = PDFRenderer.getConstructor(
-                    PDFPage,
-                    Graphics2D.class,
-                    Rectangle.class,
-                    Rectangle2D.class,
-                    Color.class);
-                Object         renderer = renderConst.newInstance(
-                    page,
-                    g2,
-                    rect,
-                    null,
-                    Color.WHITE);
-                logger.info("");
-                PDFPage.getMethod("waitForFinish")
-                       .invoke(page);
-                logger.info("");
-                PDFRenderer.getMethod("run")
-                           .invoke(renderer);
+                Class<?> PDFFile = Class.forName("com.sun.pdfview.PDFFile");
 
-                return img;
+                return PDFFile.getConstructor(ByteBuffer.class)
+                              .newInstance(buf);
             } catch (ClassNotFoundException e) {
                 logger.warning("Unable to access PDF Renderer library", e);
 
                 return null;
             } catch (Exception e) {
-                logger.warning("Unable to render PDF", e);
+                logger.warning("Unable to load PDF", e);
 
                 return null;
             } finally {
-                raf.close();
+                raf.close(); // The mapping remains valid
             }
         } catch (IOException e) {
             logger.warning("Unable to load PDF", e);
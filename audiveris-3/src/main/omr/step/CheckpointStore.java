@@ -0,0 +1,735 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                       C h e c k p o i n t S t o r e                        //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.step;
+
+import omr.Main;
+
+import omr.constant.Constant;
+import omr.constant.ConstantManager;
+import omr.constant.ConstantSet;
+
+import omr.log.Logger;
+
+import omr.sheet.Scale;
+import omr.sheet.Sheet;
+import omr.sheet.Skew;
+import omr.sheet.SkewBuilder;
+import omr.sheet.picture.Picture;
+
+import omr.util.OmrExecutors;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Class <code>CheckpointStore</code> saves on disk the results of the first
+ * steps performed on a sheet, so that a later processing of the same image
+ * (a batch rerun, or the same sheet opened again in the GUI) can resume from
+ * the latest step saved rather than recompute it.
+ *
+ * <p>Only the {@link Step#LOAD}, {@link Step#SCALE} and {@link Step#SKEW} steps
+ * are checkpointed: their results are the sheet picture, scale and skew, while
+ * the following steps build the whole graph of lags, glyphs and score entities.
+ * There is one checkpoint file per step, named after the SHA-1 of the image
+ * file content and a digest of the parameters these steps depend upon (the
+ * values of the relevant constants, and the sheet foreground threshold), so
+ * that a checkpoint is no longer used once the image or these parameters have
+ * been modified.
+ *
+ * <p>File layout, all values being big-endian:<pre>
+ * header : magic, version (int), step name, image hash, parameters digest,
+ *          tool version (string)
+ * body   : deflated, whose content depends on step
+ *   LOAD  : width, height (int), then pixel gray levels (byte)
+ *   SCALE : interline, main fore (int)
+ *   SKEW  : angle (double), slope histogram (int count, then double
+ *           values, count being -1 if none), rotated (boolean), then if
+ *           rotated the LOAD and SCALE contents for the rotated picture
+ * string : modified UTF-8, as written by DataOutput</pre>
+ * Data is captured when the step completes, but files are written by a low
+ * priority thread.
+ *
+ * <p>Checkpoints are disabled by default. The checkpoint folder is kept within
+ * a size budget, the least recently used files being deleted first.
+ *
+ * @author Hervé Bitteur
+ */
+public class CheckpointStore
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Specific application parameters */
+    private static final Constants constants = new Constants();
+
+    /** Usual logger utility */
+    private static final Logger logger = Logger.getLogger(
+        CheckpointStore.class);
+
+    /** File signature */
+    private static final int MAGIC = 0x41434b31; // "ACK1"
+
+    /** Current format version */
+    private static final int VERSION = 2;
+
+    /** The steps that can be checkpointed */
+    private static final EnumSet<Step> CHECKPOINTED = EnumSet.of(
+        Step.LOAD,
+        Step.SCALE,
+        Step.SKEW);
+
+    /** The units whose constants impact the checkpointed steps */
+    private static final String[] UNITS = new String[] {
+                                              "omr.glyph.facets.",
+                                              "omr.lag.",
+                                              "omr.sheet.Scale.",
+                                              "omr.sheet.ScaleBuilder.",
+                                              "omr.sheet.Sheet.",
+                                              "omr.sheet.SkewBuilder.",
+                                              "omr.sheet.picture.",
+                                              "omr.stick."
+                                          };
+
+    /** The singleton */
+    private static final CheckpointStore INSTANCE = new CheckpointStore();
+
+    //~ Instance fields --------------------------------------------------------
+
+    /** Hash of image file content, per sheet */
+    private final Map<Sheet, String> imageHashes = Collections.synchronizedMap(
+        new WeakHashMap<Sheet, String>());
+
+    /** Files being written */
+    private final List<Future<Void>> pendings = new ArrayList<Future<Void>>();
+
+    //~ Constructors -----------------------------------------------------------
+
+    //-----------------//
+    // CheckpointStore //
+    //-----------------//
+    private CheckpointStore ()
+    {
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    //-------------//
+    // getInstance //
+    //-------------//
+    /**
+     * Report the singleton of this class
+     * @return the only CheckpointStore instance
+     */
+    public static CheckpointStore getInstance ()
+    {
+        return INSTANCE;
+    }
+
+    //-------//
+    // flush //
+    //-------//
+    /**
+     * Wait for the completion of all checkpoint files being written
+     */
+    public void flush ()
+    {
+        List<Future<Void>> futures;
+
+        synchronized (pendings) {
+            futures = new ArrayList<Future<Void>>(pendings);
+            pendings.clear();
+        }
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (Exception ex) {
+                logger.warning("Error writing checkpoint", ex);
+            }
+        }
+    }
+
+    //---------//
+    // restore //
+    //---------//
+    /**
+     * Try to perform a step on a sheet by restoring the results saved by a
+     * previous processing of the same image. This is possible only if the
+     * step is not yet done while the previous step is.
+     *
+     * @param sheet the sheet to process
+     * @param step the step to perform
+     * @return true if the step has been restored, false if it must be computed
+     */
+    public boolean restore (Sheet sheet,
+                            Step  step)
+    {
+        if (!constants.useCheckpoints.getValue() ||
+            !CHECKPOINTED.contains(step)) {
+            return false;
+        }
+
+        SheetSteps steps = sheet.getSheetSteps();
+
+        if (steps.isDone(step) ||
+            ((step != Step.LOAD) &&
+            !steps.isDone(Step.values()[step.ordinal() - 1]))) {
+            return false;
+        }
+
+        String imageHash = getImageHash(sheet);
+
+        if (imageHash == null) {
+            return false;
+        }
+
+        String digest = getDigest(sheet);
+        File   file = getFile(imageHash, digest, step);
+
+        if (!file.exists()) {
+            return false;
+        }
+
+        try {
+            InputStream is = new BufferedInputStream(new FileInputStream(file));
+
+            try {
+                DataInputStream header = new DataInputStream(is);
+
+                if ((header.readInt() != MAGIC) ||
+                    (header.readInt() != VERSION) ||
+                    !header.readUTF()
+                           .equals(step.name()) ||
+                    !header.readUTF()
+                           .equals(imageHash) ||
+                    !header.readUTF()
+                           .equals(digest) ||
+                    !header.readUTF()
+                           .equals(getToolId())) {
+                    if (logger.isFineEnabled()) {
+                        logger.fine("Obsolete checkpoint " + file);
+                    }
+
+                    return false;
+                }
+
+                DataInputStream in = new DataInputStream(
+                    new InflaterInputStream(is));
+
+                switch (step) {
+                case LOAD :
+                    restoreLoad(sheet, in);
+
+                    break;
+
+                case SCALE :
+                    restoreScale(sheet, readScale(in));
+
+                    break;
+
+                case SKEW :
+                    restoreSkew(sheet, in);
+
+                    break;
+                }
+            } finally {
+                is.close();
+            }
+
+            steps.markDone(step);
+            sheet.getBench()
+                 .recordStep(step);
+
+            // Keep track of use, for eviction
+            file.setLastModified(System.currentTimeMillis());
+            logger.info(sheet.getRadix() + " " + step + " restored");
+
+            return true;
+        } catch (Exception ex) {
+            logger.warning("Could not restore " + step + " from " + file, ex);
+
+            return false;
+        }
+    }
+
+    //-------//
+    // store //
+    //-------//
+    /**
+     * Save the results of a step just performed on a sheet, if this step can
+     * be checkpointed. The results are captured synchronously, and the file is
+     * written asynchronously.
+     *
+     * @param sheet the processed sheet
+     * @param step the step just performed
+     */
+    public void store (Sheet sheet,
+                       Step  step)
+    {
+        if (!constants.useCheckpoints.getValue() ||
+            !CHECKPOINTED.contains(step)) {
+            return;
+        }
+
+        String imageHash = getImageHash(sheet);
+
+        if (imageHash == null) {
+            return;
+        }
+
+        try {
+            // Capture step results
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream            out = new DataOutputStream(bytes);
+
+            switch (step) {
+            case LOAD :
+                writeLevels(out, sheet.getPicture());
+
+                break;
+
+            case SCALE :
+                writeScale(out, sheet.getScale());
+
+                break;
+
+            case SKEW :
+
+                Picture picture = sheet.getPicture();
+                out.writeDouble(sheet.getSkew().angle());
+
+                if (sheet.getSkewBuilder() != null) {
+                    double[] histo = sheet.getSkewBuilder()
+                                          .getSlopeHistogram();
+                    out.writeInt(histo.length);
+
+                    for (double value : histo) {
+                        out.writeDouble(value);
+                    }
+                } else {
+                    out.writeInt(-1);
+                }
+
+                out.writeBoolean(picture.isRotated());
+
+                if (picture.isRotated()) {
+                    writeLevels(out, picture);
+                    writeScale(out, sheet.getScale());
+                }
+
+                break;
+            }
+
+            out.flush();
+
+            // Write file in the background
+            final String digest = getDigest(sheet);
+            final File   file = getFile(imageHash, digest, step);
+            final Step   theStep = step;
+            final String theHash = imageHash;
+
+            Callable<Void> task = new Callable<Void>() {
+                public Void call ()
+                    throws IOException
+                {
+                    write(file, theStep, theHash, digest, bytes);
+                    evict(file);
+
+                    return null;
+                }
+            };
+
+            synchronized (pendings) {
+                for (Iterator<Future<Void>> it = pendings.iterator();
+                     it.hasNext();) {
+                    if (it.next()
+                          .isDone()) {
+                        it.remove();
+                    }
+                }
+
+                pendings.add(OmrExecutors.getLowExecutor().submit(task));
+            }
+        } catch (Exception ex) {
+            logger.warning("Could not checkpoint " + step, ex);
+        }
+    }
+
+    //-------//
+    // evict //
+    //-------//
+    /**
+     * Delete the least recently used checkpoint files, until the folder fits
+     * in the checkpoint budget
+     *
+     * @param kept the file just written, which is never deleted
+     */
+    private static synchronized void evict (File kept)
+    {
+        File[] files = kept.getParentFile()
+                           .listFiles(
+            new FilenameFilter() {
+                    public boolean accept (File   dir,
+                                           String name)
+                    {
+                        return name.endsWith(".ckpt");
+                    }
+                });
+
+        if (files == null) {
+            return;
+        }
+
+        long total = 0;
+
+        for (File file : files) {
+            total += file.length();
+        }
+
+        long max = constants.checkpointBudget.getValue() * 1024L * 1024L;
+
+        if (total <= max) {
+            return;
+        }
+
+        Arrays.sort(
+            files,
+            new Comparator<File>() {
+                    public int compare (File f1,
+                                        File f2)
+                    {
+                        return Long.signum(
+                            f1.lastModified() - f2.lastModified());
+                    }
+                });
+
+        for (File file : files) {
+            if (total <= max) {
+                break;
+            }
+
+            if (!file.equals(kept)) {
+                long length = file.length();
+
+                if (file.delete()) {
+                    total -= length;
+
+                    if (logger.isFineEnabled()) {
+                        logger.fine("Checkpoint " + file + " evicted");
+                    }
+                }
+            }
+        }
+    }
+
+    //-----------//
+    // getDigest //
+    //-----------//
+    /**
+     * Report the parameters the checkpointed steps depend upon, besides the
+     * image: the relevant constants and the sheet foreground threshold
+     */
+    private static String getDigest (Sheet sheet)
+    {
+        return ConstantManager.getInstance()
+                              .getValuesDigest(UNITS) + "-" +
+               sheet.getMaxForeground();
+    }
+
+    //---------//
+    // getFile //
+    //---------//
+    private static File getFile (String imageHash,
+                                 String digest,
+                                 Step   step)
+    {
+        String path = constants.checkpointFolder.getValue();
+        File   folder = (path.length() == 0)
+                        ? new File(
+            System.getProperty("java.io.tmpdir"),
+            "audiveris-checkpoints") : new File(path);
+
+        return new File(
+            folder,
+            imageHash + "." + digest + "." + step + ".ckpt");
+    }
+
+    //--------------//
+    // getImageHash //
+    //--------------//
+    /**
+     * Report the SHA-1 of the sheet image file content
+     *
+     * @return the hexadecimal hash, or null if the sheet has no image file
+     */
+    private String getImageHash (Sheet sheet)
+    {
+        String hash = imageHashes.get(sheet);
+
+        if ((hash == null) && (sheet.getImageFile() != null)) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-1");
+                InputStream   is = new FileInputStream(sheet.getImageFile());
+
+                try {
+                    byte[] buffer = new byte[65536];
+                    int    count;
+
+                    while ((count = is.read(buffer)) > 0) {
+                        md.update(buffer, 0, count);
+                    }
+                } finally {
+                    is.close();
+                }
+
+                // Pages of a multi-image file share the same file content
+                if (sheet.getPageIndex() != null) {
+                    md.update(("page " + sheet.getPageIndex()).getBytes("UTF-8"));
+                }
+
+                StringBuilder sb = new StringBuilder();
+
+                for (byte b : md.digest()) {
+                    sb.append(String.format("%02x", b & 0xff));
+                }
+
+                hash = sb.toString();
+                imageHashes.put(sheet, hash);
+            } catch (Exception ex) {
+                logger.warning("Cannot hash " + sheet.getImageFile(), ex);
+            }
+        }
+
+        return hash;
+    }
+
+    //-----------//
+    // getToolId //
+    //-----------//
+    private static String getToolId ()
+    {
+        return Main.getToolVersion() + "/" + Main.getToolBuild();
+    }
+
+    //------------//
+    // readLevels //
+    //------------//
+    private static BufferedImage readLevels (DataInputStream in)
+        throws IOException
+    {
+        int           width = in.readInt();
+        int           height = in.readInt();
+        BufferedImage image = new BufferedImage(
+            width,
+            height,
+            BufferedImage.TYPE_BYTE_GRAY);
+        in.readFully(((DataBufferByte) image.getRaster()
+                                            .getDataBuffer()).getData());
+
+        return image;
+    }
+
+    //-----------//
+    // readScale //
+    //-----------//
+    private static Scale readScale (DataInputStream in)
+        throws IOException
+    {
+        int interline = in.readInt();
+        int mainFore = in.readInt();
+
+        return new Scale(interline, mainFore);
+    }
+
+    //-------------//
+    // restoreLoad //
+    //-------------//
+    /** Same side effects as LOAD task */
+    private static void restoreLoad (Sheet           sheet,
+                                     DataInputStream in)
+        throws Exception
+    {
+        Picture picture = new Picture(readLevels(in));
+        picture.setMaxForeground(sheet.getMaxForeground());
+        sheet.setPicture(picture);
+
+        sheet.getBench()
+             .recordImageDimension(picture.getWidth(), picture.getHeight());
+    }
+
+    //--------------//
+    // restoreScale //
+    //--------------//
+    /** Same side effects as SCALE task */
+    private static void restoreScale (Sheet sheet,
+                                      Scale scale)
+        throws StepException
+    {
+        sheet.setScale(scale);
+        sheet.getBench()
+             .recordScale(scale);
+    }
+
+    //-------------//
+    // restoreSkew //
+    //-------------//
+    /** Same side effects as SKEW task, including a potential rotation */
+    private static void restoreSkew (Sheet           sheet,
+                                     DataInputStream in)
+        throws Exception
+    {
+        double        angle = in.readDouble();
+        int           count = in.readInt();
+        double[]      histo = null;
+        BufferedImage rotated = null;
+        Scale         scale = null;
+
+        if (count >= 0) {
+            histo = new double[count];
+
+            for (int i = 0; i < count; i++) {
+                histo[i] = in.readDouble();
+            }
+        }
+
+        if (in.readBoolean()) {
+            rotated = readLevels(in);
+            scale = readScale(in);
+            sheet.getPicture()
+                 .setRotatedImage(rotated);
+        }
+
+        // The builder is restored as well, for the display of its histogram
+        if (histo != null) {
+            sheet.setSkewBuilder(new SkewBuilder(sheet, angle, histo));
+        }
+
+        sheet.setSkew(new Skew(angle));
+        sheet.getBench()
+             .recordSkew(angle);
+
+        if (scale != null) {
+            restoreScale(sheet, scale);
+        }
+    }
+
+    //-------//
+    // write //
+    //-------//
+    /**
+     * Write a checkpoint file, under a temporary name first so that a
+     * partially written file is never used
+     */
+    private static void write (File                  file,
+                               Step                  step,
+                               String                imageHash,
+                               String                digest,
+                               ByteArrayOutputStream bytes)
+        throws IOException
+    {
+        File folder = file.getParentFile();
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create folder " + folder);
+        }
+
+        File         temp = File.createTempFile(step.name(), ".tmp", folder);
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(temp));
+
+        try {
+            DataOutputStream header = new DataOutputStream(os);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeUTF(step.name());
+            header.writeUTF(imageHash);
+            header.writeUTF(digest);
+            header.writeUTF(getToolId());
+            header.flush();
+
+            DeflaterOutputStream body = new DeflaterOutputStream(os);
+            bytes.writeTo(body);
+            body.finish();
+        } finally {
+            os.close();
+        }
+
+        if ((file.exists() && !file.delete()) || !temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp + " as " + file);
+        }
+
+        if (logger.isFineEnabled()) {
+            logger.fine("Checkpoint " + step + " written to " + file);
+        }
+    }
+
+    //-------------//
+    // writeLevels //
+    //-------------//
+    private static void writeLevels (DataOutputStream out,
+                                     Picture          picture)
+        throws IOException
+    {
+        int    width = picture.getWidth();
+        int    height = picture.getHeight();
+        byte[] line = new byte[width];
+
+        out.writeInt(width);
+        out.writeInt(height);
+
+        for (int y = 0; y < height; y++) {
+            picture.getScanline(0, y, width, line, 0);
+            out.write(line);
+        }
+    }
+
+    //------------//
+    // writeScale //
+    //------------//
+    private static void writeScale (DataOutputStream out,
+                                    Scale            scale)
+        throws IOException
+    {
+        out.writeInt(scale.interline());
+        out.writeInt(scale.mainFore());
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static final class Constants
+        extends ConstantSet
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        Constant.Boolean useCheckpoints = new Constant.Boolean(
+            false,
+            "Should we save and restore the results of first sheet steps?");
+
+        Constant.String checkpointFolder = new Constant.String(
+            "",
+            "Folder for checkpoint files (empty for a temporary folder)");
+
+        Constant.Integer checkpointBudget = new Constant.Integer(
+            "MB",
+            256,
+            "Maximum size of the checkpoint folder, oldest files being deleted");
+    }
+}
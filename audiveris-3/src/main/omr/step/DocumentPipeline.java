@@ -0,0 +1,488 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                      D o c u m e n t P i p e l i n e                       //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.step;
+
+import omr.constant.Constant;
+import omr.constant.ConstantSet;
+
+import omr.log.Logger;
+
+import omr.score.ScoreExporter;
+import omr.score.ScoreManager;
+
+import omr.sheet.Sheet;
+import omr.sheet.picture.PictureLoader;
+
+import omr.util.FileUtil;
+import omr.util.OmrExecutors;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class <code>DocumentPipeline</code> processes in batch all the pages of a
+ * multi-image file (a multi-page TIFF or a PDF document), one sheet per page.
+ *
+ * <p>Pages flow through two stages, each served by its own workers:<ol>
+ * <li>The pixel stage loads the page image and performs the steps that read
+ * its pixels, up to {@link Step#SYSTEMS}. The page picture is then released,
+ * so that the number of pictures in memory is bounded by the pixel workers,
+ * and by a budget on the estimated size of these pictures.</li>
+ * <li>The symbol stage performs the remaining steps, up to {@link Step#SCORE},
+ * on the glyphs of the page.</li></ol>
+ * The two stages are linked by a bounded queue, so that the pixel stage does
+ * not run too far ahead of the symbol stage. A page is loaded only when it
+ * is close enough to the next page to merge, so that the processed pages
+ * waiting behind a slow page are bounded as well.
+ *
+ * <p>Pages are then merged, in page order, into a single MusicXML document
+ * when the target step is {@link Step#EXPORT}. A page that could not be
+ * processed is skipped. Steps {@link Step#PLAY} and {@link Step#MIDI} are
+ * not available on a document, whose pages then stop at {@link Step#SCORE}.
+ *
+ * @author Hervé Bitteur
+ */
+public class DocumentPipeline
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Specific application parameters */
+    private static final Constants constants = new Constants();
+
+    /** Usual logger utility */
+    private static final Logger logger = Logger.getLogger(
+        DocumentPipeline.class);
+
+    /** Marker which ends the symbol stage */
+    private static final Page END = new Page(-1, null);
+
+    //~ Instance fields --------------------------------------------------------
+
+    /** The multi-image file */
+    private final File file;
+
+    /** The step to reach on each page */
+    private final Step target;
+
+    /** Last step of the pixel stage */
+    private final Step pixelStep;
+
+    /** Last step of the symbol stage, or null if none */
+    private final Step symbolStep;
+
+    /** Number of pages in the file */
+    private final int pageCount;
+
+    /** Index of the next page to load */
+    private final AtomicInteger nextPage = new AtomicInteger(0);
+
+    /** Pages waiting for the symbol stage */
+    private final BlockingQueue<Page> stageQueue;
+
+    /** Pages processed, waiting for their turn to be merged */
+    private final Map<Integer, Page> completed = new HashMap<Integer, Page>();
+
+    /** Index of the next page to merge */
+    private int nextMerged;
+
+    /** Maximum distance between a page being loaded and the next to merge */
+    private int window;
+
+    /** The exporter which gathers the merged pages, if any */
+    private ScoreExporter exporter;
+
+    /** Estimated bytes of the pictures currently in memory */
+    private long budgetUsed;
+
+    //~ Constructors -----------------------------------------------------------
+
+    //------------------//
+    // DocumentPipeline //
+    //------------------//
+    /**
+     * Create a pipeline on a multi-image file
+     *
+     * @param file the file to process
+     * @param target the step to reach on each page
+     */
+    public DocumentPipeline (File file,
+                             Step target)
+    {
+        this.file = file;
+        this.target = target;
+
+        pixelStep = (target.compareTo(Step.SYSTEMS) < 0) ? target
+                    : Step.SYSTEMS;
+
+        if (target.compareTo(Step.SYSTEMS) <= 0) {
+            symbolStep = null;
+        } else {
+            symbolStep = (target.compareTo(Step.SCORE) < 0) ? target
+                         : Step.SCORE;
+        }
+
+        if ((target.compareTo(Step.SCORE) > 0) && (target != Step.EXPORT)) {
+            logger.warning(
+                "Step " + target + " is not available on the pages of " +
+                file + ", they will stop at " + Step.SCORE);
+        }
+
+        pageCount = PictureLoader.getImageCount(file);
+        stageQueue = new ArrayBlockingQueue<Page>(
+            Math.max(1, constants.stageQueueSize.getValue()));
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    //---------//
+    // process //
+    //---------//
+    /**
+     * Process all the pages of the file, and export the resulting document if
+     * so desired. This method returns when all pages have been processed.
+     *
+     * @throws InterruptedException if interrupted while waiting for pages
+     */
+    public void process ()
+        throws InterruptedException
+    {
+        logger.info(
+            "Processing " + pageCount + " pages of " + file + " up to " +
+            target);
+
+        ExecutorService     executor = OmrExecutors.getCachedLowExecutor();
+        final int           pixelWorkers = Math.min(
+            pageCount,
+            Math.max(1, constants.pixelWorkers.getValue()));
+        final int           symbolWorkers = Math.max(
+            1,
+            constants.symbolWorkers.getValue());
+        final AtomicInteger pixelsActive = new AtomicInteger(pixelWorkers);
+        window = pixelWorkers + stageQueue.remainingCapacity() +
+                 symbolWorkers; // The pages the two stages can hold
+        List<Future<Void>>  futures = new ArrayList<Future<Void>>();
+
+        for (int i = 0; i < pixelWorkers; i++) {
+            futures.add(
+                executor.submit(
+                    new Callable<Void>() {
+                            public Void call ()
+                                throws Exception
+                            {
+                                try {
+                                    runPixelStage();
+                                } finally {
+                                    // Last pixel worker ends the symbol stage
+                                    if (pixelsActive.decrementAndGet() == 0) {
+                                        for (int j = 0; j < symbolWorkers;
+                                             j++) {
+                                            stageQueue.put(END);
+                                        }
+                                    }
+                                }
+
+                                return null;
+                            }
+                        }));
+        }
+
+        for (int i = 0; i < symbolWorkers; i++) {
+            futures.add(
+                executor.submit(
+                    new Callable<Void>() {
+                            public Void call ()
+                                throws Exception
+                            {
+                                runSymbolStage();
+
+                                return null;
+                            }
+                        }));
+        }
+
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                logger.warning("Error in processing " + file, ex.getCause());
+            }
+        }
+
+        if (exporter != null) {
+            ScoreManager.getInstance()
+                        .exportDocument(
+                exporter,
+                FileUtil.getNameSansExtension(file));
+        }
+    }
+
+    //---------//
+    // acquire //
+    //---------//
+    /**
+     * Wait until the picture budget can accommodate the provided amount. A
+     * single picture is always accepted, whatever its size.
+     */
+    private synchronized void acquire (long bytes)
+        throws InterruptedException
+    {
+        long max = constants.pictureBudget.getValue() * 1024L * 1024L;
+
+        while ((budgetUsed > 0) && ((budgetUsed + bytes) > max)) {
+            wait();
+        }
+
+        budgetUsed += bytes;
+    }
+
+    //-------//
+    // admit //
+    //-------//
+    /**
+     * Wait until a page is within the window of pages that can be processed
+     * before the next page to merge, so that one slow page does not keep the
+     * sheets of all following pages in memory.
+     */
+    private synchronized void admit (int index)
+        throws InterruptedException
+    {
+        while ((index - nextMerged) >= window) {
+            wait();
+        }
+    }
+
+    //---------------//
+    // estimateBytes //
+    //---------------//
+    /**
+     * Estimate the memory needed by the picture of a page, that is the image
+     * and its raster copy, at one byte per pixel each
+     */
+    private long estimateBytes (int index)
+    {
+        Dimension dim = PictureLoader.getImageDimension(file, index);
+
+        if (dim == null) {
+            return 0;
+        } else {
+            return 2L * dim.width * dim.height;
+        }
+    }
+
+    //-------//
+    // merge //
+    //-------//
+    /**
+     * Record a processed page, and merge all the pages that are now ready in
+     * page order. The sheets of the merged pages are then closed.
+     */
+    private void merge (Page page)
+    {
+        List<Page> merged = new ArrayList<Page>();
+
+        synchronized (this) {
+            completed.put(page.index, page);
+
+            for (Page next; (next = completed.remove(nextMerged)) != null;) {
+                nextMerged++;
+                mergePage(next);
+                merged.add(next);
+            }
+
+            if (!merged.isEmpty()) {
+                notifyAll(); // Pages waiting for admission
+            }
+        }
+
+        // Closing a sheet runs the garbage collector, so not within the lock
+        for (Page done : merged) {
+            if (done.sheet != null) {
+                done.sheet.close();
+            }
+        }
+    }
+
+    //-----------//
+    // mergePage //
+    //-----------//
+    private void mergePage (Page page)
+    {
+        Sheet sheet = page.sheet;
+
+        if (sheet == null) {
+            return;
+        }
+
+        try {
+            Step last = (symbolStep != null) ? symbolStep : pixelStep;
+
+            if (!sheet.getSheetSteps()
+                      .isDone(last)) {
+                logger.warning(
+                    "Page #" + (page.index + 1) + " of " + file +
+                    " could not reach " + last + ", skipped");
+            } else if (target.compareTo(Step.EXPORT) >= 0) {
+                if (exporter == null) {
+                    exporter = new ScoreExporter(sheet.getScore());
+                    exporter.buildScorePartwise();
+                } else {
+                    exporter.addPage(sheet.getScore());
+                }
+            }
+        } catch (Exception ex) {
+            logger.warning(
+                "Error merging page #" + (page.index + 1) + " of " + file,
+                ex);
+        }
+    }
+
+    //---------//
+    // release //
+    //---------//
+    private synchronized void release (long bytes)
+    {
+        budgetUsed -= bytes;
+        notifyAll();
+    }
+
+    //---------------//
+    // runPixelStage //
+    //---------------//
+    /**
+     * Load pages, one after the other, and process them until the end of the
+     * pixel stage
+     */
+    private void runPixelStage ()
+        throws InterruptedException
+    {
+        for (int index; (index = nextPage.getAndIncrement()) < pageCount;) {
+            long  bytes = estimateBytes(index);
+            Sheet sheet = null;
+
+            admit(index);
+            acquire(bytes);
+
+            try {
+                sheet = new Sheet(file, index);
+                pixelStep.performUntil(sheet);
+            } catch (ProcessingCancellationException pce) {
+                logger.warning("Cancelled " + sheet, pce);
+
+                if (sheet != null) {
+                    sheet.getBench()
+                         .recordCancellation();
+                }
+            } catch (Exception ex) {
+                logger.warning(
+                    "Error on page #" + (index + 1) + " of " + file,
+                    ex);
+            } finally {
+                if (sheet != null) {
+                    sheet.releasePicture();
+                }
+
+                release(bytes);
+            }
+
+            stageQueue.put(new Page(index, sheet));
+        }
+    }
+
+    //----------------//
+    // runSymbolStage //
+    //----------------//
+    /**
+     * Process the pages handed over by the pixel stage, until the end marker
+     */
+    private void runSymbolStage ()
+        throws InterruptedException
+    {
+        for (Page page; (page = stageQueue.take()) != END;) {
+            Sheet sheet = page.sheet;
+
+            if ((sheet != null) &&
+                (symbolStep != null) &&
+                sheet.getSheetSteps()
+                     .isDone(pixelStep)) {
+                try {
+                    symbolStep.performUntil(sheet);
+                } catch (ProcessingCancellationException pce) {
+                    logger.warning("Cancelled " + sheet, pce);
+                    sheet.getBench()
+                         .recordCancellation();
+                } catch (Exception ex) {
+                    logger.warning("Exception occurred", ex);
+                }
+            }
+
+            merge(page);
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    //-----------//
+    // Constants //
+    //-----------//
+    private static final class Constants
+        extends ConstantSet
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        Constant.Integer pixelWorkers = new Constant.Integer(
+            "threads",
+            2,
+            "Number of pages processed in parallel by the pixel stage");
+
+        Constant.Integer symbolWorkers = new Constant.Integer(
+            "threads",
+            2,
+            "Number of pages processed in parallel by the symbol stage");
+
+        Constant.Integer stageQueueSize = new Constant.Integer(
+            "pages",
+            2,
+            "Maximum number of pages waiting between the two stages");
+
+        Constant.Integer pictureBudget = new Constant.Integer(
+            "MB",
+            512,
+            "Maximum estimated memory for the pictures being processed");
+    }
+
+    //------//
+    // Page //
+    //------//
+    /** A page of the document, with its sheet if any */
+    private static class Page
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        /** Page index in the file, counted from 0 */
+        final int index;
+
+        /** Related sheet, or null if it could not be created */
+        final Sheet sheet;
+
+        //~ Constructors -------------------------------------------------------
+
+        public Page (int   index,
+                     Sheet sheet)
+        {
+            this.index = index;
+            this.sheet = sheet;
+        }
+    }
+}
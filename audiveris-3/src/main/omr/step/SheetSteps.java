@@ -226,6 +226,23 @@ public class SheetSteps
             .doStep(systems);
     }
 
+    //----------//
+    // markDone //
+    //----------//
+    /**
+     * Flag a step as done, its results having been restored from a checkpoint
+     * rather than computed
+     * @param step the restored step
+     */
+    void markDone (Step step)
+    {
+        currentStep = step;
+
+        SheetTask task = getTask(step);
+        task.started();
+        task.done();
+    }
+
     //-------------//
     // rebuildFrom //
     //-------------//
@@ -454,7 +471,10 @@ public class SheetSteps
                 File imageFile = sheet.getImageFile();
 
                 try {
-                    picture = new Picture(imageFile);
+                    Integer index = sheet.getPageIndex();
+                    picture = new Picture(
+                        imageFile,
+                        (index != null) ? index : 0);
                     picture.setMaxForeground(sheet.getMaxForeground());
                     sheet.setPicture(picture);
 
@@ -309,11 +309,17 @@ public enum Step {
             }
 
             // The actual processing
-            Step lastStep = null;
+            Step            lastStep = null;
+            CheckpointStore checkpoints = CheckpointStore.getInstance();
 
             for (Step step : stepRange) {
                 notifyMsg(step.name());
-                step.doOneStep(sheet, systems);
+
+                // Resume from a previous run if possible
+                if (!checkpoints.restore(sheet, step)) {
+                    step.doOneStep(sheet, systems);
+                    checkpoints.store(sheet, step);
+                }
 
                 if (monitor != null) {
                     monitor.animate();
@@ -0,0 +1,319 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                          S p a t i a l I n d e x                           //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.util;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class <code>SpatialIndex</code> keeps track of items through their bounding
+ * rectangle, so that the items found in a given area can be retrieved without
+ * browsing all of them.
+ *
+ * <p>The plane is divided into a uniform grid of square cells, and each item
+ * is registered in every cell its rectangle overlaps. A query only looks at
+ * the cells overlapped by the query rectangle, and reports each item once.
+ * Items are identified by identity, and their rectangle is the one provided
+ * when they were last added: an item whose bounds change must be added again.
+ *
+ * <p>All methods are synchronized, so an index can be shared between threads.
+ *
+ * @param <T> the type of indexed items
+ * @author Hervé Bitteur
+ */
+public class SpatialIndex<T>
+{
+    //~ Instance fields --------------------------------------------------------
+
+    /** Log2 of the cell size */
+    private final int cellShift;
+
+    /** The non-empty cells, indexed by their (column, row) key */
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<Long, List<Entry<T>>>();
+
+    /** The entry of each item */
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<T, Entry<T>>();
+
+    /** Range of cell columns and rows used so far */
+    private int minColumn = Integer.MAX_VALUE;
+    private int maxColumn = Integer.MIN_VALUE;
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+
+    //~ Constructors -----------------------------------------------------------
+
+    //--------------//
+    // SpatialIndex //
+    //--------------//
+    /**
+     * Creates a new SpatialIndex object.
+     *
+     * @param cellSize the side of grid cells, rounded down to a power of 2.
+     * It should be in the range of the typical item size.
+     */
+    public SpatialIndex (int cellSize)
+    {
+        cellShift = 31 - Integer.numberOfLeadingZeros(Math.max(1, cellSize));
+    }
+
+    //~ Methods ----------------------------------------------------------------
+
+    //-----//
+    // add //
+    //-----//
+    /**
+     * Register an item with its bounding rectangle, replacing the previous
+     * rectangle if the item was already registered
+     *
+     * @param item the item to index
+     * @param box  the item bounds (which is copied)
+     */
+    public synchronized void add (T         item,
+                                  Rectangle box)
+    {
+        remove(item);
+
+        Entry<T> entry = new Entry<T>(item, new Rectangle(box), cellShift);
+        entries.put(item, entry);
+
+        for (int row = entry.row; row <= entry.lastRow; row++) {
+            for (int col = entry.column; col <= entry.lastColumn; col++) {
+                Long           key = key(col, row);
+                List<Entry<T>> list = cells.get(key);
+
+                if (list == null) {
+                    cells.put(key, list = new ArrayList<Entry<T>>(4));
+                }
+
+                list.add(entry);
+            }
+        }
+
+        minColumn = Math.min(minColumn, entry.column);
+        maxColumn = Math.max(maxColumn, entry.lastColumn);
+        minRow = Math.min(minRow, entry.row);
+        maxRow = Math.max(maxRow, entry.lastRow);
+    }
+
+    //-------//
+    // clear //
+    //-------//
+    /**
+     * Forget all items
+     */
+    public synchronized void clear ()
+    {
+        cells.clear();
+        entries.clear();
+        minColumn = Integer.MAX_VALUE;
+        maxColumn = Integer.MIN_VALUE;
+        minRow = Integer.MAX_VALUE;
+        maxRow = Integer.MIN_VALUE;
+    }
+
+    //------------//
+    // containing //
+    //------------//
+    /**
+     * Report the items whose rectangle contains the provided point
+     *
+     * @param x point abscissa
+     * @param y point ordinate
+     * @return the items found, which may be an empty list
+     */
+    public synchronized List<T> containing (int x,
+                                            int y)
+    {
+        List<T>        found = new ArrayList<T>();
+        List<Entry<T>> list = cells.get(key(x >> cellShift, y >> cellShift));
+
+        if (list != null) {
+            for (Entry<T> entry : list) {
+                if (entry.box.contains(x, y)) {
+                    found.add(entry.item);
+                }
+            }
+        }
+
+        return found;
+    }
+
+    //-------------//
+    // containedIn //
+    //-------------//
+    /**
+     * Report the items whose rectangle is contained by the provided rectangle
+     *
+     * @param rect the containing rectangle
+     * @return the items found, which may be an empty list
+     */
+    public synchronized List<T> containedIn (Rectangle rect)
+    {
+        return lookup(rect, true);
+    }
+
+    //--------------//
+    // intersecting //
+    //--------------//
+    /**
+     * Report the items whose rectangle intersects the provided rectangle
+     *
+     * @param rect the intersecting rectangle
+     * @return the items found, which may be an empty list
+     */
+    public synchronized List<T> intersecting (Rectangle rect)
+    {
+        return lookup(rect, false);
+    }
+
+    //--------//
+    // remove //
+    //--------//
+    /**
+     * Unregister an item
+     *
+     * @param item the item to remove
+     * @return true if the item was registered
+     */
+    public synchronized boolean remove (T item)
+    {
+        Entry<T> entry = entries.remove(item);
+
+        if (entry == null) {
+            return false;
+        }
+
+        for (int row = entry.row; row <= entry.lastRow; row++) {
+            for (int col = entry.column; col <= entry.lastColumn; col++) {
+                Long           key = key(col, row);
+                List<Entry<T>> list = cells.get(key);
+                list.remove(entry);
+
+                if (list.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    //------//
+    // size //
+    //------//
+    /**
+     * Report the number of registered items
+     *
+     * @return the count of items
+     */
+    public synchronized int size ()
+    {
+        return entries.size();
+    }
+
+    //-----//
+    // key //
+    //-----//
+    private static Long key (int column,
+                             int row)
+    {
+        return Long.valueOf(((long) column << 32) | (row & 0xffffffffL));
+    }
+
+    //--------//
+    // lookup //
+    //--------//
+    /**
+     * Browse the cells overlapped by the provided rectangle. An item is
+     * checked only in the first of these cells which it also overlaps.
+     */
+    private List<T> lookup (Rectangle rect,
+                            boolean   contained)
+    {
+        List<T> found = new ArrayList<T>();
+
+        if (entries.isEmpty() || (rect.width < 0) || (rect.height < 0)) {
+            return found;
+        }
+
+        final int firstColumn = Math.max(minColumn, rect.x >> cellShift);
+        final int lastColumn = Math.min(
+            maxColumn,
+            (rect.x + Math.max(rect.width, 1) - 1) >> cellShift);
+        final int firstRow = Math.max(minRow, rect.y >> cellShift);
+        final int lastRow = Math.min(
+            maxRow,
+            (rect.y + Math.max(rect.height, 1) - 1) >> cellShift);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstColumn; col <= lastColumn; col++) {
+                List<Entry<T>> list = cells.get(key(col, row));
+
+                if (list == null) {
+                    continue;
+                }
+
+                for (Entry<T> entry : list) {
+                    if ((col != Math.max(firstColumn, entry.column)) ||
+                        (row != Math.max(firstRow, entry.row))) {
+                        continue; // Already met in a previous cell
+                    }
+
+                    if (contained ? rect.contains(entry.box)
+                        : rect.intersects(entry.box)) {
+                        found.add(entry.item);
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    //-------//
+    // Entry //
+    //-------//
+    /**
+     * An item with its rectangle and the range of cells it overlaps
+     */
+    private static class Entry<T>
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        final T         item;
+        final Rectangle box;
+        final int       column;
+        final int       lastColumn;
+        final int       row;
+        final int       lastRow;
+
+        //~ Constructors -------------------------------------------------------
+
+        Entry (T         item,
+               Rectangle box,
+               int       cellShift)
+        {
+            this.item = item;
+            this.box = box;
+            column = box.x >> cellShift;
+            lastColumn = (box.x + Math.max(box.width, 1) - 1) >> cellShift;
+            row = box.y >> cellShift;
+            lastRow = (box.y + Math.max(box.height, 1) - 1) >> cellShift;
+        }
+    }
+}
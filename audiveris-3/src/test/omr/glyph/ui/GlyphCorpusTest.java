@@ -0,0 +1,197 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                       G l y p h C o r p u s T e s t                        //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.glyph.ui;
+
+import omr.glyph.GlyphSection;
+import omr.glyph.Shape;
+import omr.glyph.facets.BasicGlyph;
+import omr.glyph.facets.Glyph;
+import omr.glyph.facets.GlyphValue;
+
+import omr.lag.Run;
+
+import omr.util.BaseTestCase;
+import static junit.framework.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Class <code>GlyphCorpusTest</code> checks that glyphs written to a
+ * {@link GlyphCorpus} are decoded identically.
+ */
+public class GlyphCorpusTest
+    extends BaseTestCase
+{
+    //~ Instance fields --------------------------------------------------------
+
+    private File folder;
+    private File corpusFile;
+    private File source;
+
+    //~ Methods ----------------------------------------------------------------
+
+    //---------------//
+    // testRoundTrip //
+    //---------------//
+    public void testRoundTrip ()
+        throws Exception
+    {
+        Random             random = new Random(17);
+        Glyph[]            glyphs = new Glyph[20];
+        GlyphCorpus.Writer writer = new GlyphCorpus.Writer(corpusFile);
+
+        for (int i = 0; i < glyphs.length; i++) {
+            glyphs[i] = createGlyph(random, i);
+            writer.add("sheets/test/G." + i + ".xml", source, glyphs[i]);
+        }
+
+        writer.close();
+
+        GlyphCorpus corpus = new GlyphCorpus(corpusFile);
+        print(corpus);
+        assertEquals("Size.", glyphs.length, corpus.getSize());
+
+        for (int i = 0; i < glyphs.length; i++) {
+            Glyph glyph = corpus.decode("sheets/test/G." + i + ".xml", source);
+            checkSame(glyphs[i], glyph);
+        }
+
+        assertNull("Unknown key.", corpus.decode("sheets/test/G.xml", source));
+
+        // Once the source is modified, the corpus record is obsolete
+        assertTrue(source.setLastModified(source.lastModified() - 10000));
+        assertFalse(corpus.contains("sheets/test/G.0.xml", source));
+        assertNull(corpus.decode("sheets/test/G.0.xml", source));
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Override
+    protected void setUp ()
+        throws Exception
+    {
+        folder = File.createTempFile("corpus", "");
+        folder.delete();
+        folder.mkdirs();
+        corpusFile = new File(folder, "test.corpus");
+        source = new File(folder, "source.xml");
+
+        FileWriter fw = new FileWriter(source);
+        fw.write("<glyph/>");
+        fw.close();
+    }
+
+    //----------//
+    // tearDown //
+    //----------//
+    @Override
+    protected void tearDown ()
+    {
+        corpusFile.delete();
+        source.delete();
+        folder.delete();
+    }
+
+    //-----------//
+    // checkSame //
+    //-----------//
+    private void checkSame (Glyph expected,
+                            Glyph actual)
+    {
+        assertNotNull(actual);
+        assertEquals("Shape.", expected.getShape(), actual.getShape());
+        assertEquals("Id.", expected.getId(), actual.getId());
+        assertEquals(
+            "Interline.",
+            expected.getInterline(),
+            actual.getInterline());
+        assertEquals(
+            "Stems.",
+            expected.getStemNumber(),
+            actual.getStemNumber());
+        assertEquals(
+            "Ledger.",
+            expected.isWithLedger(),
+            actual.isWithLedger());
+        assertEquals(
+            "Pitch.",
+            expected.getPitchPosition(),
+            actual.getPitchPosition());
+        assertEquals(
+            "Sections.",
+            expected.getMembers().size(),
+            actual.getMembers().size());
+
+        Iterator<GlyphSection> it = actual.getMembers()
+                                          .iterator();
+
+        for (GlyphSection exp : expected.getMembers()) {
+            GlyphSection act = it.next();
+            assertEquals("Section id.", exp.getId(), act.getId());
+            assertEquals("First pos.", exp.getFirstPos(), act.getFirstPos());
+            assertEquals("Runs.", exp.getRuns().toString(), act.getRuns().toString());
+        }
+
+        assertEquals(
+            "Moments.",
+            expected.getMoments().toString(),
+            actual.getMoments().toString());
+    }
+
+    //-------------//
+    // createGlyph //
+    //-------------//
+    private Glyph createGlyph (Random random,
+                               int    index)
+    {
+        SortedSet<GlyphSection> members = new TreeSet<GlyphSection>();
+        int                     x = random.nextInt(2000);
+        int                     sectionNb = 1 + random.nextInt(4);
+
+        for (int s = 0; s < sectionNb; s++) {
+            GlyphSection section = new GlyphSection();
+            section.setId((100 * index) + s);
+            section.setFirstPos(x);
+
+            int y = random.nextInt(3000);
+
+            for (int r = 1 + random.nextInt(30); r > 0; r--) {
+                section.append(
+                    new Run(
+                        y + random.nextInt(5),
+                        1 + random.nextInt(40),
+                        random.nextInt(256)));
+            }
+
+            members.add(section);
+            x += (section.getRunNb() + 1);
+        }
+
+        Shape[] shapes = Shape.values();
+
+        return new BasicGlyph(
+            new GlyphValue(
+                ((index % 5) == 0) ? null : shapes[random.nextInt(shapes.length)],
+                10 + random.nextInt(20),
+                index,
+                random.nextInt(3),
+                random.nextBoolean(),
+                random.nextGaussian(),
+                members));
+    }
+}
@@ -0,0 +1,182 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                         R u n s B e n c h m a r k                          //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.lag;
+
+import omr.sheet.picture.Picture;
+
+import omr.util.OmrExecutors;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class <code>RunsBenchmark</code> measures how many runs per second are
+ * retrieved from the images of the examples folder, pixel per pixel by a
+ * {@link RunsBuilder} through a {@link LagReader}, and in bulk by a
+ * {@link RunsTableBuilder}, in both orientations.
+ *
+ * <p>Usage: <code>RunsBenchmark [image files or folders]</code>, the default
+ * being the examples folder. The foreground threshold can be set through the
+ * <code>maxForeground</code> system property (192 by default).
+ */
+public class RunsBenchmark
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Number of measures for each case, the best one is kept */
+    private static final int ROUNDS = 5;
+
+    //~ Methods ----------------------------------------------------------------
+
+    //------//
+    // main //
+    //------//
+    public static void main (String... args)
+        throws Exception
+    {
+        int        maxForeground = Integer.getInteger("maxForeground", 192);
+        List<File> files = new ArrayList<File>();
+
+        for (String arg : (args.length > 0) ? args : new String[] { "examples" }) {
+            File file = new File(arg);
+
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                Arrays.sort(children);
+                files.addAll(Arrays.asList(children));
+            } else {
+                files.add(file);
+            }
+        }
+
+        System.out.println(
+            String.format(
+                "%-28s %-10s %9s %12s %12s %7s",
+                "Image",
+                "Runs",
+                "Count",
+                "Reader r/s",
+                "Table r/s",
+                "Ratio"));
+
+        long totalRuns = 0;
+        long totalReader = 0;
+        long totalTable = 0;
+
+        for (File file : files) {
+            Picture picture;
+
+            try {
+                picture = new Picture(file);
+            } catch (Exception ex) {
+                System.out.println("Skipping " + file + ": " + ex);
+
+                continue;
+            }
+
+            picture.setMaxForeground(maxForeground);
+
+            for (boolean vertical : new boolean[] { true, false }) {
+                long readerTime = Long.MAX_VALUE;
+                long tableTime = Long.MAX_VALUE;
+                int  readerCount = 0;
+                int  tableCount = 0;
+
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    readerCount = readRuns(picture, vertical);
+                    readerTime = Math.min(
+                        readerTime,
+                        System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    tableCount = new RunsTableBuilder(
+                        picture,
+                        vertical,
+                        maxForeground,
+                        1).createTable()
+                          .getRunCount();
+                    tableTime = Math.min(tableTime, System.nanoTime() - start);
+                }
+
+                if (readerCount != tableCount) {
+                    throw new IllegalStateException(
+                        file + " " + readerCount + " runs read, but " +
+                        tableCount + " in table");
+                }
+
+                totalRuns += tableCount;
+                totalReader += readerTime;
+                totalTable += tableTime;
+
+                System.out.println(
+                    String.format(
+                        "%-28s %-10s %9d %12.0f %12.0f %6.1fx",
+                        file.getName(),
+                        vertical ? "vertical" : "horizontal",
+                        tableCount,
+                        (tableCount * 1e9) / readerTime,
+                        (tableCount * 1e9) / tableTime,
+                        (double) readerTime / tableTime));
+            }
+        }
+
+        System.out.println(
+            String.format(
+                "%-28s %-10s %9d %12.0f %12.0f %6.1fx",
+                "Total",
+                "",
+                totalRuns,
+                (totalRuns * 1e9) / totalReader,
+                (totalRuns * 1e9) / totalTable,
+                (double) totalReader / totalTable));
+
+        OmrExecutors.shutdown(true);
+    }
+
+    //----------//
+    // readRuns //
+    //----------//
+    /**
+     * Retrieve the runs of a picture pixel per pixel, as lags used to
+     *
+     * @return the number of runs
+     */
+    private static int readRuns (Picture picture,
+                                 boolean vertical)
+    {
+        LagTest.MyLag   lag = new LagTest.MyLag(
+            "bench",
+            vertical ? new VerticalOrientation() : new HorizontalOrientation());
+        Rectangle       rect = lag.switchRef(
+            new Rectangle(0, 0, picture.getWidth(), picture.getHeight()),
+            null);
+        List<List<Run>> runs = new ArrayList<List<Run>>(rect.height);
+
+        for (int i = 0; i < rect.height; i++) {
+            runs.add(new ArrayList<Run>());
+        }
+
+        new RunsBuilder(new LagReader(lag, runs, picture, 1)).createRuns(rect);
+
+        int count = 0;
+
+        for (List<Run> list : runs) {
+            count += list.size();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,227 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                  R u n s T a b l e B u i l d e r T e s t                   //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.lag;
+
+import omr.util.BaseTestCase;
+import static junit.framework.Assert.*;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class <code>RunsTableBuilderTest</code> checks that the runs retrieved in
+ * bulk by a {@link RunsTableBuilder} are the ones a {@link RunsBuilder} reads
+ * pixel per pixel through a {@link LagReader}.
+ */
+public class RunsTableBuilderTest
+    extends BaseTestCase
+{
+    //~ Instance fields --------------------------------------------------------
+
+    private ByteSource source;
+
+    //~ Methods ----------------------------------------------------------------
+
+    //----------------//
+    // testBlankSource //
+    //----------------//
+    public void testBlankSource ()
+    {
+        ByteSource blank = new ByteSource(37, 23, new Random(1), 0);
+        RunsTable  table = new RunsTableBuilder(blank, true, 128, 1).createTable(
+            3);
+        assertEquals("No run expected.", 0, table.getRunCount());
+        assertEquals("One position per column.", 37, table.getSize());
+    }
+
+    //---------------------//
+    // testHorizontalRuns //
+    //---------------------//
+    public void testHorizontalRuns ()
+    {
+        checkRuns(new LagTest.MyLag("h", new HorizontalOrientation()), 1);
+    }
+
+    //------------------//
+    // testMinRunLength //
+    //------------------//
+    public void testMinRunLength ()
+    {
+        checkRuns(new LagTest.MyLag("v", new VerticalOrientation()), 3);
+        checkRuns(new LagTest.MyLag("h", new HorizontalOrientation()), 3);
+    }
+
+    //-------------------//
+    // testVerticalRuns //
+    //-------------------//
+    public void testVerticalRuns ()
+    {
+        checkRuns(new LagTest.MyLag("v", new VerticalOrientation()), 1);
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Override
+    protected void setUp ()
+    {
+        source = new ByteSource(211, 157, new Random(123), 40);
+    }
+
+    //-----------//
+    // checkRuns //
+    //-----------//
+    private void checkRuns (LagTest.MyLag lag,
+                            int           minLength)
+    {
+        // Reference runs, pixel per pixel
+        Rectangle rect = lag.switchRef(
+            new Rectangle(0, 0, source.getWidth(), source.getHeight()),
+            null);
+        List<List<Run>> expected = new ArrayList<List<Run>>();
+
+        for (int i = 0; i < rect.height; i++) {
+            expected.add(new ArrayList<Run>());
+        }
+
+        new RunsBuilder(new LagReader(lag, expected, source, minLength)).createRuns(
+            rect);
+
+        // Bulk runs, with various numbers of chunks
+        for (int chunks : new int[] { 1, 2, 5, rect.height }) {
+            RunsTable table = new RunsTableBuilder(
+                source,
+                lag.isVertical(),
+                source.getMaxForeground(),
+                minLength).createTable(chunks);
+            assertEquals("Positions.", expected.size(), table.getSize());
+
+            List<List<Run>> runs = table.createRuns();
+            int             count = 0;
+
+            for (int pos = 0; pos < expected.size(); pos++) {
+                List<Run> exp = expected.get(pos);
+                List<Run> act = runs.get(pos);
+                assertEquals("Runs at " + pos, exp.size(), act.size());
+
+                for (int i = 0; i < exp.size(); i++) {
+                    assertEquals(
+                        "Start at " + pos,
+                        exp.get(i).getStart(),
+                        act.get(i).getStart());
+                    assertEquals(
+                        "Length at " + pos,
+                        exp.get(i).getLength(),
+                        act.get(i).getLength());
+                    assertEquals(
+                        "Level at " + pos,
+                        exp.get(i).getLevel(),
+                        act.get(i).getLevel());
+                }
+
+                count += exp.size();
+            }
+
+            assertEquals("Total runs.", count, table.getRunCount());
+            print(table + " chunks:" + chunks);
+        }
+    }
+
+    //~ Inner Classes ----------------------------------------------------------
+
+    //------------//
+    // ByteSource //
+    //------------//
+    /**
+     * A source of random gray pixels, made of black blobs on white
+     */
+    private static class ByteSource
+        implements ScanlineSource
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        private final int    width;
+        private final int    height;
+        private final byte[] pixels;
+        private int          maxForeground = 128;
+
+        //~ Constructors -------------------------------------------------------
+
+        public ByteSource (int    width,
+                           int    height,
+                           Random random,
+                           int    blobs)
+        {
+            this.width = width;
+            this.height = height;
+            pixels = new byte[width * height];
+            java.util.Arrays.fill(pixels, (byte) 255);
+
+            for (int b = 0; b < blobs; b++) {
+                int x0 = random.nextInt(width);
+                int y0 = random.nextInt(height);
+                int w = 1 + random.nextInt(30);
+                int h = 1 + random.nextInt(30);
+
+                for (int y = y0; y < Math.min(height, y0 + h); y++) {
+                    for (int x = x0; x < Math.min(width, x0 + w); x++) {
+                        pixels[(y * width) + x] = (byte) random.nextInt(256);
+                    }
+                }
+            }
+        }
+
+        //~ Methods ------------------------------------------------------------
+
+        public int getHeight ()
+        {
+            return height;
+        }
+
+        public void setMaxForeground (int level)
+        {
+            maxForeground = level;
+        }
+
+        public int getMaxForeground ()
+        {
+            return maxForeground;
+        }
+
+        public int getPixel (int x,
+                             int y)
+        {
+            return pixels[(y * width) + x] & 0xff;
+        }
+
+        public void getScanline (int    x,
+                                 int    y,
+                                 int    width,
+                                 byte[] levels,
+                                 int    offset)
+        {
+            System.arraycopy(
+                pixels,
+                (y * this.width) + x,
+                levels,
+                offset,
+                width);
+        }
+
+        public int getWidth ()
+        {
+            return width;
+        }
+    }
+}
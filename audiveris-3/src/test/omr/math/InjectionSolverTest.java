@@ -13,6 +13,9 @@ package omr.math;
 
 import junit.framework.*;
 
+import java.util.Arrays;
+import java.util.Random;
+
 /**
  *
  * @author Etiolles
@@ -44,6 +47,95 @@ public class InjectionSolverTest
         //assertEquals(expResult, result);
     }
 
+    //---------------------//
+    // testRandomInstances //
+    //---------------------//
+    /**
+     * Compare the solver with an exhaustive search, on small instances with
+     * many equal distances.
+     */
+    public void testRandomInstances ()
+    {
+        Random random = new Random(1234);
+
+        for (int n = 0; n < 2000; n++) {
+            final int     domainSize = random.nextInt(7);
+            final int     rangeSize = domainSize + random.nextInt(4);
+            final int[][] costs = new int[domainSize][rangeSize];
+
+            for (int id = 0; id < domainSize; id++) {
+                for (int ir = 0; ir < rangeSize; ir++) {
+                    costs[id][ir] = (random.nextInt(10) == 0) ? 10000
+                                    : random.nextInt(20);
+                }
+            }
+
+            MatrixDistance distance = new MatrixDistance(costs);
+            int[]          result = new InjectionSolver(
+                domainSize,
+                rangeSize,
+                distance).solve();
+
+            assertEquals(
+                "Instance #" + n,
+                new BruteForce(domainSize, rangeSize, distance).solve(),
+                checkedCost(result, rangeSize, distance));
+        }
+    }
+
+    //-------------------//
+    // testLargeInstance //
+    //-------------------//
+    /**
+     * Solve a large instance, such as brute force could never handle, and
+     * check the result is at least as good as a greedy mapping.
+     */
+    public void testLargeInstance ()
+    {
+        final int     domainSize = 300;
+        final int     rangeSize = 400;
+        Random        random = new Random(5678);
+        final int[][] costs = new int[domainSize][rangeSize];
+
+        for (int id = 0; id < domainSize; id++) {
+            for (int ir = 0; ir < rangeSize; ir++) {
+                costs[id][ir] = random.nextInt(1000);
+            }
+        }
+
+        MatrixDistance distance = new MatrixDistance(costs);
+        long           start = System.currentTimeMillis();
+        int[]          result = new InjectionSolver(
+            domainSize,
+            rangeSize,
+            distance).solve();
+        long           stop = System.currentTimeMillis();
+        int            cost = checkedCost(result, rangeSize, distance);
+
+        // Greedy mapping, for comparison
+        boolean[] used = new boolean[rangeSize];
+        int       greedyCost = 0;
+
+        for (int id = 0; id < domainSize; id++) {
+            int best = -1;
+
+            for (int ir = 0; ir < rangeSize; ir++) {
+                if (!used[ir] &&
+                    ((best == -1) || (costs[id][ir] < costs[id][best]))) {
+                    best = ir;
+                }
+            }
+
+            used[best] = true;
+            greedyCost += costs[id][best];
+        }
+
+        System.out.println(
+            domainSize + "x" + rangeSize + " solved in " + (stop - start) +
+            " ms, cost=" + cost + " greedy=" + greedyCost);
+        assertTrue("Worse than greedy", cost <= greedyCost);
+    }
+
     protected void setUp ()
         throws Exception
     {
@@ -54,8 +146,110 @@ public class InjectionSolverTest
     {
     }
 
+    //-------------//
+    // checkedCost //
+    //-------------//
+    /**
+     * Check the mapping is an injection, and report its global distance
+     */
+    private static int checkedCost (int[]                    config,
+                                    int                      rangeSize,
+                                    InjectionSolver.Distance distance)
+    {
+        boolean[] used = new boolean[rangeSize];
+        int       cost = 0;
+
+        for (int id = 0; id < config.length; id++) {
+            int ir = config[id];
+            assertTrue("Range index " + ir, (ir >= 0) && (ir < rangeSize));
+            assertFalse("Range index " + ir + " used twice", used[ir]);
+            used[ir] = true;
+            cost += distance.getDistance(id, ir);
+        }
+
+        return cost;
+    }
+
     //~ Inner Classes ----------------------------------------------------------
 
+    //------------//
+    // BruteForce //
+    //------------//
+    /**
+     * Reference solver, which enumerates all injective mappings
+     */
+    private static class BruteForce
+    {
+        private final int                      domainSize;
+        private final int                      rangeSize;
+        private final InjectionSolver.Distance distance;
+        private final boolean[]                free;
+        private int                            bestCost = Integer.MAX_VALUE;
+
+        public BruteForce (int                      domainSize,
+                           int                      rangeSize,
+                           InjectionSolver.Distance distance)
+        {
+            this.domainSize = domainSize;
+            this.rangeSize = rangeSize;
+            this.distance = distance;
+            free = new boolean[rangeSize];
+        }
+
+        /** Report the minimum global distance */
+        public int solve ()
+        {
+            if (domainSize == 0) {
+                return 0;
+            }
+
+            Arrays.fill(free, true);
+            inspect(0, 0);
+
+            return bestCost;
+        }
+
+        private void inspect (int id,
+                              int cost)
+        {
+            for (int ir = 0; ir < rangeSize; ir++) {
+                if (free[ir]) {
+                    free[ir] = false;
+
+                    int newCost = cost + distance.getDistance(id, ir);
+
+                    if (id < (domainSize - 1)) {
+                        inspect(id + 1, newCost);
+                    } else if (newCost < bestCost) {
+                        bestCost = newCost;
+                    }
+
+                    free[ir] = true;
+                }
+            }
+        }
+    }
+
+    //----------------//
+    // MatrixDistance //
+    //----------------//
+    private static class MatrixDistance
+        implements InjectionSolver.Distance
+    {
+        private final int[][] costs;
+
+        public MatrixDistance (int[][] costs)
+        {
+            this.costs = costs;
+        }
+
+        public int getDistance (int id,
+                                int ir)
+        {
+            return costs[id][ir];
+        }
+    }
+
     public static class MyDistance
         implements InjectionSolver.Distance
     {
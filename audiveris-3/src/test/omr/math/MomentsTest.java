@@ -74,5 +74,52 @@ public class MomentsTest
         assertNears("yBar",   k[18], 8.40000);
     }
 
+    //@Test
+        public void testRawMoments()
+    {
+        // Random figure, made of horizontal and vertical segments which may
+        // be far from origin, to check precision
+        java.util.Random random = new java.util.Random(77);
+        RawMoments raw = new RawMoments();
+        int[]      x = new int[10000];
+        int[]      y = new int[10000];
+        int        dim = 0;
+
+        for (int s = 0; s < 40; s++) {
+            int     x0 = 5000 + random.nextInt(30);
+            int     y0 = 7000 + random.nextInt(30);
+            int     length = 1 + random.nextInt(20);
+            boolean vertical = random.nextBoolean();
+
+            for (int i = 0; i < length; i++) {
+                x[dim] = vertical ? x0 : (x0 + i);
+                y[dim] = vertical ? (y0 + i) : y0;
+                dim++;
+            }
+
+            if (vertical) {
+                raw.addVerticalSegment(x0, y0, length);
+            } else {
+                raw.addHorizontalSegment(x0, y0, length);
+            }
+        }
+
+        // Additivity
+        RawMoments sum = new RawMoments();
+        sum.add(raw);
+        assertEquals("weight", dim, sum.getWeight());
+
+        Double[] expected = new Moments(x, y, dim, 20).getValues();
+        Double[] actual = new Moments(sum, 20).getValues();
+
+        for (int i = 0; i < Moments.size; i++) {
+            assertNears(
+                Moments.getLabel(i),
+                actual[i],
+                expected[i],
+                1E-9 * Math.max(1, Math.abs(expected[i])));
+        }
+    }
+
     //~ Methods private----------------------------------------------------
 }
@@ -119,6 +119,28 @@ public class NeuralNetworkTest
             0.1d);
     }
 
+    //--------------//
+    // testBatchRun //
+    //--------------//
+    public void testBatchRun ()
+    {
+        // Sizes that are not multiples of the block size
+        NeuralNetwork        pp = createNetwork(12, 70, 45);
+        NeuralNetwork.Backup initial = pp.backup();
+        checkBatch(pp, 1);
+        checkBatch(pp, 77);
+
+        // Batch results must follow weight modifications
+        double[][] inputs = new double[5][12];
+        double[][] desiredOutputs = new double[5][45];
+        pp.setEpochs(3);
+        pp.train(inputs, desiredOutputs, null);
+        checkBatch(pp, 40);
+
+        pp.restore(initial);
+        checkBatch(pp, 40);
+    }
+
     //-----------------//
     // testMarshalling //
     //-----------------//
@@ -269,6 +291,39 @@ public class NeuralNetworkTest
             0.1d);
     }
 
+    //------------//
+    // checkBatch //
+    //------------//
+    private void checkBatch (NeuralNetwork pp,
+                             int           count)
+    {
+        final int inSize = pp.getInputSize();
+        final int outSize = pp.getOutputSize();
+        double[]  inputs = new double[count * inSize];
+
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = (2 * Math.random()) - 1;
+        }
+
+        double[] outputs = new double[count * outSize];
+        pp.run(inputs, count, outputs);
+
+        for (int n = 0; n < count; n++) {
+            double[] ins = new double[inSize];
+            System.arraycopy(inputs, n * inSize, ins, 0, inSize);
+
+            double[] outs = pp.run(ins, null, null);
+
+            for (int o = 0; o < outSize; o++) {
+                assertEquals(
+                    "Output " + o + " of vector " + n,
+                    outs[o],
+                    outputs[(n * outSize) + o],
+                    0d);
+            }
+        }
+    }
+
     //---------------//
     // createNetwork //
     //---------------//
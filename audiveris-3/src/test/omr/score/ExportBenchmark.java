@@ -0,0 +1,159 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                       E x p o r t B e n c h m a r k                        //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.score;
+
+import omr.sheet.Sheet;
+
+import omr.step.Step;
+
+import omr.util.OmrExecutors;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class <code>ExportBenchmark</code> measures the MusicXML export of example
+ * sheets, by the streamed export and by the export of the whole proxy tree,
+ * and checks that both give the same document.
+ *
+ * <p>Usage: <code>ExportBenchmark [image files]</code>, the default being
+ * the largest images of the examples folder. Each sheet is processed up to
+ * the SCORE step, then exported several times in each mode, the best time
+ * being kept. Allocated bytes are reported when the JVM can measure them.
+ */
+public class ExportBenchmark
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Number of exports for each case, the best one is kept */
+    private static final int ROUNDS = 10;
+
+    /** Number of examples taken by default, the largest ones */
+    private static final int LARGEST = 5;
+
+    //~ Methods ----------------------------------------------------------------
+
+    //------//
+    // main //
+    //------//
+    public static void main (String... args)
+        throws Exception
+    {
+        List<File> files = new ArrayList<File>();
+
+        if (args.length > 0) {
+            for (String arg : args) {
+                files.add(new File(arg));
+            }
+        } else {
+            File[] children = new File("examples").listFiles();
+            Arrays.sort(
+                children,
+                new Comparator<File>() {
+                        public int compare (File f1,
+                                            File f2)
+                        {
+                            return Long.signum(f2.length() - f1.length());
+                        }
+                    });
+            files.addAll(
+                Arrays.asList(children).subList(
+                    0,
+                    Math.min(LARGEST, children.length)));
+        }
+
+        System.out.println(
+            String.format(
+                "%-28s %-8s %9s %11s %9s %6s",
+                "Image",
+                "Mode",
+                "Best ms",
+                "Alloc KB",
+                "Bytes",
+                "Same"));
+
+        for (File file : files) {
+            Sheet sheet;
+
+            try {
+                sheet = new Sheet(file);
+                Step.SCORE.performUntil(sheet);
+            } catch (Exception ex) {
+                System.out.println("Skipping " + file + ": " + ex);
+
+                continue;
+            }
+
+            Score    score = sheet.getScore();
+            String[] dumps = new String[2];
+
+            for (int mode = 0; mode < 2; mode++) {
+                boolean streamed = mode == 1;
+                long    best = Long.MAX_VALUE;
+                long    alloc = -1;
+                byte[]  xml = null;
+
+                for (int round = 0; round < ROUNDS; round++) {
+                    long bytes = allocatedBytes();
+                    long start = System.nanoTime();
+                    xml = ScoreExporterTest.export(score, streamed);
+                    best = Math.min(best, System.nanoTime() - start);
+
+                    if (bytes >= 0) {
+                        alloc = allocatedBytes() - bytes;
+                    }
+                }
+
+                dumps[mode] = ScoreExporterTest.canonical(xml);
+
+                System.out.println(
+                    String.format(
+                        "%-28s %-8s %9.1f %11d %9d %6s",
+                        file.getName(),
+                        streamed ? "streamed" : "tree",
+                        best / 1e6,
+                        (alloc >= 0) ? (alloc / 1024) : (-1),
+                        xml.length,
+                        streamed ? dumps[0].equals(dumps[1]) : ""));
+            }
+
+            sheet.close();
+        }
+
+        OmrExecutors.shutdown(true);
+    }
+
+    //----------------//
+    // allocatedBytes //
+    //----------------//
+    /**
+     * Report the bytes allocated so far by the current thread
+     *
+     * @return the allocated bytes, or -1 if not available
+     */
+    private static long allocatedBytes ()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+        } else {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                     S c o r e E x p o r t e r T e s t                      //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.score;
+
+import omr.sheet.Sheet;
+
+import omr.step.Step;
+
+import omr.util.BaseTestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Class <code>ScoreExporterTest</code> checks that the streamed export of a
+ * score gives the same MusicXML document as the export of the whole proxy
+ * tree.
+ *
+ * @author Hervé Bitteur
+ */
+public class ScoreExporterTest
+    extends BaseTestCase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** A multi-part example sheet */
+    private static final String EXAMPLE = "examples/Dichterliebe-250.png";
+
+    /** The processed example, shared by the tests */
+    private static Sheet sheet;
+
+    //~ Methods ----------------------------------------------------------------
+
+    //----------------//
+    // testNamespaces //
+    //----------------//
+    /**
+     * The streamed document must not declare the namespaces that JAXB binds
+     * on each fragment, since the partwise DTD does not allow them.
+     */
+    public void testNamespaces ()
+        throws Exception
+    {
+        String xml = new String(export(getScore(), true), "UTF-8");
+        assertFalse("Empty default namespace", xml.contains("xmlns=\"\""));
+        assertFalse(
+            "xlink namespace",
+            xml.contains("\"http://www.w3.org/1999/xlink\""));
+    }
+
+    //--------------//
+    // testSignOnce //
+    //--------------//
+    /**
+     * Exporting twice with the same exporter must not sign the document
+     * twice
+     */
+    public void testSignOnce ()
+        throws Exception
+    {
+        ScoreExporter exporter = new ScoreExporter(getScore());
+        exporter.setStreamed(true);
+        exporter.export(new ByteArrayOutputStream(), true);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        exporter.export(os, true);
+
+        String xml = new String(os.toByteArray(), "UTF-8");
+        assertTrue("No signature", xml.contains("<software>"));
+        assertEquals(
+            "Encoding software",
+            xml.indexOf("<software>"),
+            xml.lastIndexOf("<software>"));
+        assertEquals(
+            "Encoding date",
+            xml.indexOf("<encoding-date>"),
+            xml.lastIndexOf("<encoding-date>"));
+    }
+
+    //--------------------//
+    // testStreamedVsTree //
+    //--------------------//
+    public void testStreamedVsTree ()
+        throws Exception
+    {
+        Score  score = getScore();
+        String tree = canonical(export(score, false));
+        String streamed = canonical(export(score, true));
+
+        assertTrue("No measure exported", tree.contains("<measure"));
+        assertEquals("Streamed and tree exports differ", tree, streamed);
+    }
+
+    //-----------//
+    // canonical //
+    //-----------//
+    /**
+     * Report a textual dump of an XML document, which ignores the layout
+     * whitespace and the encoding date
+     *
+     * @param xml the document content
+     * @return the canonical dump
+     */
+    static String canonical (byte[] xml)
+        throws Exception
+    {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature(
+            "http://apache.org/xml/features/nonvalidating/load-external-dtd",
+            false);
+
+        Document      doc = factory.newDocumentBuilder()
+                                   .parse(new ByteArrayInputStream(xml));
+        StringBuilder sb = new StringBuilder();
+        dump(doc.getDocumentElement(), sb, "");
+
+        return sb.toString();
+    }
+
+    //--------//
+    // export //
+    //--------//
+    /**
+     * Export a score to memory
+     *
+     * @param score the score to export
+     * @param streamed true for a streamed export
+     * @return the exported content
+     */
+    static byte[] export (Score   score,
+                          boolean streamed)
+        throws Exception
+    {
+        ScoreExporter         exporter = new ScoreExporter(score);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        exporter.setStreamed(streamed);
+        exporter.export(os, true);
+
+        return os.toByteArray();
+    }
+
+    //----------//
+    // getScore //
+    //----------//
+    private static synchronized Score getScore ()
+    {
+        if (sheet == null) {
+            sheet = new Sheet(new File(EXAMPLE));
+            Step.SCORE.performUntil(sheet);
+        }
+
+        return sheet.getScore();
+    }
+
+    //------//
+    // dump //
+    //------//
+    private static void dump (Node          node,
+                              StringBuilder sb,
+                              String        indent)
+    {
+        if (node.getNodeType() == Node.TEXT_NODE) {
+            String text = node.getNodeValue();
+
+            if (text.trim()
+                    .length() > 0) {
+                sb.append(indent)
+                  .append('"')
+                  .append(text)
+                  .append("\"\n");
+            }
+
+            return;
+        }
+
+        if (node.getNodeName()
+                .equals("encoding-date")) {
+            return;
+        }
+
+        sb.append(indent)
+          .append('<')
+          .append(node.getNodeName());
+
+        if (node instanceof Element) {
+            Map<String, String> attributes = new TreeMap<String, String>();
+            NamedNodeMap        map = node.getAttributes();
+
+            for (int i = 0; i < map.getLength(); i++) {
+                attributes.put(
+                    map.item(i).getNodeName(),
+                    map.item(i).getNodeValue());
+            }
+
+            sb.append(attributes);
+        }
+
+        sb.append(">\n");
+
+        NodeList children = node.getChildNodes();
+
+        for (int i = 0; i < children.getLength(); i++) {
+            dump(children.item(i), sb, indent + " ");
+        }
+    }
+}
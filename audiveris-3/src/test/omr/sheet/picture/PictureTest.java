@@ -0,0 +1,113 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                           P i c t u r e T e s t                            //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.sheet.picture;
+
+import omr.util.BaseTestCase;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+/**
+ * Class <code>PictureTest</code> checks that the rotation of a byte image
+ * directly on its raster gives the same picture as the rotation through JAI.
+ */
+public class PictureTest
+    extends BaseTestCase
+{
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Maximum difference allowed on a pixel level */
+    private static final int MAX_DIFF = 1;
+
+    //~ Methods ----------------------------------------------------------------
+
+    //------------------------//
+    // testClockwiseRotation //
+    //------------------------//
+    public void testClockwiseRotation ()
+        throws Exception
+    {
+        checkRotation(0.02);
+    }
+
+    //-------------------------------//
+    // testCounterClockwiseRotation //
+    //-------------------------------//
+    public void testCounterClockwiseRotation ()
+        throws Exception
+    {
+        checkRotation(-0.035);
+    }
+
+    //---------------//
+    // checkRotation //
+    //---------------//
+    private void checkRotation (double theta)
+        throws Exception
+    {
+        Picture onRaster = new Picture(createImage());
+        onRaster.rotate(theta, true);
+
+        Picture withJai = new Picture(createImage());
+        withJai.rotate(theta, false);
+
+        assertEquals("Width", withJai.getWidth(), onRaster.getWidth());
+        assertEquals("Height", withJai.getHeight(), onRaster.getHeight());
+
+        for (int y = 0; y < withJai.getHeight(); y++) {
+            for (int x = 0; x < withJai.getWidth(); x++) {
+                int diff = Math.abs(
+                    withJai.getPixel(x, y) - onRaster.getPixel(x, y));
+
+                if (diff > MAX_DIFF) {
+                    fail(
+                        "Pixel at x=" + x + " y=" + y + " differs by " + diff);
+                }
+            }
+        }
+    }
+
+    //-------------//
+    // createImage //
+    //-------------//
+    /**
+     * Build a small gray image, with white background, a few black staff
+     * lines and some noise
+     */
+    private BufferedImage createImage ()
+    {
+        final int     width = 181;
+        final int     height = 97;
+        BufferedImage img = new BufferedImage(
+            width,
+            height,
+            BufferedImage.TYPE_BYTE_GRAY);
+        byte[]        data = ((DataBufferByte) img.getRaster()
+                                                  .getDataBuffer()).getData();
+        Random        random = new Random(7);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int level = ((y % 12) < 2) ? 0 : 255;
+
+                if (random.nextInt(10) == 0) {
+                    level = random.nextInt(256);
+                }
+
+                data[(y * width) + x] = (byte) level;
+            }
+        }
+
+        return img;
+    }
+}
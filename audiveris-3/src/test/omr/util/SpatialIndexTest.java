@@ -0,0 +1,156 @@
+//----------------------------------------------------------------------------//
+//                                                                            //
+//                      S p a t i a l I n d e x T e s t                       //
+//                                                                            //
+//----------------------------------------------------------------------------//
+// <editor-fold defaultstate="collapsed" desc="hdr">                          //
+//  Copyright (C) Herve Bitteur 2000-2010. All rights reserved.               //
+//  This software is released under the GNU General Public License.           //
+//  Goto http://kenai.com/projects/audiveris to report bugs or suggestions.   //
+//----------------------------------------------------------------------------//
+// </editor-fold>
+package omr.util;
+
+import static junit.framework.Assert.*;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Class <code>SpatialIndexTest</code> checks the lookups of a
+ * {@link SpatialIndex} against a brute force browsing of all items.
+ */
+public class SpatialIndexTest
+    extends BaseTestCase
+{
+    //~ Instance fields --------------------------------------------------------
+
+    private Random                  random;
+    private List<Rectangle>         boxes;
+    private SpatialIndex<Rectangle> index;
+
+    //~ Methods ----------------------------------------------------------------
+
+    //-----------//
+    // testEmpty //
+    //-----------//
+    public void testEmpty ()
+    {
+        SpatialIndex<Rectangle> empty = new SpatialIndex<Rectangle>(16);
+        assertTrue(empty.intersecting(new Rectangle(0, 0, 100, 100)).isEmpty());
+        assertTrue(empty.containing(5, 5).isEmpty());
+    }
+
+    //-------------//
+    // testLookups //
+    //-------------//
+    public void testLookups ()
+    {
+        checkLookups(200);
+    }
+
+    //-------------------//
+    // testRemoveAndMove //
+    //-------------------//
+    public void testRemoveAndMove ()
+    {
+        // Remove one third of the boxes, and move another third
+        for (int i = boxes.size() - 1; i >= 0; i--) {
+            Rectangle box = boxes.get(i);
+
+            if ((i % 3) == 0) {
+                assertTrue(index.remove(box));
+                assertFalse(index.remove(box));
+                boxes.remove(i);
+            } else if ((i % 3) == 1) {
+                box.translate(random.nextInt(81) - 40, random.nextInt(81) - 40);
+                index.add(box, box);
+            }
+        }
+
+        assertEquals("Size.", boxes.size(), index.size());
+        checkLookups(200);
+
+        index.clear();
+        assertEquals("Cleared.", 0, index.size());
+        assertTrue(index.intersecting(new Rectangle(-50, -50, 600, 600)).isEmpty());
+    }
+
+    //-------//
+    // setUp //
+    //-------//
+    @Override
+    protected void setUp ()
+    {
+        random = new Random(321);
+        boxes = new ArrayList<Rectangle>();
+        index = new SpatialIndex<Rectangle>(32);
+
+        for (int i = 0; i < 500; i++) {
+            Rectangle box = randomRectangle(60);
+            boxes.add(box);
+            index.add(box, box);
+        }
+    }
+
+    //--------------//
+    // checkLookups //
+    //--------------//
+    private void checkLookups (int count)
+    {
+        for (int i = 0; i < count; i++) {
+            Rectangle      rect = randomRectangle(150);
+            Set<Rectangle> intersecting = new HashSet<Rectangle>();
+            Set<Rectangle> containedIn = new HashSet<Rectangle>();
+            Set<Rectangle> containing = new HashSet<Rectangle>();
+
+            for (Rectangle box : boxes) {
+                if (rect.intersects(box)) {
+                    intersecting.add(box);
+                }
+
+                if (rect.contains(box)) {
+                    containedIn.add(box);
+                }
+
+                if (box.contains(rect.x, rect.y)) {
+                    containing.add(box);
+                }
+            }
+
+            checkSame("intersecting " + rect, intersecting, index.intersecting(rect));
+            checkSame("containedIn " + rect, containedIn, index.containedIn(rect));
+            checkSame(
+                "containing " + rect.getLocation(),
+                containing,
+                index.containing(rect.x, rect.y));
+        }
+    }
+
+    //-----------//
+    // checkSame //
+    //-----------//
+    private void checkSame (String          message,
+                            Set<Rectangle>  expected,
+                            List<Rectangle> found)
+    {
+        assertEquals(message + " count", expected.size(), found.size());
+        assertEquals(message, expected, new HashSet<Rectangle>(found));
+    }
+
+    //-----------------//
+    // randomRectangle //
+    //-----------------//
+    private Rectangle randomRectangle (int maxSide)
+    {
+        return new Rectangle(
+            random.nextInt(600) - 50,
+            random.nextInt(600) - 50,
+            1 + random.nextInt(maxSide),
+            1 + random.nextInt(maxSide));
+    }
+}